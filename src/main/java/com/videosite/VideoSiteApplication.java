@@ -7,6 +7,7 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import com.videosite.domain.entity.User;
 import com.videosite.repository.UserRepository;
@@ -17,6 +18,7 @@ import java.util.List;
 @Slf4j
 @SpringBootApplication
 @EnableJpaAuditing
+@EnableScheduling
 public class VideoSiteApplication {
 
     @Autowired
@@ -30,11 +30,11 @@ public class SecurityConfig {
         http
             .authorizeHttpRequests(authz -> authz
                 // 公开访问的路径
-                .requestMatchers("/", "/home", "/search", "/videos", "/videos/**", "/thumbnails/**").permitAll()
+                .requestMatchers("/", "/home", "/search", "/videos", "/videos/**", "/thumbnails/**", "/storyboards/**", "/api/search/**").permitAll()
                 .requestMatchers("/login", "/register", "/css/**", "/js/**", "/images/**", "/vendor/**").permitAll()
                 
                 // 需要登录的路径（视频流和下载需要登录）
-                .requestMatchers("/stream/**", "/download/**").authenticated()
+                .requestMatchers("/stream/**", "/hls/**", "/download/**").authenticated()
                 .requestMatchers("/upload", "/profile/**").authenticated()
                 
                 // 管理员路径
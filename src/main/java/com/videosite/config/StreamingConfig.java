@@ -0,0 +1,20 @@
+package com.videosite.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class StreamingConfig {
+
+    /**
+     * 视频流异步写出使用的执行器：每个传输一个虚拟线程，长连接不再占用Tomcat工作线程
+     */
+    @Bean(destroyMethod = "close")
+    public ExecutorService streamingExecutor() {
+        return Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("stream-", 0).factory());
+    }
+}
@@ -2,10 +2,17 @@ package com.videosite.controller;
 
 import com.videosite.domain.entity.User;
 import com.videosite.domain.entity.Video;
+import com.videosite.dto.stats.CounterTotals;
+import com.videosite.dto.stats.StatsPoint;
+import com.videosite.dto.stats.StatsResolution;
+import com.videosite.dto.stats.StatsSeries;
+import com.videosite.service.StatsSeriesService;
 import com.videosite.service.StatsService;
+import com.videosite.service.UniqueViewerService;
 import com.videosite.service.UserService;
 import com.videosite.service.VideoService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
@@ -13,10 +20,14 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.ToLongFunction;
 
 @Controller
 @RequestMapping("/admin")
@@ -24,8 +35,16 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class AdminController {
     
+    /** 按日图表允许的最大天数，超过时请改用 /api/stats/series 的月粒度 */
+    private static final int MAX_DAILY_CHART_DAYS = 366;
+    
+    /** 独立观众默认统计的天数 */
+    private static final int UNIQUE_VIEWERS_DEFAULT_DAYS = 7;
+    
     private final VideoService videoService;
     private final StatsService statsService;
+    private final StatsSeriesService statsSeriesService;
+    private final UniqueViewerService uniqueViewerService;
     private final UserService userService;
     
     /**
@@ -36,10 +55,16 @@ public class AdminController {
         // 获取Top10视频
         List<Video> topViewedVideos = videoService.getTopViewedVideos();
         List<Video> topDownloadedVideos = videoService.getTopDownloadedVideos();
+        List<Video> trendingVideos = videoService.getTrendingVideos();
+        
+        // 热门视频近7天的独立观众数
+        LocalDate today = LocalDate.now();
+        Map<Long, Long> topViewedUniqueViewers = uniqueViewerService.getUniqueViewers(
+                topViewedVideos.stream().map(Video::getId).toList(),
+                today.minusDays(UNIQUE_VIEWERS_DEFAULT_DAYS - 1), today);
         
         // 获取统计摘要
-        Long totalViews = statsService.getTotalViews() != null ? statsService.getTotalViews() : 0L;
-        Long totalDownloads = statsService.getTotalDownloads() != null ? statsService.getTotalDownloads() : 0L;
+        CounterTotals totals = statsService.getGlobalTotals();
         Long totalUsers = userService.getTotalUserCount();
         Long totalVideos = videoService.getTotalVideoCount();
         
@@ -47,12 +72,15 @@ public class AdminController {
         List<User> allUsers = userService.getAllUsers();
         List<Video> allVideos = videoService.getAllVideos();
         
-        model.addAttribute("totalViews", totalViews);
-        model.addAttribute("totalDownloads", totalDownloads);
+        model.addAttribute("totalViews", totals.getViews());
+        model.addAttribute("totalDownloads", totals.getDownloads());
+        model.addAttribute("uploaderTotals", statsService.getUploaderTotals());
         model.addAttribute("totalUsers", totalUsers);
         model.addAttribute("totalVideos", totalVideos);
         model.addAttribute("topViewedVideos", topViewedVideos);
         model.addAttribute("topDownloadedVideos", topDownloadedVideos);
+        model.addAttribute("trendingVideos", trendingVideos);
+        model.addAttribute("topViewedUniqueViewers", topViewedUniqueViewers);
         model.addAttribute("allUsers", allUsers);
         model.addAttribute("allVideos", allVideos);
         
@@ -63,66 +91,104 @@ public class AdminController {
      * 获取每日播放统计数据（API）
      */
     @GetMapping("/api/stats/daily-views")
-    public ResponseEntity<Map<String, Object>> getDailyViewsStats() {
-        LocalDate endDate = LocalDate.now();
-        LocalDate startDate = endDate.minusDays(6); // 最近7天
-        
-        List<Object[]> stats = statsService.getDailyViewsStats(startDate, endDate);
-        
-        Map<String, Object> result = new HashMap<>();
-        Map<String, Long> dailyStats = new HashMap<>();
-        
-        // 初始化7天的数据
-        for (int i = 0; i < 7; i++) {
-            LocalDate date = startDate.plusDays(i);
-            dailyStats.put(date.toString(), 0L);
-        }
-        
-        // 填入实际数据
-        for (Object[] stat : stats) {
-            LocalDate date = (LocalDate) stat[0];
-            Long views = ((Number) stat[1]).longValue();
-            dailyStats.put(date.toString(), views);
-        }
-        
-        result.put("dailyStats", dailyStats);
-        result.put("startDate", startDate.toString());
-        result.put("endDate", endDate.toString());
-        
-        return ResponseEntity.ok(result);
+    public ResponseEntity<Map<String, Object>> getDailyViewsStats(@RequestParam(defaultValue = "7") int days) {
+        return ResponseEntity.ok(dailyStats(days, StatsPoint::getViews));
     }
     
     /**
      * 获取每日下载统计数据（API）
      */
     @GetMapping("/api/stats/daily-downloads")
-    public ResponseEntity<Map<String, Object>> getDailyDownloadsStats() {
-        LocalDate endDate = LocalDate.now();
-        LocalDate startDate = endDate.minusDays(6); // 最近7天
-        
-        List<Object[]> stats = statsService.getDailyDownloadsStats(startDate, endDate);
-        
+    public ResponseEntity<Map<String, Object>> getDailyDownloadsStats(@RequestParam(defaultValue = "7") int days) {
+        return ResponseEntity.ok(dailyStats(days, StatsPoint::getDownloads));
+    }
+    
+    /**
+     * 获取任意范围和粒度的播放/下载时间序列（API），范围超出细粒度保留期时返回更粗的粒度
+     */
+    @GetMapping("/api/stats/series")
+    public ResponseEntity<Map<String, Object>> getStatsSeries(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "DAY") StatsResolution resolution) {
         Map<String, Object> result = new HashMap<>();
-        Map<String, Long> dailyStats = new HashMap<>();
+        try {
+            StatsSeries series = statsSeriesService.query(from, to != null ? to : LocalDateTime.now(), resolution);
+            StatsResolution effective = series.getResolution();
+            
+            List<String> labels = new ArrayList<>();
+            List<Long> views = new ArrayList<>();
+            List<Long> downloads = new ArrayList<>();
+            for (StatsPoint point : series.getPoints()) {
+                labels.add(effective.label(point.getBucketStart()));
+                views.add(point.getViews());
+                downloads.add(point.getDownloads());
+            }
+            
+            result.put("resolution", effective.name());
+            result.put("from", series.getFrom().toString());
+            result.put("to", series.getTo().toString());
+            result.put("labels", labels);
+            result.put("views", views);
+            result.put("downloads", downloads);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(result);
+        }
+    }
+    
+    /**
+     * 获取视频在日期范围内的独立观众数（API），默认最近7天；同时返回每天的独立观众数
+     */
+    @GetMapping("/api/stats/videos/{id}/unique-viewers")
+    public ResponseEntity<Map<String, Object>> getUniqueViewers(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate endDate = to != null ? to : LocalDate.now();
+        LocalDate startDate = from != null ? from : endDate.minusDays(UNIQUE_VIEWERS_DEFAULT_DAYS - 1);
         
-        // 初始化7天的数据
-        for (int i = 0; i < 7; i++) {
-            LocalDate date = startDate.plusDays(i);
-            dailyStats.put(date.toString(), 0L);
+        Map<String, Object> result = new HashMap<>();
+        try {
+            Long uniqueViewers = uniqueViewerService.getUniqueViewers(List.of(id), startDate, endDate).get(id);
+            Map<String, Long> daily = new LinkedHashMap<>();
+            uniqueViewerService.getDailyUniqueViewers(id, startDate, endDate)
+                    .forEach((date, count) -> daily.put(date.toString(), count));
+            
+            result.put("videoId", id);
+            result.put("startDate", startDate.toString());
+            result.put("endDate", endDate.toString());
+            result.put("uniqueViewers", uniqueViewers);
+            result.put("dailyUniqueViewers", daily);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(result);
         }
+    }
+    
+    /**
+     * 最近days天（含今天）的按日序列，保持图表原有的 {dailyStats: {日期: 数值}} 结构
+     */
+    private Map<String, Object> dailyStats(int days, ToLongFunction<StatsPoint> metric) {
+        LocalDate endDate = LocalDate.now();
+        LocalDate startDate = endDate.minusDays(Math.max(1, Math.min(days, MAX_DAILY_CHART_DAYS)) - 1);
+        StatsSeries series = statsSeriesService.query(startDate.atStartOfDay(),
+                endDate.plusDays(1).atStartOfDay(), StatsResolution.DAY);
         
-        // 填入实际数据
-        for (Object[] stat : stats) {
-            LocalDate date = (LocalDate) stat[0];
-            Long downloads = ((Number) stat[1]).longValue();
-            dailyStats.put(date.toString(), downloads);
+        Map<String, Long> dailyStats = new LinkedHashMap<>();
+        for (StatsPoint point : series.getPoints()) {
+            dailyStats.put(series.getResolution().label(point.getBucketStart()), metric.applyAsLong(point));
         }
         
+        Map<String, Object> result = new HashMap<>();
         result.put("dailyStats", dailyStats);
         result.put("startDate", startDate.toString());
         result.put("endDate", endDate.toString());
-        
-        return ResponseEntity.ok(result);
+        return result;
     }
     
     /**
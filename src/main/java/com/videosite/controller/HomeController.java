@@ -2,8 +2,10 @@ package com.videosite.controller;
 
 import com.videosite.domain.entity.Video;
 import com.videosite.dto.form.SearchQuery;
+import com.videosite.dto.page.CursorPage;
 import com.videosite.service.VideoService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -18,6 +20,9 @@ public class HomeController {
     
     private final VideoService videoService;
     
+    @Value("${app.pagination.mode:keyset}")
+    private String paginationMode;
+    
     /**
      * 首页 - 显示视频列表
      */
@@ -28,18 +33,7 @@ public class HomeController {
             searchQuery.setSize(12);
         }
         
-        Pageable pageable = PageRequest.of(searchQuery.getPage(), searchQuery.getSize());
-        Page<Video> videos;
-        
-        if (searchQuery.hasQuery()) {
-            videos = videoService.searchVideos(searchQuery);
-            model.addAttribute("query", searchQuery.getQ());
-        } else {
-            videos = videoService.findAllVideos(pageable);
-        }
-        
-        model.addAttribute("videos", videos);
-        model.addAttribute("searchQuery", searchQuery);
+        loadVideos(searchQuery, model);
         
         return "index";
     }
@@ -54,19 +48,34 @@ public class HomeController {
             searchQuery.setSize(12);
         }
         
-        Page<Video> videos;
+        loadVideos(searchQuery, model);
         
-        if (searchQuery.hasQuery()) {
-            videos = videoService.searchVideos(searchQuery);
-            model.addAttribute("query", searchQuery.getQ());
+        return "videos/list";
+    }
+    
+    /**
+     * 加载视频列表或搜索结果：键集分页模式下使用游标翻页（相关度排序仍按页码），否则按页码分页
+     */
+    private void loadVideos(SearchQuery searchQuery, Model model) {
+        boolean keyset = "keyset".equals(paginationMode) && !searchQuery.isRelevanceSort();
+        
+        if (keyset) {
+            CursorPage<Video> videos = searchQuery.hasQuery()
+                    ? videoService.searchVideosByCursor(searchQuery)
+                    : videoService.findVideosByCursor(searchQuery);
+            model.addAttribute("videos", videos);
+        } else if (searchQuery.hasQuery()) {
+            model.addAttribute("videos", videoService.searchVideos(searchQuery));
         } else {
             Pageable pageable = PageRequest.of(searchQuery.getPage(), searchQuery.getSize());
-            videos = videoService.findAllVideos(pageable);
+            Page<Video> videos = videoService.findAllVideos(pageable);
+            model.addAttribute("videos", videos);
         }
         
-        model.addAttribute("videos", videos);
+        if (searchQuery.hasQuery()) {
+            model.addAttribute("query", searchQuery.getQ());
+        }
+        model.addAttribute("keyset", keyset);
         model.addAttribute("searchQuery", searchQuery);
-        
-        return "videos/list";
     }
 }
@@ -0,0 +1,48 @@
+package com.videosite.controller;
+
+import com.videosite.service.SearchIndexService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@Controller
+@RequestMapping("/api/search")
+@RequiredArgsConstructor
+public class SearchApiController {
+    
+    private static final int MAX_PREFIX_LENGTH = 64;
+    
+    private final SearchIndexService searchIndexService;
+    
+    /**
+     * 搜索联想：返回以输入为前缀的标题、关键词、上传者，完全由内存前缀树应答
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<Map<String, Object>> suggest(@RequestParam(value = "q", required = false) String q,
+                                                       @RequestParam(value = "limit", defaultValue = "8") int limit) {
+        String prefix = q == null ? "" : q.trim();
+        if (prefix.length() > MAX_PREFIX_LENGTH) {
+            prefix = prefix.substring(0, MAX_PREFIX_LENGTH);
+        }
+        List<String> suggestions = prefix.isEmpty()
+                ? List.of()
+                : searchIndexService.suggest(prefix, Math.max(1, Math.min(limit, 20)));
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("query", prefix);
+        result.put("suggestions", suggestions);
+        
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(60, TimeUnit.SECONDS).cachePublic())
+                .body(result);
+    }
+}
@@ -0,0 +1,209 @@
+package com.videosite.controller;
+
+import com.videosite.domain.entity.UploadSession;
+import com.videosite.domain.entity.User;
+import com.videosite.domain.entity.Video;
+import com.videosite.dto.upload.UploadStatus;
+import com.videosite.security.CustomUserDetailsService.CustomUserPrincipal;
+import com.videosite.service.ChunkedUploadService;
+import com.videosite.service.ChunkedUploadService.ChecksumMismatchException;
+import com.videosite.service.ChunkedUploadService.ChunkTooLargeException;
+import com.videosite.service.ChunkedUploadService.OffsetMismatchException;
+import com.videosite.service.UploadProcessingService;
+import com.videosite.service.UserService;
+import com.videosite.service.VideoService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+@Controller
+@RequestMapping("/api/uploads")
+@RequiredArgsConstructor
+public class UploadApiController {
+    
+    private static final String TUS_RESUMABLE = "Tus-Resumable";
+    private static final String TUS_VERSION = "1.0.0";
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+    private static final String UPLOAD_LENGTH = "Upload-Length";
+    private static final String UPLOAD_VIDEO_ID = "Upload-Video-Id";
+    /** tus校验和扩展约定的校验失败状态码 */
+    private static final int CHECKSUM_MISMATCH = 460;
+    
+    private final VideoService videoService;
+    private final UserService userService;
+    private final UploadProcessingService uploadProcessingService;
+    private final ChunkedUploadService chunkedUploadService;
+    
+    /**
+     * 上传处理状态：阶段、进度、重试次数与失败原因，仅上传者和管理员可查询
+     */
+    @GetMapping("/{id}/status")
+    public ResponseEntity<UploadStatus> status(@PathVariable Long id,
+                                               @AuthenticationPrincipal CustomUserPrincipal principal) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        
+        Optional<Video> videoOpt = videoService.findById(id);
+        if (videoOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        Video video = videoOpt.get();
+        User currentUser = principal.getUser();
+        if (!video.getUploaderId().equals(currentUser.getId()) && !userService.isAdmin(currentUser)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        
+        return uploadProcessingService.getStatus(video)
+                .map(status -> ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(status))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * 创建分片上传会话，Upload-Metadata 携带文件名、标题、描述和关键词
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> createChunkedUpload(
+            @RequestHeader(UPLOAD_LENGTH) long uploadLength,
+            @RequestHeader(value = "Upload-Metadata", required = false) String metadata,
+            @AuthenticationPrincipal CustomUserPrincipal principal) throws IOException {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        
+        // 处理繁忙时在上传开始前拒绝，避免客户端传完整个文件后才排到很久以后
+        OptionalLong retryAfter = uploadProcessingService.admissionRetryAfter();
+        if (retryAfter.isPresent()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter.getAsLong()))
+                    .body(Map.of("error", "服务器正在处理较多视频，请稍后再上传"));
+        }
+        
+        try {
+            UploadSession session = chunkedUploadService.create(principal.getUser().getId(), uploadLength,
+                    ChunkedUploadService.parseMetadata(metadata));
+            return ResponseEntity.created(URI.create("/api/uploads/" + session.getId()))
+                    .header(TUS_RESUMABLE, TUS_VERSION)
+                    .header(UPLOAD_OFFSET, "0")
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+        }
+    }
+    
+    /**
+     * 查询已确认的偏移量，客户端断线重连后据此续传
+     */
+    @RequestMapping(value = "/{sessionId:[0-9a-f]{32}}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> chunkedUploadOffset(@PathVariable String sessionId,
+                                                    @AuthenticationPrincipal CustomUserPrincipal principal) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        
+        return chunkedUploadService.find(sessionId, principal.getUser().getId())
+                .map(session -> {
+                    ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                            .cacheControl(CacheControl.noStore())
+                            .header(TUS_RESUMABLE, TUS_VERSION)
+                            .header(UPLOAD_OFFSET, String.valueOf(session.getUploadOffset()))
+                            .header(UPLOAD_LENGTH, String.valueOf(session.getUploadLength()));
+                    if (session.getVideoId() != null) {
+                        builder.header(UPLOAD_VIDEO_ID, String.valueOf(session.getVideoId()));
+                    }
+                    return builder.<Void>build();
+                })
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * 在 Upload-Offset 处追加一个分片，可带 "Upload-Checksum: sha256 &lt;Base64&gt;" 校验
+     */
+    @PatchMapping(value = "/{sessionId:[0-9a-f]{32}}", consumes = "application/offset+octet-stream")
+    public ResponseEntity<Map<String, Object>> appendChunk(
+            @PathVariable String sessionId,
+            @RequestHeader(UPLOAD_OFFSET) long offset,
+            @RequestHeader(value = "Upload-Checksum", required = false) String checksum,
+            HttpServletRequest request,
+            @AuthenticationPrincipal CustomUserPrincipal principal) throws IOException {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        
+        Optional<UploadSession> sessionOpt = chunkedUploadService.find(sessionId, principal.getUser().getId());
+        if (sessionOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        try {
+            UploadSession session = chunkedUploadService.append(sessionOpt.get(), offset, checksum,
+                    request.getInputStream());
+            ResponseEntity.HeadersBuilder<?> builder = ResponseEntity.noContent()
+                    .header(TUS_RESUMABLE, TUS_VERSION)
+                    .header(UPLOAD_OFFSET, String.valueOf(session.getUploadOffset()));
+            if (session.getVideoId() != null) {
+                builder.header(UPLOAD_VIDEO_ID, String.valueOf(session.getVideoId()));
+            }
+            return builder.build();
+        } catch (OffsetMismatchException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(UPLOAD_OFFSET, String.valueOf(e.getCurrentOffset()))
+                    .body(Map.of("error", e.getMessage()));
+        } catch (ChecksumMismatchException e) {
+            return error(CHECKSUM_MISMATCH, e.getMessage());
+        } catch (ChunkTooLargeException e) {
+            return error(HttpStatus.PAYLOAD_TOO_LARGE.value(), e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+        } catch (IllegalStateException e) {
+            return error(HttpStatus.CONFLICT.value(), e.getMessage());
+        }
+    }
+    
+    /**
+     * 放弃分片上传，删除已上传的部分
+     */
+    @DeleteMapping("/{sessionId:[0-9a-f]{32}}")
+    public ResponseEntity<Void> terminateChunkedUpload(@PathVariable String sessionId,
+                                                       @AuthenticationPrincipal CustomUserPrincipal principal) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        
+        Optional<UploadSession> sessionOpt = chunkedUploadService.find(sessionId, principal.getUser().getId());
+        if (sessionOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        try {
+            chunkedUploadService.terminate(sessionOpt.get());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).header(TUS_RESUMABLE, TUS_VERSION).build();
+        }
+        return ResponseEntity.noContent().header(TUS_RESUMABLE, TUS_VERSION).build();
+    }
+    
+    private ResponseEntity<Map<String, Object>> error(int status, String message) {
+        return ResponseEntity.status(status).body(Map.of("error", message));
+    }
+}
@@ -3,17 +3,23 @@ package com.videosite.controller;
 import com.videosite.domain.entity.User;
 import com.videosite.domain.entity.Video;
 import com.videosite.dto.form.UploadForm;
+import com.videosite.dto.media.CachedThumbnail;
 import com.videosite.security.CustomUserDetailsService.CustomUserPrincipal;
+import com.videosite.service.RangeStreamingService;
+import com.videosite.service.RenditionService;
 import com.videosite.service.StorageService;
+import com.videosite.service.ThumbnailCacheService;
+import com.videosite.service.UploadProcessingService;
 import com.videosite.service.UserService;
 import com.videosite.service.VideoService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -21,11 +27,11 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Optional;
+import java.util.OptionalLong;
 
 @Slf4j
 @Controller
@@ -35,6 +41,10 @@ public class VideoController {
     private final VideoService videoService;
     private final UserService userService;
     private final StorageService storageService;
+    private final RangeStreamingService rangeStreamingService;
+    private final RenditionService renditionService;
+    private final UploadProcessingService uploadProcessingService;
+    private final ThumbnailCacheService thumbnailCacheService;
     
     /**
      * 视频详情页
@@ -57,6 +67,14 @@ public class VideoController {
         }
         
         Video video = videoOpt.get();
+        User currentUser = principal.getUser();
+        boolean isOwnerOrAdmin = video.getUploaderId().equals(currentUser.getId()) || 
+                                userService.isAdmin(currentUser);
+        
+        // 处理中或处理失败的视频只对上传者和管理员可见
+        if (!Video.VISIBILITY_PUBLIC.equals(video.getVisibility()) && !isOwnerOrAdmin) {
+            throw new RuntimeException("视频不存在");
+        }
         model.addAttribute("video", video);
         
         // 获取上传者信息
@@ -67,28 +85,34 @@ public class VideoController {
         model.addAttribute("isLoggedIn", true);
         
         // 检查当前用户是否可以删除此视频
-        User currentUser = principal.getUser();
-        boolean canDelete = video.getUploaderId().equals(currentUser.getId()) || 
-                           userService.isAdmin(currentUser);
-        model.addAttribute("canDelete", canDelete);
+        model.addAttribute("canDelete", isOwnerOrAdmin);
+        
+        // 上传者和管理员可查看各码率档位的转码进度
+        if (isOwnerOrAdmin && video.getHlsPath() != null) {
+            model.addAttribute("renditions", renditionService.getStatuses(id));
+        }
         
         return "videos/detail";
     }
     
     /**
-     * 视频流接口（支持Range请求）
+     * 视频流接口（支持单范围、多范围及后缀范围请求）
      */
     @GetMapping("/stream/{id}")
-    public ResponseEntity<InputStreamResource> streamVideo(@PathVariable Long id,
-                                                          @RequestHeader(value = "Range", required = false) String rangeHeader,
-                                                          @AuthenticationPrincipal CustomUserPrincipal principal) {
+    public void streamVideo(@PathVariable Long id,
+                            @RequestHeader(value = "Range", required = false) String rangeHeader,
+                            @AuthenticationPrincipal CustomUserPrincipal principal,
+                            HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
         if (principal == null) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            response.sendError(HttpStatus.UNAUTHORIZED.value());
+            return;
         }
         
         Optional<Video> videoOpt = videoService.findById(id);
-        if (videoOpt.isEmpty()) {
-            return ResponseEntity.notFound().build();
+        if (videoOpt.isEmpty() || !isVisibleTo(videoOpt.get(), principal.getUser())) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
         }
         
         Video video = videoOpt.get();
@@ -96,52 +120,132 @@ public class VideoController {
         
         if (!Files.exists(videoPath)) {
             log.error("视频文件不存在: {}", videoPath);
-            return ResponseEntity.notFound().build();
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
         }
         
-        try {
-            long fileSize = Files.size(videoPath);
-            
-            // 记录播放（首次播放或包含字节0的Range请求）
-            if (rangeHeader == null || rangeHeader.contains("bytes=0-")) {
-                videoService.recordView(id);
-            }
-            
-            // 简化的Range处理（实际生产环境需要更完善的Range处理）
-            if (rangeHeader != null && rangeHeader.startsWith("bytes=")) {
-                // 这里简化处理，实际应该解析Range头并返回部分内容
-                return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
-                        .header(HttpHeaders.CONTENT_TYPE, "video/mp4")
-                        .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(fileSize))
-                        .header(HttpHeaders.ACCEPT_RANGES, "bytes")
-                        .header(HttpHeaders.CONTENT_RANGE, "bytes 0-" + (fileSize - 1) + "/" + fileSize)
-                        .body(new InputStreamResource(new FileInputStream(videoPath.toFile())));
-            } else {
-                return ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_TYPE, "video/mp4")
-                        .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(fileSize))
-                        .body(new InputStreamResource(new FileInputStream(videoPath.toFile())));
-            }
-            
-        } catch (IOException e) {
-            log.error("读取视频文件失败: {}", videoPath, e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        // 记录播放（首次播放或包含字节0的Range请求）
+        if (rangeHeader == null || rangeHeader.contains("bytes=0-")) {
+            videoService.recordView(id, viewerKey(principal, request));
+        }
+        
+        rangeStreamingService.serve(request, response, videoPath, "video/mp4");
+    }
+    
+    /**
+     * HLS主播放列表：列出已转码完成的码率档位，档位补齐后会改写，只允许缓存后重新验证。
+     * 每次播放只请求一次主播放列表，按此计数
+     */
+    @GetMapping("/hls/{id}/master.m3u8")
+    public void getHlsMasterPlaylist(@PathVariable Long id,
+                                     @AuthenticationPrincipal CustomUserPrincipal principal,
+                                     HttpServletRequest request,
+                                     HttpServletResponse response) throws IOException {
+        Optional<Video> videoOpt = findHlsVideo(id, principal, response);
+        if (videoOpt.isEmpty()) {
+            return;
+        }
+        
+        if (!"HEAD".equals(request.getMethod())) {
+            videoService.recordView(id, viewerKey(principal, request));
         }
+        // /hls/** 需要登录，只允许浏览器缓存，不允许共享缓存转发给未登录的客户端
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        rangeStreamingService.serve(request, response,
+                storageService.getFullPath(videoOpt.get().getHlsPath()).resolve("master.m3u8"),
+                "application/vnd.apple.mpegurl");
     }
     
     /**
-     * 视频下载接口
+     * 原始码率档位的播放列表、初始化段与媒体分片
+     */
+    @GetMapping("/hls/{id}/{file:index\\.m3u8|init\\.mp4|seg_[0-9]+\\.m4s}")
+    public void getHlsFile(@PathVariable Long id,
+                           @PathVariable String file,
+                           @AuthenticationPrincipal CustomUserPrincipal principal,
+                           HttpServletRequest request,
+                           HttpServletResponse response) throws IOException {
+        Optional<Video> videoOpt = findHlsVideo(id, principal, response);
+        if (videoOpt.isPresent()) {
+            serveHlsFile(videoOpt.get(), file, request, response);
+        }
+    }
+    
+    /**
+     * 转码档位（如 720p/）下的播放列表、初始化段与媒体分片
+     */
+    @GetMapping("/hls/{id}/{rendition:[0-9]+p}/{file:index\\.m3u8|init\\.mp4|seg_[0-9]+\\.m4s}")
+    public void getHlsRenditionFile(@PathVariable Long id,
+                                    @PathVariable String rendition,
+                                    @PathVariable String file,
+                                    @AuthenticationPrincipal CustomUserPrincipal principal,
+                                    HttpServletRequest request,
+                                    HttpServletResponse response) throws IOException {
+        Optional<Video> videoOpt = findHlsVideo(id, principal, response);
+        if (videoOpt.isPresent()) {
+            serveHlsFile(videoOpt.get(), rendition + "/" + file, request, response);
+        }
+    }
+    
+    /**
+     * 查找可播放HLS的视频，未登录、不存在或不可见时直接写出错误响应
+     */
+    private Optional<Video> findHlsVideo(Long id, CustomUserPrincipal principal,
+                                         HttpServletResponse response) throws IOException {
+        if (principal == null) {
+            response.sendError(HttpStatus.UNAUTHORIZED.value());
+            return Optional.empty();
+        }
+        
+        Optional<Video> videoOpt = videoService.findById(id);
+        if (videoOpt.isEmpty() || videoOpt.get().getHlsPath() == null
+                || !isVisibleTo(videoOpt.get(), principal.getUser())) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return Optional.empty();
+        }
+        return videoOpt;
+    }
+    
+    /**
+     * 档位播放列表与分片生成后不再改写，公开视频允许浏览器永久缓存；/hls/** 需要登录，因此只用private，
+     * 不允许CDN等共享缓存保存。文件经 sendfile/transferTo 写出
+     */
+    private void serveHlsFile(Video video, String relativePath,
+                              HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String contentType;
+        if (relativePath.endsWith(".m3u8")) {
+            contentType = "application/vnd.apple.mpegurl";
+        } else if (relativePath.endsWith(".m4s")) {
+            contentType = "video/iso.segment";
+        } else {
+            contentType = "video/mp4";
+        }
+        
+        response.setHeader(HttpHeaders.CACHE_CONTROL, Video.VISIBILITY_PUBLIC.equals(video.getVisibility())
+                ? "private, max-age=31536000, immutable"
+                : "private, no-cache");
+        rangeStreamingService.serve(request, response,
+                storageService.getFullPath(video.getHlsPath()).resolve(relativePath), contentType);
+    }
+    
+    /**
+     * 视频下载接口（支持断点续传）
      */
     @GetMapping("/download/{id}")
-    public ResponseEntity<InputStreamResource> downloadVideo(@PathVariable Long id,
-                                                           @AuthenticationPrincipal CustomUserPrincipal principal) {
+    public void downloadVideo(@PathVariable Long id,
+                              @RequestHeader(value = "Range", required = false) String rangeHeader,
+                              @AuthenticationPrincipal CustomUserPrincipal principal,
+                              HttpServletRequest request,
+                              HttpServletResponse response) throws IOException {
         if (principal == null) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            response.sendError(HttpStatus.UNAUTHORIZED.value());
+            return;
         }
         
         Optional<Video> videoOpt = videoService.findById(id);
-        if (videoOpt.isEmpty()) {
-            return ResponseEntity.notFound().build();
+        if (videoOpt.isEmpty() || !isVisibleTo(videoOpt.get(), principal.getUser())) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
         }
         
         Video video = videoOpt.get();
@@ -149,58 +253,106 @@ public class VideoController {
         
         if (!Files.exists(videoPath)) {
             log.error("视频文件不存在: {}", videoPath);
-            return ResponseEntity.notFound().build();
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
         }
         
-        try {
-            // 记录下载
+        // 记录下载（续传请求不重复计数）
+        if (rangeHeader == null || rangeHeader.contains("bytes=0-")) {
             videoService.recordDownload(id);
-            
-            long fileSize = Files.size(videoPath);
-            
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_TYPE, "application/octet-stream")
-                    .header(HttpHeaders.CONTENT_DISPOSITION, 
-                           "attachment; filename=\"" + video.getOriginalFilename() + "\"")
-                    .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(fileSize))
-                    .body(new InputStreamResource(new FileInputStream(videoPath.toFile())));
-            
-        } catch (IOException e) {
-            log.error("下载视频文件失败: {}", videoPath, e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
+        
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"" + video.getOriginalFilename() + "\"");
+        rangeStreamingService.serve(request, response, videoPath, "application/octet-stream");
     }
     
     /**
-     * 缩略图接口
+     * 缩略图接口：w为期望的显示宽度，格式按Accept头协商
      */
     @GetMapping("/thumbnails/{id}")
-    public ResponseEntity<InputStreamResource> getThumbnail(@PathVariable Long id) {
-        Optional<Video> videoOpt = videoService.findById(id);
-        if (videoOpt.isEmpty()) {
-            return ResponseEntity.notFound().build();
+    public void getThumbnail(@PathVariable Long id,
+                             @RequestParam(value = "w", required = false) Integer width,
+                             HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        Optional<CachedThumbnail> thumbnailOpt =
+                thumbnailCacheService.get(id, width, request.getHeader(HttpHeaders.ACCEPT));
+        if (thumbnailOpt.isEmpty()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
         }
         
-        Video video = videoOpt.get();
-        Path thumbPath = storageService.getFullPath(video.getThumbPath());
+        // 缩略图文件名为UUID、生成后不变，允许客户端永久缓存
+        CachedThumbnail thumbnail = thumbnailOpt.get();
+        response.setHeader(HttpHeaders.ETAG, thumbnail.getEtag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
         
-        if (!Files.exists(thumbPath)) {
-            log.warn("缩略图文件不存在: {}", thumbPath);
-            return ResponseEntity.notFound().build();
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.contains(thumbnail.getEtag()) || "*".equals(ifNoneMatch.trim()))) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
         }
         
-        try {
-            long fileSize = Files.size(thumbPath);
-            
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_TYPE, "image/jpeg")
-                    .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(fileSize))
-                    .body(new InputStreamResource(new FileInputStream(thumbPath.toFile())));
-            
-        } catch (IOException e) {
-            log.error("读取缩略图失败: {}", thumbPath, e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        response.setContentType(thumbnail.getContentType());
+        response.setContentLength(thumbnail.getData().length);
+        if (!"HEAD".equals(request.getMethod())) {
+            response.getOutputStream().write(thumbnail.getData());
+        }
+    }
+    
+    /**
+     * 故事板雪碧图
+     */
+    @GetMapping("/storyboards/{id}/sprite.jpg")
+    public void getStoryboardSprite(@PathVariable Long id,
+                                    HttpServletRequest request,
+                                    HttpServletResponse response) throws IOException {
+        serveStoryboardFile(id, false, "image/jpeg", request, response);
+    }
+    
+    /**
+     * 故事板WebVTT索引，cue中的 sprite.jpg#xywh=... 相对本地址解析
+     */
+    @GetMapping("/storyboards/{id}/index.vtt")
+    public void getStoryboardIndex(@PathVariable Long id,
+                                   HttpServletRequest request,
+                                   HttpServletResponse response) throws IOException {
+        serveStoryboardFile(id, true, "text/vtt;charset=UTF-8", request, response);
+    }
+    
+    private void serveStoryboardFile(Long id, boolean index, String contentType,
+                                     HttpServletRequest request,
+                                     HttpServletResponse response) throws IOException {
+        Optional<String> spritePath = videoService.findStoryboardPath(id);
+        if (spritePath.isEmpty()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        String relativePath = index ? storageService.storyboardVttPath(spritePath.get()) : spritePath.get();
+        // 故事板与缩略图同样以UUID命名、生成后不变
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable");
+        rangeStreamingService.serve(request, response, storageService.getFullPath(relativePath), contentType);
+    }
+    
+    /**
+     * 未公开（处理中或处理失败）的视频只对上传者和管理员可见
+     */
+    private boolean isVisibleTo(Video video, User user) {
+        return Video.VISIBILITY_PUBLIC.equals(video.getVisibility())
+                || video.getUploaderId().equals(user.getId())
+                || userService.isAdmin(user);
+    }
+    
+    /**
+     * 独立观众统计的观众标识：登录用户按用户ID，否则按已有会话；都没有时不计入独立观众
+     */
+    private String viewerKey(CustomUserPrincipal principal, HttpServletRequest request) {
+        if (principal != null) {
+            return "u:" + principal.getUserId();
         }
+        HttpSession session = request.getSession(false);
+        return session != null ? "s:" + session.getId() : null;
     }
     
     /**
@@ -219,12 +371,22 @@ public class VideoController {
     public String uploadVideo(@Valid @ModelAttribute UploadForm uploadForm,
                              BindingResult bindingResult,
                              @AuthenticationPrincipal CustomUserPrincipal principal,
+                             HttpServletResponse response,
                              RedirectAttributes redirectAttributes) {
         
         if (bindingResult.hasErrors()) {
             return "videos/upload";
         }
         
+        OptionalLong retryAfter = uploadProcessingService.admissionRetryAfter();
+        if (retryAfter.isPresent()) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter.getAsLong()));
+            bindingResult.reject("error.busy",
+                    "服务器正在处理较多视频，请约" + retryAfter.getAsLong() + "秒后再上传");
+            return "videos/upload";
+        }
+        
         if (uploadForm.isVideoFileEmpty()) {
             bindingResult.rejectValue("videoFile", "error.videoFile", "请选择要上传的视频文件");
             return "videos/upload";
@@ -234,7 +396,7 @@ public class VideoController {
             User currentUser = principal.getUser();
             Video video = videoService.uploadVideo(uploadForm, currentUser.getId());
             
-            redirectAttributes.addFlashAttribute("successMessage", "视频上传成功！");
+            redirectAttributes.addFlashAttribute("successMessage", "视频上传成功，正在后台处理，完成后将自动公开");
             return "redirect:/videos/" + video.getId();
             
         } catch (Exception e) {
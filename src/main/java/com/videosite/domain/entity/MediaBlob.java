@@ -0,0 +1,60 @@
+package com.videosite.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "media_blob",
+       uniqueConstraints = @UniqueConstraint(name = "uk_media_blob_hash", columnNames = "content_hash"))
+public class MediaBlob {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+    
+    @Column(name = "storage_path", nullable = false, length = 500)
+    private String storagePath;
+    
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+    
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount = 0;
+    
+    @Column(name = "duration_seconds")
+    private Integer durationSeconds;
+    
+    @Column(name = "thumb_path", length = 500)
+    private String thumbPath;
+    
+    @Column(name = "thumb_variants")
+    private String thumbVariants;
+    
+    @Column(name = "storyboard_path", length = 500)
+    private String storyboardPath;
+    
+    @Column(name = "fast_start", length = 20)
+    private String fastStart;
+    
+    @Column(name = "hls_path", length = 500)
+    private String hlsPath;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+    
+    /**
+     * 缩略图等派生文件是否已由首个上传生成，可直接复用
+     */
+    public boolean hasDerivedArtifacts() {
+        return thumbPath != null && thumbVariants != null && durationSeconds != null;
+    }
+}
@@ -0,0 +1,57 @@
+package com.videosite.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "upload_job",
+       uniqueConstraints = @UniqueConstraint(name = "uk_upload_job_video", columnNames = "video_id"))
+public class UploadJob {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "video_id", nullable = false)
+    private Long videoId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private Status status = Status.QUEUED;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "stage", length = 20)
+    private Stage stage;
+    
+    @Column(name = "progress", nullable = false)
+    private Integer progress = 0;
+    
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+    
+    @Column(name = "error_message", length = 1000)
+    private String errorMessage;
+    
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+    
+    public enum Status {
+        QUEUED, RUNNING, SUCCEEDED, FAILED
+    }
+    
+    /**
+     * 处理阶段，依次执行
+     */
+    public enum Stage {
+        PROBING, FASTSTART, THUMBNAILS, STORYBOARD, PACKAGING, FINALIZING, DONE
+    }
+}
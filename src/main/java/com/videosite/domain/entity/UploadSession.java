@@ -0,0 +1,60 @@
+package com.videosite.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "upload_session")
+public class UploadSession {
+    
+    @Id
+    @Column(name = "id", length = 32)
+    private String id;
+    
+    @Column(name = "uploader_id", nullable = false)
+    private Long uploaderId;
+    
+    @Column(name = "title", nullable = false)
+    private String title;
+    
+    @Column(name = "description", columnDefinition = "TEXT")
+    private String description;
+    
+    @Column(name = "keywords", length = 1000)
+    private String keywords;
+    
+    @Column(name = "original_filename", nullable = false)
+    private String originalFilename;
+    
+    @Column(name = "storage_path", nullable = false, length = 500)
+    private String storagePath;
+    
+    @Column(name = "upload_length", nullable = false)
+    private Long uploadLength;
+    
+    @Column(name = "upload_offset", nullable = false)
+    private Long uploadOffset = 0L;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private Status status = Status.ACTIVE;
+    
+    @Column(name = "video_id")
+    private Long videoId;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+    
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+    
+    public enum Status {
+        ACTIVE, COMPLETED
+    }
+}
@@ -13,6 +13,22 @@ import java.time.LocalDateTime;
 @EntityListeners(AuditingEntityListener.class)
 public class Video {
     
+    /** 处理完成、公开可见 */
+    public static final String VISIBILITY_PUBLIC = "PUBLIC";
+    /** 已上传、后台处理中，仅上传者与管理员可见 */
+    public static final String VISIBILITY_PROCESSING = "PROCESSING";
+    /** 处理失败，仅上传者与管理员可见 */
+    public static final String VISIBILITY_FAILED = "FAILED";
+    
+    /** 上传的文件本来就是moov在前 */
+    public static final String FAST_START_NATIVE = "NATIVE";
+    /** moov在末尾，已在Java中搬到文件开头 */
+    public static final String FAST_START_RELOCATED = "RELOCATED";
+    /** 已用FFmpeg无损重封装为快速启动布局 */
+    public static final String FAST_START_REMUXED = "REMUXED";
+    /** 处理失败，保持原文件 */
+    public static final String FAST_START_FAILED = "FAILED";
+    
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -32,9 +48,27 @@ public class Video {
     @Column(name = "storage_path", nullable = false, length = 500)
     private String storagePath;
     
+    /** 文件内容SHA-256，对应 media_blob；内容寻址存储上线前的视频为空 */
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+    
     @Column(name = "thumb_path", nullable = false, length = 500)
     private String thumbPath;
     
+    @Column(name = "thumb_variants")
+    private String thumbVariants;
+    
+    @Column(name = "storyboard_path", length = 500)
+    private String storyboardPath;
+    
+    /** 快速启动处理结果，见 FAST_START_* 常量；功能上线前的视频为空 */
+    @Column(name = "fast_start", length = 20)
+    private String fastStart;
+    
+    /** HLS分片目录，为空时只提供整文件MP4播放 */
+    @Column(name = "hls_path", length = 500)
+    private String hlsPath;
+    
     @Column(name = "uploader_id", nullable = false)
     private Long uploaderId;
     
@@ -51,7 +85,7 @@ public class Video {
     private Long downloadsTotal = 0L;
     
     @Column(name = "visibility", nullable = false, length = 20)
-    private String visibility = "PUBLIC";
+    private String visibility = VISIBILITY_PUBLIC;
     
     @CreatedDate
     @Column(name = "created_at", nullable = false)
@@ -0,0 +1,65 @@
+package com.videosite.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "video_rendition",
+       uniqueConstraints = @UniqueConstraint(name = "uk_video_rendition_name", columnNames = {"video_id", "name"}))
+public class VideoRendition {
+    
+    /** HLS打包得到的原始码率档位，播放列表在分片目录根下 */
+    public static final String SOURCE = "source";
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "video_id", nullable = false)
+    private Long videoId;
+    
+    @Column(name = "name", nullable = false, length = 20)
+    private String name;
+    
+    @Column(name = "width", nullable = false)
+    private Integer width = 0;
+    
+    @Column(name = "height", nullable = false)
+    private Integer height = 0;
+    
+    @Column(name = "bandwidth", nullable = false)
+    private Long bandwidth = 0L;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private Status status = Status.QUEUED;
+    
+    @Column(name = "progress", nullable = false)
+    private Integer progress = 0;
+    
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+    
+    @Column(name = "error_message", length = 1000)
+    private String errorMessage;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+    
+    public enum Status {
+        QUEUED, RUNNING, READY, FAILED
+    }
+    
+    /**
+     * 档位播放列表相对分片目录的路径
+     */
+    public String getPlaylistPath() {
+        return SOURCE.equals(name) ? "index.m3u8" : name + "/index.m3u8";
+    }
+}
@@ -0,0 +1,15 @@
+package com.videosite.domain.event;
+
+import com.videosite.dto.stats.CounterDelta;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * 计数增量已成功写入数据库的事件
+ */
+@Value
+public class CountersFlushedEvent {
+
+    List<CounterDelta> deltas;
+}
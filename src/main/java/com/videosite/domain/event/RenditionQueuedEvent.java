@@ -0,0 +1,12 @@
+package com.videosite.domain.event;
+
+import lombok.Value;
+
+/**
+ * 码率档位已入队转码事件（事务提交后唤醒转码线程）
+ */
+@Value
+public class RenditionQueuedEvent {
+
+    Long videoId;
+}
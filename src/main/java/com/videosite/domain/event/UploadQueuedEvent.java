@@ -0,0 +1,12 @@
+package com.videosite.domain.event;
+
+import lombok.Value;
+
+/**
+ * 上传文件已落盘、处理任务已入队事件（事务提交后唤醒工作线程）
+ */
+@Value
+public class UploadQueuedEvent {
+
+    Long videoId;
+}
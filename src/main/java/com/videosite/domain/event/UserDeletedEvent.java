@@ -0,0 +1,12 @@
+package com.videosite.domain.event;
+
+import lombok.Value;
+
+/**
+ * 用户删除事件，其视频已被外键级联删除（事务提交后处理）
+ */
+@Value
+public class UserDeletedEvent {
+
+    Long userId;
+}
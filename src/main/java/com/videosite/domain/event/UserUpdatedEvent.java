@@ -0,0 +1,13 @@
+package com.videosite.domain.event;
+
+import lombok.Value;
+
+/**
+ * 用户信息更新事件（事务提交后处理）
+ */
+@Value
+public class UserUpdatedEvent {
+
+    Long userId;
+    String username;
+}
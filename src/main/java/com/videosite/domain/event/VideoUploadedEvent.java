@@ -0,0 +1,13 @@
+package com.videosite.domain.event;
+
+import com.videosite.domain.entity.Video;
+import lombok.Value;
+
+/**
+ * 视频上传完成事件（事务提交后处理）
+ */
+@Value
+public class VideoUploadedEvent {
+
+    Video video;
+}
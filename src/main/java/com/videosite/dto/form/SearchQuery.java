@@ -8,8 +8,11 @@ public class SearchQuery {
     private String q; // 搜索关键词
     private int page = 0; // 页码，从0开始
     private int size = 12; // 每页数量
-    private String sort = "created_at"; // 排序字段
+    private String sort = "created_at"; // 排序字段：created_at 或 relevance
     private String order = "desc"; // 排序方向
+    private String correctedQuery; // 原查询无结果时实际使用的纠错查询
+    private String after; // 键集分页：下一页游标
+    private String before; // 键集分页：上一页游标
     
     /**
      * 获取清理后的搜索关键词
@@ -27,4 +30,11 @@ public class SearchQuery {
     public boolean hasQuery() {
         return getCleanQuery() != null;
     }
+    
+    /**
+     * 是否按相关度排序
+     */
+    public boolean isRelevanceSort() {
+        return "relevance".equals(sort);
+    }
 }
@@ -0,0 +1,14 @@
+package com.videosite.dto.media;
+
+import lombok.Value;
+
+/**
+ * 缓存中的缩略图：图片字节、强ETag与内容类型
+ */
+@Value
+public class CachedThumbnail {
+
+    byte[] data;
+    String etag;
+    String contentType;
+}
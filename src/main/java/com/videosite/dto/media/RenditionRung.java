@@ -0,0 +1,55 @@
+package com.videosite.dto.media;
+
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 自适应码率阶梯中的一档：输出高度与视频码率（kbps），宽度按源视频宽高比计算
+ */
+@Value
+public class RenditionRung {
+
+    int height;
+    int videoBitrateKbps;
+
+    /**
+     * 档位名，同时是分片子目录名，如 720p
+     */
+    public String getName() {
+        return height + "p";
+    }
+
+    /**
+     * 按源视频宽高比计算的输出宽度（偶数）
+     */
+    public int widthFor(int sourceWidth, int sourceHeight) {
+        return (int) Math.round((double) sourceWidth * height / sourceHeight / 2) * 2;
+    }
+
+    /**
+     * 解析逗号分隔的 高度:码率 列表（如 1080:5000,720:2800），按高度从低到高排序
+     */
+    public static List<RenditionRung> parseList(String value) {
+        List<RenditionRung> rungs = new ArrayList<>();
+        if (value == null || value.isBlank()) {
+            return rungs;
+        }
+        for (String item : value.split(",")) {
+            int colon = item.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            try {
+                rungs.add(new RenditionRung(Integer.parseInt(item.substring(0, colon).trim()),
+                        Integer.parseInt(item.substring(colon + 1).trim())));
+            } catch (NumberFormatException ignored) {
+                // 忽略无法解析的项
+            }
+        }
+        rungs.sort(Comparator.comparingInt(RenditionRung::getHeight));
+        return rungs;
+    }
+}
@@ -0,0 +1,44 @@
+package com.videosite.dto.media;
+
+import lombok.Value;
+
+/**
+ * 故事板雪碧图布局：每隔intervalSeconds秒取一帧，共count帧，按columns列、rows行拼接
+ */
+@Value
+public class StoryboardLayout {
+
+    int intervalSeconds;
+    int columns;
+    int rows;
+    int count;
+    int tileWidth;
+    int tileHeight;
+
+    /**
+     * 生成WebVTT索引：每条cue覆盖一个抽帧间隔，内容为雪碧图地址加 #xywh 片段定位到对应格子
+     */
+    public String toWebVtt(String spriteUrl, int durationSeconds) {
+        StringBuilder vtt = new StringBuilder("WEBVTT\n");
+        int duration = Math.max(durationSeconds, 1);
+        for (int i = 0; i < count; i++) {
+            int start = i * intervalSeconds;
+            int end = Math.min(start + intervalSeconds, duration);
+            if (start >= end) {
+                break;
+            }
+            vtt.append('\n')
+                    .append(timestamp(start)).append(" --> ").append(timestamp(end)).append('\n')
+                    .append(spriteUrl).append("#xywh=")
+                    .append((i % columns) * tileWidth).append(',')
+                    .append((i / columns) * tileHeight).append(',')
+                    .append(tileWidth).append(',')
+                    .append(tileHeight).append('\n');
+        }
+        return vtt.toString();
+    }
+
+    private static String timestamp(int seconds) {
+        return String.format("%02d:%02d:%02d.000", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+}
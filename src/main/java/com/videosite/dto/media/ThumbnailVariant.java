@@ -0,0 +1,63 @@
+package com.videosite.dto.media;
+
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 缩略图变体：宽度与图片格式（jpg/webp/avif），高度按16:9计算
+ */
+@Value
+public class ThumbnailVariant {
+
+    int width;
+    String format;
+
+    public int getHeight() {
+        return (width * 9 / 16) & ~1;
+    }
+
+    public String getContentType() {
+        return switch (format) {
+            case "webp" -> "image/webp";
+            case "avif" -> "image/avif";
+            default -> "image/jpeg";
+        };
+    }
+
+    /**
+     * 序列化为 宽度:格式 形式，如 640:webp
+     */
+    @Override
+    public String toString() {
+        return width + ":" + format;
+    }
+
+    /**
+     * 解析逗号分隔的变体列表（video.thumb_variants 列）
+     */
+    public static List<ThumbnailVariant> parseList(String value) {
+        List<ThumbnailVariant> variants = new ArrayList<>();
+        if (value == null || value.isBlank()) {
+            return variants;
+        }
+        for (String item : value.split(",")) {
+            int colon = item.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            try {
+                variants.add(new ThumbnailVariant(Integer.parseInt(item.substring(0, colon).trim()),
+                        item.substring(colon + 1).trim()));
+            } catch (NumberFormatException ignored) {
+                // 忽略无法解析的项
+            }
+        }
+        return variants;
+    }
+
+    public static String formatList(List<ThumbnailVariant> variants) {
+        return String.join(",", variants.stream().map(ThumbnailVariant::toString).toList());
+    }
+}
@@ -0,0 +1,52 @@
+package com.videosite.dto.page;
+
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 键集分页结果：不做COUNT，多取一行判断是否还有下一页（或上一页）
+ */
+@Value
+public class CursorPage<T> {
+
+    List<T> content;
+    String nextCursor;
+    String prevCursor;
+    /** 命中总数，未知时为null（普通列表不做COUNT） */
+    Long totalElements;
+
+    public boolean isHasNext() {
+        return nextCursor != null;
+    }
+
+    public boolean isHasPrevious() {
+        return prevCursor != null;
+    }
+
+    /**
+     * 由多取一行的查询结果组装分页
+     *
+     * @param rows      最多 size+1 行；向前翻页时为离游标最近的在前（升序），其余为降序
+     * @param size      每页数量
+     * @param backward  是否为向前翻页（before游标）
+     * @param hasCursor 请求是否带有游标（非第一页）
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int size, boolean backward, boolean hasCursor,
+                                       Function<T, PageCursor> cursorOf, Long totalElements) {
+        boolean hasMore = rows.size() > size;
+        List<T> content = new ArrayList<>(hasMore ? rows.subList(0, size) : rows);
+        if (backward) {
+            Collections.reverse(content);
+        }
+
+        boolean hasNext = backward ? hasCursor : hasMore;
+        boolean hasPrevious = backward ? hasMore : hasCursor;
+        String next = hasNext && !content.isEmpty() ? cursorOf.apply(content.get(content.size() - 1)).encode() : null;
+        String prev = hasPrevious && !content.isEmpty() ? cursorOf.apply(content.get(0)).encode() : null;
+        return new CursorPage<>(content, next, prev, totalElements);
+    }
+}
@@ -0,0 +1,49 @@
+package com.videosite.dto.page;
+
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+/**
+ * 键集分页游标：定位到 (created_at, id) 上的一行。
+ * 对外以不透明的URL安全Base64字符串传递，客户端不应解析其内容
+ */
+@Value
+public class PageCursor {
+
+    LocalDateTime createdAt;
+    long id;
+
+    public String encode() {
+        long micros = createdAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + createdAt.getNano() / 1_000;
+        String raw = micros + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * 解析游标，为空或格式不正确时返回null（视为第一页）
+     */
+    public static PageCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.US_ASCII);
+            int colon = raw.indexOf(':');
+            if (colon < 0) {
+                return null;
+            }
+            long micros = Long.parseLong(raw.substring(0, colon));
+            long id = Long.parseLong(raw.substring(colon + 1));
+            LocalDateTime createdAt = LocalDateTime.ofEpochSecond(
+                    Math.floorDiv(micros, 1_000_000L), (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+            return new PageCursor(createdAt, id);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            return null;
+        }
+    }
+}
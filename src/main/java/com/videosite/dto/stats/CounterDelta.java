@@ -0,0 +1,25 @@
+package com.videosite.dto.stats;
+
+import lombok.Value;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 一次刷写周期内某视频某小时的播放/下载增量
+ */
+@Value
+public class CounterDelta {
+
+    Long videoId;
+    /** 所属小时的起点 */
+    LocalDateTime statHour;
+    long views;
+    long downloads;
+    /** 视频的上传者，刷写时查出后填入，刷写前为null */
+    Long uploaderId;
+
+    public LocalDate getStatDate() {
+        return statHour.toLocalDate();
+    }
+}
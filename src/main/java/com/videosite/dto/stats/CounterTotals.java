@@ -0,0 +1,19 @@
+package com.videosite.dto.stats;
+
+import lombok.Value;
+
+/**
+ * 播放/下载累计值
+ */
+@Value
+public class CounterTotals {
+
+    public static final CounterTotals ZERO = new CounterTotals(0, 0);
+
+    long views;
+    long downloads;
+
+    public CounterTotals plus(long views, long downloads) {
+        return new CounterTotals(this.views + views, this.downloads + downloads);
+    }
+}
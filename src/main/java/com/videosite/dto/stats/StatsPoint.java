@@ -0,0 +1,16 @@
+package com.videosite.dto.stats;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * 时间序列中的一个桶
+ */
+@Value
+public class StatsPoint {
+
+    LocalDateTime bucketStart;
+    long views;
+    long downloads;
+}
@@ -0,0 +1,50 @@
+package com.videosite.dto.stats;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * 时间序列粒度，从细到粗
+ */
+public enum StatsResolution {
+
+    HOUR(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:00")),
+    DAY(DateTimeFormatter.ofPattern("yyyy-MM-dd")),
+    MONTH(DateTimeFormatter.ofPattern("yyyy-MM"));
+
+    private final DateTimeFormatter labelFormat;
+
+    StatsResolution(DateTimeFormatter labelFormat) {
+        this.labelFormat = labelFormat;
+    }
+
+    /**
+     * 时间所在桶的起点
+     */
+    public LocalDateTime truncate(LocalDateTime time) {
+        return switch (this) {
+            case HOUR -> time.truncatedTo(ChronoUnit.HOURS);
+            case DAY -> time.truncatedTo(ChronoUnit.DAYS);
+            case MONTH -> time.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+        };
+    }
+
+    /**
+     * 下一个桶的起点
+     */
+    public LocalDateTime next(LocalDateTime bucketStart) {
+        return switch (this) {
+            case HOUR -> bucketStart.plusHours(1);
+            case DAY -> bucketStart.plusDays(1);
+            case MONTH -> bucketStart.plusMonths(1);
+        };
+    }
+
+    /**
+     * 图表横轴标签，如 2024-01-31T13:00、2024-01-31、2024-01
+     */
+    public String label(LocalDateTime bucketStart) {
+        return labelFormat.format(bucketStart);
+    }
+}
@@ -0,0 +1,18 @@
+package com.videosite.dto.stats;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 按粒度补齐空桶的时间序列；请求的粒度超出细表保留期时 resolution 为实际使用的更粗粒度
+ */
+@Value
+public class StatsSeries {
+
+    StatsResolution resolution;
+    LocalDateTime from;
+    LocalDateTime to;
+    List<StatsPoint> points;
+}
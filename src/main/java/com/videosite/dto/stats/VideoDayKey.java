@@ -0,0 +1,15 @@
+package com.videosite.dto.stats;
+
+import lombok.Value;
+
+import java.time.LocalDate;
+
+/**
+ * (视频, 日期) 键
+ */
+@Value
+public class VideoDayKey {
+
+    Long videoId;
+    LocalDate date;
+}
@@ -0,0 +1,15 @@
+package com.videosite.dto.upload;
+
+import lombok.Value;
+
+/**
+ * 单个码率档位的转码状态
+ */
+@Value
+public class RenditionStatus {
+
+    String name;
+    int height;
+    String status;
+    int progress;
+}
@@ -0,0 +1,22 @@
+package com.videosite.dto.upload;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * 上传处理状态（/api/uploads/{id}/status 的响应）
+ */
+@Value
+public class UploadStatus {
+
+    Long videoId;
+    String status;
+    String stage;
+    int progress;
+    int attempts;
+    String error;
+    String visibility;
+    /** 码率档位转码进度，视频公开后高档位仍可能在转码 */
+    List<RenditionStatus> renditions;
+}
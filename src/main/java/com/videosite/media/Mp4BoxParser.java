@@ -0,0 +1,335 @@
+package com.videosite.media;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ISO-BMFF（MP4）元数据解析：沿 box 头逐层定位，只用定位读取 ftyp 以及 moov 下的
+ * mvhd、tkhd、hdlr、stsd 这些小box，不读媒体数据，也不启动外部进程。
+ * 结构不完整或无法确定时长与编码（如分片MP4、缺少esds）时返回null，由调用方退回ffprobe
+ */
+public final class Mp4BoxParser {
+
+    /** 单个元数据box允许读入内存的上限，超过视为异常文件 */
+    private static final int MAX_METADATA_BOX_SIZE = 1024 * 1024;
+
+    private static final Set<String> VISUAL_SAMPLE_ENTRIES = Set.of("avc1", "avc3", "hvc1", "hev1", "av01", "vp09", "mp4v");
+
+    private final FileChannel channel;
+    private final long fileSize;
+
+    private String majorBrand;
+    private long timescale;
+    private long duration;
+    private boolean fragmented;
+    private final List<Track> tracks = new ArrayList<>();
+
+    private Mp4BoxParser(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.fileSize = channel.size();
+    }
+
+    /**
+     * 解析文件元数据，无法解析时返回null
+     */
+    public static Mp4Info parse(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new Mp4BoxParser(channel).parse();
+        }
+    }
+
+    private Mp4Info parse() throws IOException {
+        try {
+            boolean moovFound = false;
+            long position = 0;
+            while (position < fileSize) {
+                Box box = readBox(position, fileSize);
+                if ("ftyp".equals(box.type())) {
+                    majorBrand = fourCC(readPayload(box), 0);
+                } else if ("moov".equals(box.type())) {
+                    if (majorBrand == null) {
+                        return null;
+                    }
+                    parseMoov(box);
+                    moovFound = true;
+                }
+                position = box.end();
+            }
+            return moovFound ? toInfo() : null;
+        } catch (MalformedBoxException | IndexOutOfBoundsException | BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    private void parseMoov(Box moov) throws IOException {
+        for (Box child : children(moov)) {
+            switch (child.type()) {
+                case "mvhd" -> parseMvhd(child);
+                case "trak" -> parseTrak(child);
+                case "mvex" -> fragmented = true;
+                default -> {
+                }
+            }
+        }
+    }
+
+    /**
+     * mvhd：版本0为32位的时间字段，版本1为64位
+     */
+    private void parseMvhd(Box mvhd) throws IOException {
+        ByteBuffer payload = readPayload(mvhd);
+        int version = payload.get(0) & 0xFF;
+        if (version == 1) {
+            timescale = uint32(payload, 20);
+            duration = payload.getLong(24);
+        } else {
+            timescale = uint32(payload, 12);
+            long value = uint32(payload, 16);
+            // 全1表示时长未知
+            duration = value == 0xFFFFFFFFL ? 0 : value;
+        }
+    }
+
+    private void parseTrak(Box trak) throws IOException {
+        Track track = new Track();
+        for (Box child : children(trak)) {
+            if ("tkhd".equals(child.type())) {
+                // 显示宽高是tkhd末尾的两个16.16定点数
+                ByteBuffer payload = readPayload(child);
+                track.width = payload.getInt(payload.limit() - 8) >>> 16;
+                track.height = payload.getInt(payload.limit() - 4) >>> 16;
+            } else if ("mdia".equals(child.type())) {
+                parseMdia(child, track);
+            }
+        }
+        tracks.add(track);
+    }
+
+    private void parseMdia(Box mdia, Track track) throws IOException {
+        for (Box child : children(mdia)) {
+            if ("hdlr".equals(child.type())) {
+                track.handler = fourCC(readPayload(child), 8);
+            } else if ("minf".equals(child.type())) {
+                for (Box minfChild : children(child)) {
+                    if ("stbl".equals(minfChild.type())) {
+                        for (Box stblChild : children(minfChild)) {
+                            if ("stsd".equals(stblChild.type())) {
+                                parseStsd(stblChild, track);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * stsd：只看第一个样本描述，取编码fourCC；视频取编码宽高，mp4a 再从 esds 取 objectTypeIndication
+     */
+    private void parseStsd(Box stsd, Track track) throws IOException {
+        ByteBuffer payload = readPayload(stsd);
+        if (payload.getInt(4) < 1) {
+            return;
+        }
+        int entryStart = 8;
+        int entryEnd = entryStart + (int) uint32(payload, entryStart);
+        if (entryEnd > payload.limit()) {
+            throw new MalformedBoxException();
+        }
+        track.format = fourCC(payload, entryStart + 4);
+
+        if (VISUAL_SAMPLE_ENTRIES.contains(track.format)) {
+            track.codedWidth = uint16(payload, entryStart + 32);
+            track.codedHeight = uint16(payload, entryStart + 34);
+        } else if ("mp4a".equals(track.format)) {
+            // QuickTime声音描述版本1、2在基础36字节后追加了额外字段
+            int soundVersion = uint16(payload, entryStart + 16);
+            int childStart = entryStart + switch (soundVersion) {
+                case 1 -> 52;
+                case 2 -> 72;
+                default -> 36;
+            };
+            track.audioObjectType = findAudioObjectType(payload, childStart, entryEnd);
+        }
+    }
+
+    private int findAudioObjectType(ByteBuffer buffer, int start, int end) {
+        int position = start;
+        while (position + 8 <= end) {
+            int size = (int) uint32(buffer, position);
+            if (size < 8 || position + size > end) {
+                return 0;
+            }
+            if ("esds".equals(fourCC(buffer, position + 4))) {
+                // 跳过box头与version/flags
+                return parseEsds(buffer, position + 12);
+            }
+            position += size;
+        }
+        return 0;
+    }
+
+    /**
+     * ES_Descriptor(0x03) 内的 DecoderConfigDescriptor(0x04) 的第一个字节即 objectTypeIndication
+     */
+    private int parseEsds(ByteBuffer buffer, int position) {
+        if (buffer.get(position++) != 0x03) {
+            return 0;
+        }
+        position = skipDescriptorLength(buffer, position);
+        position += 2; // ES_ID
+        int flags = buffer.get(position++) & 0xFF;
+        if ((flags & 0x80) != 0) {
+            position += 2; // dependsOn_ES_ID
+        }
+        if ((flags & 0x40) != 0) {
+            position += 1 + (buffer.get(position) & 0xFF); // URL
+        }
+        if ((flags & 0x20) != 0) {
+            position += 2; // OCR_ES_Id
+        }
+        if (buffer.get(position++) != 0x04) {
+            return 0;
+        }
+        position = skipDescriptorLength(buffer, position);
+        return buffer.get(position) & 0xFF;
+    }
+
+    private static int skipDescriptorLength(ByteBuffer buffer, int position) {
+        for (int i = 0; i < 4; i++) {
+            if ((buffer.get(position++) & 0x80) == 0) {
+                break;
+            }
+        }
+        return position;
+    }
+
+    private Mp4Info toInfo() {
+        if (fragmented || timescale <= 0 || duration <= 0) {
+            return null;
+        }
+        Track video = firstTrack("vide");
+        Track audio = firstTrack("soun");
+        if (video == null || video.format == null) {
+            return null;
+        }
+        if (audio != null && "mp4a".equals(audio.format) && audio.audioObjectType == 0) {
+            // 无法确定是否为AAC
+            return null;
+        }
+
+        long durationMicros = (duration / timescale) * 1_000_000 + (duration % timescale) * 1_000_000 / timescale;
+        if (durationMicros <= 0) {
+            return null;
+        }
+        int width = video.width > 0 ? video.width : video.codedWidth;
+        int height = video.height > 0 ? video.height : video.codedHeight;
+        long bitRate = fileSize * 8 * 1_000_000 / durationMicros;
+        return new Mp4Info(majorBrand, durationMicros, video.format,
+                audio != null ? audio.format : null, audio != null ? audio.audioObjectType : 0,
+                width, height, bitRate);
+    }
+
+    private Track firstTrack(String handler) {
+        for (Track track : tracks) {
+            if (handler.equals(track.handler)) {
+                return track;
+            }
+        }
+        return null;
+    }
+
+    private List<Box> children(Box parent) throws IOException {
+        List<Box> children = new ArrayList<>();
+        long position = parent.payloadStart();
+        while (position < parent.end()) {
+            Box child = readBox(position, parent.end());
+            children.add(child);
+            position = child.end();
+        }
+        return children;
+    }
+
+    /**
+     * 读取position处的box头：size为1时使用64位largesize，为0时延伸到父box末尾
+     */
+    private Box readBox(long position, long parentEnd) throws IOException {
+        long available = parentEnd - position;
+        if (available < 8) {
+            throw new MalformedBoxException();
+        }
+        ByteBuffer header = read(position, (int) Math.min(16, available));
+        long size = uint32(header, 0);
+        String type = fourCC(header, 4);
+        int headerSize = 8;
+        if (size == 1) {
+            if (header.limit() < 16) {
+                throw new MalformedBoxException();
+            }
+            size = header.getLong(8);
+            headerSize = 16;
+        } else if (size == 0) {
+            size = available;
+        }
+        if (size < headerSize || size > available) {
+            throw new MalformedBoxException();
+        }
+        return new Box(type, position + headerSize, position + size);
+    }
+
+    private ByteBuffer readPayload(Box box) throws IOException {
+        long size = box.end() - box.payloadStart();
+        if (size > MAX_METADATA_BOX_SIZE) {
+            throw new MalformedBoxException();
+        }
+        return read(box.payloadStart(), (int) size);
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new MalformedBoxException();
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static long uint32(ByteBuffer buffer, int index) {
+        return buffer.getInt(index) & 0xFFFFFFFFL;
+    }
+
+    private static int uint16(ByteBuffer buffer, int index) {
+        return buffer.getShort(index) & 0xFFFF;
+    }
+
+    private static String fourCC(ByteBuffer buffer, int index) {
+        byte[] bytes = new byte[4];
+        buffer.get(index, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private record Box(String type, long payloadStart, long end) {
+    }
+
+    private static class Track {
+        String handler;
+        String format;
+        int width;
+        int height;
+        int codedWidth;
+        int codedHeight;
+        int audioObjectType;
+    }
+
+    private static class MalformedBoxException extends RuntimeException {
+    }
+}
@@ -0,0 +1,244 @@
+package com.videosite.media;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * MP4快速启动（moov在前）处理：检测顶层box顺序，moov位于mdat之后时把moov搬到ftyp之后，
+ * 同时把 stco/co64 中指向被后移数据的块偏移加上moov的长度（即 qt-faststart 的做法）。
+ * 只重写moov本身，媒体数据用 transferTo 原样复制，不重新编码
+ */
+public final class Mp4FastStart {
+
+    /** 允许读入内存的moov上限，200MB以内的视频moov通常只有几MB */
+    private static final int MAX_MOOV_SIZE = 64 * 1024 * 1024;
+
+    /** stco/co64 所在的容器路径：moov/trak/mdia/minf/stbl */
+    private static final Set<String> CONTAINERS = Set.of("trak", "mdia", "minf", "stbl");
+
+    public enum Layout {
+        /** moov已在mdat之前 */
+        FAST_START,
+        /** moov在mdat之后，需要搬移 */
+        MOOV_AT_END,
+        /** 结构无法识别 */
+        UNKNOWN
+    }
+
+    private Mp4FastStart() {
+    }
+
+    /**
+     * 检测顶层box顺序
+     */
+    public static Layout detect(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Box> boxes = topLevelBoxes(channel);
+            if (boxes == null) {
+                return Layout.UNKNOWN;
+            }
+            for (Box box : boxes) {
+                if ("moov".equals(box.type())) {
+                    return Layout.FAST_START;
+                }
+                if ("mdat".equals(box.type())) {
+                    return find(boxes, "moov") != null ? Layout.MOOV_AT_END : Layout.UNKNOWN;
+                }
+            }
+            return Layout.UNKNOWN;
+        }
+    }
+
+    /**
+     * 把source改写为快速启动布局写入target。结构不支持（首个box不是ftyp、moov被压缩、
+     * 偏移超出stco的32位范围需要改用co64）时返回false且不写target，调用方可改用FFmpeg重封装
+     */
+    public static boolean relocate(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            List<Box> boxes = topLevelBoxes(in);
+            if (boxes == null || boxes.isEmpty() || !"ftyp".equals(boxes.get(0).type())) {
+                return false;
+            }
+            Box ftyp = boxes.get(0);
+            Box moov = find(boxes, "moov");
+            if (moov == null || moov.size() > MAX_MOOV_SIZE) {
+                return false;
+            }
+
+            ByteBuffer moovData = read(in, moov.start(), (int) moov.size());
+            // ftyp 与 moov 之间的数据整体后移 moov 的长度，moov 之后的数据位置不变
+            if (!patchChunkOffsets(moovData, moov.headerSize(), (int) moov.size(),
+                    ftyp.end(), moov.start(), moov.size())) {
+                return false;
+            }
+
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                transfer(in, 0, ftyp.end(), out);
+                moovData.rewind();
+                while (moovData.hasRemaining()) {
+                    out.write(moovData);
+                }
+                transfer(in, ftyp.end(), moov.start(), out);
+                transfer(in, moov.end(), in.size(), out);
+                out.force(false);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 递归查找 stco/co64，把落在 [shiftStart, shiftEnd) 内的块偏移加上delta；
+     * 出现压缩的moov（cmov）、条目表越界或stco溢出时返回false
+     */
+    private static boolean patchChunkOffsets(ByteBuffer moov, int from, int to,
+                                             long shiftStart, long shiftEnd, long delta) {
+        int position = from;
+        while (position + 8 <= to) {
+            long size = moov.getInt(position) & 0xFFFFFFFFL;
+            String type = fourCC(moov, position + 4);
+            int headerSize = 8;
+            if (size == 1) {
+                size = moov.getLong(position + 8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = to - position;
+            }
+            if (size < headerSize || position + size > to) {
+                return false;
+            }
+            int end = (int) (position + size);
+            int payload = position + headerSize;
+
+            switch (type) {
+                case "cmov" -> {
+                    return false;
+                }
+                case "stco" -> {
+                    int count = entryCount(moov, payload, end, 4);
+                    if (count < 0) {
+                        return false;
+                    }
+                    for (int i = 0; i < count; i++) {
+                        int index = payload + 8 + i * 4;
+                        long offset = moov.getInt(index) & 0xFFFFFFFFL;
+                        if (offset >= shiftStart && offset < shiftEnd) {
+                            offset += delta;
+                            if (offset > 0xFFFFFFFFL) {
+                                return false;
+                            }
+                            moov.putInt(index, (int) offset);
+                        }
+                    }
+                }
+                case "co64" -> {
+                    int count = entryCount(moov, payload, end, 8);
+                    if (count < 0) {
+                        return false;
+                    }
+                    for (int i = 0; i < count; i++) {
+                        int index = payload + 8 + i * 8;
+                        long offset = moov.getLong(index);
+                        if (offset >= shiftStart && offset < shiftEnd) {
+                            moov.putLong(index, offset + delta);
+                        }
+                    }
+                }
+                default -> {
+                    if (CONTAINERS.contains(type) && !patchChunkOffsets(moov, payload, end, shiftStart, shiftEnd, delta)) {
+                        return false;
+                    }
+                }
+            }
+            position = end;
+        }
+        return true;
+    }
+
+    /**
+     * stco/co64 的条目数：须非负且全部条目都在box之内，否则返回-1（文件损坏，交给FFmpeg处理）
+     */
+    private static int entryCount(ByteBuffer moov, int payload, int end, int entrySize) {
+        if (end - payload < 8) {
+            return -1;
+        }
+        int count = moov.getInt(payload + 4);
+        return count >= 0 && payload + 8 + (long) count * entrySize <= end ? count : -1;
+    }
+
+    private static List<Box> topLevelBoxes(FileChannel channel) throws IOException {
+        List<Box> boxes = new ArrayList<>();
+        long fileSize = channel.size();
+        long position = 0;
+        while (position < fileSize) {
+            if (fileSize - position < 8) {
+                return null;
+            }
+            ByteBuffer header = read(channel, position, (int) Math.min(16, fileSize - position));
+            long size = header.getInt(0) & 0xFFFFFFFFL;
+            String type = fourCC(header, 4);
+            int headerSize = 8;
+            if (size == 1) {
+                if (header.limit() < 16) {
+                    return null;
+                }
+                size = header.getLong(8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = fileSize - position;
+            }
+            if (size < headerSize || size > fileSize - position) {
+                return null;
+            }
+            boxes.add(new Box(type, position, headerSize, size));
+            position += size;
+        }
+        return boxes;
+    }
+
+    private static Box find(List<Box> boxes, String type) {
+        for (Box box : boxes) {
+            if (type.equals(box.type())) {
+                return box;
+            }
+        }
+        return null;
+    }
+
+    private static void transfer(FileChannel in, long from, long to, FileChannel out) throws IOException {
+        long position = from;
+        while (position < to) {
+            position += in.transferTo(position, to - position, out);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("文件意外结束");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static String fourCC(ByteBuffer buffer, int index) {
+        byte[] bytes = new byte[4];
+        buffer.get(index, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private record Box(String type, long start, int headerSize, long size) {
+
+        long end() {
+            return start + size;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.videosite.media;
+
+import lombok.Value;
+
+/**
+ * 从MP4的box结构直接读出的元数据
+ */
+@Value
+public class Mp4Info {
+
+    /** 主品牌，如 isom、mp42 */
+    String majorBrand;
+    /** 时长（微秒），取自 mvhd */
+    long durationMicros;
+    /** 视频样本描述的fourCC，如 avc1、hvc1；无视频轨时为null */
+    String videoCodec;
+    /** 音频样本描述的fourCC，如 mp4a；无音频轨时为null */
+    String audioCodec;
+    /** mp4a 的 esds 中的 objectTypeIndication，0x40 为MPEG-4音频（AAC） */
+    int audioObjectType;
+    int width;
+    int height;
+    /** 整体码率（bit/s），按文件大小与时长计算 */
+    long bitRate;
+
+    public int getDurationSeconds() {
+        return (int) Math.round(durationMicros / 1_000_000.0);
+    }
+
+    public boolean isH264() {
+        return "avc1".equals(videoCodec) || "avc3".equals(videoCodec);
+    }
+
+    /**
+     * MPEG-4 AAC（0x40）或 MPEG-2 AAC 各档次（0x66-0x68）
+     */
+    public boolean isAac() {
+        return "mp4a".equals(audioCodec)
+                && (audioObjectType == 0x40 || (audioObjectType >= 0x66 && audioObjectType <= 0x68));
+    }
+}
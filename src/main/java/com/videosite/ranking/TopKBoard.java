@@ -0,0 +1,131 @@
+package com.videosite.ranking;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 有界排行榜：只保留得分最高的capacity个条目，按得分降序、同分按ID升序排列。
+ * 更新与淘汰为 O(log K)，读取前n名为 O(n)；榜外条目的得分不保存
+ */
+public class TopKBoard {
+
+    private static final Comparator<Entry> RANKING =
+            Comparator.comparingDouble(Entry::score).reversed().thenComparingLong(Entry::id);
+
+    private final int capacity;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final TreeSet<Entry> ranking = new TreeSet<>(RANKING);
+
+    public TopKBoard(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("排行榜容量必须大于0");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * 设置条目的最新得分；不在榜上的条目得分超过榜尾（或榜未满）时入榜并淘汰榜尾
+     */
+    public void offer(long id, double score) {
+        lock.writeLock().lock();
+        try {
+            put(id, score);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 在条目现有得分上累加；不在榜上的条目按只有本次增量处理（得分的下界）
+     */
+    public void increment(long id, double delta) {
+        lock.writeLock().lock();
+        try {
+            Entry current = entries.get(id);
+            put(id, current != null ? current.score() + delta : delta);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.remove(id);
+            if (previous != null) {
+                ranking.remove(previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 用一份完整的排名（如数据库中的前K名）替换当前内容
+     */
+    public void reset(Map<Long, Double> scores) {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            ranking.clear();
+            scores.forEach(this::put);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 前n名的ID，按排名顺序
+     */
+    public List<Long> top(int n) {
+        lock.readLock().lock();
+        try {
+            List<Long> ids = new ArrayList<>(Math.min(n, ranking.size()));
+            Iterator<Entry> iterator = ranking.iterator();
+            while (ids.size() < n && iterator.hasNext()) {
+                ids.add(iterator.next().id());
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void put(long id, double score) {
+        Entry previous = entries.remove(id);
+        if (previous != null) {
+            ranking.remove(previous);
+        }
+        Entry entry = new Entry(id, score);
+        if (entries.size() >= capacity) {
+            Entry last = ranking.last();
+            if (RANKING.compare(entry, last) >= 0) {
+                return;
+            }
+            ranking.pollLast();
+            entries.remove(last.id());
+        }
+        entries.put(id, entry);
+        ranking.add(entry);
+    }
+
+    private record Entry(long id, double score) {
+    }
+}
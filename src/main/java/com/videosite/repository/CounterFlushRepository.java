@@ -0,0 +1,145 @@
+package com.videosite.repository;
+
+import com.videosite.dto.stats.CounterDelta;
+import com.videosite.dto.stats.CounterTotals;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 计数器批量刷写：一次事务内批量更新video累计值，并用多行upsert写入视频日统计、全站小时统计以及全站/上传者累计汇总
+ */
+@Repository
+@RequiredArgsConstructor
+public class CounterFlushRepository {
+
+    private static final int UPSERT_CHUNK_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StatsTotalsRepository statsTotalsRepository;
+
+    /**
+     * 刷写一批增量，返回实际写入的增量（已删除视频的增量被丢弃）
+     */
+    @Transactional
+    public List<CounterDelta> flush(List<CounterDelta> deltas) {
+        // 同一视频可能跨日期出现多条增量，先按视频合并累计值
+        Map<Long, long[]> totals = new LinkedHashMap<>();
+        for (CounterDelta delta : deltas) {
+            long[] total = totals.computeIfAbsent(delta.getVideoId(), id -> new long[2]);
+            total[0] += delta.getViews();
+            total[1] += delta.getDownloads();
+        }
+
+        List<Object[]> totalArgs = new ArrayList<>(totals.size());
+        totals.forEach((videoId, total) -> totalArgs.add(new Object[]{total[0], total[1], videoId}));
+        jdbcTemplate.batchUpdate(
+                "UPDATE video SET views_total = views_total + ?, downloads_total = downloads_total + ? WHERE id = ?",
+                totalArgs);
+
+        // 视频行已被上面的UPDATE锁定，查到的即仍存在的视频；已删除视频的增量丢弃
+        Map<Long, Long> uploaderIds = findUploaderIds(new ArrayList<>(totals.keySet()));
+        List<CounterDelta> applied = new ArrayList<>(deltas.size());
+        Map<Long, CounterTotals> uploaderDeltas = new LinkedHashMap<>();
+        for (CounterDelta delta : deltas) {
+            Long uploaderId = uploaderIds.get(delta.getVideoId());
+            if (uploaderId != null) {
+                applied.add(new CounterDelta(delta.getVideoId(), delta.getStatHour(),
+                        delta.getViews(), delta.getDownloads(), uploaderId));
+                uploaderDeltas.merge(uploaderId, new CounterTotals(delta.getViews(), delta.getDownloads()),
+                        (a, b) -> a.plus(b.getViews(), b.getDownloads()));
+            }
+        }
+
+        // 增量按小时划分，跨小时的一批里同一视频同一天可能有多条，先合并再写日统计
+        Map<DailyKey, long[]> daily = new LinkedHashMap<>();
+        Map<LocalDateTime, long[]> hourly = new TreeMap<>();
+        for (CounterDelta delta : applied) {
+            long[] day = daily.computeIfAbsent(new DailyKey(delta.getVideoId(), delta.getStatDate()), key -> new long[2]);
+            day[0] += delta.getViews();
+            day[1] += delta.getDownloads();
+            long[] hour = hourly.computeIfAbsent(delta.getStatHour(), key -> new long[2]);
+            hour[0] += delta.getViews();
+            hour[1] += delta.getDownloads();
+        }
+
+        List<Map.Entry<DailyKey, long[]>> dailyRows = new ArrayList<>(daily.entrySet());
+        for (int from = 0; from < dailyRows.size(); from += UPSERT_CHUNK_SIZE) {
+            upsertDailyStats(dailyRows.subList(from, Math.min(from + UPSERT_CHUNK_SIZE, dailyRows.size())));
+        }
+        upsertHourlyStats(hourly);
+        if (!uploaderDeltas.isEmpty()) {
+            statsTotalsRepository.add(uploaderDeltas);
+        }
+        return applied;
+    }
+
+    private Map<Long, Long> findUploaderIds(List<Long> videoIds) {
+        Map<Long, Long> uploaderIds = new HashMap<>();
+        for (int from = 0; from < videoIds.size(); from += UPSERT_CHUNK_SIZE) {
+            List<Long> chunk = videoIds.subList(from, Math.min(from + UPSERT_CHUNK_SIZE, videoIds.size()));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.query("SELECT id, uploader_id FROM video WHERE id IN (" + placeholders + ")", rs -> {
+                uploaderIds.put(rs.getLong(1), rs.getLong(2));
+            }, chunk.toArray());
+        }
+        return uploaderIds;
+    }
+
+    /**
+     * 多行INSERT ... ON DUPLICATE KEY UPDATE写入日统计
+     */
+    private void upsertDailyStats(List<Map.Entry<DailyKey, long[]>> chunk) {
+        StringBuilder sql = new StringBuilder(
+                "INSERT INTO video_daily_stats (video_id, stat_date, views, downloads) VALUES ");
+        Object[] args = new Object[chunk.size() * 4];
+        for (int i = 0; i < chunk.size(); i++) {
+            DailyKey key = chunk.get(i).getKey();
+            long[] counts = chunk.get(i).getValue();
+            sql.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+            args[i * 4] = key.videoId();
+            args[i * 4 + 1] = Date.valueOf(key.date());
+            args[i * 4 + 2] = counts[0];
+            args[i * 4 + 3] = counts[1];
+        }
+        sql.append(" AS new ON DUPLICATE KEY UPDATE views = views + new.views, downloads = downloads + new.downloads");
+        jdbcTemplate.update(sql.toString(), args);
+    }
+
+    /**
+     * 全站小时统计，一次刷写通常只涉及一两个小时
+     */
+    private void upsertHourlyStats(Map<LocalDateTime, long[]> hourly) {
+        if (hourly.isEmpty()) {
+            return;
+        }
+        StringBuilder sql = new StringBuilder("INSERT INTO stats_hourly (bucket_start, views, downloads) VALUES ");
+        Object[] args = new Object[hourly.size() * 3];
+        int i = 0;
+        for (Map.Entry<LocalDateTime, long[]> entry : hourly.entrySet()) {
+            sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+            args[i * 3] = Timestamp.valueOf(entry.getKey());
+            args[i * 3 + 1] = entry.getValue()[0];
+            args[i * 3 + 2] = entry.getValue()[1];
+            i++;
+        }
+        sql.append(" AS new ON DUPLICATE KEY UPDATE views = views + new.views, downloads = downloads + new.downloads");
+        jdbcTemplate.update(sql.toString(), args);
+    }
+
+    private record DailyKey(Long videoId, LocalDate date) {
+    }
+}
@@ -0,0 +1,59 @@
+package com.videosite.repository;
+
+import com.videosite.domain.entity.MediaBlob;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface MediaBlobRepository extends JpaRepository<MediaBlob, Long> {
+    
+    Optional<MediaBlob> findByContentHash(String contentHash);
+    
+    /**
+     * 加行锁读取，增减引用与删除文件在锁内串行
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM MediaBlob b WHERE b.contentHash = :contentHash")
+    Optional<MediaBlob> findByContentHashForUpdate(@Param("contentHash") String contentHash);
+    
+    /**
+     * 插入文件记录（引用数1），相同内容已存在时引用数加1。
+     * 返回1表示新插入、2表示已存在；并发的相同内容上传在唯一键上排队，不会因间隙锁互相死锁
+     */
+    @Modifying
+    @Query(value = "INSERT INTO media_blob (content_hash, storage_path, size_bytes, ref_count, created_at, updated_at) " +
+                   "VALUES (:contentHash, :storagePath, :sizeBytes, 1, :now, :now) AS new " +
+                   "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1, updated_at = new.updated_at", nativeQuery = true)
+    int insertOrAddReference(@Param("contentHash") String contentHash,
+                             @Param("storagePath") String storagePath,
+                             @Param("sizeBytes") long sizeBytes,
+                             @Param("now") LocalDateTime now);
+    
+    /**
+     * 首个处理完成的上传登记派生文件，已登记过的不覆盖
+     */
+    @Modifying
+    @Query("""
+        UPDATE MediaBlob b
+        SET b.durationSeconds = :durationSeconds, b.thumbPath = :thumbPath, b.thumbVariants = :thumbVariants,
+            b.storyboardPath = :storyboardPath, b.fastStart = :fastStart, b.hlsPath = :hlsPath,
+            b.updatedAt = :now
+        WHERE b.contentHash = :contentHash AND b.thumbPath IS NULL
+        """)
+    int adoptDerivedArtifacts(@Param("contentHash") String contentHash,
+                              @Param("durationSeconds") int durationSeconds,
+                              @Param("thumbPath") String thumbPath,
+                              @Param("thumbVariants") String thumbVariants,
+                              @Param("storyboardPath") String storyboardPath,
+                              @Param("fastStart") String fastStart,
+                              @Param("hlsPath") String hlsPath,
+                              @Param("now") LocalDateTime now);
+}
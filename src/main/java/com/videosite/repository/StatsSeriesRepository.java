@@ -0,0 +1,78 @@
+package com.videosite.repository;
+
+import com.videosite.dto.stats.StatsPoint;
+import com.videosite.dto.stats.StatsResolution;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 全站时间序列三张表（stats_hourly/stats_daily/stats_monthly）的读写与汇总
+ */
+@Repository
+@RequiredArgsConstructor
+public class StatsSeriesRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 读取 [from, to) 内已有数据的桶，按时间升序；没有数据的桶不返回
+     */
+    public List<StatsPoint> findRange(StatsResolution resolution, LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.query(
+                "SELECT bucket_start, views, downloads FROM " + table(resolution)
+                        + " WHERE bucket_start >= ? AND bucket_start < ? ORDER BY bucket_start",
+                (rs, rowNum) -> new StatsPoint(rs.getTimestamp(1).toLocalDateTime(), rs.getLong(2), rs.getLong(3)),
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    /**
+     * 把细粒度表 [from, to) 的数据按目标粒度重新汇总，覆盖目标表中已有的值，重复执行结果不变
+     */
+    public int rollup(StatsResolution source, StatsResolution target, LocalDateTime from, LocalDateTime to) {
+        String bucket = target == StatsResolution.MONTH
+                ? "DATE_FORMAT(bucket_start, '%Y-%m-01')"
+                : "DATE(bucket_start)";
+        return jdbcTemplate.update(
+                "INSERT INTO " + table(target) + " (bucket_start, views, downloads) "
+                        + "SELECT * FROM (SELECT " + bucket + " AS bucket_start, SUM(views) AS views, SUM(downloads) AS downloads"
+                        + " FROM " + table(source) + " WHERE bucket_start >= ? AND bucket_start < ? GROUP BY " + bucket
+                        + ") AS new ON DUPLICATE KEY UPDATE views = new.views, downloads = new.downloads",
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    /**
+     * 删除早于before的桶
+     */
+    public int deleteBefore(StatsResolution resolution, LocalDateTime before) {
+        return jdbcTemplate.update("DELETE FROM " + table(resolution) + " WHERE bucket_start < ?",
+                Timestamp.valueOf(before));
+    }
+
+    /**
+     * 该粒度已汇总到的时间（不含），从未汇总时返回null
+     */
+    public LocalDateTime findRolledUntil(StatsResolution level) {
+        List<Timestamp> values = jdbcTemplate.queryForList(
+                "SELECT rolled_until FROM stats_rollup_state WHERE level = ?", Timestamp.class, level.name());
+        return values.isEmpty() ? null : values.get(0).toLocalDateTime();
+    }
+
+    public void saveRolledUntil(StatsResolution level, LocalDateTime rolledUntil) {
+        jdbcTemplate.update("INSERT INTO stats_rollup_state (level, rolled_until) VALUES (?, ?) AS new "
+                        + "ON DUPLICATE KEY UPDATE rolled_until = new.rolled_until",
+                level.name(), Timestamp.valueOf(rolledUntil));
+    }
+
+    private static String table(StatsResolution resolution) {
+        return switch (resolution) {
+            case HOUR -> "stats_hourly";
+            case DAY -> "stats_daily";
+            case MONTH -> "stats_monthly";
+        };
+    }
+}
@@ -0,0 +1,138 @@
+package com.videosite.repository;
+
+import com.videosite.dto.stats.CounterTotals;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 全站与各上传者的播放/下载累计汇总（stats_totals）。
+ * 所有写入都先更新全站行再更新上传者行，与计数刷写、核对任务保持同一加锁顺序
+ */
+@Repository
+@RequiredArgsConstructor
+public class StatsTotalsRepository {
+
+    private static final String SCOPE_GLOBAL = "GLOBAL";
+    private static final String SCOPE_UPLOADER = "UPLOADER";
+    private static final int UPSERT_CHUNK_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 累加一批增量：全站加上总和，各上传者加上各自的增量
+     */
+    public void add(Map<Long, CounterTotals> uploaderDeltas) {
+        long views = 0;
+        long downloads = 0;
+        for (CounterTotals delta : uploaderDeltas.values()) {
+            views += delta.getViews();
+            downloads += delta.getDownloads();
+        }
+        jdbcTemplate.update("INSERT INTO stats_totals (scope, scope_id, views, downloads) VALUES (?, 0, ?, ?) AS new "
+                        + "ON DUPLICATE KEY UPDATE views = views + new.views, downloads = downloads + new.downloads",
+                SCOPE_GLOBAL, views, downloads);
+        upsertUploaders(uploaderDeltas, true);
+    }
+
+    /**
+     * 删除视频前从全站与其上传者的累计中扣除该视频的累计值（读取的是加锁后的最新值）
+     */
+    public void subtractVideo(Long videoId) {
+        jdbcTemplate.update("UPDATE stats_totals t JOIN video v ON v.id = ? "
+                + "SET t.views = t.views - v.views_total, t.downloads = t.downloads - v.downloads_total "
+                + "WHERE t.scope = 'GLOBAL' AND t.scope_id = 0", videoId);
+        jdbcTemplate.update("UPDATE stats_totals t JOIN video v ON v.id = ? "
+                + "SET t.views = t.views - v.views_total, t.downloads = t.downloads - v.downloads_total "
+                + "WHERE t.scope = 'UPLOADER' AND t.scope_id = v.uploader_id", videoId);
+    }
+
+    /**
+     * 用户及其视频删除后，从全站累计中扣除该上传者的累计值并删除其汇总行
+     */
+    public void removeUploader(Long uploaderId) {
+        jdbcTemplate.update("UPDATE stats_totals g JOIN stats_totals u ON u.scope = 'UPLOADER' AND u.scope_id = ? "
+                + "SET g.views = g.views - u.views, g.downloads = g.downloads - u.downloads "
+                + "WHERE g.scope = 'GLOBAL' AND g.scope_id = 0", uploaderId);
+        jdbcTemplate.update("DELETE FROM stats_totals WHERE scope = ? AND scope_id = ?", SCOPE_UPLOADER, uploaderId);
+    }
+
+    public CounterTotals findGlobal() {
+        List<CounterTotals> rows = jdbcTemplate.query(
+                "SELECT views, downloads FROM stats_totals WHERE scope = ? AND scope_id = 0",
+                (rs, rowNum) -> new CounterTotals(rs.getLong(1), rs.getLong(2)), SCOPE_GLOBAL);
+        return rows.isEmpty() ? CounterTotals.ZERO : rows.get(0);
+    }
+
+    public CounterTotals findUploader(Long uploaderId) {
+        List<CounterTotals> rows = jdbcTemplate.query(
+                "SELECT views, downloads FROM stats_totals WHERE scope = ? AND scope_id = ?",
+                (rs, rowNum) -> new CounterTotals(rs.getLong(1), rs.getLong(2)), SCOPE_UPLOADER, uploaderId);
+        return rows.isEmpty() ? CounterTotals.ZERO : rows.get(0);
+    }
+
+    public Map<Long, CounterTotals> findAllUploaders() {
+        Map<Long, CounterTotals> totals = new HashMap<>();
+        jdbcTemplate.query("SELECT scope_id, views, downloads FROM stats_totals WHERE scope = ?", rs -> {
+            totals.put(rs.getLong(1), new CounterTotals(rs.getLong(2), rs.getLong(3)));
+        }, SCOPE_UPLOADER);
+        return totals;
+    }
+
+    /**
+     * 锁定全站行（须在事务内调用）：此后的计数刷写会在更新汇总时等待，直到当前事务提交
+     */
+    public CounterTotals lockGlobal() {
+        List<CounterTotals> rows = jdbcTemplate.query(
+                "SELECT views, downloads FROM stats_totals WHERE scope = ? AND scope_id = 0 FOR UPDATE",
+                (rs, rowNum) -> new CounterTotals(rs.getLong(1), rs.getLong(2)), SCOPE_GLOBAL);
+        return rows.isEmpty() ? CounterTotals.ZERO : rows.get(0);
+    }
+
+    /**
+     * 从video表重新汇总各上传者的累计值（非加锁的一致性读）
+     */
+    public Map<Long, CounterTotals> sumVideosByUploader() {
+        Map<Long, CounterTotals> totals = new HashMap<>();
+        jdbcTemplate.query("SELECT uploader_id, SUM(views_total), SUM(downloads_total) FROM video GROUP BY uploader_id", rs -> {
+            totals.put(rs.getLong(1), new CounterTotals(rs.getLong(2), rs.getLong(3)));
+        });
+        return totals;
+    }
+
+    /**
+     * 用重新汇总的结果覆盖全部汇总行，没有视频的上传者行被删除
+     */
+    public void replaceAll(CounterTotals global, Map<Long, CounterTotals> uploaders) {
+        jdbcTemplate.update("INSERT INTO stats_totals (scope, scope_id, views, downloads) VALUES (?, 0, ?, ?) AS new "
+                        + "ON DUPLICATE KEY UPDATE views = new.views, downloads = new.downloads",
+                SCOPE_GLOBAL, global.getViews(), global.getDownloads());
+        jdbcTemplate.update("DELETE FROM stats_totals WHERE scope = ?", SCOPE_UPLOADER);
+        upsertUploaders(uploaders, false);
+    }
+
+    private void upsertUploaders(Map<Long, CounterTotals> uploaders, boolean increment) {
+        List<Map.Entry<Long, CounterTotals>> rows = new ArrayList<>(uploaders.entrySet());
+        for (int from = 0; from < rows.size(); from += UPSERT_CHUNK_SIZE) {
+            List<Map.Entry<Long, CounterTotals>> chunk = rows.subList(from, Math.min(from + UPSERT_CHUNK_SIZE, rows.size()));
+            StringBuilder sql = new StringBuilder("INSERT INTO stats_totals (scope, scope_id, views, downloads) VALUES ");
+            Object[] args = new Object[chunk.size() * 4];
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+                args[i * 4] = SCOPE_UPLOADER;
+                args[i * 4 + 1] = chunk.get(i).getKey();
+                args[i * 4 + 2] = chunk.get(i).getValue().getViews();
+                args[i * 4 + 3] = chunk.get(i).getValue().getDownloads();
+            }
+            sql.append(increment
+                    ? " AS new ON DUPLICATE KEY UPDATE views = views + new.views, downloads = downloads + new.downloads"
+                    : " AS new ON DUPLICATE KEY UPDATE views = new.views, downloads = new.downloads");
+            jdbcTemplate.update(sql.toString(), args);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.videosite.repository;
+
+import com.videosite.domain.entity.UploadJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadJobRepository extends JpaRepository<UploadJob, Long> {
+    
+    Optional<UploadJob> findByVideoId(Long videoId);
+    
+    long countByStatus(UploadJob.Status status);
+    
+    /**
+     * 已到执行时间的排队任务ID，先入队先执行
+     */
+    @Query("""
+        SELECT j.id FROM UploadJob j
+        WHERE j.status = :status AND j.nextAttemptAt <= :now
+        ORDER BY j.nextAttemptAt, j.id
+        """)
+    List<Long> findDueJobIds(@Param("status") UploadJob.Status status,
+                             @Param("now") LocalDateTime now,
+                             Pageable pageable);
+    
+    /**
+     * 心跳超时的运行中任务（进程崩溃或重启后遗留）
+     */
+    List<UploadJob> findByStatusAndUpdatedAtBefore(UploadJob.Status status, LocalDateTime updatedBefore);
+    
+    /**
+     * 以条件更新认领排队任务，返回1表示认领成功（多实例部署时也不会重复执行）
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+        UPDATE UploadJob j
+        SET j.status = :running, j.attempts = j.attempts + 1, j.updatedAt = :now
+        WHERE j.id = :id AND j.status = :queued
+        """)
+    int claim(@Param("id") Long id,
+              @Param("queued") UploadJob.Status queued,
+              @Param("running") UploadJob.Status running,
+              @Param("now") LocalDateTime now);
+    
+    /**
+     * 更新处理阶段与进度，同时刷新心跳
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE UploadJob j SET j.stage = :stage, j.progress = :progress, j.updatedAt = :now WHERE j.id = :id")
+    int updateProgress(@Param("id") Long id,
+                       @Param("stage") UploadJob.Stage stage,
+                       @Param("progress") int progress,
+                       @Param("now") LocalDateTime now);
+}
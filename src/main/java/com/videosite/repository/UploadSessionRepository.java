@@ -0,0 +1,45 @@
+package com.videosite.repository;
+
+import com.videosite.domain.entity.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+    
+    /**
+     * 过期的会话（未完成的过期后清理文件，已完成的只删除记录）
+     */
+    List<UploadSession> findByExpiresAtBefore(LocalDateTime expiresBefore);
+    
+    /**
+     * 直接从数据库读取处于指定状态的会话已确认的偏移量（不经持久化上下文中可能过期的实体）
+     */
+    @Query("SELECT s.uploadOffset FROM UploadSession s WHERE s.id = :id AND s.status = :status")
+    Optional<Long> findOffset(@Param("id") String id, @Param("status") UploadSession.Status status);
+    
+    /**
+     * 以旧偏移量为条件推进偏移量，返回0表示偏移量已被其他请求修改
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+        UPDATE UploadSession s
+        SET s.uploadOffset = :newOffset, s.updatedAt = :now, s.expiresAt = :expiresAt
+        WHERE s.id = :id AND s.uploadOffset = :oldOffset AND s.status = :status
+        """)
+    int advanceOffset(@Param("id") String id,
+                      @Param("oldOffset") long oldOffset,
+                      @Param("newOffset") long newOffset,
+                      @Param("status") UploadSession.Status status,
+                      @Param("now") LocalDateTime now,
+                      @Param("expiresAt") LocalDateTime expiresAt);
+}
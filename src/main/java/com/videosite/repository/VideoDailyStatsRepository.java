@@ -1,6 +1,7 @@
 package com.videosite.repository;
 
 import com.videosite.domain.entity.VideoDailyStats;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -28,22 +29,17 @@ public interface VideoDailyStatsRepository extends JpaRepository<VideoDailyStats
             @Param("endDate") LocalDate endDate);
     
     /**
-     * 获取每日播放量统计（按日期聚合）
+     * 近期热度最高的公开视频：每天的播放量按距基准日的天数指数衰减后求和，
+     * 基准日之前每早 halfLifeHours 小时权重减半。按分页大小限制行数
      */
-    @Query("SELECT vds.statDate, SUM(vds.views) FROM VideoDailyStats vds " +
-           "WHERE vds.statDate BETWEEN :startDate AND :endDate " +
-           "GROUP BY vds.statDate ORDER BY vds.statDate")
-    List<Object[]> getDailyViewsStats(@Param("startDate") LocalDate startDate, 
-                                     @Param("endDate") LocalDate endDate);
-    
-    /**
-     * 获取每日下载量统计（按日期聚合）
-     */
-    @Query("SELECT vds.statDate, SUM(vds.downloads) FROM VideoDailyStats vds " +
-           "WHERE vds.statDate BETWEEN :startDate AND :endDate " +
-           "GROUP BY vds.statDate ORDER BY vds.statDate")
-    List<Object[]> getDailyDownloadsStats(@Param("startDate") LocalDate startDate, 
-                                         @Param("endDate") LocalDate endDate);
+    @Query(value = "SELECT s.video_id, SUM(s.views * POW(2, DATEDIFF(s.stat_date, :landmark) * 24 / :halfLifeHours)) AS score " +
+                   "FROM video_daily_stats s JOIN video v ON v.id = s.video_id " +
+                   "WHERE s.stat_date >= :since AND v.visibility = 'PUBLIC' " +
+                   "GROUP BY s.video_id HAVING score > 0 ORDER BY score DESC, s.video_id", nativeQuery = true)
+    List<Object[]> findTrendingScores(@Param("since") LocalDate since,
+                                      @Param("landmark") LocalDate landmark,
+                                      @Param("halfLifeHours") double halfLifeHours,
+                                      Pageable pageable);
     
     /**
      * 更新或插入播放次数统计
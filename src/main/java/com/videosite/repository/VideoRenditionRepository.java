@@ -0,0 +1,61 @@
+package com.videosite.repository;
+
+import com.videosite.domain.entity.VideoRendition;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface VideoRenditionRepository extends JpaRepository<VideoRendition, Long> {
+    
+    List<VideoRendition> findByVideoIdOrderByHeight(Long videoId);
+    
+    List<VideoRendition> findByVideoIdAndStatusOrderByHeight(Long videoId, VideoRendition.Status status);
+    
+    /**
+     * 排队中的档位ID：所有视频的低档位先于高档位，让新视频尽快可以播放
+     */
+    @Query("""
+        SELECT r.id FROM VideoRendition r
+        WHERE r.status = :status
+        ORDER BY r.height, r.id
+        """)
+    List<Long> findQueuedIds(@Param("status") VideoRendition.Status status, Pageable pageable);
+    
+    /**
+     * 心跳超时的转码中档位（进程崩溃或重启后遗留）
+     */
+    List<VideoRendition> findByStatusAndUpdatedAtBefore(VideoRendition.Status status, LocalDateTime updatedBefore);
+    
+    /**
+     * 以条件更新认领排队档位，返回1表示认领成功
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+        UPDATE VideoRendition r
+        SET r.status = :running, r.attempts = r.attempts + 1, r.progress = 0, r.updatedAt = :now
+        WHERE r.id = :id AND r.status = :queued
+        """)
+    int claim(@Param("id") Long id,
+              @Param("queued") VideoRendition.Status queued,
+              @Param("running") VideoRendition.Status running,
+              @Param("now") LocalDateTime now);
+    
+    /**
+     * 更新转码进度，同时刷新心跳
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE VideoRendition r SET r.progress = :progress, r.updatedAt = :now WHERE r.id = :id")
+    int updateProgress(@Param("id") Long id,
+                       @Param("progress") int progress,
+                       @Param("now") LocalDateTime now);
+}
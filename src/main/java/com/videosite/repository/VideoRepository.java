@@ -9,28 +9,77 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface VideoRepository extends JpaRepository<Video, Long> {
     
     /**
-     * 分页查询所有视频，按创建时间倒序
+     * 分页查询所有公开视频，按创建时间倒序
      */
+    @Query(value = "SELECT v FROM Video v WHERE v.visibility = 'PUBLIC' ORDER BY v.createdAt DESC",
+           countQuery = "SELECT COUNT(v) FROM Video v WHERE v.visibility = 'PUBLIC'")
     Page<Video> findAllByOrderByCreatedAtDesc(Pageable pageable);
     
+    /**
+     * 键集分页第一页：最新的视频（不做COUNT）
+     */
+    @Query("""
+        SELECT v FROM Video v LEFT JOIN FETCH v.uploader
+        WHERE v.visibility = 'PUBLIC'
+        ORDER BY v.createdAt DESC, v.id DESC
+        """)
+    List<Video> findLatest(Pageable pageable);
+    
+    /**
+     * 键集分页下一页：排在游标 (createdAt, id) 之后（更旧）的视频，按 (created_at, id) 倒序。
+     * 先写出 created_at <= 游标 的条件，保证走 (created_at, id) 索引的范围扫描
+     */
+    @Query("""
+        SELECT v FROM Video v LEFT JOIN FETCH v.uploader
+        WHERE v.createdAt <= :createdAt AND (v.createdAt < :createdAt OR v.id < :id)
+          AND v.visibility = 'PUBLIC'
+        ORDER BY v.createdAt DESC, v.id DESC
+        """)
+    List<Video> findOlderThan(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+    
+    /**
+     * 键集分页上一页：排在游标之前（更新）的视频，按 (created_at, id) 正序，离游标最近的在前
+     */
+    @Query("""
+        SELECT v FROM Video v LEFT JOIN FETCH v.uploader
+        WHERE v.createdAt >= :createdAt AND (v.createdAt > :createdAt OR v.id > :id)
+          AND v.visibility = 'PUBLIC'
+        ORDER BY v.createdAt ASC, v.id ASC
+        """)
+    List<Video> findNewerThan(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+    
     /**
      * 根据上传者ID查询视频
      */
     Page<Video> findByUploaderIdOrderByCreatedAtDesc(Long uploaderId, Pageable pageable);
     
+    /**
+     * 上传者引用了内容寻址文件的视频（删除用户前释放引用）
+     */
+    List<Video> findByUploaderIdAndContentHashIsNotNull(Long uploaderId);
+    
+    /**
+     * 共用同一HLS分片目录的另一个视频（相同内容复用处理结果时沿用其码率档位）
+     */
+    Optional<Video> findFirstByHlsPathAndIdNot(String hlsPath, Long id);
+    
     /**
      * 搜索视频（标题、关键词、上传者用户名）
      */
     @Query("""
         SELECT DISTINCT v FROM Video v 
         LEFT JOIN v.uploader u
-        WHERE (:keywords IS NULL OR :keywords = '' OR
+        WHERE v.visibility = 'PUBLIC' AND
+              (:keywords IS NULL OR :keywords = '' OR
                LOWER(v.title) LIKE LOWER(CONCAT('%', :keywords, '%')) OR
                LOWER(v.keywords) LIKE LOWER(CONCAT('%', :keywords, '%')) OR
                LOWER(u.username) LIKE LOWER(CONCAT('%', :keywords, '%')))
@@ -39,41 +88,52 @@ public interface VideoRepository extends JpaRepository<Video, Long> {
     Page<Video> searchVideos(@Param("keywords") String keywords, Pageable pageable);
     
     /**
-     * 复杂搜索：AND和OR逻辑
+     * 只查询公开视频的缩略图路径及已生成的变体列表，不加载完整实体；
+     * 处理中或处理失败的视频查不到，缩略图接口免登录且允许长期缓存
      */
-    @Query(value = """
-        SELECT v.* FROM video v 
-        LEFT JOIN user u ON v.uploader_id = u.id
-        WHERE (:andKeywords IS NULL OR (
-            SELECT COUNT(DISTINCT token) FROM (
-                SELECT TRIM(SUBSTRING_INDEX(SUBSTRING_INDEX(:andKeywords, ',', numbers.n), ',', -1)) as token
-                FROM (SELECT 1 n UNION SELECT 2 UNION SELECT 3 UNION SELECT 4 UNION SELECT 5 
-                      UNION SELECT 6 UNION SELECT 7 UNION SELECT 8 UNION SELECT 9 UNION SELECT 10) numbers
-                WHERE CHAR_LENGTH(:andKeywords) - CHAR_LENGTH(REPLACE(:andKeywords, ',', '')) >= numbers.n - 1
-            ) tokens
-            WHERE token != '' AND (
-                LOWER(v.title) LIKE LOWER(CONCAT('%', token, '%')) OR
-                LOWER(v.keywords) LIKE LOWER(CONCAT('%', token, '%')) OR
-                LOWER(u.username) LIKE LOWER(CONCAT('%', token, '%'))
-            )
-        ) = :tokenCount)
-        ORDER BY v.created_at DESC
-        """, nativeQuery = true)
-    Page<Video> searchVideosWithAndLogic(@Param("andKeywords") String andKeywords, 
-                                        @Param("tokenCount") int tokenCount, 
-                                        Pageable pageable);
+    @Query("SELECT v.thumbPath, v.thumbVariants FROM Video v WHERE v.id = :id AND v.visibility = 'PUBLIC'")
+    List<Object[]> findThumbnailInfoById(@Param("id") Long id);
     
     /**
-     * 获取播放量Top10视频（包含上传者信息）
+     * 只查询公开视频的故事板雪碧图路径
      */
-    @Query("SELECT v FROM Video v LEFT JOIN FETCH v.uploader ORDER BY v.viewsTotal DESC")
-    List<Video> findTop10ByOrderByViewsTotalDesc();
+    @Query("SELECT v.storyboardPath FROM Video v WHERE v.id = :id AND v.visibility = 'PUBLIC'")
+    Optional<String> findStoryboardPathById(@Param("id") Long id);
     
     /**
-     * 获取下载量Top10视频（包含上传者信息）
+     * 按ID批量查询视频（包含上传者信息），用于搜索结果回填
      */
-    @Query("SELECT v FROM Video v LEFT JOIN FETCH v.uploader ORDER BY v.downloadsTotal DESC")
-    List<Video> findTop10ByOrderByDownloadsTotalDesc();
+    @Query("SELECT v FROM Video v LEFT JOIN FETCH v.uploader WHERE v.id IN :ids")
+    List<Video> findAllWithUploaderByIdIn(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * 按ID顺序分批读取建立搜索索引所需的字段
+     */
+    @Query("""
+        SELECT v.id, v.title, v.keywords, v.uploaderId, u.username, v.createdAt, v.viewsTotal FROM Video v
+        LEFT JOIN v.uploader u
+        WHERE v.id > :afterId AND v.visibility = 'PUBLIC'
+        ORDER BY v.id
+        """)
+    List<Object[]> findIndexRowsAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /**
+     * 播放量最高的公开视频ID及播放量（初始化排行榜，按分页大小限制行数）
+     */
+    @Query("SELECT v.id, v.viewsTotal FROM Video v WHERE v.visibility = 'PUBLIC' ORDER BY v.viewsTotal DESC, v.id")
+    List<Object[]> findTopViewed(Pageable pageable);
+    
+    /**
+     * 下载量最高的公开视频ID及下载量（初始化排行榜，按分页大小限制行数）
+     */
+    @Query("SELECT v.id, v.downloadsTotal FROM Video v WHERE v.visibility = 'PUBLIC' ORDER BY v.downloadsTotal DESC, v.id")
+    List<Object[]> findTopDownloaded(Pageable pageable);
+    
+    /**
+     * 按ID批量查询公开视频的最新累计播放/下载量（计数刷写后更新排行榜）
+     */
+    @Query("SELECT v.id, v.viewsTotal, v.downloadsTotal FROM Video v WHERE v.id IN :ids AND v.visibility = 'PUBLIC'")
+    List<Object[]> findPublicTotalsByIdIn(@Param("ids") Collection<Long> ids);
     
     /**
      * 原子性增加播放次数
@@ -89,18 +149,6 @@ public interface VideoRepository extends JpaRepository<Video, Long> {
     @Query("UPDATE Video v SET v.downloadsTotal = v.downloadsTotal + 1 WHERE v.id = :videoId")
     int incrementDownloadsTotal(@Param("videoId") Long videoId);
     
-    /**
-     * 获取总播放次数
-     */
-    @Query("SELECT SUM(v.viewsTotal) FROM Video v")
-    Long getTotalViews();
-    
-    /**
-     * 获取总下载次数
-     */
-    @Query("SELECT SUM(v.downloadsTotal) FROM Video v")
-    Long getTotalDownloads();
-    
     /**
      * 查询所有视频，按创建时间倒序（无分页）
      */
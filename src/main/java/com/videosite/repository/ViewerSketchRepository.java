@@ -0,0 +1,113 @@
+package com.videosite.repository;
+
+import com.videosite.dto.stats.VideoDayKey;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 视频每日独立观众草图（video_daily_viewers）的读写
+ */
+@Repository
+@RequiredArgsConstructor
+public class ViewerSketchRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 读取并锁定已有的草图（须在事务内调用），保证读-合并-写回期间不被其他实例覆盖
+     */
+    public Map<VideoDayKey, byte[]> findForUpdate(Collection<VideoDayKey> keys) {
+        Map<VideoDayKey, byte[]> sketches = new HashMap<>();
+        if (keys.isEmpty()) {
+            return sketches;
+        }
+        StringBuilder sql = new StringBuilder(
+                "SELECT video_id, stat_date, sketch FROM video_daily_viewers WHERE (video_id, stat_date) IN (");
+        List<Object> args = new ArrayList<>(keys.size() * 2);
+        for (VideoDayKey key : keys) {
+            sql.append(args.isEmpty() ? "(?, ?)" : ", (?, ?)");
+            args.add(key.getVideoId());
+            args.add(Date.valueOf(key.getDate()));
+        }
+        sql.append(") FOR UPDATE");
+        jdbcTemplate.query(sql.toString(), rs -> {
+            sketches.put(new VideoDayKey(rs.getLong(1), rs.getDate(2).toLocalDate()), rs.getBytes(3));
+        }, args.toArray());
+        return sketches;
+    }
+
+    /**
+     * 多行upsert写入草图及其估计值，键为不存在（已删除）的视频时应事先过滤
+     */
+    public void upsert(Map<VideoDayKey, byte[]> sketches, Map<VideoDayKey, Long> estimates) {
+        if (sketches.isEmpty()) {
+            return;
+        }
+        StringBuilder sql = new StringBuilder(
+                "INSERT INTO video_daily_viewers (video_id, stat_date, unique_viewers, sketch) VALUES ");
+        List<Object> args = new ArrayList<>(sketches.size() * 4);
+        for (Map.Entry<VideoDayKey, byte[]> entry : sketches.entrySet()) {
+            sql.append(args.isEmpty() ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+            args.add(entry.getKey().getVideoId());
+            args.add(Date.valueOf(entry.getKey().getDate()));
+            args.add(estimates.get(entry.getKey()));
+            args.add(entry.getValue());
+        }
+        sql.append(" AS new ON DUPLICATE KEY UPDATE unique_viewers = new.unique_viewers, sketch = new.sketch");
+        jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
+    /**
+     * 给定视频在 [from, to] 内各天的草图
+     */
+    public Map<VideoDayKey, byte[]> findBetween(Collection<Long> videoIds, LocalDate from, LocalDate to) {
+        Map<VideoDayKey, byte[]> sketches = new HashMap<>();
+        if (videoIds.isEmpty()) {
+            return sketches;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(videoIds.size(), "?"));
+        List<Object> args = new ArrayList<>(videoIds);
+        args.add(Date.valueOf(from));
+        args.add(Date.valueOf(to));
+        jdbcTemplate.query("SELECT video_id, stat_date, sketch FROM video_daily_viewers WHERE video_id IN ("
+                + placeholders + ") AND stat_date BETWEEN ? AND ?", rs -> {
+            sketches.put(new VideoDayKey(rs.getLong(1), rs.getDate(2).toLocalDate()), rs.getBytes(3));
+        }, args.toArray());
+        return sketches;
+    }
+
+    /**
+     * 某视频 [from, to] 内各天的独立观众估计值，按日期升序
+     */
+    public Map<LocalDate, Long> findDailyEstimates(Long videoId, LocalDate from, LocalDate to) {
+        Map<LocalDate, Long> estimates = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT stat_date, unique_viewers FROM video_daily_viewers "
+                        + "WHERE video_id = ? AND stat_date BETWEEN ? AND ? ORDER BY stat_date", rs -> {
+            estimates.put(rs.getDate(1).toLocalDate(), rs.getLong(2));
+        }, videoId, Date.valueOf(from), Date.valueOf(to));
+        return estimates;
+    }
+
+    /**
+     * 仍然存在的视频ID
+     */
+    public List<Long> findExistingVideoIds(Collection<Long> videoIds) {
+        if (videoIds.isEmpty()) {
+            return List.of();
+        }
+        String placeholders = String.join(", ", Collections.nCopies(videoIds.size(), "?"));
+        return jdbcTemplate.queryForList("SELECT id FROM video WHERE id IN (" + placeholders + ")",
+                Long.class, videoIds.toArray());
+    }
+}
@@ -0,0 +1,25 @@
+package com.videosite.search;
+
+import lombok.Value;
+
+/**
+ * BM25相关度打分参数：k1控制词频饱和速度，b控制字段长度归一化强度，
+ * 各字段权重决定同一词出现在标题、关键词、上传者中的相对重要性
+ */
+@Value
+public class Bm25Params {
+
+    double k1;
+    double b;
+    double titleWeight;
+    double keywordsWeight;
+    double uploaderWeight;
+
+    public double weight(SearchField field) {
+        return switch (field) {
+            case TITLE -> titleWeight;
+            case KEYWORDS -> keywordsWeight;
+            case UPLOADER -> uploaderWeight;
+        };
+    }
+}
@@ -0,0 +1,113 @@
+package com.videosite.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 解析后的布尔查询：由若干子句组成，子句内各项为OR关系，
+ * MUST子句之间为AND关系，MUST_NOT子句从结果中排除
+ */
+public class BooleanQuery {
+
+    public enum Occur {
+        MUST, MUST_NOT
+    }
+
+    private final List<Clause> clauses = new ArrayList<>();
+
+    public List<Clause> getClauses() {
+        return clauses;
+    }
+
+    public boolean isEmpty() {
+        return clauses.isEmpty();
+    }
+
+    /**
+     * 所有正向查询项的文本（用于排序打分、纠错等）
+     */
+    public List<Term> positiveTerms() {
+        List<Term> terms = new ArrayList<>();
+        for (Clause clause : clauses) {
+            if (clause.getOccur() == Occur.MUST) {
+                terms.addAll(clause.getTerms());
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * 还原为查询框语法的字符串（用于展示纠错后的查询）
+     */
+    public String toQueryString() {
+        StringBuilder builder = new StringBuilder();
+        for (Clause clause : clauses) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            if (clause.getOccur() == Occur.MUST_NOT) {
+                builder.append('-');
+            }
+            for (int i = 0; i < clause.getTerms().size(); i++) {
+                Term term = clause.getTerms().get(i);
+                if (i > 0) {
+                    builder.append(" OR ");
+                }
+                builder.append(term.isPhrase() ? "\"" + term.getText() + "\"" : term.getText());
+            }
+        }
+        return builder.toString();
+    }
+
+    void addClause(Clause clause) {
+        clauses.add(clause);
+    }
+
+    Clause lastClause() {
+        return clauses.isEmpty() ? null : clauses.get(clauses.size() - 1);
+    }
+
+    /**
+     * 查询子句
+     */
+    public static class Clause {
+
+        private final Occur occur;
+        private final List<Term> terms = new ArrayList<>();
+
+        Clause(Occur occur, Term term) {
+            this.occur = occur;
+            this.terms.add(term);
+        }
+
+        public Occur getOccur() {
+            return occur;
+        }
+
+        public List<Term> getTerms() {
+            return terms;
+        }
+    }
+
+    /**
+     * 查询项：单词或带引号的短语
+     */
+    public static class Term {
+
+        private final String text;
+        private final boolean phrase;
+
+        Term(String text, boolean phrase) {
+            this.text = text;
+            this.phrase = phrase;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public boolean isPhrase() {
+            return phrase;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.videosite.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+
+/**
+ * 在有序词典上查找编辑距离以内的词（等价于用Levenshtein自动机遍历词典前缀树）：
+ * 按字典序逐词推进动态规划行，相邻词共享公共前缀的行；
+ * 某前缀的行最小值已超过最大距离时，用 higherKey 直接跳过以该前缀开头的全部词。
+ * 与常见做法一致，要求首字符相同：首字母拼错很少见，而放开首字符会使遍历范围扩大一个字母表的倍数
+ */
+public final class FuzzyMatcher {
+
+    private FuzzyMatcher() {
+    }
+
+    /**
+     * 查找与query首字符相同、编辑距离不超过maxDistance的全部词
+     */
+    public static List<Match> search(NavigableMap<String, ?> dictionary, String query, int maxDistance) {
+        List<Match> matches = new ArrayList<>();
+        if (query.isEmpty()) {
+            return matches;
+        }
+        String first = query.substring(0, 1);
+        int columns = query.length() + 1;
+        int[][] rows = new int[query.length() + maxDistance + 2][];
+        rows[0] = new int[columns];
+        for (int j = 0; j < columns; j++) {
+            rows[0][j] = j;
+        }
+
+        String previous = "";
+        String term = dictionary.ceilingKey(first);
+        while (term != null && term.startsWith(first)) {
+            int common = commonPrefixLength(previous, term);
+            int prunedAt = -1;
+            // 第i行最小值不小于 i-查询长度，深度达到 查询长度+最大距离+1 时必然剪枝
+            int depth = Math.min(term.length(), rows.length - 1);
+            for (int i = common + 1; i <= depth; i++) {
+                if (computeRow(rows, i, term.charAt(i - 1), query) > maxDistance) {
+                    prunedAt = i;
+                    break;
+                }
+            }
+
+            if (prunedAt > 0) {
+                String prefix = term.substring(0, prunedAt);
+                previous = prefix;
+                term = dictionary.higherKey(prefix + Character.MAX_VALUE);
+                continue;
+            }
+
+            int distance = rows[term.length()][query.length()];
+            if (distance <= maxDistance) {
+                matches.add(new Match(term, distance));
+            }
+            previous = term;
+            term = dictionary.higherKey(term);
+        }
+        return matches;
+    }
+
+    /**
+     * 由第i-1行计算第i行，返回该行最小值
+     */
+    private static int computeRow(int[][] rows, int i, char c, String query) {
+        int[] above = rows[i - 1];
+        int[] row = rows[i];
+        if (row == null) {
+            row = new int[above.length];
+            rows[i] = row;
+        }
+        row[0] = i;
+        int min = row[0];
+        for (int j = 1; j < row.length; j++) {
+            int cost = query.charAt(j - 1) == c ? 0 : 1;
+            row[j] = Math.min(Math.min(row[j - 1] + 1, above[j] + 1), above[j - 1] + cost);
+            min = Math.min(min, row[j]);
+        }
+        return min;
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int limit = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < limit && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    public record Match(String word, int distance) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.videosite.search;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * 索引中保存的视频文档：只包含检索与排序需要的字段
+ */
+@Value
+public class IndexedVideo {
+
+    long id;
+    String title;
+    String keywords;
+    Long uploaderId;
+    String uploaderName;
+    LocalDateTime createdAt;
+}
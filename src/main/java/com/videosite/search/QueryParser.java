@@ -0,0 +1,89 @@
+package com.videosite.search;
+
+import com.videosite.search.BooleanQuery.Clause;
+import com.videosite.search.BooleanQuery.Occur;
+import com.videosite.search.BooleanQuery.Term;
+
+/**
+ * 搜索框查询语法解析：
+ * <ul>
+ *   <li>空格、逗号、分号、井号分隔的多个词为AND关系，可用 +词 显式标记必须包含</li>
+ *   <li>-词 表示排除</li>
+ *   <li>a OR b（或 a | b）表示任一命中即可</li>
+ *   <li>"带引号的短语" 要求按原顺序连续出现</li>
+ * </ul>
+ */
+public final class QueryParser {
+
+    private static final String OR_KEYWORD = "OR";
+
+    private QueryParser() {
+    }
+
+    public static BooleanQuery parse(String input) {
+        BooleanQuery query = new BooleanQuery();
+        if (input == null) {
+            return query;
+        }
+
+        boolean pendingOr = false;
+        int i = 0;
+        int length = input.length();
+        while (i < length) {
+            char c = input.charAt(i);
+            if (isSeparator(c)) {
+                i++;
+                continue;
+            }
+
+            Occur occur = Occur.MUST;
+            boolean explicit = false;
+            if (c == '+' || c == '-') {
+                occur = c == '-' ? Occur.MUST_NOT : Occur.MUST;
+                explicit = true;
+                i++;
+                if (i >= length) {
+                    break;
+                }
+                c = input.charAt(i);
+            }
+
+            Term term;
+            if (c == '"') {
+                int close = input.indexOf('"', i + 1);
+                int end = close < 0 ? length : close;
+                term = new Term(input.substring(i + 1, end).trim().toLowerCase(), true);
+                i = close < 0 ? length : close + 1;
+            } else {
+                int end = i;
+                while (end < length && !isSeparator(input.charAt(end)) && input.charAt(end) != '"') {
+                    end++;
+                }
+                String word = input.substring(i, end);
+                i = end;
+                if (!explicit && (OR_KEYWORD.equals(word) || "|".equals(word))) {
+                    pendingOr = true;
+                    continue;
+                }
+                term = new Term(word.toLowerCase(), false);
+            }
+
+            if (term.getText().isEmpty()) {
+                continue;
+            }
+
+            Clause last = query.lastClause();
+            if (pendingOr && occur == Occur.MUST && last != null && last.getOccur() == Occur.MUST) {
+                last.getTerms().add(term);
+            } else {
+                query.addClause(new Clause(occur, term));
+            }
+            pendingOr = false;
+        }
+        return query;
+    }
+
+    private static boolean isSeparator(char c) {
+        return Character.isWhitespace(c) || c == ',' || c == '，' || c == ';' || c == '#';
+    }
+}
@@ -0,0 +1,8 @@
+package com.videosite.search;
+
+/**
+ * 参与检索与打分的文档字段
+ */
+public enum SearchField {
+    TITLE, KEYWORDS, UPLOADER
+}
@@ -0,0 +1,19 @@
+package com.videosite.search;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * 索引检索结果：命中总数与当前页的视频ID（已排序）
+ */
+@Value
+public class SearchHits {
+
+    long total;
+    List<Long> ids;
+
+    public static SearchHits empty() {
+        return new SearchHits(0, List.of());
+    }
+}
@@ -0,0 +1,586 @@
+package com.videosite.search;
+
+import com.videosite.search.BooleanQuery.Clause;
+import com.videosite.search.BooleanQuery.Occur;
+import com.videosite.search.BooleanQuery.Term;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 标题、关键词、上传者用户名的内存倒排索引。
+ * 每个词的倒排表是一个压缩位图（RoaringBitmap），布尔查询编译为位图的与、或、差运算；
+ * 词典有序存储，查询词按前缀匹配索引词；中文查询被切成二元组后变为倒排表求交，无需子串扫描。
+ * 视频ID自增且与创建时间同序，按ID倒序遍历即为最新优先。
+ * 相关度排序时对命中文档按BM25打分，只用容量为 offset+limit 的小顶堆保留前k个，不对全部命中排序。
+ * 零结果时在同一有序词典上按编辑距离查找拉丁/数字词进行纠错
+ */
+public class SearchIndex {
+
+    private static final SearchField[] FIELDS = SearchField.values();
+    private static final int MIN_CORRECTABLE_LENGTH = 3;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, RoaringBitmap> postings = new TreeMap<>();
+    private final Map<Integer, IndexedVideo> documents = new HashMap<>();
+    private final Map<Integer, DocumentStats> documentStats = new HashMap<>();
+    private final long[] fieldLengthTotals = new long[FIELDS.length];
+    private final RoaringBitmap allDocuments = new RoaringBitmap();
+
+    /** 堆顶为当前最差的候选：分数低者更差，同分时较旧（ID小）者更差 */
+    private static final Comparator<ScoredDocument> WORST_FIRST =
+            Comparator.comparingDouble(ScoredDocument::score).thenComparingInt(ScoredDocument::docId);
+
+    /**
+     * 添加或替换文档
+     */
+    public void add(IndexedVideo video) {
+        int docId = toDocId(video.getId());
+        DocumentStats stats = analyze(video);
+        lock.writeLock().lock();
+        try {
+            removeInternal(docId);
+            documents.put(docId, video);
+            documentStats.put(docId, stats);
+            allDocuments.add(docId);
+            for (int f = 0; f < FIELDS.length; f++) {
+                fieldLengthTotals[f] += stats.fieldLengths[f];
+            }
+            for (String term : stats.termFrequencies.keySet()) {
+                postings.computeIfAbsent(term, t -> new RoaringBitmap()).add(docId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除文档
+     */
+    public void remove(long videoId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(toDocId(videoId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 获取某上传者的全部文档
+     */
+    public List<IndexedVideo> findByUploader(Long uploaderId) {
+        lock.readLock().lock();
+        try {
+            List<IndexedVideo> result = new ArrayList<>();
+            for (IndexedVideo video : documents.values()) {
+                if (uploaderId.equals(video.getUploaderId())) {
+                    result.add(video);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 执行布尔查询：返回命中总数及最新优先的一页文档ID
+     */
+    public SearchHits search(BooleanQuery query, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matched = evaluate(query, new HashMap<>());
+            if (matched == null || matched.isEmpty()) {
+                return SearchHits.empty();
+            }
+
+            List<Long> page = new ArrayList<>(limit);
+            IntIterator iterator = matched.getReverseIntIterator();
+            int position = 0;
+            while (iterator.hasNext() && page.size() < limit) {
+                int docId = iterator.next();
+                if (position++ >= offset) {
+                    page.add((long) docId);
+                }
+            }
+            return new SearchHits(matched.getLongCardinality(), page);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 键集分页（最新优先）：返回ID小于beforeId的最多limit个命中，按ID倒序。
+     * beforeId为null时从最新开始；用rank定位游标，select逐个取值，不遍历游标之前的命中
+     */
+    public SearchHits searchOlderThan(BooleanQuery query, Long beforeId, int limit) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matched = evaluate(query, new HashMap<>());
+            if (matched == null || matched.isEmpty()) {
+                return SearchHits.empty();
+            }
+            long below = beforeId == null ? matched.getLongCardinality() : rankBelow(matched, beforeId);
+            List<Long> ids = new ArrayList<>(limit);
+            for (long position = below - 1; position >= 0 && ids.size() < limit; position--) {
+                ids.add(Integer.toUnsignedLong(matched.select((int) position)));
+            }
+            return new SearchHits(matched.getLongCardinality(), ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 键集分页向前翻：返回ID大于afterId的最多limit个命中，按ID正序（离游标最近的在前）
+     */
+    public SearchHits searchNewerThan(BooleanQuery query, long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matched = evaluate(query, new HashMap<>());
+            if (matched == null || matched.isEmpty()) {
+                return SearchHits.empty();
+            }
+            long total = matched.getLongCardinality();
+            List<Long> ids = new ArrayList<>(limit);
+            for (long position = rankBelow(matched, afterId + 1); position < total && ids.size() < limit; position++) {
+                ids.add(Integer.toUnsignedLong(matched.select((int) position)));
+            }
+            return new SearchHits(total, ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 位图中小于id的元素个数
+     */
+    private static long rankBelow(RoaringBitmap bitmap, long id) {
+        if (id <= 0) {
+            return 0;
+        }
+        if (id > Integer.MAX_VALUE) {
+            return bitmap.getLongCardinality();
+        }
+        return bitmap.rankLong((int) (id - 1));
+    }
+
+    /**
+     * 按BM25相关度执行布尔查询：位图求出命中集合后逐个打分，小顶堆只保留前 offset+limit 个
+     */
+    public SearchHits searchRanked(BooleanQuery query, int offset, int limit, Bm25Params params) {
+        lock.readLock().lock();
+        try {
+            Map<String, RoaringBitmap> prefixCache = new HashMap<>();
+            RoaringBitmap matched = evaluate(query, prefixCache);
+            if (matched == null || matched.isEmpty()) {
+                return SearchHits.empty();
+            }
+
+            List<ScoringToken> scoringTokens = scoringTokens(query, prefixCache);
+            int k = (int) Math.min((long) offset + limit, matched.getLongCardinality());
+            if (k <= offset) {
+                return new SearchHits(matched.getLongCardinality(), List.of());
+            }
+
+            double[] averageLengths = averageFieldLengths();
+            PriorityQueue<ScoredDocument> heap = new PriorityQueue<>(k + 1, WORST_FIRST);
+            IntIterator iterator = matched.getIntIterator();
+            while (iterator.hasNext()) {
+                int docId = iterator.next();
+                ScoredDocument candidate = new ScoredDocument(docId,
+                        score(documentStats.get(docId), scoringTokens, averageLengths, params));
+                if (heap.size() < k) {
+                    heap.add(candidate);
+                } else if (WORST_FIRST.compare(candidate, heap.peek()) > 0) {
+                    heap.poll();
+                    heap.add(candidate);
+                }
+            }
+
+            // 依次弹出最差者，倒序填充即为从高到低
+            long[] ranked = new long[heap.size()];
+            for (int i = ranked.length - 1; i >= 0; i--) {
+                ranked[i] = heap.poll().docId();
+            }
+            List<Long> page = new ArrayList<>(ranked.length - offset);
+            for (int i = offset; i < ranked.length; i++) {
+                page.add(ranked[i]);
+            }
+            return new SearchHits(matched.getLongCardinality(), page);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 拼写纠错：对正向非短语查询项中在词典里没有任何前缀匹配的拉丁/数字词，
+     * 在有序词典上查找编辑距离1（长度≤4）或2以内的词，取距离最小、文档频率最高者替换。
+     * 没有可纠正的词时返回null
+     */
+    public BooleanQuery correct(BooleanQuery query) {
+        lock.readLock().lock();
+        try {
+            BooleanQuery corrected = new BooleanQuery();
+            boolean changed = false;
+            for (Clause clause : query.getClauses()) {
+                Clause copy = null;
+                for (Term term : clause.getTerms()) {
+                    Term correctedTerm = term;
+                    if (clause.getOccur() == Occur.MUST && !term.isPhrase()) {
+                        String text = term.getText();
+                        for (String token : TextTokenizer.tokenize(text)) {
+                            if (!isCorrectable(token) || hasPrefix(token)) {
+                                continue;
+                            }
+                            String replacement = closestTerm(token);
+                            if (replacement != null) {
+                                text = replaceToken(text, token, replacement);
+                            }
+                        }
+                        if (!text.equals(term.getText())) {
+                            correctedTerm = new Term(text, false);
+                            changed = true;
+                        }
+                    }
+                    if (copy == null) {
+                        copy = new Clause(clause.getOccur(), correctedTerm);
+                    } else {
+                        copy.getTerms().add(correctedTerm);
+                    }
+                }
+                corrected.addClause(copy);
+            }
+            return changed ? corrected : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 替换text中作为完整拉丁/数字词出现的token（不区分大小写），包含它的更长的词保持不变
+     */
+    static String replaceToken(String text, String token, String replacement) {
+        StringBuilder result = new StringBuilder(text.length());
+        int i = 0;
+        while (i < text.length()) {
+            int end = i + token.length();
+            if (text.regionMatches(true, i, token, 0, token.length())
+                    && (i == 0 || !isLatinWordChar(text.codePointBefore(i)))
+                    && (end >= text.length() || !isLatinWordChar(text.codePointAt(end)))) {
+                result.append(replacement);
+                i = end;
+            } else {
+                result.append(text.charAt(i));
+                i++;
+            }
+        }
+        return result.toString();
+    }
+
+    private static boolean isLatinWordChar(int codePoint) {
+        return Character.isLetterOrDigit(codePoint) && !TextTokenizer.isCjk(codePoint);
+    }
+
+    private String closestTerm(String token) {
+        int maxDistance = token.codePointCount(0, token.length()) <= 4 ? 1 : 2;
+        String best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        long bestFrequency = -1;
+        for (FuzzyMatcher.Match match : FuzzyMatcher.search(postings, token, maxDistance)) {
+            if (!isCorrectable(match.word())) {
+                continue;
+            }
+            long frequency = postings.get(match.word()).getLongCardinality();
+            if (match.distance() < bestDistance
+                    || (match.distance() == bestDistance && frequency > bestFrequency)) {
+                best = match.word();
+                bestDistance = match.distance();
+                bestFrequency = frequency;
+            }
+        }
+        return best;
+    }
+
+    private boolean hasPrefix(String token) {
+        String ceiling = postings.ceilingKey(token);
+        return ceiling != null && ceiling.startsWith(token);
+    }
+
+    /**
+     * 只纠正足够长、不含中日韩文字的词；CJK查询已按二元组切分，编辑距离意义不大
+     */
+    private static boolean isCorrectable(String term) {
+        if (term.length() < MIN_CORRECTABLE_LENGTH) {
+            return false;
+        }
+        return term.codePoints().noneMatch(TextTokenizer::isCjk);
+    }
+
+    /**
+     * 正向查询项分词后的打分词及其IDF；文档频率取前缀匹配后的倒排表基数
+     */
+    private List<ScoringToken> scoringTokens(BooleanQuery query, Map<String, RoaringBitmap> prefixCache) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (Term term : query.positiveTerms()) {
+            tokens.addAll(TextTokenizer.tokenize(term.getText()));
+        }
+        long totalDocuments = documents.size();
+        List<ScoringToken> result = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            long documentFrequency = prefixCache.computeIfAbsent(token, this::matchPrefix).getLongCardinality();
+            if (documentFrequency == 0) {
+                continue;
+            }
+            double idf = Math.log(1 + (totalDocuments - documentFrequency + 0.5) / (documentFrequency + 0.5));
+            result.add(new ScoringToken(token, idf));
+        }
+        return result;
+    }
+
+    /**
+     * BM25F打分：各字段词频按字段权重与长度归一化后先加权求和，再统一做词频饱和
+     */
+    private static double score(DocumentStats stats, List<ScoringToken> tokens,
+                                double[] averageLengths, Bm25Params params) {
+        double score = 0;
+        for (ScoringToken token : tokens) {
+            double weightedFrequency = 0;
+            for (Map.Entry<String, int[]> entry : stats.termFrequencies.entrySet()) {
+                if (!entry.getKey().startsWith(token.text())) {
+                    continue;
+                }
+                int[] frequencies = entry.getValue();
+                for (int f = 0; f < FIELDS.length; f++) {
+                    if (frequencies[f] == 0) {
+                        continue;
+                    }
+                    double norm = 1 - params.getB() + params.getB() * stats.fieldLengths[f] / averageLengths[f];
+                    weightedFrequency += params.weight(FIELDS[f]) * frequencies[f] / norm;
+                }
+            }
+            if (weightedFrequency > 0) {
+                score += token.idf() * weightedFrequency * (params.getK1() + 1) / (params.getK1() + weightedFrequency);
+            }
+        }
+        return score;
+    }
+
+    private double[] averageFieldLengths() {
+        double[] averages = new double[FIELDS.length];
+        int count = Math.max(documents.size(), 1);
+        for (int f = 0; f < FIELDS.length; f++) {
+            averages[f] = Math.max((double) fieldLengthTotals[f] / count, 1.0);
+        }
+        return averages;
+    }
+
+    /**
+     * 将查询编译为位图运算：MUST子句求交，子句内各项求并，再减去MUST_NOT子句
+     */
+    private RoaringBitmap evaluate(BooleanQuery query, Map<String, RoaringBitmap> prefixCache) {
+        RoaringBitmap included = null;
+        RoaringBitmap excluded = new RoaringBitmap();
+
+        for (Clause clause : query.getClauses()) {
+            RoaringBitmap clauseBitmap = null;
+            for (Term term : clause.getTerms()) {
+                RoaringBitmap termBitmap = evaluateTerm(term, prefixCache);
+                if (termBitmap != null) {
+                    clauseBitmap = clauseBitmap == null ? termBitmap : RoaringBitmap.or(clauseBitmap, termBitmap);
+                }
+            }
+            if (clauseBitmap == null) {
+                continue;
+            }
+
+            if (clause.getOccur() == Occur.MUST_NOT) {
+                excluded.or(clauseBitmap);
+            } else {
+                included = included == null ? clauseBitmap : RoaringBitmap.and(included, clauseBitmap);
+                if (included.isEmpty()) {
+                    return included;
+                }
+            }
+        }
+
+        if (included == null) {
+            if (excluded.isEmpty()) {
+                return null;
+            }
+            // 只有排除条件时从全部文档中减去
+            included = allDocuments;
+        }
+        return RoaringBitmap.andNot(included, excluded);
+    }
+
+    /**
+     * 查询项求值：分词后各词的前缀倒排表求交；短语再校验同一字段中是否按顺序连续出现
+     */
+    private RoaringBitmap evaluateTerm(Term term, Map<String, RoaringBitmap> prefixCache) {
+        List<String> tokens = TextTokenizer.tokenize(term.getText());
+        if (tokens.isEmpty()) {
+            return null;
+        }
+
+        RoaringBitmap result = null;
+        for (String token : tokens) {
+            RoaringBitmap tokenBitmap = prefixCache.computeIfAbsent(token, this::matchPrefix);
+            result = result == null ? tokenBitmap : RoaringBitmap.and(result, tokenBitmap);
+            if (result.isEmpty()) {
+                return result;
+            }
+        }
+
+        if (term.isPhrase() && tokens.size() > 1) {
+            List<String> phrase = TextTokenizer.tokenStream(term.getText());
+            RoaringBitmap verified = new RoaringBitmap();
+            result.forEach((int docId) -> {
+                if (containsPhrase(documents.get(docId), phrase)) {
+                    verified.add(docId);
+                }
+            });
+            return verified;
+        }
+        return result;
+    }
+
+    /**
+     * 合并所有以查询词为前缀的索引词的倒排表
+     */
+    private RoaringBitmap matchPrefix(String token) {
+        RoaringBitmap exact = postings.get(token);
+        RoaringBitmap result = exact != null ? exact.clone() : new RoaringBitmap();
+        for (Map.Entry<String, RoaringBitmap> entry : postings.tailMap(token, false).entrySet()) {
+            if (!entry.getKey().startsWith(token)) {
+                break;
+            }
+            result.or(entry.getValue());
+        }
+        return result;
+    }
+
+    private void removeInternal(int docId) {
+        documents.remove(docId);
+        allDocuments.remove(docId);
+        DocumentStats stats = documentStats.remove(docId);
+        if (stats == null) {
+            return;
+        }
+        for (int f = 0; f < FIELDS.length; f++) {
+            fieldLengthTotals[f] -= stats.fieldLengths[f];
+        }
+        for (String term : stats.termFrequencies.keySet()) {
+            RoaringBitmap ids = postings.get(term);
+            if (ids != null) {
+                ids.remove(docId);
+                if (ids.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    private static int toDocId(long videoId) {
+        return Math.toIntExact(videoId);
+    }
+
+    /**
+     * 短语的分词序列是否在某一个字段的分词序列中连续出现（不跨字段，不匹配词的一部分）
+     */
+    static boolean containsPhrase(IndexedVideo video, List<String> phrase) {
+        for (String text : new String[]{video.getTitle(), video.getKeywords(), video.getUploaderName()}) {
+            if (containsSequence(TextTokenizer.tokenStream(text), phrase)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsSequence(List<String> tokens, List<String> phrase) {
+        for (int start = 0; start + phrase.size() <= tokens.size(); start++) {
+            int i = 0;
+            while (i < phrase.size() && phraseTokenMatches(phrase.get(i), tokens.get(start + i))) {
+                i++;
+            }
+            if (i == phrase.size()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 短语中CJK段末尾的单字在文档里通常是下一个二元组的首字（"厨房" -> 厨房、房 对应 "厨房教程" -> 厨房、房教），
+     * 因此单个CJK字只要求是文档词的前缀，其余词须完全相同
+     */
+    private static boolean phraseTokenMatches(String phraseToken, String token) {
+        if (token.equals(phraseToken)) {
+            return true;
+        }
+        int codePoint = phraseToken.codePointAt(0);
+        return Character.charCount(codePoint) == phraseToken.length()
+                && TextTokenizer.isCjk(codePoint)
+                && token.startsWith(phraseToken);
+    }
+
+    /**
+     * 文档分词并统计各字段词频与长度：标题与关键词使用CJK二元组分词；用户名既整体作为一个词，也参与分词
+     */
+    static DocumentStats analyze(IndexedVideo video) {
+        DocumentStats stats = new DocumentStats();
+        stats.addAll(SearchField.TITLE, TextTokenizer.tokenStream(video.getTitle()));
+        stats.addAll(SearchField.KEYWORDS, TextTokenizer.tokenStream(video.getKeywords()));
+        if (video.getUploaderName() != null && !video.getUploaderName().isBlank()) {
+            List<String> uploaderTokens = new ArrayList<>();
+            uploaderTokens.add(video.getUploaderName().trim().toLowerCase());
+            uploaderTokens.addAll(TextTokenizer.tokenStream(video.getUploaderName()));
+            stats.addAll(SearchField.UPLOADER, uploaderTokens);
+        }
+        return stats;
+    }
+
+    /**
+     * 单个文档的词频统计：每个词在各字段中的出现次数，以及各字段的词数
+     */
+    static final class DocumentStats {
+
+        final Map<String, int[]> termFrequencies = new HashMap<>();
+        final int[] fieldLengths = new int[FIELDS.length];
+
+        void addAll(SearchField field, List<String> tokens) {
+            for (String token : tokens) {
+                termFrequencies.computeIfAbsent(token, t -> new int[FIELDS.length])[field.ordinal()]++;
+            }
+            fieldLengths[field.ordinal()] += tokens.size();
+        }
+    }
+
+    private record ScoringToken(String text, double idf) {
+    }
+
+    private record ScoredDocument(int docId, double score) {
+    }
+}
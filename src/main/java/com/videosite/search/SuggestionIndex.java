@@ -0,0 +1,369 @@
+package com.videosite.search;
+
+import com.videosite.util.KeywordUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 搜索联想索引：以标题、规范化关键词、上传者用户名为候选词建立前缀树，
+ * 候选词权重为贡献它的各视频播放量之和（每个视频至少计1）。
+ * 子节点用有序char数组与节点数组保存，不为每个节点分配Map；
+ * 每个节点缓存其子树中权重最高的前k个候选，查询只需沿前缀走到节点后直接返回缓存
+ */
+public class SuggestionIndex {
+
+    private static final int MAX_PHRASE_LENGTH = 64;
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    /** 权重高者在前，同权重按字典序 */
+    private static final Comparator<Entry> RANKING =
+            Comparator.comparingLong((Entry e) -> e.weight).reversed().thenComparing(e -> e.key);
+
+    private final int topK;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node();
+    private final Map<Long, Contribution> contributions = new HashMap<>();
+
+    public SuggestionIndex(int topK) {
+        this.topK = topK;
+    }
+
+    /**
+     * 添加或替换某视频贡献的候选词
+     */
+    public void put(long videoId, String title, String keywords, String uploaderName, long viewsTotal) {
+        Map<String, String> phrases = new LinkedHashMap<>();
+        addPhrase(phrases, title);
+        String normalizedKeywords = KeywordUtils.normalizeKeywords(keywords);
+        if (normalizedKeywords != null && !normalizedKeywords.isEmpty()) {
+            for (String keyword : normalizedKeywords.split(",")) {
+                addPhrase(phrases, keyword);
+            }
+        }
+        addPhrase(phrases, uploaderName);
+
+        Contribution contribution = new Contribution(phrases, Math.max(viewsTotal, 0) + 1);
+        lock.writeLock().lock();
+        try {
+            Contribution previous = contributions.put(videoId, contribution);
+            if (previous != null) {
+                withdraw(previous);
+            }
+            for (Map.Entry<String, String> phrase : phrases.entrySet()) {
+                increase(phrase.getKey(), phrase.getValue(), contribution.weight, true);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 视频文本变化（如上传者改名）后重新登记候选词，保留已累计的权重
+     */
+    public void replace(long videoId, String title, String keywords, String uploaderName) {
+        lock.writeLock().lock();
+        try {
+            Contribution previous = contributions.get(videoId);
+            if (previous != null) {
+                put(videoId, title, keywords, uploaderName, previous.weight - 1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除某视频贡献的候选词
+     */
+    public void remove(long videoId) {
+        lock.writeLock().lock();
+        try {
+            Contribution previous = contributions.remove(videoId);
+            if (previous != null) {
+                withdraw(previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 播放量增长后提升该视频所有候选词的权重
+     */
+    public void addViews(long videoId, long views) {
+        if (views <= 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Contribution contribution = contributions.get(videoId);
+            if (contribution == null) {
+                return;
+            }
+            contribution.weight += views;
+            for (Map.Entry<String, String> phrase : contribution.phrases.entrySet()) {
+                increase(phrase.getKey(), phrase.getValue(), views, false);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 返回以prefix开头、权重最高的候选词（最多topK个）
+     */
+    public List<String> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null) {
+                return List.of();
+            }
+            int count = Math.min(limit, node.top.length);
+            List<String> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(node.top[i].text);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return contributions.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void withdraw(Contribution contribution) {
+        for (String key : contribution.phrases.keySet()) {
+            decrease(key, contribution.weight);
+        }
+    }
+
+    /**
+     * 增加候选词权重：权重只升不降，沿路径把该候选插入或上移到各节点的前k缓存即可
+     */
+    private void increase(String key, String text, long weight, boolean newReference) {
+        Node[] path = new Node[key.length() + 1];
+        path[0] = root;
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.getOrCreateChild(key.charAt(i));
+            path[i + 1] = node;
+        }
+
+        Entry entry = node.terminal;
+        if (entry == null) {
+            entry = new Entry(key, text);
+            node.terminal = entry;
+        }
+        entry.weight += weight;
+        if (newReference) {
+            entry.references++;
+        }
+
+        for (int i = path.length - 1; i >= 0; i--) {
+            promote(path[i], entry);
+        }
+    }
+
+    /**
+     * 减少候选词权重：被挤出的候选可能重新进入前k，因此自底向上用子节点缓存重新合并
+     */
+    private void decrease(String key, long weight) {
+        Node[] path = new Node[key.length() + 1];
+        path[0] = root;
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.child(key.charAt(i));
+            if (node == null) {
+                return;
+            }
+            path[i + 1] = node;
+        }
+
+        Entry entry = node.terminal;
+        if (entry == null) {
+            return;
+        }
+        entry.weight -= weight;
+        if (--entry.references <= 0) {
+            node.terminal = null;
+        }
+
+        for (int i = path.length - 1; i >= 0; i--) {
+            Node current = path[i];
+            if (i > 0 && current.terminal == null && current.labels.length == 0) {
+                path[i - 1].removeChild(key.charAt(i - 1));
+                continue;
+            }
+            recompute(current);
+        }
+    }
+
+    private void promote(Node node, Entry entry) {
+        Entry[] top = node.top;
+        int index = -1;
+        for (int i = 0; i < top.length; i++) {
+            if (top[i] == entry) {
+                index = i;
+                break;
+            }
+        }
+        if (index < 0) {
+            if (top.length == topK && RANKING.compare(entry, top[topK - 1]) >= 0) {
+                return;
+            }
+            top = Arrays.copyOf(top, Math.min(top.length + 1, topK));
+            index = top.length - 1;
+            top[index] = entry;
+            node.top = top;
+        }
+        while (index > 0 && RANKING.compare(top[index], top[index - 1]) < 0) {
+            Entry swap = top[index - 1];
+            top[index - 1] = top[index];
+            top[index] = swap;
+            index--;
+        }
+    }
+
+    private void recompute(Node node) {
+        List<Entry> candidates = new ArrayList<>();
+        if (node.terminal != null) {
+            candidates.add(node.terminal);
+        }
+        for (Node child : node.children) {
+            candidates.addAll(Arrays.asList(child.top));
+        }
+        candidates.sort(RANKING);
+        node.top = candidates.isEmpty()
+                ? NO_ENTRIES
+                : candidates.subList(0, Math.min(topK, candidates.size())).toArray(NO_ENTRIES);
+    }
+
+    private static void addPhrase(Map<String, String> phrases, String text) {
+        if (text == null) {
+            return;
+        }
+        String display = text.trim().replaceAll("\\s+", " ");
+        if (display.length() > MAX_PHRASE_LENGTH) {
+            display = display.substring(0, MAX_PHRASE_LENGTH);
+        }
+        String key = display.toLowerCase();
+        if (!key.isEmpty()) {
+            phrases.putIfAbsent(key, display);
+        }
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().replaceAll("\\s+", " ").toLowerCase();
+    }
+
+    /**
+     * 前缀树节点：子节点按字符有序存放，便于二分查找
+     */
+    private static final class Node {
+
+        private char[] labels = NO_LABELS;
+        private Node[] children = NO_CHILDREN;
+        private Entry terminal;
+        private Entry[] top = NO_ENTRIES;
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(labels, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node getOrCreateChild(char c) {
+            int index = Arrays.binarySearch(labels, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            System.arraycopy(labels, insertAt, newLabels, insertAt + 1, labels.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            Node child = new Node();
+            newLabels[insertAt] = c;
+            newChildren[insertAt] = child;
+            labels = newLabels;
+            children = newChildren;
+            return child;
+        }
+
+        void removeChild(char c) {
+            int index = Arrays.binarySearch(labels, c);
+            if (index < 0) {
+                return;
+            }
+            if (labels.length == 1) {
+                labels = NO_LABELS;
+                children = NO_CHILDREN;
+                return;
+            }
+            char[] newLabels = new char[labels.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(labels, index + 1, newLabels, index, labels.length - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            labels = newLabels;
+            children = newChildren;
+        }
+    }
+
+    /**
+     * 候选词：key为规范化后的小写形式，text为展示文本
+     */
+    private static final class Entry {
+
+        private final String key;
+        private final String text;
+        private long weight;
+        private int references;
+
+        Entry(String key, String text) {
+            this.key = key;
+            this.text = text;
+        }
+    }
+
+    /**
+     * 单个视频贡献的候选词及其权重，用于删除与权重更新
+     */
+    private static final class Contribution {
+
+        private final Map<String, String> phrases;
+        private long weight;
+
+        Contribution(Map<String, String> phrases, long weight) {
+            this.phrases = phrases;
+            this.weight = weight;
+        }
+    }
+}
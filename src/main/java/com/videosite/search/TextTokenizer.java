@@ -0,0 +1,112 @@
+package com.videosite.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 索引分词器：先按关键词分隔规则切分，再将每段拆成CJK连续段与拉丁/数字单词。
+ * CJK连续段输出重叠二元组（如"周末厨房" -> 周末、末厨、厨房）以及末字单字，
+ * 拉丁/数字段按单词输出
+ */
+public final class TextTokenizer {
+
+    /** 与关键词分隔规则相同的分隔符 */
+    private static final Pattern SEPARATORS = Pattern.compile("[,，;\\s#]+");
+
+    private TextTokenizer() {
+    }
+
+    /**
+     * 对文本分词，返回去重后的词列表（保持出现顺序）
+     */
+    public static List<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String part : split(text)) {
+            tokenizePart(part, tokens);
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    /**
+     * 对文本分词，保留重复出现的词（用于统计词频与字段长度）。
+     * 不能复用 KeywordUtils.parseKeywords，它会对切分结果去重
+     */
+    public static List<String> tokenStream(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String part : split(text)) {
+            tokenizePart(part, tokens);
+        }
+        return tokens;
+    }
+
+    /**
+     * 按分隔符切分并转小写，保留重复的段
+     */
+    private static List<String> split(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> parts = new ArrayList<>();
+        for (String part : SEPARATORS.split(text.trim())) {
+            if (!part.isEmpty()) {
+                parts.add(part.toLowerCase());
+            }
+        }
+        return parts;
+    }
+
+    private static void tokenizePart(String part, Collection<String> tokens) {
+        int i = 0;
+        int length = part.length();
+        while (i < length) {
+            int codePoint = part.codePointAt(i);
+            if (isCjk(codePoint)) {
+                int end = i;
+                while (end < length && isCjk(part.codePointAt(end))) {
+                    end += Character.charCount(part.codePointAt(end));
+                }
+                emitBigrams(part.substring(i, end), tokens);
+                i = end;
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                int end = i;
+                while (end < length) {
+                    int cp = part.codePointAt(end);
+                    if (!Character.isLetterOrDigit(cp) || isCjk(cp)) {
+                        break;
+                    }
+                    end += Character.charCount(cp);
+                }
+                tokens.add(part.substring(i, end));
+                i = end;
+            } else {
+                i += Character.charCount(codePoint);
+            }
+        }
+    }
+
+    /**
+     * CJK连续段输出重叠二元组，末字额外输出单字以支持单字查询
+     */
+    private static void emitBigrams(String run, Collection<String> tokens) {
+        int[] codePoints = run.codePoints().toArray();
+        for (int i = 0; i + 1 < codePoints.length; i++) {
+            tokens.add(new String(codePoints, i, 2));
+        }
+        tokens.add(new String(codePoints, codePoints.length - 1, 1));
+    }
+
+    /**
+     * 是否为中日韩文字
+     */
+    public static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
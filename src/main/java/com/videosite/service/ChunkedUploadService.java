@@ -0,0 +1,397 @@
+package com.videosite.service;
+
+import com.videosite.domain.entity.UploadSession;
+import com.videosite.domain.entity.Video;
+import com.videosite.repository.UploadSessionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 分片续传（tus风格）：创建会话时确定最终存储位置，每个分片按 Upload-Offset 用 FileChannel 直接写到该位置，
+ * 可选的 Upload-Checksum 校验整个分片。偏移量只在数据 force 到磁盘后才推进，断线后从已确认的偏移量继续。
+ * 写入的同时累加整个文件的SHA-256作为内容哈希，全部字节到齐后复用普通上传的登记流程
+ */
+@Slf4j
+@Service
+public class ChunkedUploadService {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final String CHECKSUM_ALGORITHM = "sha256";
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final VideoService videoService;
+    private final StorageService storageService;
+
+    /** 正在写入或正在终止的会话，同一会话不允许并发PATCH/DELETE */
+    private final Set<String> writingSessions = ConcurrentHashMap.newKeySet();
+
+    /** 各会话已确认部分的内容摘要；进程重启后丢失时从文件重新计算 */
+    private final Map<String, ContentDigest> contentDigests = new ConcurrentHashMap<>();
+
+    @Value("${app.upload.chunked.max-chunk-bytes:16777216}")
+    private long maxChunkBytes;
+
+    @Value("${app.upload.chunked.expire-hours:24}")
+    private long expireHours;
+
+    public ChunkedUploadService(UploadSessionRepository uploadSessionRepository,
+                                VideoService videoService,
+                                StorageService storageService) {
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.videoService = videoService;
+        this.storageService = storageService;
+    }
+
+    /**
+     * 创建上传会话：校验文件名、大小与表单字段，并在最终位置创建空文件
+     */
+    public UploadSession create(Long uploaderId, long uploadLength, Map<String, String> metadata) throws IOException {
+        String filename = metadata.get("filename");
+        String title = metadata.get("title");
+        String description = metadata.get("description");
+        String keywords = metadata.get("keywords");
+
+        // 与 UploadForm 的校验保持一致
+        if (title == null || title.isBlank()) {
+            throw new IllegalArgumentException("标题不能为空");
+        }
+        if (title.length() > 255) {
+            throw new IllegalArgumentException("标题长度不能超过255个字符");
+        }
+        if (description != null && description.length() > 5000) {
+            throw new IllegalArgumentException("描述长度不能超过5000个字符");
+        }
+        if (keywords != null && keywords.length() > 1000) {
+            throw new IllegalArgumentException("关键词总长度不能超过1000个字符");
+        }
+        videoService.validateUpload(filename, uploadLength);
+
+        String storagePath = storageService.generateVideoStoragePath();
+        storageService.ensureDirectoryExists(storagePath);
+        Files.createFile(storageService.getFullPath(storagePath));
+
+        LocalDateTime now = LocalDateTime.now();
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString().replace("-", ""));
+        session.setUploaderId(uploaderId);
+        session.setTitle(title);
+        session.setDescription(description);
+        session.setKeywords(keywords);
+        session.setOriginalFilename(filename);
+        session.setStoragePath(storagePath);
+        session.setUploadLength(uploadLength);
+        session.setCreatedAt(now);
+        session.setUpdatedAt(now);
+        session.setExpiresAt(now.plusHours(expireHours));
+        try {
+            uploadSessionRepository.save(session);
+        } catch (RuntimeException e) {
+            storageService.deleteFile(storagePath);
+            throw e;
+        }
+
+        log.info("创建分片上传会话: id={}, 文件={}, 大小={}", session.getId(), filename, uploadLength);
+        return session;
+    }
+
+    /**
+     * 查找当前用户的上传会话
+     */
+    public Optional<UploadSession> find(String id, Long uploaderId) {
+        return uploadSessionRepository.findById(id)
+                .filter(session -> session.getUploaderId().equals(uploaderId));
+    }
+
+    /**
+     * 在offset处追加一个分片，返回更新后的会话；最后一个分片写完后登记视频
+     */
+    public UploadSession append(UploadSession session, long offset, String checksumHeader, InputStream body)
+            throws IOException {
+        if (session.getStatus() != UploadSession.Status.ACTIVE || offset != session.getUploadOffset()) {
+            throw new OffsetMismatchException(session.getUploadOffset());
+        }
+        if (!writingSessions.add(session.getId())) {
+            throw new IllegalStateException("该上传正在由其他请求写入");
+        }
+        try {
+            // 调用方持有的会话可能在占住之前已被其他请求推进或完成，以数据库中已确认的偏移量为准
+            long persistedOffset = uploadSessionRepository.findOffset(session.getId(), UploadSession.Status.ACTIVE)
+                    .orElseThrow(() -> new IllegalStateException("该上传已完成或已终止"));
+            if (offset != persistedOffset) {
+                throw new OffsetMismatchException(persistedOffset);
+            }
+            // 上次传完但登记失败时，客户端以空分片重试即可完成登记
+            if (offset < session.getUploadLength()) {
+                long newOffset = writeChunk(session, offset, parseChecksum(checksumHeader), body);
+                LocalDateTime now = LocalDateTime.now();
+                int updated = uploadSessionRepository.advanceOffset(session.getId(), offset, newOffset,
+                        UploadSession.Status.ACTIVE, now, now.plusHours(expireHours));
+                if (updated == 0) {
+                    throw new OffsetMismatchException(offset);
+                }
+                session.setUploadOffset(newOffset);
+            }
+            if (session.getUploadOffset().equals(session.getUploadLength())) {
+                complete(session);
+            }
+            return session;
+        } finally {
+            writingSessions.remove(session.getId());
+        }
+    }
+
+    /**
+     * 放弃上传：删除未完成的文件与会话。有分片正在写入时拒绝，删除期间同样占住会话，不允许新的分片写入
+     */
+    public void terminate(UploadSession session) {
+        if (!writingSessions.add(session.getId())) {
+            throw new IllegalStateException("该上传正在由其他请求写入，请稍后再终止");
+        }
+        try {
+            if (session.getStatus() == UploadSession.Status.ACTIVE) {
+                storageService.deleteFile(session.getStoragePath());
+            }
+            uploadSessionRepository.delete(session);
+            contentDigests.remove(session.getId());
+        } finally {
+            writingSessions.remove(session.getId());
+        }
+        log.info("终止分片上传会话: id={}", session.getId());
+    }
+
+    /**
+     * 清理过期会话：未完成的连同已写入的文件一起删除
+     */
+    @Scheduled(fixedDelayString = "${app.upload.chunked.cleanup-interval-ms:3600000}")
+    public void cleanupExpiredSessions() {
+        for (UploadSession session : uploadSessionRepository.findByExpiresAtBefore(LocalDateTime.now())) {
+            if (writingSessions.contains(session.getId())) {
+                continue;
+            }
+            if (session.getStatus() == UploadSession.Status.ACTIVE) {
+                log.info("清理过期的分片上传: id={}, 已上传{}/{}字节",
+                        session.getId(), session.getUploadOffset(), session.getUploadLength());
+                storageService.deleteFile(session.getStoragePath());
+            }
+            uploadSessionRepository.delete(session);
+            contentDigests.remove(session.getId());
+        }
+    }
+
+    /**
+     * 解析tus的 Upload-Metadata 头：逗号分隔的 "键 Base64值" 对
+     */
+    public static Map<String, String> parseMetadata(String header) {
+        Map<String, String> metadata = new HashMap<>();
+        if (header == null || header.isBlank()) {
+            return metadata;
+        }
+        for (String pair : header.split(",")) {
+            String[] parts = pair.trim().split(" ", 2);
+            if (parts[0].isEmpty()) {
+                continue;
+            }
+            try {
+                String value = parts.length > 1
+                        ? new String(Base64.getDecoder().decode(parts[1].trim()), StandardCharsets.UTF_8)
+                        : "";
+                metadata.put(parts[0], value);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Upload-Metadata 格式不正确: " + parts[0]);
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * 把请求体写到文件的offset处，返回新的偏移量。
+     * 带校验和时分片必须完整且校验通过，否则丢弃整个分片；不带校验和时连接中断前收到的字节照常保留
+     */
+    private long writeChunk(UploadSession session, long offset, byte[] expectedChecksum, InputStream body)
+            throws IOException {
+        long limit = Math.min(session.getUploadLength() - offset, maxChunkBytes);
+        MessageDigest digest = expectedChecksum != null ? StorageService.newSha256() : null;
+        MessageDigest content = contentDigestAt(session, offset);
+        Path path = storageService.getFullPath(session.getStoragePath());
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+             ReadableByteChannel in = Channels.newChannel(body)) {
+            // 丢弃上次未确认的残留字节
+            discardUnconfirmed(channel, session, offset);
+            channel.position(offset);
+
+            ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+            long written = 0;
+            try {
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    if (written + read > limit) {
+                        discardUnconfirmed(channel, session, offset);
+                        throw new ChunkTooLargeException(limit);
+                    }
+                    buffer.flip();
+                    if (digest != null) {
+                        digest.update(buffer.duplicate());
+                    }
+                    content.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    buffer.clear();
+                    written += read;
+                }
+            } catch (IOException e) {
+                if (digest != null || written == 0) {
+                    discardUnconfirmed(channel, session, offset);
+                    throw e;
+                }
+                channel.force(false);
+                if (advanceAfterAbort(session, offset, offset + written)) {
+                    contentDigests.put(session.getId(), new ContentDigest(content, offset + written));
+                }
+                throw e;
+            }
+
+            if (digest != null && !MessageDigest.isEqual(digest.digest(), expectedChecksum)) {
+                discardUnconfirmed(channel, session, offset);
+                throw new ChecksumMismatchException();
+            }
+            // 先落盘再推进偏移量，保证已确认的字节在崩溃后仍然存在
+            channel.force(false);
+            contentDigests.put(session.getId(), new ContentDigest(content, offset + written));
+            return offset + written;
+        }
+    }
+
+    /**
+     * 截掉offset之后未确认的字节；截断位置不低于数据库中已确认的偏移量，已确认的字节绝不会被丢弃
+     */
+    private void discardUnconfirmed(FileChannel channel, UploadSession session, long offset) throws IOException {
+        long persistedOffset = uploadSessionRepository.findOffset(session.getId(), UploadSession.Status.ACTIVE)
+                .orElse(offset);
+        channel.truncate(Math.max(offset, persistedOffset));
+    }
+
+    /**
+     * 无校验和的分片在中途断开时，保留已落盘的部分以便从断点续传；
+     * 偏移量已被其他请求修改时返回false，此时不推进也不截断，由客户端HEAD查询后重传
+     */
+    private boolean advanceAfterAbort(UploadSession session, long offset, long newOffset) {
+        LocalDateTime now = LocalDateTime.now();
+        int updated = uploadSessionRepository.advanceOffset(session.getId(), offset, newOffset,
+                UploadSession.Status.ACTIVE, now, now.plusHours(expireHours));
+        if (updated == 0) {
+            log.warn("分片上传连接中断，但偏移量已被其他请求修改，未推进: id={}, offset={}", session.getId(), offset);
+            return false;
+        }
+        log.info("分片上传连接中断，保留已接收的字节: id={}, offset={}", session.getId(), newOffset);
+        return true;
+    }
+
+    /**
+     * 已确认到offset的内容摘要副本：内存中的摘要不在该位置（进程重启或上次写入未确认）时从文件重新计算
+     */
+    private MessageDigest contentDigestAt(UploadSession session, long offset) throws IOException {
+        ContentDigest current = contentDigests.get(session.getId());
+        if (current != null && current.offset() == offset) {
+            try {
+                return (MessageDigest) current.digest().clone();
+            } catch (CloneNotSupportedException e) {
+                // 退回到重新计算
+            }
+        }
+        return storageService.digestPrefix(session.getStoragePath(), offset);
+    }
+
+    private void complete(UploadSession session) throws IOException {
+        String contentHash = HexFormat.of().formatHex(
+                contentDigestAt(session, session.getUploadLength()).digest());
+        Video video = videoService.registerUpload(session.getTitle(), session.getDescription(), session.getKeywords(),
+                session.getOriginalFilename(), session.getStoragePath(), session.getUploadLength(),
+                session.getUploaderId(), contentHash);
+        contentDigests.remove(session.getId());
+        session.setStatus(UploadSession.Status.COMPLETED);
+        session.setVideoId(video.getId());
+        session.setUpdatedAt(LocalDateTime.now());
+        uploadSessionRepository.save(session);
+        log.info("分片上传完成: id={}, videoId={}", session.getId(), video.getId());
+    }
+
+    private static byte[] parseChecksum(String header) {
+        if (header == null || header.isBlank()) {
+            return null;
+        }
+        String[] parts = header.trim().split(" ", 2);
+        if (parts.length != 2 || !CHECKSUM_ALGORITHM.equalsIgnoreCase(parts[0])) {
+            throw new IllegalArgumentException("只支持 sha256 校验和");
+        }
+        try {
+            return Base64.getDecoder().decode(parts[1].trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Upload-Checksum 格式不正确");
+        }
+    }
+
+    private record ContentDigest(MessageDigest digest, long offset) {
+    }
+
+    /**
+     * 请求的偏移量与服务端已确认的偏移量不一致，客户端应先用HEAD查询后重传
+     */
+    public static class OffsetMismatchException extends IllegalStateException {
+
+        private final long currentOffset;
+
+        public OffsetMismatchException(long currentOffset) {
+            super("上传偏移量不一致，当前偏移量为" + currentOffset);
+            this.currentOffset = currentOffset;
+        }
+
+        public long getCurrentOffset() {
+            return currentOffset;
+        }
+    }
+
+    /**
+     * 分片校验和不匹配，分片已被丢弃
+     */
+    public static class ChecksumMismatchException extends IllegalArgumentException {
+
+        public ChecksumMismatchException() {
+            super("分片校验和不匹配");
+        }
+    }
+
+    /**
+     * 分片超过单次上限或超出文件总长度
+     */
+    public static class ChunkTooLargeException extends IllegalArgumentException {
+
+        public ChunkTooLargeException(long limit) {
+            super("分片过大，本次最多接收" + limit + "字节");
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.videosite.service;
+
+import com.videosite.domain.entity.Video;
+import com.videosite.domain.event.CountersFlushedEvent;
+import com.videosite.domain.event.VideoDeletedEvent;
+import com.videosite.dto.stats.CounterDelta;
+import com.videosite.ranking.TopKBoard;
+import com.videosite.repository.VideoDailyStatsRepository;
+import com.videosite.repository.VideoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 内存排行榜：播放榜、下载榜与近期热度榜各保留前capacity名。
+ * 启动时和之后每隔一段时间从数据库按LIMIT取前K名重建，期间由计数刷写事件增量更新，
+ * 读取前n名只需遍历榜单并按ID回表n行
+ */
+@Slf4j
+@Service
+public class LeaderboardService {
+
+    private static final int TOTALS_BATCH_SIZE = 500;
+
+    private final VideoRepository videoRepository;
+    private final VideoDailyStatsRepository videoDailyStatsRepository;
+
+    private final int capacity;
+    private final TopKBoard viewsBoard;
+    private final TopKBoard downloadsBoard;
+    private final TopKBoard trendingBoard;
+
+    /** 热度得分的基准日：得分以基准日的播放量为单位，排名与随时间整体衰减的公共因子无关 */
+    private volatile LocalDate trendingLandmark = LocalDate.now();
+
+    @Value("${app.leaderboard.trending-half-life-hours:48}")
+    private double trendingHalfLifeHours;
+
+    @Value("${app.leaderboard.trending-window-days:7}")
+    private int trendingWindowDays;
+
+    public LeaderboardService(VideoRepository videoRepository,
+                              VideoDailyStatsRepository videoDailyStatsRepository,
+                              @Value("${app.leaderboard.capacity:100}") int capacity) {
+        this.videoRepository = videoRepository;
+        this.videoDailyStatsRepository = videoDailyStatsRepository;
+        this.capacity = capacity;
+        this.viewsBoard = new TopKBoard(capacity);
+        this.downloadsBoard = new TopKBoard(capacity);
+        this.trendingBoard = new TopKBoard(capacity);
+    }
+
+    /**
+     * 启动完成后建立榜单
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        refresh();
+    }
+
+    /**
+     * 定期重建：纠正删除视频留下的空位、其他实例写入的计数，并把热度的基准日移到今天
+     */
+    @Scheduled(fixedDelayString = "${app.leaderboard.refresh-interval-ms:3600000}",
+            initialDelayString = "${app.leaderboard.refresh-interval-ms:3600000}")
+    public void refresh() {
+        long started = System.currentTimeMillis();
+        PageRequest limit = PageRequest.of(0, capacity);
+        viewsBoard.reset(toScores(videoRepository.findTopViewed(limit)));
+        downloadsBoard.reset(toScores(videoRepository.findTopDownloaded(limit)));
+
+        LocalDate today = LocalDate.now();
+        trendingBoard.reset(toScores(videoDailyStatsRepository.findTrendingScores(
+                today.minusDays(trendingWindowDays - 1), today, trendingHalfLifeHours, limit)));
+        trendingLandmark = today;
+        log.debug("排行榜已重建: 耗时{}ms", System.currentTimeMillis() - started);
+    }
+
+    /**
+     * 播放量前n名的公开视频
+     */
+    public List<Video> getTopViewed(int n) {
+        return loadInOrder(viewsBoard.top(n));
+    }
+
+    /**
+     * 下载量前n名的公开视频
+     */
+    public List<Video> getTopDownloaded(int n) {
+        return loadInOrder(downloadsBoard.top(n));
+    }
+
+    /**
+     * 近期热度前n名的公开视频
+     */
+    public List<Video> getTrending(int n) {
+        return loadInOrder(trendingBoard.top(n));
+    }
+
+    /**
+     * 计数刷写后按最新累计值更新播放/下载榜，并把播放增量按日期衰减后计入热度榜。
+     * 不在热度榜上的视频只计本次增量，其完整得分在下次重建时补上
+     */
+    @EventListener
+    public void onCountersFlushed(CountersFlushedEvent event) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (CounterDelta delta : event.getDeltas()) {
+            ids.add(delta.getVideoId());
+        }
+        Set<Long> publicIds = new LinkedHashSet<>();
+        List<Long> idList = new ArrayList<>(ids);
+        for (int from = 0; from < idList.size(); from += TOTALS_BATCH_SIZE) {
+            List<Long> batch = idList.subList(from, Math.min(from + TOTALS_BATCH_SIZE, idList.size()));
+            for (Object[] row : videoRepository.findPublicTotalsByIdIn(batch)) {
+                Long id = (Long) row[0];
+                publicIds.add(id);
+                viewsBoard.offer(id, row[1] != null ? (Long) row[1] : 0L);
+                downloadsBoard.offer(id, row[2] != null ? (Long) row[2] : 0L);
+            }
+        }
+
+        LocalDate landmark = trendingLandmark;
+        for (CounterDelta delta : event.getDeltas()) {
+            if (delta.getViews() > 0 && publicIds.contains(delta.getVideoId())) {
+                trendingBoard.increment(delta.getVideoId(), delta.getViews() * trendingWeight(delta.getStatDate(), landmark));
+            }
+        }
+    }
+
+    @TransactionalEventListener
+    public void onVideoDeleted(VideoDeletedEvent event) {
+        Long id = event.getVideo().getId();
+        viewsBoard.remove(id);
+        downloadsBoard.remove(id);
+        trendingBoard.remove(id);
+    }
+
+    /**
+     * 与 findTrendingScores 相同的权重：距基准日每晚 halfLifeHours 小时权重翻倍
+     */
+    private double trendingWeight(LocalDate date, LocalDate landmark) {
+        return Math.pow(2, ChronoUnit.DAYS.between(landmark, date) * 24 / trendingHalfLifeHours);
+    }
+
+    private List<Video> loadInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Video> byId = new HashMap<>();
+        for (Video video : videoRepository.findAllWithUploaderByIdIn(ids)) {
+            byId.put(video.getId(), video);
+        }
+        List<Video> videos = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Video video = byId.get(id);
+            if (video != null) {
+                videos.add(video);
+            }
+        }
+        return videos;
+    }
+
+    private static Map<Long, Double> toScores(List<Object[]> rows) {
+        Map<Long, Double> scores = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            scores.put(((Number) row[0]).longValue(), row[1] != null ? ((Number) row[1]).doubleValue() : 0);
+        }
+        return scores;
+    }
+}
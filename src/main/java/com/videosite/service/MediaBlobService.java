@@ -0,0 +1,127 @@
+package com.videosite.service;
+
+import com.videosite.domain.entity.MediaBlob;
+import com.videosite.domain.entity.Video;
+import com.videosite.repository.MediaBlobRepository;
+import com.videosite.repository.VideoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * 内容寻址存储：视频文件按SHA-256存放一份，media_blob.ref_count 记录引用它的视频数。
+ * 首个处理完成的视频把缩略图、故事板、HLS分片登记到文件上，之后相同内容的上传直接复用；
+ * 引用数降为0时才删除文件及共用的派生文件
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MediaBlobService {
+    
+    private final MediaBlobRepository mediaBlobRepository;
+    private final VideoRepository videoRepository;
+    private final StorageService storageService;
+    
+    /**
+     * 登记刚上传的文件并增加引用：先插入记录（已存在时引用数加1）并持有行锁，
+     * 新插入时把文件移动到内容寻址路径，内容已存在时删除新文件。移动失败时事务回滚，记录随之撤销
+     */
+    @Transactional
+    public MediaBlob acquire(String contentHash, String uploadedStoragePath, long sizeBytes) throws IOException {
+        String blobStoragePath = storageService.blobStoragePath(contentHash);
+        int affected = mediaBlobRepository.insertOrAddReference(contentHash, blobStoragePath, sizeBytes,
+                LocalDateTime.now());
+        MediaBlob blob = mediaBlobRepository.findByContentHash(contentHash)
+                .orElseThrow(() -> new IllegalStateException("文件记录不存在: " + contentHash));
+        
+        if (affected == 1) {
+            storageService.moveFile(uploadedStoragePath, blob.getStoragePath());
+            return blob;
+        }
+        storageService.deleteFile(uploadedStoragePath);
+        log.info("上传内容与已有文件相同，复用: hash={}, 引用数={}", contentHash, blob.getRefCount());
+        return blob;
+    }
+    
+    /**
+     * 派生文件已生成、可供相同内容的上传直接复用的文件记录
+     */
+    public Optional<MediaBlob> findReusable(String contentHash) {
+        if (contentHash == null) {
+            return Optional.empty();
+        }
+        return mediaBlobRepository.findByContentHash(contentHash).filter(MediaBlob::hasDerivedArtifacts);
+    }
+    
+    /**
+     * 把视频处理生成的派生文件登记为共用，返回false表示已有其他视频先登记
+     */
+    @Transactional
+    public boolean adoptDerivedArtifacts(Video video) {
+        if (video.getContentHash() == null) {
+            return false;
+        }
+        return mediaBlobRepository.adoptDerivedArtifacts(video.getContentHash(), video.getDurationSeconds(),
+                video.getThumbPath(), video.getThumbVariants(), video.getStoryboardPath(), video.getFastStart(),
+                video.getHlsPath(), LocalDateTime.now()) == 1;
+    }
+    
+    /**
+     * 视频删除时释放引用：视频自己的派生文件立即删除，共用文件在引用数降为0时删除
+     */
+    @Transactional
+    public void release(Video video) {
+        MediaBlob blob = mediaBlobRepository.findByContentHashForUpdate(video.getContentHash()).orElse(null);
+        
+        if (video.getThumbPath() != null
+                && (blob == null || !Objects.equals(video.getThumbPath(), blob.getThumbPath()))) {
+            storageService.deleteThumbnails(video.getThumbPath(), video.getThumbVariants());
+        }
+        if (video.getStoryboardPath() != null
+                && (blob == null || !Objects.equals(video.getStoryboardPath(), blob.getStoryboardPath()))) {
+            storageService.deleteStoryboard(video.getStoryboardPath());
+        }
+        if (video.getHlsPath() != null
+                && (blob == null || !Objects.equals(video.getHlsPath(), blob.getHlsPath()))) {
+            storageService.deleteHls(video.getHlsPath());
+        }
+        
+        if (blob == null) {
+            storageService.deleteFile(video.getStoragePath());
+            return;
+        }
+        
+        int refCount = blob.getRefCount() - 1;
+        if (refCount > 0) {
+            blob.setRefCount(refCount);
+            blob.setUpdatedAt(LocalDateTime.now());
+            log.info("释放文件引用: hash={}, 剩余引用数={}", blob.getContentHash(), refCount);
+            return;
+        }
+        
+        storageService.deleteFile(blob.getStoragePath());
+        if (blob.getThumbPath() != null) {
+            storageService.deleteThumbnails(blob.getThumbPath(), blob.getThumbVariants());
+        }
+        storageService.deleteStoryboard(blob.getStoryboardPath());
+        storageService.deleteHls(blob.getHlsPath());
+        mediaBlobRepository.delete(blob);
+        log.info("文件已无引用，删除: hash={}", blob.getContentHash());
+    }
+    
+    /**
+     * 删除用户前释放其全部视频的引用（视频记录随用户级联删除）
+     */
+    @Transactional
+    public void releaseAllOfUploader(Long uploaderId) {
+        for (Video video : videoRepository.findByUploaderIdAndContentHashIsNotNull(uploaderId)) {
+            release(video);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.videosite.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全局的ffprobe/FFmpeg进程调度：所有外部媒体进程启动前都要取得许可，同时运行的进程数不超过按核数计算的上限。
+ * 等待者按优先级（探测 &gt; 缩略图 &gt; 转码）再按先来后到放行；长时间运行的转码最多占用上限减一个名额，
+ * 始终给探测与缩略图留出位置。排队数达到上限时直接拒绝，由调用方按 Retry-After 稍后重试
+ */
+@Slf4j
+@Service
+public class MediaJobScheduler {
+
+    /** 平均进程耗时的指数移动平均权重 */
+    private static final double RUN_TIME_SMOOTHING = 0.2;
+    private static final long MAX_RETRY_AFTER_SECONDS = 600;
+
+    public enum Priority {
+        /** ffprobe 探测，耗时最短，上传处理的第一步 */
+        PROBE,
+        /** 缩略图、故事板以及无损重封装等短时任务 */
+        THUMBNAIL,
+        /** 码率档位转码，耗时长、占满CPU */
+        TRANSCODE
+    }
+
+    private final int capacity;
+    private final int transcodeLimit;
+    private final int maxQueued;
+
+    private final PriorityQueue<Waiter> waiting = new PriorityQueue<>();
+    private final Map<Priority, Integer> runningByPriority = new EnumMap<>(Priority.class);
+    private int running;
+    private long sequence;
+    /** 最近进程耗时的移动平均（秒），用于估算 Retry-After */
+    private volatile double averageRunSeconds = 10;
+
+    private final Map<Priority, Timer> waitTimers = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> rejectedCounters = new EnumMap<>(Priority.class);
+
+    public MediaJobScheduler(MeterRegistry meterRegistry,
+                             @Value("${app.media.max-processes:0}") int maxProcesses,
+                             @Value("${app.media.max-queued:64}") int maxQueued) {
+        this.capacity = maxProcesses > 0 ? maxProcesses : Math.max(1, Runtime.getRuntime().availableProcessors());
+        this.transcodeLimit = capacity > 1 ? capacity - 1 : 1;
+        this.maxQueued = maxQueued;
+
+        for (Priority priority : Priority.values()) {
+            runningByPriority.put(priority, 0);
+            waitTimers.put(priority, Timer.builder("media.scheduler.wait")
+                    .description("媒体进程排队等待许可的时间")
+                    .tag("priority", priority.name())
+                    .register(meterRegistry));
+            rejectedCounters.put(priority, Counter.builder("media.scheduler.rejected")
+                    .description("排队已满被拒绝的媒体进程数")
+                    .tag("priority", priority.name())
+                    .register(meterRegistry));
+            Gauge.builder("media.scheduler.queued", this, scheduler -> scheduler.queuedCount(priority))
+                    .description("排队等待许可的媒体进程数")
+                    .tag("priority", priority.name())
+                    .register(meterRegistry);
+            Gauge.builder("media.scheduler.running", this, scheduler -> scheduler.runningCount(priority))
+                    .description("正在运行的媒体进程数")
+                    .tag("priority", priority.name())
+                    .register(meterRegistry);
+        }
+        log.info("媒体进程并发上限: {}, 转码最多占用: {}, 排队上限: {}", capacity, transcodeLimit, maxQueued);
+    }
+
+    /**
+     * 取得运行一个外部进程的许可，阻塞到轮到自己为止；许可用完必须关闭（try-with-resources）。
+     * 排队数已达上限时抛出 {@link SaturatedException}
+     */
+    public Permit acquire(Priority priority) throws InterruptedException {
+        long started = System.nanoTime();
+        Waiter waiter;
+        synchronized (this) {
+            if (waiting.isEmpty() && canRun(priority)) {
+                return grant(priority, started);
+            }
+            if (waiting.size() >= maxQueued) {
+                rejectedCounters.get(priority).increment();
+                throw new SaturatedException(estimateWaitSeconds(waiting.size()));
+            }
+            waiter = new Waiter(priority, sequence++);
+            waiting.add(waiter);
+            try {
+                while (waiting.peek() != waiter || !canRun(priority)) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                waiting.remove(waiter);
+                notifyAll();
+                throw e;
+            }
+            waiting.poll();
+            Permit permit = grant(priority, started);
+            // 下一个等待者可能也能放行（如空出多个名额，或队首的转码受限时后面排着探测）
+            notifyAll();
+            return permit;
+        }
+    }
+
+    /**
+     * 排队数已达上限，新的上传应稍后再来
+     */
+    public synchronized boolean isSaturated() {
+        return waiting.size() >= maxQueued;
+    }
+
+    /**
+     * 估算再加入 pendingJobs 个任务后需要等待的秒数：按最近进程的平均耗时和并发上限粗略计算
+     */
+    public long estimateWaitSeconds(int pendingJobs) {
+        double seconds = (pendingJobs + 1) * averageRunSeconds / capacity;
+        return Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS, (long) Math.ceil(seconds)));
+    }
+
+    private boolean canRun(Priority priority) {
+        if (running >= capacity) {
+            return false;
+        }
+        return priority != Priority.TRANSCODE || runningByPriority.get(Priority.TRANSCODE) < transcodeLimit;
+    }
+
+    private Permit grant(Priority priority, long requestedAt) {
+        running++;
+        runningByPriority.merge(priority, 1, Integer::sum);
+        waitTimers.get(priority).record(System.nanoTime() - requestedAt, TimeUnit.NANOSECONDS);
+        return new Permit(priority);
+    }
+
+    private synchronized void release(Permit permit) {
+        running--;
+        runningByPriority.merge(permit.priority, -1, Integer::sum);
+        double seconds = (System.nanoTime() - permit.grantedAt) / 1e9;
+        averageRunSeconds = averageRunSeconds * (1 - RUN_TIME_SMOOTHING) + seconds * RUN_TIME_SMOOTHING;
+        notifyAll();
+    }
+
+    private synchronized int queuedCount(Priority priority) {
+        int count = 0;
+        for (Waiter waiter : waiting) {
+            if (waiter.priority == priority) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private synchronized int runningCount(Priority priority) {
+        return runningByPriority.get(priority);
+    }
+
+    /**
+     * 运行许可，关闭时归还名额；重复关闭无效
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final Priority priority;
+        private final long grantedAt = System.nanoTime();
+        private boolean released;
+
+        private Permit(Priority priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public void close() {
+            synchronized (MediaJobScheduler.this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            release(this);
+        }
+    }
+
+    /**
+     * 按优先级、再按到达顺序排列
+     */
+    private record Waiter(Priority priority, long sequence) implements Comparable<Waiter> {
+
+        @Override
+        public int compareTo(Waiter other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * 排队已满，retryAfterSeconds 为建议的重试等待时间
+     */
+    public static class SaturatedException extends RuntimeException {
+
+        private final long retryAfterSeconds;
+
+        public SaturatedException(long retryAfterSeconds) {
+            super("媒体处理繁忙，请" + retryAfterSeconds + "秒后重试");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+}
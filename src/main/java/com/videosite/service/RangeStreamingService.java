@@ -0,0 +1,299 @@
+package com.videosite.service;
+
+import com.videosite.util.ByteRange;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 文件范围传输服务：支持单范围、多范围（multipart/byteranges）、后缀范围与416处理，
+ * 优先使用Tomcat sendfile零拷贝发送；否则经FileChannel.transferTo写入响应输出流，
+ * 由于目标不是文件或套接字通道，JDK会经一个临时堆缓冲分块复制，这条路径不是零拷贝。
+ * 开启异步模式后，非sendfile的传输在虚拟线程上完成，并按传输量设置超时
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RangeStreamingService {
+
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    @Value("${app.streaming.max-ranges:16}")
+    private int maxRanges;
+
+    @Value("${app.streaming.sendfile:true}")
+    private boolean sendfileEnabled;
+
+    @Value("${app.streaming.async.enabled:false}")
+    private boolean asyncEnabled;
+
+    @Value("${app.streaming.async.base-timeout-ms:30000}")
+    private long baseTimeoutMs;
+
+    @Value("${app.streaming.async.min-bytes-per-second:65536}")
+    private long minBytesPerSecond;
+
+    private final ExecutorService streamingExecutor;
+
+    /**
+     * 按请求的Range头输出文件内容
+     */
+    public void serve(HttpServletRequest request, HttpServletResponse response,
+                      Path file, String contentType) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            log.error("文件不存在: {}", file);
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+
+        long fileSize = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        String etag = "\"" + Long.toHexString(fileSize) + "-" + Long.toHexString(lastModified) + "\"";
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+
+        List<ByteRange> ranges = null;
+        if (isIfRangeSatisfied(request, etag, lastModified)) {
+            ranges = ByteRange.parse(request.getHeader(HttpHeaders.RANGE), fileSize);
+        }
+
+        if (ranges != null && ranges.isEmpty()) {
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + fileSize);
+            response.setContentLength(0);
+            return;
+        }
+
+        // 范围过多时按RFC允许的方式忽略Range头，避免被用于放大攻击
+        if (ranges != null && ranges.size() > maxRanges) {
+            ranges = null;
+        }
+
+        boolean headOnly = "HEAD".equalsIgnoreCase(request.getMethod());
+
+        if (ranges == null) {
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(contentType);
+            response.setContentLengthLong(fileSize);
+            if (!headOnly) {
+                transfer(request, response, file, new ByteRange(0, fileSize - 1), fileSize);
+            }
+        } else if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, range.toContentRange(fileSize));
+            response.setContentLengthLong(range.getLength());
+            if (!headOnly) {
+                transfer(request, response, file, range, fileSize);
+            }
+        } else {
+            writeMultipart(request, response, file, ranges, fileSize, contentType, headOnly);
+        }
+    }
+
+    /**
+     * If-Range条件不满足时应忽略Range头并返回完整内容
+     */
+    private boolean isIfRangeSatisfied(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            long since = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return since >= 0 && lastModified / 1000 <= since / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 输出单个连续范围：能用sendfile时交由容器零拷贝发送（由Poller完成，不占用工作线程），
+     * 否则用transferTo经临时缓冲复制到响应输出流
+     */
+    private void transfer(HttpServletRequest request, HttpServletResponse response,
+                          Path file, ByteRange range, long fileSize) throws IOException {
+        if (fileSize == 0) {
+            return;
+        }
+
+        if (sendfileEnabled && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, range.getStart());
+            request.setAttribute(SENDFILE_END_ATTR, range.getEnd() + 1);
+            return;
+        }
+
+        writeBody(request, response, range.getLength(), out -> {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                copyRange(channel, Channels.newChannel(out), range);
+            }
+        });
+    }
+
+    /**
+     * 以multipart/byteranges格式输出多个范围
+     */
+    private void writeMultipart(HttpServletRequest request, HttpServletResponse response,
+                                Path file, List<ByteRange> ranges,
+                                long fileSize, String contentType, boolean headOnly) throws IOException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        byte[][] partHeaders = new byte[ranges.size()][];
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+
+        long contentLength = closing.length;
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange range = ranges.get(i);
+            String header = "\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + range.toContentRange(fileSize) + "\r\n\r\n";
+            partHeaders[i] = header.getBytes(StandardCharsets.US_ASCII);
+            contentLength += partHeaders[i].length + range.getLength();
+        }
+
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (headOnly) {
+            return;
+        }
+
+        writeBody(request, response, contentLength, out -> {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(out);
+                for (int i = 0; i < ranges.size(); i++) {
+                    out.write(partHeaders[i]);
+                    copyRange(channel, target, ranges.get(i));
+                }
+                out.write(closing);
+            }
+        });
+    }
+
+    /**
+     * 写出响应体：同步模式直接在当前线程写出；异步模式下释放容器线程，
+     * 在虚拟线程上写出，超时（基础时间 + 按最低速率估算的传输时间）后中断传输。
+     * 超时回调只负责中止写出，complete()只由写出线程在退出时调用，
+     * 避免写出线程仍在使用响应对象时容器已将其回收复用
+     */
+    private void writeBody(HttpServletRequest request, HttpServletResponse response,
+                           long length, BodyWriter writer) throws IOException {
+        if (!asyncEnabled || !request.isAsyncSupported()) {
+            OutputStream out = response.getOutputStream();
+            writer.write(out);
+            out.flush();
+            return;
+        }
+
+        AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(baseTimeoutMs + length * 1000 / Math.max(1, minBytesPerSecond));
+
+        AtomicBoolean aborted = new AtomicBoolean(false);
+        AtomicReference<Thread> worker = new AtomicReference<>();
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                log.warn("视频流写出超时，中断传输: {}", request.getRequestURI());
+                // 先置位再读取worker：写出线程尚未开始时会在启动后看到该标记并直接退出
+                aborted.set(true);
+                Thread thread = worker.get();
+                if (thread != null) {
+                    // 中断会关闭transferTo使用的可中断通道，进而关闭底层输出流，使阻塞的写出返回
+                    thread.interrupt();
+                }
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                log.debug("视频流连接异常: {}", request.getRequestURI(), event.getThrowable());
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+
+        streamingExecutor.execute(() -> {
+            worker.set(Thread.currentThread());
+            try {
+                if (!aborted.get()) {
+                    OutputStream out = asyncContext.getResponse().getOutputStream();
+                    writer.write(out);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // 客户端中断或超时属于正常情况
+                log.debug("视频流传输中断: {}, 原因: {}", request.getRequestURI(), e.getMessage());
+            } catch (RuntimeException e) {
+                log.error("视频流传输失败: {}", request.getRequestURI(), e);
+            } finally {
+                worker.set(null);
+                Thread.interrupted();
+                try {
+                    asyncContext.complete();
+                } catch (IllegalStateException e) {
+                    // 超时后容器可能已自行结束该请求
+                    log.debug("异步请求已结束: {}", request.getRequestURI());
+                }
+            }
+        });
+    }
+
+    /**
+     * 使用transferTo复制指定范围，处理单次调用未传输完整的情况。
+     * target 包装的是Servlet输出流，JDK内部按块读入堆缓冲再写出
+     */
+    private void copyRange(FileChannel channel, WritableByteChannel target, ByteRange range) throws IOException {
+        long position = range.getStart();
+        long remaining = range.getLength();
+        while (remaining > 0) {
+            long transferred = channel.transferTo(position, remaining, target);
+            if (transferred <= 0) {
+                throw new IOException("文件在传输过程中被截断: " + position);
+            }
+            position += transferred;
+            remaining -= transferred;
+        }
+    }
+
+    @FunctionalInterface
+    private interface BodyWriter {
+        void write(OutputStream out) throws IOException;
+    }
+}
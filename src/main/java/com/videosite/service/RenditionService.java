@@ -0,0 +1,459 @@
+package com.videosite.service;
+
+import com.videosite.domain.entity.Video;
+import com.videosite.domain.entity.VideoRendition;
+import com.videosite.domain.event.RenditionQueuedEvent;
+import com.videosite.dto.media.RenditionRung;
+import com.videosite.dto.upload.RenditionStatus;
+import com.videosite.repository.VideoRenditionRepository;
+import com.videosite.repository.VideoRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 自适应码率阶梯：HLS打包后的视频按配置的阶梯（如 1080/720/480/360）补充低于源分辨率的档位。
+ * 档位记录在 video_rendition 表中排队，所有视频的低档位先于高档位转码，新视频尽快有可在弱网播放的档位，
+ * 高档位随后补齐；同时运行的FFmpeg进程数按CPU核数与每个进程的线程数限制。
+ * 每个档位完成后重写分片目录下的主播放列表 master.m3u8
+ */
+@Slf4j
+@Service
+public class RenditionService {
+
+    private static final int CLAIM_BATCH_SIZE = 8;
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final String MASTER_PLAYLIST = "master.m3u8";
+    /** 进度每增加这么多个百分点才写库，兼作心跳 */
+    private static final int PROGRESS_STEP = 5;
+
+    private final VideoRenditionRepository renditionRepository;
+    private final VideoRepository videoRepository;
+    private final StorageService storageService;
+    private final TranscodeService transcodeService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TaskScheduler taskScheduler;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final int threadsPerJob;
+    private final ExecutorService workers;
+    private final Semaphore slots;
+    private final Set<Long> runningRenditions = ConcurrentHashMap.newKeySet();
+    /** 媒体进程排队已满时暂停认领到此时刻（毫秒）；档位表没有重试时间列，背压按实例在内存中处理 */
+    private volatile long pausedUntil;
+
+    private final Counter failureCounter;
+
+    @Value("${app.abr.max-attempts:2}")
+    private int maxAttempts;
+
+    @Value("${app.abr.stuck-timeout-seconds:900}")
+    private long stuckTimeoutSeconds;
+
+    @Value("${app.abr.timeout-factor:4}")
+    private int timeoutFactor;
+
+    public RenditionService(VideoRenditionRepository renditionRepository,
+                            VideoRepository videoRepository,
+                            StorageService storageService,
+                            TranscodeService transcodeService,
+                            ApplicationEventPublisher eventPublisher,
+                            TaskScheduler taskScheduler,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.abr.max-concurrent:0}") int maxConcurrent,
+                            @Value("${app.abr.threads-per-job:2}") int threadsPerJob) {
+        this.renditionRepository = renditionRepository;
+        this.videoRepository = videoRepository;
+        this.storageService = storageService;
+        this.transcodeService = transcodeService;
+        this.eventPublisher = eventPublisher;
+        this.taskScheduler = taskScheduler;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.threadsPerJob = Math.max(1, threadsPerJob);
+        // 未配置时按核数计算：每个FFmpeg进程占 threadsPerJob 个核
+        int concurrency = maxConcurrent > 0
+                ? maxConcurrent
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / this.threadsPerJob);
+        this.workers = Executors.newFixedThreadPool(concurrency,
+                Thread.ofPlatform().name("abr-worker-", 0).factory());
+        this.slots = new Semaphore(concurrency);
+        this.failureCounter = Counter.builder("abr.transcode.failures")
+                .description("码率档位转码失败次数（含会重试的失败）")
+                .register(meterRegistry);
+        Gauge.builder("abr.transcode.running", runningRenditions, Set::size)
+                .description("正在转码的码率档位数")
+                .register(meterRegistry);
+        log.info("码率转码并发数: {}, 每个进程线程数: {}", concurrency, this.threadsPerJob);
+    }
+
+    /**
+     * 登记新打包视频的码率档位：原始码率直接可用，低于源高度的档位入队转码，
+     * 并先写出只含原始码率的主播放列表
+     */
+    @Transactional
+    public void createLadder(Video video, int sourceWidth, int sourceHeight, long sourceBitRate) {
+        LocalDateTime now = LocalDateTime.now();
+        long sourceBandwidth = sourceBitRate > 0
+                ? sourceBitRate
+                : video.getSizeBytes() * 8 / Math.max(1, video.getDurationSeconds());
+
+        List<VideoRendition> renditions = new ArrayList<>();
+        renditions.add(newRendition(video.getId(), VideoRendition.SOURCE, sourceWidth, sourceHeight,
+                sourceBandwidth, VideoRendition.Status.READY, now));
+        if (sourceWidth > 0 && sourceHeight > 0) {
+            for (RenditionRung rung : transcodeService.renditionLadder()) {
+                if (rung.getHeight() < sourceHeight) {
+                    renditions.add(newRendition(video.getId(), rung.getName(),
+                            rung.widthFor(sourceWidth, sourceHeight), rung.getHeight(),
+                            transcodeService.renditionBandwidth(rung), VideoRendition.Status.QUEUED, now));
+                }
+            }
+        }
+        renditionRepository.saveAll(renditions);
+        writeMasterPlaylist(video.getHlsPath(), List.of(renditions.get(0)));
+
+        if (renditions.size() > 1) {
+            eventPublisher.publishEvent(new RenditionQueuedEvent(video.getId()));
+            log.info("码率档位已入队: videoId={}, 档位数={}", video.getId(), renditions.size() - 1);
+        }
+    }
+
+    /**
+     * 相同内容复用处理结果时沿用共用分片目录的档位：已完成的直接可用，未完成的重新排队，
+     * 转码时发现目录已由另一视频生成则直接标记完成
+     */
+    @Transactional
+    public void copyLadder(Video video) {
+        if (video.getHlsPath() == null) {
+            return;
+        }
+        Optional<Video> siblingOpt = videoRepository.findFirstByHlsPathAndIdNot(video.getHlsPath(), video.getId());
+        if (siblingOpt.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        boolean queued = false;
+        for (VideoRendition source : renditionRepository.findByVideoIdOrderByHeight(siblingOpt.get().getId())) {
+            VideoRendition.Status status = source.getStatus() == VideoRendition.Status.READY
+                    ? VideoRendition.Status.READY
+                    : VideoRendition.Status.QUEUED;
+            renditionRepository.save(newRendition(video.getId(), source.getName(), source.getWidth(),
+                    source.getHeight(), source.getBandwidth(), status, now));
+            queued |= status == VideoRendition.Status.QUEUED;
+        }
+        if (queued) {
+            eventPublisher.publishEvent(new RenditionQueuedEvent(video.getId()));
+        }
+    }
+
+    /**
+     * 视频各码率档位的转码状态，按高度从低到高
+     */
+    public List<RenditionStatus> getStatuses(Long videoId) {
+        return renditionRepository.findByVideoIdOrderByHeight(videoId).stream()
+                .map(r -> new RenditionStatus(r.getName(), r.getHeight(), r.getStatus().name(), r.getProgress()))
+                .toList();
+    }
+
+    /**
+     * 提交后的回调仍绑定着原事务的资源，认领档位的更新放到调度线程上执行
+     */
+    @TransactionalEventListener
+    public void onRenditionQueued(RenditionQueuedEvent event) {
+        taskScheduler.schedule(this::dispatch, Instant.now());
+    }
+
+    /**
+     * 启动时先回收上次进程遗留的档位，再开始派发
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        recoverStuckRenditions();
+        dispatch();
+    }
+
+    /**
+     * 有空闲转码线程时认领排队的档位（低档位优先）；兜底轮询覆盖重试与多实例场景
+     */
+    @Scheduled(fixedDelayString = "${app.abr.poll-interval-ms:10000}")
+    public synchronized void dispatch() {
+        if (System.currentTimeMillis() < pausedUntil) {
+            return;
+        }
+        while (slots.tryAcquire()) {
+            Long renditionId = claimNext();
+            if (renditionId == null) {
+                slots.release();
+                return;
+            }
+            runningRenditions.add(renditionId);
+            try {
+                workers.execute(() -> {
+                    try {
+                        transcode(renditionId);
+                    } finally {
+                        runningRenditions.remove(renditionId);
+                        slots.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                // 线程池已关闭（应用停止中），档位交回队列
+                runningRenditions.remove(renditionId);
+                slots.release();
+                requeue(renditionId);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 心跳超时的转码中档位视为中断：还有重试次数则重新排队，否则标记失败
+     */
+    @Scheduled(fixedDelayString = "${app.abr.recovery-interval-ms:60000}", initialDelay = 60000)
+    public void recoverStuckRenditions() {
+        LocalDateTime staleBefore = LocalDateTime.now().minusSeconds(stuckTimeoutSeconds);
+        for (VideoRendition rendition : renditionRepository.findByStatusAndUpdatedAtBefore(
+                VideoRendition.Status.RUNNING, staleBefore)) {
+            if (runningRenditions.contains(rendition.getId())) {
+                continue;
+            }
+            log.warn("回收超时的转码档位: id={}, videoId={}, 档位={}",
+                    rendition.getId(), rendition.getVideoId(), rendition.getName());
+            fail(rendition.getId(), "转码超时或进程中断");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.shutdownNow();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("转码线程未能在10秒内停止，未完成的档位将在重启后回收");
+        }
+    }
+
+    private Long claimNext() {
+        List<Long> queuedIds = renditionRepository.findQueuedIds(VideoRendition.Status.QUEUED,
+                PageRequest.of(0, CLAIM_BATCH_SIZE));
+        LocalDateTime now = LocalDateTime.now();
+        for (Long id : queuedIds) {
+            if (renditionRepository.claim(id, VideoRendition.Status.QUEUED, VideoRendition.Status.RUNNING, now) == 1) {
+                return id;
+            }
+        }
+        return null;
+    }
+
+    private void transcode(Long renditionId) {
+        Optional<VideoRendition> renditionOpt = renditionRepository.findById(renditionId);
+        Optional<Video> videoOpt = renditionOpt.flatMap(r -> videoRepository.findById(r.getVideoId()));
+        if (videoOpt.isEmpty() || videoOpt.get().getHlsPath() == null) {
+            // 视频已被删除，档位随级联删除
+            return;
+        }
+        VideoRendition rendition = renditionOpt.get();
+        Video video = videoOpt.get();
+        Path hlsDir = storageService.getFullPath(video.getHlsPath());
+        Path outputDir = hlsDir.resolve(rendition.getName());
+        // 临时目录名不带 p 后缀，不会被 /hls 接口匹配到
+        Path tempDir = hlsDir.resolve(rendition.getName() + ".tmp-" + UUID.randomUUID());
+        long started = System.nanoTime();
+
+        try {
+            if (!Files.exists(outputDir.resolve("index.m3u8"))) {
+                Optional<RenditionRung> rungOpt = transcodeService.renditionLadder().stream()
+                        .filter(rung -> rung.getName().equals(rendition.getName()))
+                        .findFirst();
+                if (rungOpt.isEmpty()) {
+                    markFailed(renditionId, "档位已从配置中移除");
+                    return;
+                }
+
+                long durationMicros = Math.max(1, video.getDurationSeconds()) * 1_000_000L;
+                long timeoutSeconds = 300 + (long) video.getDurationSeconds() * timeoutFactor;
+                AtomicInteger reported = new AtomicInteger();
+                transcodeService.transcodeRendition(storageService.getFullPath(video.getStoragePath()), tempDir,
+                        rungOpt.get(), threadsPerJob, timeoutSeconds, micros -> {
+                            int progress = (int) Math.min(99, micros * 100 / durationMicros);
+                            if (progress >= reported.get() + PROGRESS_STEP) {
+                                reported.set(progress);
+                                renditionRepository.updateProgress(renditionId, progress, LocalDateTime.now());
+                            }
+                        });
+                moveIntoPlace(tempDir, outputDir);
+                meterRegistry.timer("abr.transcode", "rendition", rendition.getName())
+                        .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+            markReady(renditionId, video);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("转码被中断，档位重新排队: id={}", renditionId);
+            requeue(renditionId);
+        } catch (MediaJobScheduler.SaturatedException e) {
+            // 本实例的媒体进程排队已满属于背压：档位交回队列且不计入重试次数，暂停认领新档位直到建议的时间
+            pausedUntil = System.currentTimeMillis() + e.getRetryAfterSeconds() * 1000;
+            log.info("媒体处理繁忙，{}秒内暂停认领转码档位: id={}", e.getRetryAfterSeconds(), renditionId);
+            requeue(renditionId);
+        } catch (IOException | RuntimeException e) {
+            failureCounter.increment();
+            log.error("转码失败: id={}, videoId={}, 档位={}", renditionId, video.getId(), rendition.getName(), e);
+            fail(renditionId, e.getMessage());
+        } finally {
+            storageService.deleteDirectory(tempDir);
+        }
+    }
+
+    /**
+     * 临时目录整体改名为档位目录，播放器不会读到写了一半的档位；
+     * 共用分片目录的另一视频已先生成同一档位时保留已有目录
+     */
+    private void moveIntoPlace(Path tempDir, Path outputDir) throws IOException {
+        try {
+            Files.move(tempDir, outputDir, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileSystemException e) {
+            if (!Files.exists(outputDir.resolve("index.m3u8"))) {
+                throw e;
+            }
+        }
+    }
+
+    private void markReady(Long renditionId, Video video) {
+        Boolean updated = transactionTemplate.execute(status -> renditionRepository.findById(renditionId)
+                .map(rendition -> {
+                    rendition.setStatus(VideoRendition.Status.READY);
+                    rendition.setProgress(100);
+                    rendition.setErrorMessage(null);
+                    rendition.setUpdatedAt(LocalDateTime.now());
+                    return true;
+                })
+                .orElse(false));
+        if (Boolean.TRUE.equals(updated)) {
+            writeMasterPlaylist(video.getHlsPath(),
+                    renditionRepository.findByVideoIdAndStatusOrderByHeight(video.getId(), VideoRendition.Status.READY));
+            log.info("码率档位转码完成: id={}, videoId={}", renditionId, video.getId());
+        }
+    }
+
+    /**
+     * 用已完成的档位重写主播放列表：先写临时文件再原子替换，播放器读到的总是完整的列表。
+     * 在提交后调用并串行执行，后写入者总能看到先完成的档位
+     */
+    private synchronized void writeMasterPlaylist(String hlsPath, List<VideoRendition> readyRenditions) {
+        StringBuilder playlist = new StringBuilder("#EXTM3U\n#EXT-X-VERSION:6\n#EXT-X-INDEPENDENT-SEGMENTS\n");
+        for (VideoRendition rendition : readyRenditions) {
+            playlist.append("#EXT-X-STREAM-INF:BANDWIDTH=").append(rendition.getBandwidth());
+            if (rendition.getWidth() > 0 && rendition.getHeight() > 0) {
+                playlist.append(",RESOLUTION=").append(rendition.getWidth()).append('x').append(rendition.getHeight());
+            }
+            playlist.append('\n').append(rendition.getPlaylistPath()).append('\n');
+        }
+
+        Path target = storageService.getFullPath(hlsPath).resolve(MASTER_PLAYLIST);
+        Path temp = target.resolveSibling(MASTER_PLAYLIST + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.writeString(temp, playlist);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // 分片目录已随视频删除
+            log.warn("写入主播放列表失败: {}, 错误: {}", hlsPath, e.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // 目录不存在
+            }
+        }
+    }
+
+    /**
+     * 记录失败：还有重试次数则重新排队，否则标记为失败（播放列表中不出现该档位）
+     */
+    private void fail(Long renditionId, String message) {
+        transactionTemplate.executeWithoutResult(status -> renditionRepository.findById(renditionId)
+                .ifPresent(rendition -> {
+                    rendition.setStatus(rendition.getAttempts() < maxAttempts
+                            ? VideoRendition.Status.QUEUED
+                            : VideoRendition.Status.FAILED);
+                    rendition.setErrorMessage(truncate(message));
+                    rendition.setUpdatedAt(LocalDateTime.now());
+                }));
+    }
+
+    private void markFailed(Long renditionId, String message) {
+        transactionTemplate.executeWithoutResult(status -> renditionRepository.findById(renditionId)
+                .ifPresent(rendition -> {
+                    rendition.setStatus(VideoRendition.Status.FAILED);
+                    rendition.setErrorMessage(message);
+                    rendition.setUpdatedAt(LocalDateTime.now());
+                }));
+    }
+
+    /**
+     * 进程停止导致的中断、媒体进程排队已满都不计入重试次数
+     */
+    private void requeue(Long renditionId) {
+        transactionTemplate.executeWithoutResult(status -> renditionRepository.findById(renditionId)
+                .ifPresent(rendition -> {
+                    rendition.setStatus(VideoRendition.Status.QUEUED);
+                    rendition.setAttempts(Math.max(rendition.getAttempts() - 1, 0));
+                    rendition.setUpdatedAt(LocalDateTime.now());
+                }));
+    }
+
+    private static VideoRendition newRendition(Long videoId, String name, int width, int height, long bandwidth,
+                                               VideoRendition.Status status, LocalDateTime now) {
+        VideoRendition rendition = new VideoRendition();
+        rendition.setVideoId(videoId);
+        rendition.setName(name);
+        rendition.setWidth(width);
+        rendition.setHeight(height);
+        rendition.setBandwidth(bandwidth);
+        rendition.setStatus(status);
+        rendition.setProgress(status == VideoRendition.Status.READY ? 100 : 0);
+        rendition.setCreatedAt(now);
+        rendition.setUpdatedAt(now);
+        return rendition;
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+}
@@ -0,0 +1,201 @@
+package com.videosite.service;
+
+import com.videosite.domain.entity.User;
+import com.videosite.domain.entity.Video;
+import com.videosite.domain.event.CountersFlushedEvent;
+import com.videosite.domain.event.UserDeletedEvent;
+import com.videosite.domain.event.UserUpdatedEvent;
+import com.videosite.domain.event.VideoDeletedEvent;
+import com.videosite.domain.event.VideoUploadedEvent;
+import com.videosite.dto.stats.CounterDelta;
+import com.videosite.repository.UserRepository;
+import com.videosite.repository.VideoRepository;
+import com.videosite.search.Bm25Params;
+import com.videosite.search.BooleanQuery;
+import com.videosite.search.IndexedVideo;
+import com.videosite.search.SearchHits;
+import com.videosite.search.SearchIndex;
+import com.videosite.search.SuggestionIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 搜索索引服务：启动时从video表构建内存倒排索引与联想前缀树，上传/删除后增量更新
+ */
+@Slf4j
+@Service
+public class SearchIndexService {
+
+    private static final int BUILD_BATCH_SIZE = 1000;
+
+    private final VideoRepository videoRepository;
+    private final UserRepository userRepository;
+
+    private final SearchIndex index = new SearchIndex();
+    private final SuggestionIndex suggestions;
+    private final Timer correctionTimer;
+    private volatile boolean ready = false;
+
+    public SearchIndexService(VideoRepository videoRepository,
+                              UserRepository userRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.search.suggest.top-k:10}") int suggestTopK) {
+        this.videoRepository = videoRepository;
+        this.userRepository = userRepository;
+        this.suggestions = new SuggestionIndex(suggestTopK);
+        this.correctionTimer = Timer.builder("search.fuzzy.correction")
+                .description("零结果查询的拼写纠错耗时")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    @Value("${app.search.bm25.k1:1.2}")
+    private double k1;
+
+    @Value("${app.search.bm25.b:0.75}")
+    private double b;
+
+    @Value("${app.search.bm25.title-weight:3.0}")
+    private double titleWeight;
+
+    @Value("${app.search.bm25.keywords-weight:2.0}")
+    private double keywordsWeight;
+
+    @Value("${app.search.bm25.uploader-weight:1.0}")
+    private double uploaderWeight;
+
+    /**
+     * 启动完成后分批加载全部视频建立索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIndex() {
+        long started = System.currentTimeMillis();
+        long lastId = 0;
+        List<Object[]> rows;
+        do {
+            rows = videoRepository.findIndexRowsAfter(lastId, PageRequest.of(0, BUILD_BATCH_SIZE));
+            for (Object[] row : rows) {
+                IndexedVideo video = new IndexedVideo(
+                        (Long) row[0], (String) row[1], (String) row[2],
+                        (Long) row[3], (String) row[4], (LocalDateTime) row[5]);
+                index.add(video);
+                suggestions.put(video.getId(), video.getTitle(), video.getKeywords(), video.getUploaderName(),
+                        row[6] != null ? (Long) row[6] : 0L);
+                lastId = (Long) row[0];
+            }
+        } while (rows.size() == BUILD_BATCH_SIZE);
+
+        ready = true;
+        log.info("搜索索引构建完成: {}个视频, 耗时{}ms", index.size(), System.currentTimeMillis() - started);
+    }
+
+    /**
+     * 索引是否已可用（构建完成前搜索回退到数据库）
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 在索引中执行布尔查询
+     */
+    public SearchHits search(BooleanQuery query, int offset, int limit) {
+        return index.search(query, offset, limit);
+    }
+
+    /**
+     * 键集分页：ID小于beforeId（为null时从最新开始）的命中，最新优先
+     */
+    public SearchHits searchOlderThan(BooleanQuery query, Long beforeId, int limit) {
+        return index.searchOlderThan(query, beforeId, limit);
+    }
+
+    /**
+     * 键集分页向前翻：ID大于afterId的命中，离游标最近的在前
+     */
+    public SearchHits searchNewerThan(BooleanQuery query, long afterId, int limit) {
+        return index.searchNewerThan(query, afterId, limit);
+    }
+
+    /**
+     * 在索引中执行布尔查询并按BM25相关度排序
+     */
+    public SearchHits searchRanked(BooleanQuery query, int offset, int limit) {
+        return index.searchRanked(query, offset, limit,
+                new Bm25Params(k1, b, titleWeight, keywordsWeight, uploaderWeight));
+    }
+
+    /**
+     * 对零结果查询做拼写纠错，无可纠正的词时返回null
+     */
+    public BooleanQuery correct(BooleanQuery query) {
+        return correctionTimer.record(() -> index.correct(query));
+    }
+
+    /**
+     * 返回以prefix开头的联想词，按播放量加权排序
+     */
+    public List<String> suggest(String prefix, int limit) {
+        return suggestions.suggest(prefix, limit);
+    }
+
+    @TransactionalEventListener
+    public void onVideoUploaded(VideoUploadedEvent event) {
+        Video video = event.getVideo();
+        String uploaderName = userRepository.findById(video.getUploaderId())
+                .map(User::getUsername)
+                .orElse(null);
+        index.add(toIndexedVideo(video, uploaderName));
+        suggestions.put(video.getId(), video.getTitle(), video.getKeywords(), uploaderName,
+                video.getViewsTotal() != null ? video.getViewsTotal() : 0L);
+    }
+
+    @TransactionalEventListener
+    public void onVideoDeleted(VideoDeletedEvent event) {
+        index.remove(event.getVideo().getId());
+        suggestions.remove(event.getVideo().getId());
+    }
+
+    @TransactionalEventListener
+    public void onUserUpdated(UserUpdatedEvent event) {
+        for (IndexedVideo video : index.findByUploader(event.getUserId())) {
+            index.add(new IndexedVideo(video.getId(), video.getTitle(), video.getKeywords(),
+                    video.getUploaderId(), event.getUsername(), video.getCreatedAt()));
+            suggestions.replace(video.getId(), video.getTitle(), video.getKeywords(), event.getUsername());
+        }
+    }
+
+    @TransactionalEventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        for (IndexedVideo video : index.findByUploader(event.getUserId())) {
+            index.remove(video.getId());
+            suggestions.remove(video.getId());
+        }
+    }
+
+    /**
+     * 播放计数刷写后同步提升联想词权重
+     */
+    @EventListener
+    public void onCountersFlushed(CountersFlushedEvent event) {
+        for (CounterDelta delta : event.getDeltas()) {
+            suggestions.addViews(delta.getVideoId(), delta.getViews());
+        }
+    }
+
+    private IndexedVideo toIndexedVideo(Video video, String uploaderName) {
+        LocalDateTime createdAt = video.getCreatedAt() != null ? video.getCreatedAt() : LocalDateTime.now();
+        return new IndexedVideo(video.getId(), video.getTitle(), video.getKeywords(),
+                video.getUploaderId(), uploaderName, createdAt);
+    }
+}
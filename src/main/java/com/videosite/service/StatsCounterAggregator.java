@@ -0,0 +1,283 @@
+package com.videosite.service;
+
+import com.videosite.domain.event.CountersFlushedEvent;
+import com.videosite.dto.stats.CounterDelta;
+import com.videosite.repository.CounterFlushRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 播放/下载计数的写后聚合器：请求线程只做内存累加，
+ * 后台按固定间隔（或积压超过阈值时）批量刷写到数据库。
+ * 进程崩溃时最多丢失一个刷写间隔或max-pending次计数
+ */
+@Slf4j
+@Service
+public class StatsCounterAggregator {
+
+    private final CounterFlushRepository counterFlushRepository;
+    private final TaskScheduler taskScheduler;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Map<CounterKey, Counters> counters = new ConcurrentHashMap<>();
+    private final LongAdder pendingEvents = new LongAdder();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+
+    private final Timer flushTimer;
+    private final Counter flushFailures;
+    private final Counter droppedEvents;
+
+    /**
+     * 连续刷写失败开始的时间（毫秒），刷写正常时为0
+     */
+    private volatile long failingSince;
+
+    @Value("${app.stats.max-pending:10000}")
+    private long maxPending;
+
+    @Value("${app.stats.max-retained-keys:200000}")
+    private int maxRetainedKeys;
+
+    public StatsCounterAggregator(CounterFlushRepository counterFlushRepository,
+                                  TaskScheduler taskScheduler,
+                                  ApplicationEventPublisher eventPublisher,
+                                  MeterRegistry meterRegistry) {
+        this.counterFlushRepository = counterFlushRepository;
+        this.taskScheduler = taskScheduler;
+        this.eventPublisher = eventPublisher;
+        this.flushTimer = Timer.builder("video.counter.flush")
+                .description("计数器批量刷写耗时")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("video.counter.flush.failures")
+                .description("计数器刷写失败次数")
+                .register(meterRegistry);
+        this.droppedEvents = Counter.builder("video.counter.dropped")
+                .description("因保留键数超限而丢弃的计数事件数")
+                .register(meterRegistry);
+        Gauge.builder("video.counter.pending", pendingEvents, LongAdder::sum)
+                .description("尚未刷写的计数事件数")
+                .register(meterRegistry);
+        Gauge.builder("video.counter.pending.keys", counters, Map::size)
+                .description("尚未刷写的(视频,小时)键数量")
+                .register(meterRegistry);
+        Gauge.builder("video.counter.flush.failing.seconds", this, StatsCounterAggregator::failingSeconds)
+                .description("计数刷写已连续失败的秒数，正常时为0，可据此告警")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录一次播放
+     */
+    public void recordView(Long videoId) {
+        add(new CounterKey(videoId, LocalDateTime.now().truncatedTo(ChronoUnit.HOURS)), 1, 0);
+        afterRecord();
+    }
+
+    /**
+     * 记录一次下载
+     */
+    public void recordDownload(Long videoId) {
+        add(new CounterKey(videoId, LocalDateTime.now().truncatedTo(ChronoUnit.HOURS)), 0, 1);
+        afterRecord();
+    }
+
+    /**
+     * 定时刷写
+     */
+    @Scheduled(fixedDelayString = "${app.stats.flush-interval-ms:5000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    /**
+     * 关闭时刷写剩余计数
+     */
+    @PreDestroy
+    public void shutdown() {
+        flushLock.lock();
+        try {
+            doFlush();
+            log.info("计数聚合器已完成关闭前刷写");
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 刷写当前累积的增量，已有刷写在进行时直接返回
+     */
+    public void flush() {
+        flushRequested.set(false);
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        try {
+            doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void add(CounterKey key, long views, long downloads) {
+        // 已过去的小时的计数器在刷写时被关闭移除，此时重新取一个新的计数器
+        while (!counters.computeIfAbsent(key, k -> new Counters()).add(views, downloads)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private void afterRecord() {
+        pendingEvents.increment();
+        if (pendingEvents.sum() >= maxPending && flushRequested.compareAndSet(false, true)) {
+            taskScheduler.schedule(this::flush, Instant.now());
+        }
+    }
+
+    private void doFlush() {
+        List<CounterDelta> deltas = drain();
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        long started = System.nanoTime();
+        List<CounterDelta> applied;
+        try {
+            applied = counterFlushRepository.flush(deltas);
+            log.debug("计数刷写完成: {}条增量", applied.size());
+        } catch (Exception e) {
+            // 刷写失败时将增量放回，等待下一周期重试
+            flushFailures.increment();
+            if (failingSince == 0) {
+                failingSince = System.currentTimeMillis();
+            }
+            restore(deltas);
+            log.error("计数刷写失败，{}条增量将在下次重试", deltas.size(), e);
+            return;
+        } finally {
+            flushTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+        failingSince = 0;
+
+        // 已写入的增量通知给内存中的派生数据（如搜索联想权重），在try之外发布以免监听器异常导致重复计数
+        if (!applied.isEmpty()) {
+            eventPublisher.publishEvent(new CountersFlushedEvent(applied));
+        }
+    }
+
+    /**
+     * 取出所有计数并清零；已过去的小时的计数器先关闭再移除，关闭后不再有写入，清零时不会漏掉计数
+     */
+    private List<CounterDelta> drain() {
+        LocalDateTime currentHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        List<CounterDelta> deltas = new ArrayList<>();
+        for (Map.Entry<CounterKey, Counters> entry : counters.entrySet()) {
+            CounterKey key = entry.getKey();
+            Counters value = entry.getValue();
+            if (key.hour().isBefore(currentHour)) {
+                value.close();
+                counters.remove(key, value);
+            }
+            long views = value.views.sumThenReset();
+            long downloads = value.downloads.sumThenReset();
+            if (views > 0 || downloads > 0) {
+                pendingEvents.add(-(views + downloads));
+                deltas.add(new CounterDelta(key.videoId(), key.hour(), views, downloads, null));
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * 刷写失败的增量放回内存。数据库长时间不可用时保留的键数受max-retained-keys限制，
+     * 优先保留较新小时的增量，超出部分丢弃并计入video.counter.dropped，避免内存无限增长
+     */
+    private void restore(List<CounterDelta> deltas) {
+        deltas.sort(Comparator.comparing(CounterDelta::getStatHour).reversed());
+        long dropped = 0;
+        int droppedKeys = 0;
+        for (CounterDelta delta : deltas) {
+            CounterKey key = new CounterKey(delta.getVideoId(), delta.getStatHour());
+            long events = delta.getViews() + delta.getDownloads();
+            if (counters.size() >= maxRetainedKeys && !counters.containsKey(key)) {
+                dropped += events;
+                droppedKeys++;
+                continue;
+            }
+            add(key, delta.getViews(), delta.getDownloads());
+            pendingEvents.add(events);
+        }
+        if (droppedKeys > 0) {
+            droppedEvents.increment(dropped);
+            log.error("待刷写的计数键数已达上限{}，丢弃{}个键共{}次计数", maxRetainedKeys, droppedKeys, dropped);
+        }
+    }
+
+    private double failingSeconds() {
+        long since = failingSince;
+        return since == 0 ? 0 : (System.currentTimeMillis() - since) / 1000.0;
+    }
+
+    private record CounterKey(Long videoId, LocalDateTime hour) {
+    }
+
+    /**
+     * 一个(视频,小时)的计数；写入持有读锁以便并发累加，关闭持有写锁，关闭后不再接受写入
+     */
+    private static final class Counters {
+        private final LongAdder views = new LongAdder();
+        private final LongAdder downloads = new LongAdder();
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private boolean closed;
+
+        boolean add(long viewCount, long downloadCount) {
+            lock.readLock().lock();
+            try {
+                if (closed) {
+                    return false;
+                }
+                if (viewCount != 0) {
+                    views.add(viewCount);
+                }
+                if (downloadCount != 0) {
+                    downloads.add(downloadCount);
+                }
+                return true;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void close() {
+            lock.writeLock().lock();
+            try {
+                closed = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.videosite.service;
+
+import com.videosite.dto.stats.StatsPoint;
+import com.videosite.dto.stats.StatsResolution;
+import com.videosite.dto.stats.StatsSeries;
+import com.videosite.repository.StatsSeriesRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 全站播放/下载时间序列：计数刷写写入小时表，定时任务把完整的天汇总进日表、完整的月汇总进月表，
+ * 并按保留期清理细粒度数据。查询时已汇总的部分直接读粗表，尚未汇总的尾部从细表补上，
+ * 读取的行数只取决于范围内的桶数，与视频数量和原始计数无关
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StatsSeriesService {
+
+    private final StatsSeriesRepository statsSeriesRepository;
+
+    @Value("${app.stats.hourly-retention-days:14}")
+    private int hourlyRetentionDays;
+
+    @Value("${app.stats.daily-retention-days:400}")
+    private int dailyRetentionDays;
+
+    @Value("${app.stats.max-points:1000}")
+    private int maxPoints;
+
+    /**
+     * 查询 [from, to) 的时间序列。请求粒度的数据已超出保留期或桶数超过上限时自动改用更粗的粒度，
+     * 实际粒度见返回值的 resolution；没有数据的桶补0
+     */
+    public StatsSeries query(LocalDateTime from, LocalDateTime to, StatsResolution resolution) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("开始时间必须早于结束时间");
+        }
+        StatsResolution effective = chooseResolution(from, to, resolution);
+        LocalDateTime start = effective.truncate(from);
+        LocalDateTime end = alignUp(effective, to);
+
+        // 各粒度已汇总到的位置：月水位之前读月表，日水位之前读日表，其余读小时表
+        LocalDateTime dayMark = watermark(StatsResolution.DAY, start);
+        LocalDateTime monthMark = watermark(StatsResolution.MONTH, start);
+
+        Map<LocalDateTime, long[]> buckets = new TreeMap<>();
+        LocalDateTime cursor = start;
+        if (effective == StatsResolution.MONTH) {
+            cursor = accumulate(buckets, effective, StatsResolution.MONTH, cursor, min(end, monthMark));
+        }
+        if (effective != StatsResolution.HOUR) {
+            cursor = accumulate(buckets, effective, StatsResolution.DAY, cursor, min(end, dayMark));
+        }
+        accumulate(buckets, effective, StatsResolution.HOUR, cursor, end);
+
+        List<StatsPoint> points = new ArrayList<>();
+        for (LocalDateTime bucket = start; bucket.isBefore(end); bucket = effective.next(bucket)) {
+            long[] counts = buckets.getOrDefault(bucket, new long[2]);
+            points.add(new StatsPoint(bucket, counts[0], counts[1]));
+        }
+        return new StatsSeries(effective, start, end, points);
+    }
+
+    /**
+     * 定时汇总：先把完整的天汇总进日表，再把完整的月汇总进月表，最后清理超过保留期的细粒度数据。
+     * 每次都重算上一个已汇总的天和月，吸收跨过整点后才刷写成功的迟到增量；汇总是覆盖写，重复执行无副作用
+     */
+    @Scheduled(cron = "${app.stats.rollup-cron:0 5 * * * *}")
+    @Transactional
+    public void rollup() {
+        LocalDateTime today = LocalDateTime.now().truncatedTo(ChronoUnit.DAYS);
+        LocalDateTime monthStart = today.withDayOfMonth(1);
+
+        LocalDateTime dayMark = statsSeriesRepository.findRolledUntil(StatsResolution.DAY);
+        LocalDateTime dayFrom = dayMark != null ? min(dayMark, today).minusDays(1) : today.minusDays(hourlyRetentionDays);
+        int days = statsSeriesRepository.rollup(StatsResolution.HOUR, StatsResolution.DAY, dayFrom, today);
+        statsSeriesRepository.saveRolledUntil(StatsResolution.DAY, today);
+
+        LocalDateTime monthMark = statsSeriesRepository.findRolledUntil(StatsResolution.MONTH);
+        LocalDateTime monthFrom = monthMark != null
+                ? min(monthMark, monthStart).minusMonths(1)
+                : StatsResolution.MONTH.truncate(today.minusDays(dailyRetentionDays));
+        int months = statsSeriesRepository.rollup(StatsResolution.DAY, StatsResolution.MONTH, monthFrom, monthStart);
+        statsSeriesRepository.saveRolledUntil(StatsResolution.MONTH, monthStart);
+
+        // 只清理已汇总进上一级的数据
+        int hoursDeleted = statsSeriesRepository.deleteBefore(StatsResolution.HOUR,
+                today.minusDays(Math.max(1, hourlyRetentionDays)));
+        int daysDeleted = statsSeriesRepository.deleteBefore(StatsResolution.DAY,
+                min(StatsResolution.MONTH.truncate(today.minusDays(dailyRetentionDays)), monthStart));
+        log.debug("统计汇总完成: 日{}行, 月{}行, 清理小时{}行, 清理日{}行", days, months, hoursDeleted, daysDeleted);
+    }
+
+    /**
+     * 选择能满足请求的粒度：细表里已清理掉的时间只能从粗表读，桶数过多时也逐级放粗
+     */
+    private StatsResolution chooseResolution(LocalDateTime from, LocalDateTime to, StatsResolution requested) {
+        LocalDateTime today = LocalDateTime.now().truncatedTo(ChronoUnit.DAYS);
+        StatsResolution resolution = requested;
+        if (resolution == StatsResolution.HOUR
+                && (from.isBefore(today.minusDays(hourlyRetentionDays)) || exceedsMaxPoints(resolution, from, to))) {
+            resolution = StatsResolution.DAY;
+        }
+        if (resolution == StatsResolution.DAY
+                && (from.isBefore(today.minusDays(dailyRetentionDays)) || exceedsMaxPoints(resolution, from, to))) {
+            resolution = StatsResolution.MONTH;
+        }
+        if (exceedsMaxPoints(resolution, from, to)) {
+            throw new IllegalArgumentException("查询范围过大");
+        }
+        return resolution;
+    }
+
+    private boolean exceedsMaxPoints(StatsResolution resolution, LocalDateTime from, LocalDateTime to) {
+        ChronoUnit unit = switch (resolution) {
+            case HOUR -> ChronoUnit.HOURS;
+            case DAY -> ChronoUnit.DAYS;
+            case MONTH -> ChronoUnit.MONTHS;
+        };
+        return unit.between(resolution.truncate(from), to) >= maxPoints;
+    }
+
+    /**
+     * 从source表读取 [from, to) 并按目标粒度累加，返回下一段的起点
+     */
+    private LocalDateTime accumulate(Map<LocalDateTime, long[]> buckets, StatsResolution target,
+                                     StatsResolution source, LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return from;
+        }
+        for (StatsPoint point : statsSeriesRepository.findRange(source, from, to)) {
+            long[] counts = buckets.computeIfAbsent(target.truncate(point.getBucketStart()), key -> new long[2]);
+            counts[0] += point.getViews();
+            counts[1] += point.getDownloads();
+        }
+        return to;
+    }
+
+    private LocalDateTime watermark(StatsResolution level, LocalDateTime fallback) {
+        LocalDateTime rolledUntil = statsSeriesRepository.findRolledUntil(level);
+        return rolledUntil != null ? rolledUntil : fallback;
+    }
+
+    private static LocalDateTime alignUp(StatsResolution resolution, LocalDateTime time) {
+        LocalDateTime bucket = resolution.truncate(time);
+        return bucket.equals(time) ? bucket : resolution.next(bucket);
+    }
+
+    private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+        return a.isBefore(b) ? a : b;
+    }
+}
@@ -1,8 +1,8 @@
 package com.videosite.service;
 
 import com.videosite.domain.entity.VideoDailyStats;
+import com.videosite.dto.stats.CounterTotals;
 import com.videosite.repository.VideoDailyStatsRepository;
-import com.videosite.repository.VideoRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -10,6 +10,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Slf4j
@@ -18,7 +19,7 @@ import java.util.Optional;
 public class StatsService {
     
     private final VideoDailyStatsRepository statsRepository;
-    private final VideoRepository videoRepository;
+    private final StatsTotalsService statsTotalsService;
     
     /**
      * 记录每日播放统计
@@ -51,20 +52,6 @@ public class StatsService {
         return statsRepository.findByStatDateBetweenOrderByStatDate(startDate, endDate);
     }
     
-    /**
-     * 获取每日播放量统计
-     */
-    public List<Object[]> getDailyViewsStats(LocalDate startDate, LocalDate endDate) {
-        return statsRepository.getDailyViewsStats(startDate, endDate);
-    }
-    
-    /**
-     * 获取每日下载量统计
-     */
-    public List<Object[]> getDailyDownloadsStats(LocalDate startDate, LocalDate endDate) {
-        return statsRepository.getDailyDownloadsStats(startDate, endDate);
-    }
-    
     /**
      * 获取指定视频在指定日期的统计信息
      */
@@ -73,18 +60,16 @@ public class StatsService {
     }
     
     /**
-     * 获取总播放次数
+     * 获取全站累计播放/下载次数（内存中的汇总，不扫描视频表）
      */
-    public Long getTotalViews() {
-        Long total = videoRepository.getTotalViews();
-        return total != null ? total : 0L;
+    public CounterTotals getGlobalTotals() {
+        return statsTotalsService.getGlobal();
     }
     
     /**
-     * 获取总下载次数
+     * 获取各上传者的累计播放/下载次数
      */
-    public Long getTotalDownloads() {
-        Long total = videoRepository.getTotalDownloads();
-        return total != null ? total : 0L;
+    public Map<Long, CounterTotals> getUploaderTotals() {
+        return statsTotalsService.getUploaders();
     }
 }
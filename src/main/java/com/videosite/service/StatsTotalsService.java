@@ -0,0 +1,142 @@
+package com.videosite.service;
+
+import com.videosite.domain.event.CountersFlushedEvent;
+import com.videosite.domain.event.UserDeletedEvent;
+import com.videosite.domain.event.VideoDeletedEvent;
+import com.videosite.dto.stats.CounterDelta;
+import com.videosite.dto.stats.CounterTotals;
+import com.videosite.repository.StatsTotalsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 全站与各上传者的播放/下载累计：数据库中的 stats_totals 随计数刷写在同一事务内更新，
+ * 内存中保留一份副本供后台首页等读取，不扫描video表。刷写后按增量更新副本，
+ * 删除视频/用户后从库中重新读取受影响的行，核对任务定期按video表重新汇总并纠正偏差
+ */
+@Slf4j
+@Service
+public class StatsTotalsService {
+
+    private final StatsTotalsRepository statsTotalsRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile CounterTotals global = CounterTotals.ZERO;
+    private final Map<Long, CounterTotals> uploaders = new ConcurrentHashMap<>();
+
+    public StatsTotalsService(StatsTotalsRepository statsTotalsRepository,
+                              PlatformTransactionManager transactionManager) {
+        this.statsTotalsRepository = statsTotalsRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 启动完成后载入汇总表
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        synchronized (this) {
+            global = statsTotalsRepository.findGlobal();
+            uploaders.clear();
+            uploaders.putAll(statsTotalsRepository.findAllUploaders());
+        }
+        log.info("累计汇总已载入: 播放{}, 下载{}, 上传者{}个", global.getViews(), global.getDownloads(), uploaders.size());
+    }
+
+    /**
+     * 全站累计
+     */
+    public CounterTotals getGlobal() {
+        return global;
+    }
+
+    /**
+     * 某上传者的累计，没有视频时为0
+     */
+    public CounterTotals getUploader(Long uploaderId) {
+        return uploaders.getOrDefault(uploaderId, CounterTotals.ZERO);
+    }
+
+    /**
+     * 所有上传者的累计（只读视图）
+     */
+    public Map<Long, CounterTotals> getUploaders() {
+        return Collections.unmodifiableMap(uploaders);
+    }
+
+    /**
+     * 计数刷写成功后把增量计入内存副本
+     */
+    @EventListener
+    public void onCountersFlushed(CountersFlushedEvent event) {
+        synchronized (this) {
+            CounterTotals updated = global;
+            for (CounterDelta delta : event.getDeltas()) {
+                updated = updated.plus(delta.getViews(), delta.getDownloads());
+                if (delta.getUploaderId() != null) {
+                    uploaders.merge(delta.getUploaderId(), new CounterTotals(delta.getViews(), delta.getDownloads()),
+                            (a, b) -> a.plus(b.getViews(), b.getDownloads()));
+                }
+            }
+            global = updated;
+        }
+    }
+
+    @TransactionalEventListener
+    public void onVideoDeleted(VideoDeletedEvent event) {
+        reload(event.getVideo().getUploaderId());
+    }
+
+    @TransactionalEventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        synchronized (this) {
+            global = statsTotalsRepository.findGlobal();
+            uploaders.remove(event.getUserId());
+        }
+    }
+
+    /**
+     * 定期核对：锁住全站行后按video表重新汇总并覆盖汇总表。进行中的计数刷写会在更新汇总行时等待，
+     * 其增量在核对提交后再累加，因此不会被覆盖或重复计入
+     */
+    @Scheduled(cron = "${app.stats.totals-reconcile-cron:0 30 3 * * *}")
+    public void reconcile() {
+        long started = System.currentTimeMillis();
+        CounterTotals[] before = new CounterTotals[1];
+        CounterTotals derived = transactionTemplate.execute(status -> {
+            before[0] = statsTotalsRepository.lockGlobal();
+            Map<Long, CounterTotals> byUploader = statsTotalsRepository.sumVideosByUploader();
+            CounterTotals sum = CounterTotals.ZERO;
+            for (CounterTotals totals : byUploader.values()) {
+                sum = sum.plus(totals.getViews(), totals.getDownloads());
+            }
+            statsTotalsRepository.replaceAll(sum, byUploader);
+            return sum;
+        });
+
+        if (derived != null && !derived.equals(before[0])) {
+            log.warn("累计汇总与video表不一致，已纠正: 播放 {} -> {}, 下载 {} -> {}",
+                    before[0].getViews(), derived.getViews(), before[0].getDownloads(), derived.getDownloads());
+        }
+        load();
+        log.debug("累计汇总核对完成: 耗时{}ms", System.currentTimeMillis() - started);
+    }
+
+    private void reload(Long uploaderId) {
+        synchronized (this) {
+            global = statsTotalsRepository.findGlobal();
+            CounterTotals totals = statsTotalsRepository.findUploader(uploaderId);
+            uploaders.put(uploaderId, totals);
+        }
+    }
+}
@@ -1,23 +1,35 @@
 package com.videosite.service;
 
+import com.videosite.dto.media.ThumbnailVariant;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.HexFormat;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class StorageService {
     
+    private static final int HASH_BUFFER_SIZE = 256 * 1024;
+    
     @Value("${app.storage.base-dir:./data}")
     private String baseDir;
     
@@ -27,6 +39,12 @@ public class StorageService {
     @Value("${app.storage.thumb-dir:thumbs}")
     private String thumbDir;
     
+    @Value("${app.storage.hls-dir:hls}")
+    private String hlsDir;
+    
+    @Value("${app.thumbnail.width:320}")
+    private int defaultThumbnailWidth;
+    
     /**
      * 初始化存储目录
      */
@@ -52,6 +70,14 @@ public class StorageService {
         return videoDir + "/" + dateDir + "/" + filename;
     }
     
+    /**
+     * 内容寻址的视频存储路径：按SHA-256前两级分目录，如 videos/sha256/ab/cd/abcd....mp4
+     */
+    public String blobStoragePath(String contentHash) {
+        return videoDir + "/sha256/" + contentHash.substring(0, 2) + "/" + contentHash.substring(2, 4)
+                + "/" + contentHash + ".mp4";
+    }
+    
     /**
      * 生成缩略图存储路径
      */
@@ -62,6 +88,95 @@ public class StorageService {
         return thumbDir + "/" + dateDir + "/" + filename;
     }
     
+    /**
+     * 缩略图变体的存储路径：默认尺寸的JPEG即 thumb_path 本身（兼容旧数据），
+     * 其余变体与其同目录，文件名追加宽度并替换扩展名，如 uuid-640w.webp
+     */
+    public String thumbnailVariantPath(String thumbPath, ThumbnailVariant variant) {
+        if (variant.getWidth() == defaultThumbnailWidth && "jpg".equals(variant.getFormat())) {
+            return thumbPath;
+        }
+        int dot = thumbPath.lastIndexOf('.');
+        String stem = dot > thumbPath.lastIndexOf('/') ? thumbPath.substring(0, dot) : thumbPath;
+        return stem + "-" + variant.getWidth() + "w." + variant.getFormat();
+    }
+    
+    /**
+     * 故事板雪碧图的存储路径，与缩略图同目录，如 uuid-storyboard.jpg
+     */
+    public String storyboardSpritePath(String thumbPath) {
+        int dot = thumbPath.lastIndexOf('.');
+        String stem = dot > thumbPath.lastIndexOf('/') ? thumbPath.substring(0, dot) : thumbPath;
+        return stem + "-storyboard.jpg";
+    }
+    
+    /**
+     * 故事板WebVTT索引的存储路径：与雪碧图同名，扩展名为 .vtt
+     */
+    public String storyboardVttPath(String spritePath) {
+        return spritePath.substring(0, spritePath.lastIndexOf('.')) + ".vtt";
+    }
+    
+    /**
+     * 删除故事板雪碧图及其索引
+     */
+    public void deleteStoryboard(String spritePath) {
+        if (spritePath == null) {
+            return;
+        }
+        deleteFile(spritePath);
+        deleteFile(storyboardVttPath(spritePath));
+    }
+    
+    /**
+     * 删除缩略图及其全部变体
+     */
+    public void deleteThumbnails(String thumbPath, String thumbVariants) {
+        deleteFile(thumbPath);
+        for (ThumbnailVariant variant : ThumbnailVariant.parseList(thumbVariants)) {
+            String variantPath = thumbnailVariantPath(thumbPath, variant);
+            if (!variantPath.equals(thumbPath)) {
+                deleteFile(variantPath);
+            }
+        }
+    }
+    
+    /**
+     * 生成HLS分片目录，如 hls/2024/01/31/uuid，播放列表与分片都在该目录下
+     */
+    public String generateHlsStoragePath() {
+        LocalDate now = LocalDate.now();
+        String dateDir = now.format(DateTimeFormatter.ofPattern("yyyy/MM/dd"));
+        return hlsDir + "/" + dateDir + "/" + UUID.randomUUID();
+    }
+    
+    /**
+     * 删除HLS分片目录及其中全部文件（含各码率档位子目录）
+     */
+    public void deleteHls(String hlsPath) {
+        if (hlsPath == null) {
+            return;
+        }
+        deleteDirectory(getFullPath(hlsPath));
+        log.info("删除HLS目录: {}", hlsPath);
+    }
+    
+    /**
+     * 递归删除目录，不存在时忽略
+     */
+    public void deleteDirectory(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            log.warn("删除目录失败: {}, 错误: {}", dir, e.getMessage());
+        }
+    }
+    
     /**
      * 获取文件的完整路径
      */
@@ -95,6 +210,58 @@ public class StorageService {
         }
     }
     
+    /**
+     * 移动文件（同一文件系统上为重命名，不复制数据），目标已存在时覆盖
+     */
+    public void moveFile(String sourcePath, String targetPath) throws IOException {
+        ensureDirectoryExists(targetPath);
+        Files.move(getFullPath(sourcePath), getFullPath(targetPath),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * 计算文件内容的SHA-256（十六进制）
+     */
+    public String contentHash(String relativePath) throws IOException {
+        return HexFormat.of().formatHex(digestPrefix(relativePath, getFileSize(relativePath)).digest());
+    }
+    
+    /**
+     * 读取文件前length个字节计算SHA-256，返回尚未完成的摘要以便继续追加
+     */
+    public MessageDigest digestPrefix(String relativePath, long length) throws IOException {
+        MessageDigest digest = newSha256();
+        try (FileChannel channel = FileChannel.open(getFullPath(relativePath), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+            long remaining = length;
+            while (remaining > 0) {
+                buffer.clear();
+                if (remaining < buffer.capacity()) {
+                    buffer.limit((int) remaining);
+                }
+                int read = channel.read(buffer);
+                if (read < 0) {
+                    throw new IOException("文件长度不足: " + relativePath);
+                }
+                buffer.flip();
+                digest.update(buffer);
+                remaining -= read;
+            }
+        }
+        return digest;
+    }
+    
+    /**
+     * 新建SHA-256摘要
+     */
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
     /**
      * 检查文件是否存在
      */
@@ -0,0 +1,209 @@
+package com.videosite.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.videosite.domain.event.VideoDeletedEvent;
+import com.videosite.domain.event.VideoUploadedEvent;
+import com.videosite.dto.media.CachedThumbnail;
+import com.videosite.dto.media.ThumbnailVariant;
+import com.videosite.repository.VideoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 缩略图内存缓存：按视频ID缓存其已生成的变体列表，按文件路径缓存图片字节，
+ * 字节缓存总容量按字节数限制（W-TinyLFU淘汰）。
+ * 缩略图文件以UUID命名且生成后不再修改，命中时无需查库和访问磁盘
+ */
+@Slf4j
+@Service
+public class ThumbnailCacheService {
+
+    private static final int MAX_VARIANT_SETS = 100_000;
+
+    private final VideoRepository videoRepository;
+    private final StorageService storageService;
+    private final int defaultWidth;
+    private final Cache<Long, ThumbnailSet> variantSets;
+    private final Cache<String, CachedThumbnail> cache;
+
+    public ThumbnailCacheService(VideoRepository videoRepository,
+                                 StorageService storageService,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.thumbnail.width:320}") int defaultWidth,
+                                 @Value("${app.thumbnail.cache.max-bytes:33554432}") long maxBytes) {
+        this.videoRepository = videoRepository;
+        this.storageService = storageService;
+        this.defaultWidth = defaultWidth;
+        this.variantSets = Caffeine.newBuilder()
+                .maximumSize(MAX_VARIANT_SETS)
+                .build();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String path, CachedThumbnail thumbnail) -> thumbnail.getData().length)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "thumbnails");
+    }
+
+    /**
+     * 获取缩略图：按Accept头选择客户端支持的最优格式（AVIF > WebP > JPEG），
+     * 再取不小于请求宽度的最小尺寸（都不够大时取最大尺寸）。视频或文件不存在时返回空
+     */
+    public Optional<CachedThumbnail> get(Long videoId, Integer width, String accept) {
+        ThumbnailSet set = variantSets.get(videoId, this::loadVariants);
+        if (set == null) {
+            return Optional.empty();
+        }
+        String relativePath = select(set, width != null ? width : defaultWidth, accept);
+        try {
+            return Optional.ofNullable(cache.get(relativePath, this::load));
+        } catch (UncheckedIOException e) {
+            log.error("读取缩略图失败: videoId={}, path={}", videoId, relativePath, e.getCause());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 视频处理完成公开后移除其变体列表：处理期间缩略图路径可能被换成复用的路径，变体也是此时才写入
+     */
+    @TransactionalEventListener
+    public void onVideoUploaded(VideoUploadedEvent event) {
+        variantSets.invalidate(event.getVideo().getId());
+    }
+
+    /**
+     * 视频删除后移除缓存
+     */
+    @TransactionalEventListener
+    public void onVideoDeleted(VideoDeletedEvent event) {
+        ThumbnailSet set = variantSets.getIfPresent(event.getVideo().getId());
+        variantSets.invalidate(event.getVideo().getId());
+        String thumbPath = event.getVideo().getThumbPath();
+        if (thumbPath == null && set != null) {
+            thumbPath = set.thumbPath();
+        }
+        if (thumbPath == null) {
+            return;
+        }
+        cache.invalidate(thumbPath);
+        for (ThumbnailVariant variant : ThumbnailVariant.parseList(event.getVideo().getThumbVariants())) {
+            cache.invalidate(storageService.thumbnailVariantPath(thumbPath, variant));
+        }
+    }
+
+    /**
+     * 只能查到公开视频；未公开时返回null，Caffeine不缓存null，公开后的请求会重新查库
+     */
+    private ThumbnailSet loadVariants(Long videoId) {
+        List<Object[]> rows = videoRepository.findThumbnailInfoById(videoId);
+        if (rows.isEmpty() || rows.get(0)[0] == null) {
+            return null;
+        }
+        Object[] row = rows.get(0);
+        return new ThumbnailSet((String) row[0], ThumbnailVariant.parseList((String) row[1]));
+    }
+
+    private String select(ThumbnailSet set, int width, String accept) {
+        if (set.variants().isEmpty()) {
+            // 变体功能上线前的旧视频只有单张JPEG
+            return set.thumbPath();
+        }
+        String format = "jpg";
+        if (accepts(accept, "image/avif") && hasFormat(set, "avif")) {
+            format = "avif";
+        } else if (accepts(accept, "image/webp") && hasFormat(set, "webp")) {
+            format = "webp";
+        }
+
+        ThumbnailVariant best = null;
+        ThumbnailVariant largest = null;
+        for (ThumbnailVariant variant : set.variants()) {
+            if (!variant.getFormat().equals(format)) {
+                continue;
+            }
+            if (largest == null || variant.getWidth() > largest.getWidth()) {
+                largest = variant;
+            }
+            if (variant.getWidth() >= width && (best == null || variant.getWidth() < best.getWidth())) {
+                best = variant;
+            }
+        }
+        ThumbnailVariant chosen = best != null ? best : largest;
+        return chosen != null ? storageService.thumbnailVariantPath(set.thumbPath(), chosen) : set.thumbPath();
+    }
+
+    private static boolean hasFormat(ThumbnailSet set, String format) {
+        for (ThumbnailVariant variant : set.variants()) {
+            if (variant.getFormat().equals(format)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean accepts(String accept, String mediaType) {
+        return accept != null && accept.toLowerCase().contains(mediaType);
+    }
+
+    private CachedThumbnail load(String relativePath) {
+        Path path = storageService.getFullPath(relativePath);
+        byte[] data;
+        try {
+            data = Files.readAllBytes(path);
+        } catch (NoSuchFileException e) {
+            log.warn("缩略图文件不存在: {}", path);
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new CachedThumbnail(data, strongEtag(data), contentType(path));
+    }
+
+    /**
+     * 强ETag：内容SHA-256摘要的前128位
+     */
+    private static String strongEtag(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String contentType(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        if (name.endsWith(".png")) {
+            return "image/png";
+        }
+        if (name.endsWith(".webp")) {
+            return "image/webp";
+        }
+        if (name.endsWith(".avif")) {
+            return "image/avif";
+        }
+        return "image/jpeg";
+    }
+
+    /**
+     * 某视频的缩略图主路径及已生成的变体
+     */
+    private record ThumbnailSet(String thumbPath, List<ThumbnailVariant> variants) {
+    }
+}
@@ -1,5 +1,13 @@
 package com.videosite.service;
 
+import com.videosite.domain.entity.Video;
+import com.videosite.dto.media.RenditionRung;
+import com.videosite.dto.media.StoryboardLayout;
+import com.videosite.dto.media.ThumbnailVariant;
+import com.videosite.media.Mp4BoxParser;
+import com.videosite.media.Mp4FastStart;
+import com.videosite.media.Mp4Info;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -8,10 +16,21 @@ import org.springframework.stereotype.Service;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -20,6 +39,21 @@ import java.util.regex.Pattern;
 @RequiredArgsConstructor
 public class TranscodeService {
     
+    private static final Pattern DURATION_PATTERN = Pattern.compile("\"duration\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern CODEC_NAME_PATTERN = Pattern.compile("\"codec_name\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern WIDTH_PATTERN = Pattern.compile("\"width\"\\s*:\\s*(\\d+)");
+    private static final Pattern HEIGHT_PATTERN = Pattern.compile("\"height\"\\s*:\\s*(\\d+)");
+    private static final Pattern PROGRESS_LINE_PATTERN = Pattern.compile("[a-z0-9_]+=\\S*");
+    private static final Pattern BIT_RATE_PATTERN = Pattern.compile("\"bit_rate\"\\s*:\\s*\"(\\d+)\"");
+    private static final int FAST_START_LOCK_STRIPES = 64;
+    private static final long OUTPUT_DRAIN_SECONDS = 5;
+    
+    private final MeterRegistry meterRegistry;
+    private final MediaJobScheduler mediaJobScheduler;
+    
+    /** 按文件路径分段的锁：相同内容的上传共用同一个文件，同一文件的快速启动改写串行执行 */
+    private final ReentrantLock[] fastStartLocks = newLocks(FAST_START_LOCK_STRIPES);
+    
     @Value("${app.ffmpeg.path:ffmpeg}")
     private String ffmpegPath;
     
@@ -29,16 +63,68 @@ public class TranscodeService {
     @Value("${app.thumbnail.width:320}")
     private int thumbnailWidth;
     
-    @Value("${app.thumbnail.height:180}")
-    private int thumbnailHeight;
+    @Value("${app.thumbnail.variant-widths:320,640,1280}")
+    private int[] thumbnailVariantWidths;
+    
+    @Value("${app.thumbnail.formats:jpg,webp}")
+    private String[] thumbnailFormats;
     
     @Value("${app.thumbnail.time-position:5}")
     private int thumbnailTimePosition;
     
+    @Value("${app.storyboard.interval:5}")
+    private int storyboardInterval;
+    
+    @Value("${app.storyboard.max-tiles:100}")
+    private int storyboardMaxTiles;
+    
+    @Value("${app.storyboard.columns:10}")
+    private int storyboardColumns;
+    
+    @Value("${app.storyboard.tile-width:160}")
+    private int storyboardTileWidth;
+    
+    @Value("${app.hls.segment-seconds:6}")
+    private int hlsSegmentSeconds;
+    
+    @Value("${app.abr.ladder:1080:5000,720:2800,480:1400,360:800}")
+    private String abrLadder;
+    
+    @Value("${app.abr.audio-bitrate-kbps:128}")
+    private int abrAudioBitrateKbps;
+    
+    @Value("${app.abr.preset:veryfast}")
+    private String abrPreset;
+    
     /**
-     * 验证视频文件格式
+     * 验证视频文件格式：先直接解析MP4的box结构，解析不了的文件再调用ffprobe
      */
     public VideoInfo validateVideoFile(Path videoPath) throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        Mp4Info mp4Info = null;
+        try {
+            mp4Info = Mp4BoxParser.parse(videoPath);
+        } catch (IOException e) {
+            log.warn("解析MP4结构失败: {}, 错误: {}", videoPath, e.getMessage());
+        }
+        
+        if (mp4Info != null) {
+            meterRegistry.timer("media.probe", "method", "box")
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            return VideoInfo.from(mp4Info);
+        }
+        
+        log.info("无法直接解析MP4结构，改用ffprobe: {}", videoPath);
+        VideoInfo info = probeWithFfprobe(videoPath);
+        meterRegistry.timer("media.probe", "method", "ffprobe")
+                .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return info;
+    }
+    
+    /**
+     * 调用ffprobe读取视频信息
+     */
+    private VideoInfo probeWithFfprobe(Path videoPath) throws IOException, InterruptedException {
         List<String> command = new ArrayList<>();
         command.add(ffprobePath);
         command.add("-v");
@@ -49,36 +135,242 @@ public class TranscodeService {
         command.add("-show_streams");
         command.add(videoPath.toString());
         
-        ProcessBuilder pb = new ProcessBuilder(command);
-        Process process = pb.start();
-        
-        StringBuilder output = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
+        StringBuffer output = new StringBuffer();
+        try (MediaJobScheduler.Permit permit = mediaJobScheduler.acquire(MediaJobScheduler.Priority.PROBE)) {
+            ProcessBuilder pb = new ProcessBuilder(command);
+            Process process = pb.start();
+            
+            // 设置超时时间为60秒
+            boolean finished = awaitProcess(process, 60, line -> output.append(line).append("\n"));
+            if (!finished) {
+                throw new RuntimeException("视频文件验证超时（60秒）");
+            }
+            
+            int exitCode = process.exitValue();
+            if (exitCode != 0) {
+                throw new IllegalArgumentException("无法读取视频文件信息");
             }
         }
         
-        // 设置超时时间为60秒
-        boolean finished = process.waitFor(60, TimeUnit.SECONDS);
-        if (!finished) {
-            process.destroyForcibly();
-            throw new RuntimeException("视频文件验证超时（60秒）");
+        return parseVideoInfo(output.toString());
+    }
+    
+    /**
+     * 把视频改为快速启动布局（moov在mdat之前），浏览器首个请求即可拿到索引开始播放。
+     * moov在末尾时优先在Java中搬移并修正块偏移，结构不支持时用FFmpeg无损重封装；
+     * 结果先写唯一命名的临时文件再原子替换，返回 Video.FAST_START_* 之一。
+     * 相同内容的上传共用同一个文件，同一文件的改写持锁串行，拿到锁后重新检测，已被其他任务改写过的直接返回
+     */
+    public String normalizeFastStart(Path videoPath) throws IOException, InterruptedException {
+        ReentrantLock lock = fastStartLocks[Math.floorMod(videoPath.toAbsolutePath().hashCode(), fastStartLocks.length)];
+        lock.lockInterruptibly();
+        try {
+            return normalizeFastStartLocked(videoPath);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private String normalizeFastStartLocked(Path videoPath) throws IOException, InterruptedException {
+        Mp4FastStart.Layout layout = Mp4FastStart.detect(videoPath);
+        if (layout == Mp4FastStart.Layout.FAST_START) {
+            meterRegistry.counter("media.faststart", "result", Video.FAST_START_NATIVE).increment();
+            return Video.FAST_START_NATIVE;
         }
         
-        int exitCode = process.exitValue();
-        if (exitCode != 0) {
-            throw new IllegalArgumentException("无法读取视频文件信息");
+        Path tempPath = videoPath.resolveSibling(videoPath.getFileName() + ".faststart.tmp-" + UUID.randomUUID());
+        try {
+            String result;
+            if (layout == Mp4FastStart.Layout.MOOV_AT_END && Mp4FastStart.relocate(videoPath, tempPath)) {
+                result = Video.FAST_START_RELOCATED;
+            } else {
+                remuxFastStart(videoPath, tempPath);
+                result = Video.FAST_START_REMUXED;
+            }
+            Files.move(tempPath, videoPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            meterRegistry.counter("media.faststart", "result", result).increment();
+            log.info("视频已转为快速启动布局: {}, 方式={}", videoPath, result);
+            return result;
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+    
+    private static ReentrantLock[] newLocks(int count) {
+        ReentrantLock[] locks = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            locks[i] = new ReentrantLock();
         }
+        return locks;
+    }
+    
+    /**
+     * FFmpeg无损重封装，+faststart 在写完后把moov移到文件开头
+     */
+    private void remuxFastStart(Path videoPath, Path outputPath) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(ffmpegPath);
+        command.add("-y");
+        command.add("-i");
+        command.add(videoPath.toString());
+        command.add("-c");
+        command.add("copy");
+        command.add("-movflags");
+        command.add("+faststart");
+        command.add("-f");
+        command.add("mp4");
+        command.add(outputPath.toString());
         
-        return parseVideoInfo(output.toString());
+        runFfmpeg(command, 300, "快速启动重封装", MediaJobScheduler.Priority.THUMBNAIL);
+    }
+    
+    /**
+     * 打包为HLS（fMP4分片）：源文件已校验为H.264/AAC，只做无损重封装不重新编码。
+     * 输出 index.m3u8、init.mp4 与 seg_00000.m4s 起编号的分片，分片在关键帧处切分，
+     * 时长约为配置的分片秒数（取决于源文件的关键帧间隔）
+     */
+    public void packageHls(Path videoPath, Path outputDir) throws IOException, InterruptedException {
+        Files.createDirectories(outputDir);
+        
+        List<String> command = new ArrayList<>();
+        command.add(ffmpegPath);
+        command.add("-y");
+        command.add("-i");
+        command.add(videoPath.toString());
+        command.add("-map");
+        command.add("0:v:0");
+        command.add("-map");
+        command.add("0:a:0?");
+        command.add("-c");
+        command.add("copy");
+        command.add("-f");
+        command.add("hls");
+        command.add("-hls_time");
+        command.add(String.valueOf(hlsSegmentSeconds));
+        command.add("-hls_playlist_type");
+        command.add("vod");
+        command.add("-hls_segment_type");
+        command.add("fmp4");
+        command.add("-hls_fmp4_init_filename");
+        command.add("init.mp4");
+        command.add("-hls_segment_filename");
+        command.add(outputDir.resolve("seg_%05d.m4s").toString());
+        command.add("-hls_flags");
+        command.add("independent_segments");
+        command.add(outputDir.resolve("index.m3u8").toString());
+        
+        runFfmpeg(command, 600, "HLS打包", MediaJobScheduler.Priority.THUMBNAIL);
+    }
+    
+    /**
+     * 配置的码率阶梯，按高度从低到高
+     */
+    public List<RenditionRung> renditionLadder() {
+        return RenditionRung.parseList(abrLadder);
+    }
+    
+    /**
+     * 档位的峰值码率（bps，含音频），写入主播放列表的 BANDWIDTH
+     */
+    public long renditionBandwidth(RenditionRung rung) {
+        return (long) (rung.getVideoBitrateKbps() * 1.1 + abrAudioBitrateKbps) * 1000;
     }
     
     /**
-     * 生成缩略图
+     * 把视频转码为阶梯中的一档并打包为HLS（fMP4分片），分片布局与 packageHls 相同。
+     * 按分片时长强制关键帧，各档位的分片边界一致，播放器切换码率时不需要重叠下载；
+     * threads 限制单个进程使用的核数，进度以已输出的时长（微秒）回调
      */
-    public void generateThumbnail(Path videoPath, Path thumbnailPath, int durationSeconds) 
+    public void transcodeRendition(Path videoPath, Path outputDir, RenditionRung rung, int threads,
+                                   long timeoutSeconds, LongConsumer progressMicros)
+            throws IOException, InterruptedException {
+        Files.createDirectories(outputDir);
+        int bitrate = rung.getVideoBitrateKbps();
+        
+        List<String> command = new ArrayList<>();
+        command.add(ffmpegPath);
+        command.add("-y");
+        command.add("-nostats");
+        command.add("-loglevel");
+        command.add("error");
+        command.add("-progress");
+        command.add("pipe:1");
+        command.add("-i");
+        command.add(videoPath.toString());
+        command.add("-map");
+        command.add("0:v:0");
+        command.add("-map");
+        command.add("0:a:0?");
+        command.add("-vf");
+        command.add("scale=-2:" + rung.getHeight());
+        command.add("-c:v");
+        command.add("libx264");
+        command.add("-preset");
+        command.add(abrPreset);
+        command.add("-profile:v");
+        command.add("main");
+        command.add("-pix_fmt");
+        command.add("yuv420p");
+        command.add("-b:v");
+        command.add(bitrate + "k");
+        command.add("-maxrate");
+        command.add((int) (bitrate * 1.1) + "k");
+        command.add("-bufsize");
+        command.add(bitrate * 2 + "k");
+        command.add("-force_key_frames");
+        command.add("expr:gte(t,n_forced*" + hlsSegmentSeconds + ")");
+        command.add("-sc_threshold");
+        command.add("0");
+        command.add("-c:a");
+        command.add("aac");
+        command.add("-b:a");
+        command.add(abrAudioBitrateKbps + "k");
+        command.add("-ac");
+        command.add("2");
+        command.add("-threads");
+        command.add(String.valueOf(threads));
+        command.add("-f");
+        command.add("hls");
+        command.add("-hls_time");
+        command.add(String.valueOf(hlsSegmentSeconds));
+        command.add("-hls_playlist_type");
+        command.add("vod");
+        command.add("-hls_segment_type");
+        command.add("fmp4");
+        command.add("-hls_fmp4_init_filename");
+        command.add("init.mp4");
+        command.add("-hls_segment_filename");
+        command.add(outputDir.resolve("seg_%05d.m4s").toString());
+        command.add("-hls_flags");
+        command.add("independent_segments");
+        command.add(outputDir.resolve("index.m3u8").toString());
+        
+        runFfmpeg(command, timeoutSeconds, "转码" + rung.getName(), MediaJobScheduler.Priority.TRANSCODE,
+                progressMicros);
+    }
+    
+    /**
+     * 配置的全部缩略图变体（各宽度 × 各格式），始终包含默认宽度的JPEG作为兜底
+     */
+    public List<ThumbnailVariant> thumbnailVariants() {
+        List<ThumbnailVariant> variants = new ArrayList<>();
+        variants.add(new ThumbnailVariant(thumbnailWidth, "jpg"));
+        for (int width : thumbnailVariantWidths) {
+            for (String format : thumbnailFormats) {
+                ThumbnailVariant variant = new ThumbnailVariant(width, format.trim().toLowerCase());
+                if (!variants.contains(variant)) {
+                    variants.add(variant);
+                }
+            }
+        }
+        return variants;
+    }
+    
+    /**
+     * 一次FFmpeg调用生成全部缩略图变体：解码一帧后经 split 滤镜分给各宽度缩放，
+     * 每个宽度再 split 给各格式编码，避免每个变体重复解码与缩放
+     */
+    public void generateThumbnails(Path videoPath, Map<ThumbnailVariant, Path> outputs, int durationSeconds) 
             throws IOException, InterruptedException {
         
         // 确定截取时间点（使用更早的时间点，通常视频开头处理更快）
@@ -87,82 +379,263 @@ public class TranscodeService {
             timePosition = 1; // 如果视频很短，就取第1秒
         }
         
+        // 按宽度分组，同一宽度只缩放一次
+        Map<Integer, List<ThumbnailVariant>> byWidth = new LinkedHashMap<>();
+        for (ThumbnailVariant variant : outputs.keySet()) {
+            byWidth.computeIfAbsent(variant.getWidth(), w -> new ArrayList<>()).add(variant);
+        }
+        
+        StringBuilder graph = new StringBuilder("[0:v]split=").append(byWidth.size());
+        for (int i = 0; i < byWidth.size(); i++) {
+            graph.append("[s").append(i).append(']');
+        }
+        List<String> outputArgs = new ArrayList<>();
+        int index = 0;
+        for (List<ThumbnailVariant> group : byWidth.values()) {
+            ThumbnailVariant first = group.get(0);
+            // 等比放大到覆盖目标尺寸后居中裁剪，避免拉伸变形
+            graph.append(';').append("[s").append(index).append(']')
+                    .append(String.format("scale=%d:%d:force_original_aspect_ratio=increase:flags=lanczos,crop=%d:%d",
+                            first.getWidth(), first.getHeight(), first.getWidth(), first.getHeight()))
+                    .append(",split=").append(group.size());
+            for (int j = 0; j < group.size(); j++) {
+                String label = "o" + index + "_" + j;
+                graph.append('[').append(label).append(']');
+                outputArgs.add("-map");
+                outputArgs.add("[" + label + "]");
+                outputArgs.add("-frames:v");
+                outputArgs.add("1");
+                outputArgs.addAll(encoderArgs(group.get(j).getFormat()));
+                outputArgs.add("-threads");
+                outputArgs.add("1"); // 使用单线程，避免资源争用
+                outputArgs.add(outputs.get(group.get(j)).toString());
+            }
+            index++;
+        }
+        
+        // 多输出时选项只作用于其后的第一个输出，-y 须放在最前面
         List<String> command = new ArrayList<>();
         command.add(ffmpegPath);
+        command.add("-y"); // 覆盖输出文件
+        command.add("-ss");
+        command.add(String.valueOf(timePosition)); // 输入前定位，按关键帧快速跳转
         command.add("-i");
         command.add(videoPath.toString());
-        command.add("-ss");
-        command.add(String.valueOf(timePosition));
-        command.add("-vframes");
-        command.add("1");
+        command.add("-filter_complex");
+        command.add(graph.toString());
+        command.addAll(outputArgs);
+        
+        runFfmpeg(command, 90, "生成缩略图", MediaJobScheduler.Priority.THUMBNAIL);
+        
+        log.info("成功生成缩略图: {}个变体", outputs.size());
+    }
+    
+    /**
+     * 计算故事板布局：默认每隔interval秒取一帧，帧数超过上限时按比例拉大间隔
+     */
+    public StoryboardLayout storyboardLayout(int durationSeconds) {
+        int duration = Math.max(durationSeconds, 1);
+        int interval = Math.max(storyboardInterval, (duration + storyboardMaxTiles - 1) / storyboardMaxTiles);
+        int count = Math.max(1, (duration + interval - 1) / interval);
+        int columns = Math.min(storyboardColumns, count);
+        int rows = (count + columns - 1) / columns;
+        int tileHeight = (storyboardTileWidth * 9 / 16) & ~1;
+        return new StoryboardLayout(interval, columns, rows, count, storyboardTileWidth, tileHeight);
+    }
+    
+    /**
+     * 生成故事板雪碧图：按固定间隔抽帧、缩放后拼成一张网格图，供拖动进度条与悬停预览使用
+     */
+    public void generateStoryboard(Path videoPath, Path spritePath, StoryboardLayout layout) 
+            throws IOException, InterruptedException {
+        String filter = String.format(
+                "fps=1/%d,scale=%d:%d:force_original_aspect_ratio=decrease,pad=%d:%d:(ow-iw)/2:(oh-ih)/2,tile=%dx%d",
+                layout.getIntervalSeconds(),
+                layout.getTileWidth(), layout.getTileHeight(),
+                layout.getTileWidth(), layout.getTileHeight(),
+                layout.getColumns(), layout.getRows());
+        
+        List<String> command = new ArrayList<>();
+        command.add(ffmpegPath);
+        command.add("-i");
+        command.add(videoPath.toString());
+        command.add("-an"); // 不解码音频
         command.add("-vf");
-        command.add(String.format("scale=%d:%d:flags=fast_bilinear", thumbnailWidth, thumbnailHeight));
-        command.add("-f");
-        command.add("mjpeg"); // 指定输出格式
+        command.add(filter);
+        command.add("-frames:v");
+        command.add("1");
         command.add("-q:v");
-        command.add("5"); // 稍微降低质量以提高速度
+        command.add("5");
+        command.add("-f");
+        command.add("mjpeg");
         command.add("-threads");
-        command.add("1"); // 使用单线程，避免资源争用
-        command.add("-y"); // 覆盖输出文件
-        command.add(thumbnailPath.toString());
-        
-        log.info("开始生成缩略图，命令: {}", String.join(" ", command));
-        
-        ProcessBuilder pb = new ProcessBuilder(command);
-        pb.redirectErrorStream(true); // 合并错误流和输出流
-        Process process = pb.start();
+        command.add("1");
+        command.add("-y");
+        command.add(spritePath.toString());
         
-        // 读取进程输出（包括错误信息）
-        StringBuilder output = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
+        runFfmpeg(command, 300, "生成故事板", MediaJobScheduler.Priority.THUMBNAIL);
+        log.info("成功生成故事板: {}帧, 间隔{}秒", layout.getCount(), layout.getIntervalSeconds());
+    }
+    
+    /**
+     * 执行FFmpeg命令，合并输出流，超时或退出码非0时抛出异常
+     */
+    private void runFfmpeg(List<String> command, long timeoutSeconds, String action,
+                           MediaJobScheduler.Priority priority) throws IOException, InterruptedException {
+        runFfmpeg(command, timeoutSeconds, action, priority, null);
+    }
+    
+    /**
+     * 同上；命令带 -progress pipe:1 时，进度行（key=value）不计入日志输出，
+     * 其中的 out_time_us 回调给 progressMicros
+     */
+    private void runFfmpeg(List<String> command, long timeoutSeconds, String action,
+                           MediaJobScheduler.Priority priority, LongConsumer progressMicros)
+            throws IOException, InterruptedException {
+        try (MediaJobScheduler.Permit permit = mediaJobScheduler.acquire(priority)) {
+            log.info("开始{}，命令: {}", action, String.join(" ", command));
+            
+            ProcessBuilder pb = new ProcessBuilder(command);
+            pb.redirectErrorStream(true); // 合并错误流和输出流
+            Process process = pb.start();
+            
+            // 读取进程输出（包括错误信息）
+            StringBuffer output = new StringBuffer();
+            boolean finished = awaitProcess(process, timeoutSeconds, line -> {
+                if (progressMicros != null && PROGRESS_LINE_PATTERN.matcher(line).matches()) {
+                    if (line.startsWith("out_time_us=")) {
+                        parseProgress(line, progressMicros);
+                    }
+                    return;
+                }
                 output.append(line).append("\n");
+            });
+            if (!finished) {
+                log.error("{}超时，进程输出: {}", action, output);
+                throw new RuntimeException(action + "超时（" + timeoutSeconds + "秒）");
+            }
+            
+            int exitCode = process.exitValue();
+            if (exitCode != 0) {
+                log.error("{}失败，退出码: {}, FFmpeg输出: {}", action, exitCode, output);
+                throw new RuntimeException(action + "失败");
             }
         }
+    }
+    
+    /**
+     * 在虚拟线程上逐行读取进程输出，当前线程按超时等待进程退出。
+     * 读取到EOF要等进程退出，若在当前线程读取，卡住的进程会让超时永远不生效。
+     * 超时或等待被中断时强制结束进程；返回进程是否在超时前退出
+     */
+    private static boolean awaitProcess(Process process, long timeoutSeconds, Consumer<String> lineHandler)
+            throws InterruptedException {
+        Thread reader = Thread.ofVirtual().name("ffmpeg-output-" + process.pid()).start(() -> {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    try {
+                        lineHandler.accept(line);
+                    } catch (RuntimeException e) {
+                        // 处理失败（如进度写库失败）也要继续读，否则管道写满会卡住进程
+                        log.warn("处理进程输出失败: {}", e.getMessage());
+                    }
+                }
+            } catch (IOException e) {
+                // 进程被强制结束后输出流关闭
+                log.debug("读取进程输出结束: pid={}, {}", process.pid(), e.getMessage());
+            }
+        });
         
-        // 设置超时时间为90秒（增加超时时间）
-        boolean finished = process.waitFor(90, TimeUnit.SECONDS);
+        boolean finished;
+        try {
+            finished = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            destroyTree(process);
+            throw e;
+        }
         if (!finished) {
-            process.destroyForcibly();
-            log.error("缩略图生成超时，进程输出: {}", output.toString());
-            throw new RuntimeException("生成缩略图超时（90秒）");
+            destroyTree(process);
+            process.waitFor(OUTPUT_DRAIN_SECONDS, TimeUnit.SECONDS);
         }
-        
-        int exitCode = process.exitValue();
-        if (exitCode != 0) {
-            log.error("生成缩略图失败，退出码: {}, FFmpeg输出: {}", exitCode, output.toString());
-            throw new RuntimeException("生成缩略图失败");
+        // 进程退出后剩余输出很快读完，有限等待以免被仍持有管道的子进程拖住
+        reader.join(Duration.ofSeconds(OUTPUT_DRAIN_SECONDS));
+        return finished;
+    }
+    
+    private static void destroyTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+    
+    private static void parseProgress(String line, LongConsumer progressMicros) {
+        try {
+            long micros = Long.parseLong(line.substring("out_time_us=".length()));
+            if (micros >= 0) {
+                progressMicros.accept(micros);
+            }
+        } catch (NumberFormatException ignored) {
+            // 开始输出前为 N/A
         }
-        
-        log.info("成功生成缩略图: {}", thumbnailPath);
     }
     
     /**
-     * 解析视频信息
+     * 各图片格式的编码参数
+     */
+    private List<String> encoderArgs(String format) {
+        return switch (format) {
+            case "webp" -> List.of("-c:v", "libwebp", "-quality", "75", "-f", "webp");
+            case "avif" -> List.of("-c:v", "libaom-av1", "-still-picture", "1", "-crf", "32", "-b:v", "0",
+                    "-pix_fmt", "yuv420p", "-f", "avif");
+            default -> List.of("-c:v", "mjpeg", "-q:v", "4", "-f", "mjpeg");
+        };
+    }
+    
+    /**
+     * 解析ffprobe的JSON输出
      */
     private VideoInfo parseVideoInfo(String jsonOutput) {
         VideoInfo info = new VideoInfo();
         
         // 解析时长
-        Pattern durationPattern = Pattern.compile("\"duration\"\\s*:\\s*\"([^\"]+)\"");
-        Matcher durationMatcher = durationPattern.matcher(jsonOutput);
+        Matcher durationMatcher = DURATION_PATTERN.matcher(jsonOutput);
         if (durationMatcher.find()) {
             try {
                 double duration = Double.parseDouble(durationMatcher.group(1));
                 info.setDurationSeconds((int) Math.round(duration));
+                info.setDurationMicros(Math.round(duration * 1_000_000));
             } catch (NumberFormatException e) {
                 log.warn("无法解析视频时长: {}", durationMatcher.group(1));
             }
         }
         
-        // 检查视频编码
-        boolean hasH264Video = jsonOutput.contains("\"codec_name\"") && jsonOutput.contains("h264");
-        boolean hasAacAudio = jsonOutput.contains("\"codec_name\"") && jsonOutput.contains("aac");
+        // 只比较各流 codec_name 字段的值，标题等标签里出现 h264、aac 字样不算
+        Set<String> codecNames = new HashSet<>();
+        Matcher codecMatcher = CODEC_NAME_PATTERN.matcher(jsonOutput);
+        while (codecMatcher.find()) {
+            codecNames.add(codecMatcher.group(1));
+        }
+        boolean hasH264Video = codecNames.contains("h264");
+        boolean hasAacAudio = codecNames.contains("aac");
         
         info.setValidFormat(hasH264Video && hasAacAudio);
         info.setH264Video(hasH264Video);
         info.setAacAudio(hasAacAudio);
+        info.setVideoCodec(hasH264Video ? "h264" : null);
+        info.setAudioCodec(hasAacAudio ? "aac" : null);
+        
+        Matcher widthMatcher = WIDTH_PATTERN.matcher(jsonOutput);
+        Matcher heightMatcher = HEIGHT_PATTERN.matcher(jsonOutput);
+        if (widthMatcher.find() && heightMatcher.find()) {
+            info.setWidth(Integer.parseInt(widthMatcher.group(1)));
+            info.setHeight(Integer.parseInt(heightMatcher.group(1)));
+        }
+        
+        // format 段在各流之后输出，最后一个 bit_rate 即整体码率
+        Matcher bitRateMatcher = BIT_RATE_PATTERN.matcher(jsonOutput);
+        while (bitRateMatcher.find()) {
+            info.setBitRate(Long.parseLong(bitRateMatcher.group(1)));
+        }
         
         return info;
     }
@@ -172,14 +645,42 @@ public class TranscodeService {
      */
     public static class VideoInfo {
         private int durationSeconds;
+        private long durationMicros;
         private boolean validFormat;
         private boolean h264Video;
         private boolean aacAudio;
+        /** 编码标识：box解析时为样本描述fourCC（如avc1），ffprobe时为编码名（如h264） */
+        private String videoCodec;
+        private String audioCodec;
+        private int width;
+        private int height;
+        private long bitRate;
+        
+        /**
+         * 由box解析结果构造
+         */
+        public static VideoInfo from(Mp4Info mp4Info) {
+            VideoInfo info = new VideoInfo();
+            info.setDurationSeconds(mp4Info.getDurationSeconds());
+            info.setDurationMicros(mp4Info.getDurationMicros());
+            info.setH264Video(mp4Info.isH264());
+            info.setAacAudio(mp4Info.isAac());
+            info.setValidFormat(mp4Info.isH264() && mp4Info.isAac());
+            info.setVideoCodec(mp4Info.getVideoCodec());
+            info.setAudioCodec(mp4Info.getAudioCodec());
+            info.setWidth(mp4Info.getWidth());
+            info.setHeight(mp4Info.getHeight());
+            info.setBitRate(mp4Info.getBitRate());
+            return info;
+        }
         
         // Getters and Setters
         public int getDurationSeconds() { return durationSeconds; }
         public void setDurationSeconds(int durationSeconds) { this.durationSeconds = durationSeconds; }
         
+        public long getDurationMicros() { return durationMicros; }
+        public void setDurationMicros(long durationMicros) { this.durationMicros = durationMicros; }
+        
         public boolean isValidFormat() { return validFormat; }
         public void setValidFormat(boolean validFormat) { this.validFormat = validFormat; }
         
@@ -188,5 +689,20 @@ public class TranscodeService {
         
         public boolean isAacAudio() { return aacAudio; }
         public void setAacAudio(boolean aacAudio) { this.aacAudio = aacAudio; }
+        
+        public String getVideoCodec() { return videoCodec; }
+        public void setVideoCodec(String videoCodec) { this.videoCodec = videoCodec; }
+        
+        public String getAudioCodec() { return audioCodec; }
+        public void setAudioCodec(String audioCodec) { this.audioCodec = audioCodec; }
+        
+        public int getWidth() { return width; }
+        public void setWidth(int width) { this.width = width; }
+        
+        public int getHeight() { return height; }
+        public void setHeight(int height) { this.height = height; }
+        
+        public long getBitRate() { return bitRate; }
+        public void setBitRate(long bitRate) { this.bitRate = bitRate; }
     }
 }
@@ -0,0 +1,257 @@
+package com.videosite.service;
+
+import com.videosite.dto.stats.VideoDayKey;
+import com.videosite.repository.ViewerSketchRepository;
+import com.videosite.sketch.HyperLogLog;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 独立观众统计：每个 (视频, 日期) 在内存中维护一个 HyperLogLog 草图，播放时以登录用户（或会话）为元素加入，
+ * 定时与库中的草图合并后写回。草图合并是按寄存器取最大值，重复写回、多实例并发写回都不会重复计数；
+ * 任意日期范围的独立观众数由各天草图合并后估计，不保存原始播放记录
+ */
+@Slf4j
+@Service
+public class UniqueViewerService {
+
+    private static final int FLUSH_CHUNK_SIZE = 200;
+    private static final long MAX_RANGE_DAYS = 366;
+
+    private final ViewerSketchRepository viewerSketchRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<VideoDayKey, PendingSketch> sketches = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public UniqueViewerService(ViewerSketchRepository viewerSketchRepository,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry) {
+        this.viewerSketchRepository = viewerSketchRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        Gauge.builder("video.viewers.sketches", sketches, Map::size)
+                .description("内存中的(视频,日期)独立观众草图数量")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录一位观众，viewerKey 为空（无法识别观众）时不计入
+     */
+    public void recordViewer(Long videoId, String viewerKey) {
+        if (viewerKey == null) {
+            return;
+        }
+        long hash = HyperLogLog.hash(viewerKey);
+        VideoDayKey key = new VideoDayKey(videoId, LocalDate.now());
+        // 过期草图在刷写时被关闭移除，此时重新取一个新的草图
+        while (!sketches.computeIfAbsent(key, k -> new PendingSketch()).offer(hash)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * 给定视频在 [from, to] 内的独立观众估计值（各天草图合并，包含尚未刷写的部分）
+     */
+    public Map<Long, Long> getUniqueViewers(Collection<Long> videoIds, LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        Map<Long, HyperLogLog> merged = new HashMap<>();
+        for (Long videoId : videoIds) {
+            merged.put(videoId, new HyperLogLog());
+        }
+        viewerSketchRepository.findBetween(merged.keySet(), from, to).forEach((key, bytes) ->
+                merged.get(key.getVideoId()).merge(HyperLogLog.fromBytes(bytes)));
+        sketches.forEach((key, pending) -> {
+            HyperLogLog target = merged.get(key.getVideoId());
+            if (target != null && !key.getDate().isBefore(from) && !key.getDate().isAfter(to)) {
+                pending.mergeInto(target);
+            }
+        });
+
+        Map<Long, Long> result = new LinkedHashMap<>();
+        for (Long videoId : videoIds) {
+            result.put(videoId, merged.get(videoId).cardinality());
+        }
+        return result;
+    }
+
+    /**
+     * 某视频 [from, to] 内每天的独立观众估计值（已刷写部分）
+     */
+    public Map<LocalDate, Long> getDailyUniqueViewers(Long videoId, LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        return viewerSketchRepository.findDailyEstimates(videoId, from, to);
+    }
+
+    /**
+     * 定时把有新观众的草图合并写回数据库
+     */
+    @Scheduled(fixedDelayString = "${app.stats.viewers-flush-interval-ms:60000}")
+    public void scheduledFlush() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 关闭前写回剩余草图
+     */
+    @PreDestroy
+    public void shutdown() {
+        flushLock.lock();
+        try {
+            flush();
+            log.info("独立观众草图已完成关闭前写回");
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flush() {
+        Map<VideoDayKey, HyperLogLog> snapshot = drain();
+        if (snapshot.isEmpty()) {
+            return;
+        }
+
+        List<VideoDayKey> keys = new ArrayList<>(snapshot.keySet());
+        for (int from = 0; from < keys.size(); from += FLUSH_CHUNK_SIZE) {
+            List<VideoDayKey> chunk = keys.subList(from, Math.min(from + FLUSH_CHUNK_SIZE, keys.size()));
+            try {
+                transactionTemplate.executeWithoutResult(status -> persist(chunk, snapshot));
+            } catch (Exception e) {
+                // 写回失败时把草图合并回内存，下个周期重试
+                for (VideoDayKey key : chunk) {
+                    restore(key, snapshot.get(key));
+                }
+                log.error("独立观众草图写回失败，{}个草图将在下次重试", chunk.size(), e);
+            }
+        }
+        log.debug("独立观众草图写回完成: {}个", snapshot.size());
+    }
+
+    /**
+     * 锁定库中已有的草图，与内存快照合并后写回；已删除视频的草图丢弃
+     */
+    private void persist(List<VideoDayKey> chunk, Map<VideoDayKey, HyperLogLog> snapshot) {
+        Set<Long> videoIds = new HashSet<>();
+        for (VideoDayKey key : chunk) {
+            videoIds.add(key.getVideoId());
+        }
+        Set<Long> existing = new HashSet<>(viewerSketchRepository.findExistingVideoIds(videoIds));
+        Map<VideoDayKey, byte[]> stored = viewerSketchRepository.findForUpdate(chunk);
+
+        Map<VideoDayKey, byte[]> merged = new LinkedHashMap<>();
+        Map<VideoDayKey, Long> estimates = new HashMap<>();
+        for (VideoDayKey key : chunk) {
+            if (!existing.contains(key.getVideoId())) {
+                continue;
+            }
+            HyperLogLog sketch = snapshot.get(key);
+            byte[] previous = stored.get(key);
+            if (previous != null) {
+                sketch.merge(HyperLogLog.fromBytes(previous));
+            }
+            merged.put(key, sketch.toBytes());
+            estimates.put(key, sketch.cardinality());
+        }
+        viewerSketchRepository.upsert(merged, estimates);
+    }
+
+    /**
+     * 取出有新观众的草图副本；之前日期的草图取出后关闭并移除
+     */
+    private Map<VideoDayKey, HyperLogLog> drain() {
+        LocalDate today = LocalDate.now();
+        Map<VideoDayKey, HyperLogLog> snapshot = new LinkedHashMap<>();
+        for (Map.Entry<VideoDayKey, PendingSketch> entry : sketches.entrySet()) {
+            boolean expired = entry.getKey().getDate().isBefore(today);
+            HyperLogLog copy = entry.getValue().takeIfDirty(expired);
+            if (expired) {
+                sketches.remove(entry.getKey(), entry.getValue());
+            }
+            if (copy != null) {
+                snapshot.put(entry.getKey(), copy);
+            }
+        }
+        return snapshot;
+    }
+
+    private void restore(VideoDayKey key, HyperLogLog sketch) {
+        while (!sketches.computeIfAbsent(key, k -> new PendingSketch()).restore(sketch)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void checkRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("开始日期不能晚于结束日期");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            throw new IllegalArgumentException("查询范围不能超过" + MAX_RANGE_DAYS + "天");
+        }
+    }
+
+    /**
+     * 内存中的草图及其是否有未写回的观众；关闭后不再接受写入
+     */
+    private static final class PendingSketch {
+
+        private final HyperLogLog sketch = new HyperLogLog();
+        private boolean dirty;
+        private boolean closed;
+
+        synchronized boolean offer(long hash) {
+            if (closed) {
+                return false;
+            }
+            sketch.offerHash(hash);
+            dirty = true;
+            return true;
+        }
+
+        synchronized boolean restore(HyperLogLog other) {
+            if (closed) {
+                return false;
+            }
+            sketch.merge(other);
+            dirty = true;
+            return true;
+        }
+
+        synchronized HyperLogLog takeIfDirty(boolean close) {
+            closed = close;
+            if (!dirty) {
+                return null;
+            }
+            dirty = false;
+            return HyperLogLog.fromBytes(sketch.toBytes());
+        }
+
+        synchronized void mergeInto(HyperLogLog target) {
+            target.merge(sketch);
+        }
+    }
+}
@@ -0,0 +1,524 @@
+package com.videosite.service;
+
+import com.videosite.domain.entity.MediaBlob;
+import com.videosite.domain.entity.UploadJob;
+import com.videosite.domain.entity.Video;
+import com.videosite.domain.event.UploadQueuedEvent;
+import com.videosite.domain.event.VideoUploadedEvent;
+import com.videosite.dto.media.StoryboardLayout;
+import com.videosite.dto.media.ThumbnailVariant;
+import com.videosite.dto.upload.UploadStatus;
+import com.videosite.repository.UploadJobRepository;
+import com.videosite.repository.VideoRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上传后处理流水线：上传请求只落盘并写入 PROCESSING 状态的视频和排队任务，
+ * 由固定大小的工作线程池认领任务，依次完成探测、快速启动、缩略图、故事板、HLS打包，成功后视频转为 PUBLIC。
+ * 任务状态持久化在 upload_job 表：失败按指数退避重试，心跳超时的运行中任务（如进程重启）会被重新排队
+ */
+@Slf4j
+@Service
+public class UploadProcessingService {
+
+    private static final int CLAIM_BATCH_SIZE = 8;
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final UploadJobRepository uploadJobRepository;
+    private final VideoRepository videoRepository;
+    private final StorageService storageService;
+    private final TranscodeService transcodeService;
+    private final MediaBlobService mediaBlobService;
+    private final RenditionService renditionService;
+    private final MediaJobScheduler mediaJobScheduler;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TaskScheduler taskScheduler;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ExecutorService workers;
+    private final Semaphore slots;
+    private final Set<Long> runningJobs = ConcurrentHashMap.newKeySet();
+
+    private final Timer processingTimer;
+    private final Counter failureCounter;
+
+    @Value("${app.upload.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.upload.retry-backoff-seconds:30}")
+    private long retryBackoffSeconds;
+
+    @Value("${app.upload.stuck-timeout-seconds:600}")
+    private long stuckTimeoutSeconds;
+
+    @Value("${app.upload.max-backlog:100}")
+    private int maxBacklog;
+
+    @Value("${app.hls.min-duration-seconds:60}")
+    private int hlsMinDurationSeconds;
+
+    public UploadProcessingService(UploadJobRepository uploadJobRepository,
+                                   VideoRepository videoRepository,
+                                   StorageService storageService,
+                                   TranscodeService transcodeService,
+                                   MediaBlobService mediaBlobService,
+                                   RenditionService renditionService,
+                                   MediaJobScheduler mediaJobScheduler,
+                                   ApplicationEventPublisher eventPublisher,
+                                   TaskScheduler taskScheduler,
+                                   PlatformTransactionManager transactionManager,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${app.upload.workers:2}") int workerCount) {
+        this.uploadJobRepository = uploadJobRepository;
+        this.videoRepository = videoRepository;
+        this.storageService = storageService;
+        this.transcodeService = transcodeService;
+        this.mediaBlobService = mediaBlobService;
+        this.renditionService = renditionService;
+        this.mediaJobScheduler = mediaJobScheduler;
+        this.eventPublisher = eventPublisher;
+        this.taskScheduler = taskScheduler;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.workers = Executors.newFixedThreadPool(workerCount,
+                Thread.ofPlatform().name("upload-worker-", 0).factory());
+        this.slots = new Semaphore(workerCount);
+        this.processingTimer = Timer.builder("upload.processing")
+                .description("上传后处理（探测、缩略图、故事板、HLS打包）耗时")
+                .register(meterRegistry);
+        this.failureCounter = Counter.builder("upload.processing.failures")
+                .description("上传后处理失败次数（含会重试的失败）")
+                .register(meterRegistry);
+        Gauge.builder("upload.processing.running", runningJobs, Set::size)
+                .description("正在处理的上传任务数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 上传准入检查：排队的处理任务过多或媒体进程排队已满时返回建议的重试秒数（用于 503 Retry-After），
+     * 可以接收新上传时返回空
+     */
+    public OptionalLong admissionRetryAfter() {
+        long backlog = uploadJobRepository.countByStatus(UploadJob.Status.QUEUED);
+        if (backlog < maxBacklog && !mediaJobScheduler.isSaturated()) {
+            return OptionalLong.empty();
+        }
+        long retryAfter = mediaJobScheduler.estimateWaitSeconds((int) Math.min(backlog, Integer.MAX_VALUE));
+        log.warn("上传处理繁忙，拒绝新上传: 排队任务数={}, 建议{}秒后重试", backlog, retryAfter);
+        return OptionalLong.of(retryAfter);
+    }
+
+    /**
+     * 保存处理中的视频并创建排队任务，事务提交后唤醒工作线程
+     */
+    @Transactional
+    public Video enqueue(Video video) {
+        video.setVisibility(Video.VISIBILITY_PROCESSING);
+        Video savedVideo = videoRepository.save(video);
+
+        LocalDateTime now = LocalDateTime.now();
+        UploadJob job = new UploadJob();
+        job.setVideoId(savedVideo.getId());
+        job.setNextAttemptAt(now);
+        job.setCreatedAt(now);
+        job.setUpdatedAt(now);
+        uploadJobRepository.save(job);
+
+        eventPublisher.publishEvent(new UploadQueuedEvent(savedVideo.getId()));
+        log.info("视频已入队等待处理: ID={}, 标题={}", savedVideo.getId(), savedVideo.getTitle());
+        return savedVideo;
+    }
+
+    /**
+     * 内容与已处理过的文件相同：视频已带上复用的时长、缩略图和故事板，直接公开，不再排队处理
+     */
+    @Transactional
+    public Video publishReused(Video video) {
+        video.setVisibility(Video.VISIBILITY_PUBLIC);
+        Video savedVideo = videoRepository.save(video);
+        renditionService.copyLadder(savedVideo);
+        eventPublisher.publishEvent(new VideoUploadedEvent(savedVideo));
+        log.info("视频内容重复，复用已有处理结果直接公开: ID={}, 标题={}", savedVideo.getId(), savedVideo.getTitle());
+        return savedVideo;
+    }
+
+    /**
+     * 查询处理状态（含各码率档位的转码进度）；功能上线前上传的视频没有任务记录，按已完成返回
+     */
+    public Optional<UploadStatus> getStatus(Video video) {
+        Optional<UploadJob> jobOpt = uploadJobRepository.findByVideoId(video.getId());
+        if (jobOpt.isEmpty()) {
+            return Video.VISIBILITY_PUBLIC.equals(video.getVisibility())
+                    ? Optional.of(new UploadStatus(video.getId(), UploadJob.Status.SUCCEEDED.name(),
+                            UploadJob.Stage.DONE.name(), 100, 0, null, video.getVisibility(),
+                            renditionService.getStatuses(video.getId())))
+                    : Optional.empty();
+        }
+        UploadJob job = jobOpt.get();
+        return Optional.of(new UploadStatus(video.getId(), job.getStatus().name(),
+                job.getStage() != null ? job.getStage().name() : null,
+                job.getProgress(), job.getAttempts(), job.getErrorMessage(), video.getVisibility(),
+                renditionService.getStatuses(video.getId())));
+    }
+
+    /**
+     * 提交后的回调仍绑定着原事务的资源，认领任务的更新放到调度线程上执行
+     */
+    @TransactionalEventListener
+    public void onUploadQueued(UploadQueuedEvent event) {
+        taskScheduler.schedule(this::dispatch, Instant.now());
+    }
+
+    /**
+     * 启动时先回收上次进程遗留的任务，再开始派发
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        recoverStuckJobs();
+        dispatch();
+    }
+
+    /**
+     * 有空闲工作线程时认领到期的排队任务；兜底轮询覆盖重试退避到期与多实例场景
+     */
+    @Scheduled(fixedDelayString = "${app.upload.poll-interval-ms:5000}")
+    public synchronized void dispatch() {
+        while (slots.tryAcquire()) {
+            Long jobId = claimNext();
+            if (jobId == null) {
+                slots.release();
+                return;
+            }
+            runningJobs.add(jobId);
+            try {
+                workers.execute(() -> {
+                    try {
+                        process(jobId);
+                    } finally {
+                        runningJobs.remove(jobId);
+                        slots.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                // 线程池已关闭（应用停止中），任务交回队列
+                runningJobs.remove(jobId);
+                slots.release();
+                requeue(jobId, 0);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 心跳超时的运行中任务视为中断：还有重试次数则重新排队，否则标记失败
+     */
+    @Scheduled(fixedDelayString = "${app.upload.recovery-interval-ms:60000}", initialDelay = 60000)
+    public void recoverStuckJobs() {
+        LocalDateTime staleBefore = LocalDateTime.now().minusSeconds(stuckTimeoutSeconds);
+        for (UploadJob job : uploadJobRepository.findByStatusAndUpdatedAtBefore(UploadJob.Status.RUNNING, staleBefore)) {
+            if (runningJobs.contains(job.getId())) {
+                continue;
+            }
+            log.warn("回收超时的上传任务: jobId={}, videoId={}, 阶段={}", job.getId(), job.getVideoId(), job.getStage());
+            fail(job.getId(), "处理超时或进程中断", false);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.shutdownNow();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("上传处理线程未能在10秒内停止，未完成的任务将在重启后回收");
+        }
+    }
+
+    private Long claimNext() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> dueIds = uploadJobRepository.findDueJobIds(UploadJob.Status.QUEUED, now,
+                PageRequest.of(0, CLAIM_BATCH_SIZE));
+        for (Long id : dueIds) {
+            if (uploadJobRepository.claim(id, UploadJob.Status.QUEUED, UploadJob.Status.RUNNING, now) == 1) {
+                return id;
+            }
+        }
+        return null;
+    }
+
+    private void process(Long jobId) {
+        Optional<UploadJob> jobOpt = uploadJobRepository.findById(jobId);
+        Optional<Video> videoOpt = jobOpt.flatMap(job -> videoRepository.findById(job.getVideoId()));
+        if (videoOpt.isEmpty()) {
+            // 处理开始前视频已被删除，任务随级联删除
+            return;
+        }
+        Video video = videoOpt.get();
+        Path videoPath = storageService.getFullPath(video.getStoragePath());
+        long started = System.nanoTime();
+
+        try {
+            // 排队期间相同内容的另一个上传已处理完成，直接复用其结果
+            Optional<MediaBlob> reusable = mediaBlobService.findReusable(video.getContentHash());
+            if (reusable.isPresent()) {
+                progress(jobId, UploadJob.Stage.FINALIZING, 95);
+                complete(jobId, video, ProcessingResult.of(reusable.get()));
+                return;
+            }
+
+            // 验证视频格式并获取信息
+            progress(jobId, UploadJob.Stage.PROBING, 10);
+            TranscodeService.VideoInfo videoInfo = transcodeService.validateVideoFile(videoPath);
+            if (!videoInfo.isValidFormat()) {
+                throw new IllegalArgumentException("视频格式不符合要求，必须是H.264视频编码和AAC音频编码的MP4文件");
+            }
+
+            // moov在文件末尾时搬到开头，播放器的首个请求即可拿到索引（失败不影响发布）
+            progress(jobId, UploadJob.Stage.FASTSTART, 20);
+            String fastStart = normalizeFastStart(videoPath);
+
+            // 一次解码生成全部尺寸与格式的缩略图
+            progress(jobId, UploadJob.Stage.THUMBNAILS, 30);
+            List<ThumbnailVariant> thumbnailVariants = transcodeService.thumbnailVariants();
+            Map<ThumbnailVariant, Path> thumbnailOutputs = new LinkedHashMap<>();
+            for (ThumbnailVariant variant : thumbnailVariants) {
+                thumbnailOutputs.put(variant,
+                        storageService.getFullPath(storageService.thumbnailVariantPath(video.getThumbPath(), variant)));
+            }
+            transcodeService.generateThumbnails(videoPath, thumbnailOutputs, videoInfo.getDurationSeconds());
+
+            // 生成故事板（失败不影响发布，播放页退化为无预览）
+            progress(jobId, UploadJob.Stage.STORYBOARD, 70);
+            String storyboardPath = generateStoryboard(videoPath,
+                    storageService.storyboardSpritePath(video.getThumbPath()), videoInfo.getDurationSeconds());
+
+            // 长视频打包为HLS分片（失败不影响发布，播放退回整文件MP4）
+            progress(jobId, UploadJob.Stage.PACKAGING, 85);
+            String hlsPath = packageHls(videoPath, videoInfo.getDurationSeconds());
+
+            progress(jobId, UploadJob.Stage.FINALIZING, 95);
+            complete(jobId, video, new ProcessingResult(videoInfo.getDurationSeconds(), video.getThumbPath(),
+                    ThumbnailVariant.formatList(thumbnailVariants), storyboardPath, fastStart, hlsPath,
+                    videoInfo.getWidth(), videoInfo.getHeight(), videoInfo.getBitRate()));
+            processingTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("上传处理被中断，任务重新排队: jobId={}", jobId);
+            requeue(jobId, 0);
+        } catch (MediaJobScheduler.SaturatedException e) {
+            // 媒体进程排队已满属于背压，不计入重试次数，按建议的等待时间后再处理
+            log.info("媒体处理繁忙，任务{}秒后重新处理: jobId={}", e.getRetryAfterSeconds(), jobId);
+            requeue(jobId, e.getRetryAfterSeconds());
+        } catch (IllegalArgumentException e) {
+            // 文件本身不合格，重试没有意义
+            failureCounter.increment();
+            log.warn("上传处理失败: jobId={}, videoId={}, 原因: {}", jobId, video.getId(), e.getMessage());
+            fail(jobId, e.getMessage(), true);
+        } catch (Exception e) {
+            failureCounter.increment();
+            log.error("上传处理失败: jobId={}, videoId={}", jobId, video.getId(), e);
+            fail(jobId, e.getMessage(), false);
+        }
+    }
+
+    /**
+     * 转为快速启动布局，失败时保留原文件并记为 FAILED
+     */
+    private String normalizeFastStart(Path videoPath) throws InterruptedException {
+        try {
+            return transcodeService.normalizeFastStart(videoPath);
+        } catch (MediaJobScheduler.SaturatedException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            log.warn("快速启动处理失败，保留原文件: {}", e.getMessage());
+            return Video.FAST_START_FAILED;
+        }
+    }
+
+    /**
+     * 生成故事板雪碧图及WebVTT索引，成功返回雪碧图存储路径，失败返回null
+     */
+    private String generateStoryboard(Path videoPath, String spriteStoragePath, int durationSeconds)
+            throws InterruptedException {
+        try {
+            StoryboardLayout layout = transcodeService.storyboardLayout(durationSeconds);
+            transcodeService.generateStoryboard(videoPath, storageService.getFullPath(spriteStoragePath), layout);
+            // 索引中使用相对地址，由 /storyboards/{id}/index.vtt 解析到同目录的 sprite.jpg
+            Files.writeString(storageService.getFullPath(storageService.storyboardVttPath(spriteStoragePath)),
+                    layout.toWebVtt("sprite.jpg", durationSeconds));
+            return spriteStoragePath;
+        } catch (MediaJobScheduler.SaturatedException e) {
+            storageService.deleteStoryboard(spriteStoragePath);
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            log.warn("生成故事板失败，跳过: {}", e.getMessage());
+            storageService.deleteStoryboard(spriteStoragePath);
+            return null;
+        }
+    }
+
+    /**
+     * 时长达到阈值的视频打包为HLS，成功返回分片目录，未达阈值或失败返回null
+     */
+    private String packageHls(Path videoPath, int durationSeconds) throws InterruptedException {
+        if (durationSeconds < hlsMinDurationSeconds) {
+            return null;
+        }
+        String hlsPath = storageService.generateHlsStoragePath();
+        try {
+            transcodeService.packageHls(videoPath, storageService.getFullPath(hlsPath));
+            return hlsPath;
+        } catch (MediaJobScheduler.SaturatedException e) {
+            storageService.deleteHls(hlsPath);
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            log.warn("HLS打包失败，跳过: {}", e.getMessage());
+            storageService.deleteHls(hlsPath);
+            return null;
+        }
+    }
+
+    private void progress(Long jobId, UploadJob.Stage stage, int progress) {
+        uploadJobRepository.updateProgress(jobId, stage, progress, LocalDateTime.now());
+    }
+
+    /**
+     * 写回处理结果并公开视频，首个处理完成的视频把派生文件登记为相同内容共用；
+     * 处理期间视频被删除时清理刚生成的文件（复用的共用文件不删）
+     */
+    private void complete(Long jobId, Video processed, ProcessingResult result) {
+        boolean generated = result.thumbPath().equals(processed.getThumbPath());
+        transactionTemplate.executeWithoutResult(status -> {
+            Optional<Video> videoOpt = videoRepository.findById(processed.getId());
+            if (videoOpt.isEmpty()) {
+                if (generated) {
+                    log.info("视频在处理期间已删除，清理生成的文件: videoId={}", processed.getId());
+                    storageService.deleteThumbnails(result.thumbPath(), result.thumbVariants());
+                    storageService.deleteStoryboard(result.storyboardPath());
+                    storageService.deleteHls(result.hlsPath());
+                }
+                return;
+            }
+            Video video = videoOpt.get();
+            video.setDurationSeconds(result.durationSeconds());
+            video.setThumbPath(result.thumbPath());
+            video.setThumbVariants(result.thumbVariants());
+            video.setStoryboardPath(result.storyboardPath());
+            video.setFastStart(result.fastStart());
+            video.setHlsPath(result.hlsPath());
+            video.setVisibility(Video.VISIBILITY_PUBLIC);
+            Video savedVideo = videoRepository.save(video);
+            if (generated) {
+                mediaBlobService.adoptDerivedArtifacts(savedVideo);
+            }
+            // 打包了HLS的视频补充低码率档位，复用的分片目录沿用已有档位
+            if (savedVideo.getHlsPath() != null) {
+                if (generated) {
+                    renditionService.createLadder(savedVideo, result.width(), result.height(), result.bitRate());
+                } else {
+                    renditionService.copyLadder(savedVideo);
+                }
+            }
+
+            uploadJobRepository.findById(jobId).ifPresent(job -> {
+                job.setStatus(UploadJob.Status.SUCCEEDED);
+                job.setStage(UploadJob.Stage.DONE);
+                job.setProgress(100);
+                job.setErrorMessage(null);
+                job.setUpdatedAt(LocalDateTime.now());
+            });
+
+            eventPublisher.publishEvent(new VideoUploadedEvent(savedVideo));
+            log.info("视频处理完成: ID={}, 标题={}", savedVideo.getId(), savedVideo.getTitle());
+        });
+    }
+
+    /**
+     * 记录失败：可重试时按 backoff * 2^(attempts-1) 推迟重新排队，否则任务与视频都标记为失败
+     */
+    private void fail(Long jobId, String message, boolean permanent) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Optional<UploadJob> jobOpt = uploadJobRepository.findById(jobId);
+            if (jobOpt.isEmpty()) {
+                return;
+            }
+            UploadJob job = jobOpt.get();
+            LocalDateTime now = LocalDateTime.now();
+            job.setErrorMessage(truncate(message));
+            job.setUpdatedAt(now);
+            if (!permanent && job.getAttempts() < maxAttempts) {
+                long delay = retryBackoffSeconds << Math.min(Math.max(job.getAttempts() - 1, 0), 10);
+                job.setStatus(UploadJob.Status.QUEUED);
+                job.setNextAttemptAt(now.plusSeconds(delay));
+                log.info("上传任务将在{}秒后重试: jobId={}, 第{}次", delay, jobId, job.getAttempts() + 1);
+                return;
+            }
+            job.setStatus(UploadJob.Status.FAILED);
+            videoRepository.findById(job.getVideoId())
+                    .ifPresent(video -> video.setVisibility(Video.VISIBILITY_FAILED));
+        });
+    }
+
+    /**
+     * 进程停止导致的中断、媒体进程排队已满都不计入重试次数，delaySeconds 秒后再认领
+     */
+    private void requeue(Long jobId, long delaySeconds) {
+        transactionTemplate.executeWithoutResult(status -> uploadJobRepository.findById(jobId).ifPresent(job -> {
+            job.setStatus(UploadJob.Status.QUEUED);
+            job.setAttempts(Math.max(job.getAttempts() - 1, 0));
+            job.setNextAttemptAt(LocalDateTime.now().plusSeconds(delaySeconds));
+            job.setUpdatedAt(LocalDateTime.now());
+        }));
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+
+    /**
+     * 一次处理的产出：新生成的派生文件（附带源视频的宽高与码率），或复用的已登记文件
+     */
+    private record ProcessingResult(int durationSeconds, String thumbPath, String thumbVariants,
+                                    String storyboardPath, String fastStart, String hlsPath,
+                                    int width, int height, long bitRate) {
+
+        static ProcessingResult of(MediaBlob blob) {
+            return new ProcessingResult(blob.getDurationSeconds(), blob.getThumbPath(), blob.getThumbVariants(),
+                    blob.getStoryboardPath(), blob.getFastStart(), blob.getHlsPath(), 0, 0, 0);
+        }
+    }
+}
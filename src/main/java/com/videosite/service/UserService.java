@@ -1,10 +1,14 @@
 package com.videosite.service;
 
 import com.videosite.domain.entity.User;
+import com.videosite.domain.event.UserDeletedEvent;
+import com.videosite.domain.event.UserUpdatedEvent;
 import com.videosite.dto.form.RegisterForm;
+import com.videosite.repository.StatsTotalsRepository;
 import com.videosite.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -19,6 +23,9 @@ public class UserService {
     
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MediaBlobService mediaBlobService;
+    private final StatsTotalsRepository statsTotalsRepository;
     
     /**
      * 根据用户名查找用户
@@ -139,6 +146,7 @@ public class UserService {
         }
         
         User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(new UserUpdatedEvent(savedUser.getId(), savedUser.getUsername()));
         log.info("用户信息更新成功: {}", savedUser.getUsername());
         
         return savedUser;
@@ -161,7 +169,13 @@ public class UserService {
             throw new IllegalArgumentException("不能删除管理员账户");
         }
         
+        // 视频记录随用户级联删除，先释放其共用文件的引用
+        mediaBlobService.releaseAllOfUploader(user.getId());
         userRepository.delete(user);
+        // 先执行删除（锁定并级联删除其视频），再从全站累计中扣除该上传者，与计数刷写的加锁顺序一致
+        userRepository.flush();
+        statsTotalsRepository.removeUploader(user.getId());
+        eventPublisher.publishEvent(new UserDeletedEvent(user.getId()));
         log.info("用户删除成功: {}", user.getUsername());
     }
 }
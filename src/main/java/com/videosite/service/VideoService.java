@@ -1,13 +1,24 @@
 package com.videosite.service;
 
+import com.videosite.domain.entity.MediaBlob;
 import com.videosite.domain.entity.Video;
+import com.videosite.domain.event.VideoDeletedEvent;
 import com.videosite.dto.form.SearchQuery;
 import com.videosite.dto.form.UploadForm;
+import com.videosite.dto.page.CursorPage;
+import com.videosite.dto.page.PageCursor;
+import com.videosite.repository.StatsTotalsRepository;
 import com.videosite.repository.VideoRepository;
+import com.videosite.search.BooleanQuery;
+import com.videosite.search.QueryParser;
+import com.videosite.search.SearchHits;
 import com.videosite.util.KeywordUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -15,10 +26,11 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Slf4j
@@ -26,10 +38,18 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class VideoService {
     
+    private static final int TOP_LIST_SIZE = 10;
+    
     private final VideoRepository videoRepository;
     private final StorageService storageService;
-    private final TranscodeService transcodeService;
-    private final StatsService statsService;
+    private final UploadProcessingService uploadProcessingService;
+    private final MediaBlobService mediaBlobService;
+    private final StatsCounterAggregator statsCounterAggregator;
+    private final SearchIndexService searchIndexService;
+    private final LeaderboardService leaderboardService;
+    private final UniqueViewerService uniqueViewerService;
+    private final StatsTotalsRepository statsTotalsRepository;
+    private final ApplicationEventPublisher eventPublisher;
     
     private static final long MAX_FILE_SIZE = 200 * 1024 * 1024; // 200MB
     
@@ -40,6 +60,27 @@ public class VideoService {
         return videoRepository.findAllByOrderByCreatedAtDesc(pageable);
     }
     
+    /**
+     * 键集分页查询视频：按 (created_at, id) 倒序，多取一行判断是否还有更多，不做COUNT
+     */
+    public CursorPage<Video> findVideosByCursor(SearchQuery query) {
+        int size = query.getSize();
+        PageCursor after = PageCursor.decode(query.getAfter());
+        PageCursor before = after == null ? PageCursor.decode(query.getBefore()) : null;
+        Pageable probe = PageRequest.of(0, size + 1);
+        
+        List<Video> rows;
+        if (after != null) {
+            rows = videoRepository.findOlderThan(after.getCreatedAt(), after.getId(), probe);
+        } else if (before != null) {
+            rows = videoRepository.findNewerThan(before.getCreatedAt(), before.getId(), probe);
+        } else {
+            rows = videoRepository.findLatest(probe);
+        }
+        return CursorPage.of(rows, size, before != null, after != null || before != null,
+                VideoService::cursorOf, null);
+    }
+    
     /**
      * 根据ID查找视频
      */
@@ -48,87 +89,218 @@ public class VideoService {
     }
     
     /**
-     * 搜索视频
+     * 获取公开视频的故事板雪碧图存储路径（未生成或未公开时为空）
+     */
+    public Optional<String> findStoryboardPath(Long id) {
+        return videoRepository.findStoryboardPathById(id);
+    }
+    
+    /**
+     * 搜索视频：查询语法支持 +必须、-排除、a OR b 与 "短语"，
+     * 在内存索引中以位图运算求值，只回表加载当前页；sort=relevance 时按BM25相关度排序，否则最新优先；
+     * 无结果时按编辑距离纠正拼写后重试，纠正后的查询写回 query.correctedQuery
      */
     public Page<Video> searchVideos(SearchQuery query) {
         Pageable pageable = PageRequest.of(query.getPage(), query.getSize());
+        query.setCorrectedQuery(null);
         
         if (!query.hasQuery()) {
             return videoRepository.findAllByOrderByCreatedAtDesc(pageable);
         }
         
-        // 实现复杂搜索逻辑
-        String cleanQuery = query.getCleanQuery().toLowerCase();
-        List<String> keywords = KeywordUtils.parseKeywords(cleanQuery);
+        String cleanQuery = query.getCleanQuery();
+        BooleanQuery booleanQuery = QueryParser.parse(cleanQuery);
         
-        if (keywords.isEmpty()) {
+        if (booleanQuery.isEmpty()) {
             return videoRepository.findAllByOrderByCreatedAtDesc(pageable);
         }
         
-        // 简化版搜索，直接使用关键词匹配
-        return videoRepository.searchVideos(cleanQuery, pageable);
+        // 索引构建完成前回退到数据库搜索
+        if (!searchIndexService.isReady()) {
+            return videoRepository.searchVideos(cleanQuery.toLowerCase(), pageable);
+        }
+        
+        SearchHits hits = searchIndex(booleanQuery, query, pageable);
+        
+        // 零结果时尝试拼写纠错并重新搜索
+        if (hits.getTotal() == 0) {
+            BooleanQuery corrected = searchIndexService.correct(booleanQuery);
+            if (corrected != null) {
+                SearchHits correctedHits = searchIndex(corrected, query, pageable);
+                if (correctedHits.getTotal() > 0) {
+                    query.setCorrectedQuery(corrected.toQueryString());
+                    hits = correctedHits;
+                }
+            }
+        }
+        return new PageImpl<>(loadInOrder(hits.getIds()), pageable, hits.getTotal());
     }
     
     /**
-     * 上传视频
+     * 键集分页搜索（最新优先）：在索引位图上按ID定位游标，命中总数由位图基数直接得到
      */
-    @Transactional
-    public Video uploadVideo(UploadForm form, Long uploaderId) throws IOException, InterruptedException {
+    public CursorPage<Video> searchVideosByCursor(SearchQuery query) {
+        query.setCorrectedQuery(null);
+        
+        if (!query.hasQuery()) {
+            return findVideosByCursor(query);
+        }
+        
+        String cleanQuery = query.getCleanQuery();
+        BooleanQuery booleanQuery = QueryParser.parse(cleanQuery);
+        if (booleanQuery.isEmpty()) {
+            return findVideosByCursor(query);
+        }
+        
+        int size = query.getSize();
+        // 索引构建完成前回退到数据库搜索，只提供第一页
+        if (!searchIndexService.isReady()) {
+            Page<Video> page = videoRepository.searchVideos(cleanQuery.toLowerCase(), PageRequest.of(0, size));
+            return CursorPage.of(page.getContent(), size, false, false, VideoService::cursorOf, page.getTotalElements());
+        }
+        
+        PageCursor after = PageCursor.decode(query.getAfter());
+        PageCursor before = after == null ? PageCursor.decode(query.getBefore()) : null;
+        boolean hasCursor = after != null || before != null;
+        
+        SearchHits hits = seekIndex(booleanQuery, after, before, size + 1);
+        
+        // 第一页零结果时尝试拼写纠错
+        if (hits.getTotal() == 0 && !hasCursor) {
+            BooleanQuery corrected = searchIndexService.correct(booleanQuery);
+            if (corrected != null) {
+                SearchHits correctedHits = seekIndex(corrected, null, null, size + 1);
+                if (correctedHits.getTotal() > 0) {
+                    query.setCorrectedQuery(corrected.toQueryString());
+                    hits = correctedHits;
+                }
+            }
+        }
+        return CursorPage.of(loadInOrder(hits.getIds()), size, before != null, hasCursor,
+                VideoService::cursorOf, hits.getTotal());
+    }
+    
+    private SearchHits seekIndex(BooleanQuery booleanQuery, PageCursor after, PageCursor before, int limit) {
+        if (before != null) {
+            return searchIndexService.searchNewerThan(booleanQuery, before.getId(), limit);
+        }
+        return searchIndexService.searchOlderThan(booleanQuery, after != null ? after.getId() : null, limit);
+    }
+    
+    private static PageCursor cursorOf(Video video) {
+        return new PageCursor(video.getCreatedAt(), video.getId());
+    }
+    
+    private SearchHits searchIndex(BooleanQuery booleanQuery, SearchQuery query, Pageable pageable) {
+        int offset = (int) pageable.getOffset();
+        return query.isRelevanceSort()
+                ? searchIndexService.searchRanked(booleanQuery, offset, pageable.getPageSize())
+                : searchIndexService.search(booleanQuery, offset, pageable.getPageSize());
+    }
+    
+    /**
+     * 按给定ID顺序加载视频（包含上传者信息）
+     */
+    private List<Video> loadInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Video> byId = new HashMap<>();
+        for (Video video : videoRepository.findAllWithUploaderByIdIn(ids)) {
+            byId.put(video.getId(), video);
+        }
+        List<Video> ordered = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Video video = byId.get(id);
+            if (video != null) {
+                ordered.add(video);
+            }
+        }
+        return ordered;
+    }
+    
+    /**
+     * 上传视频：只保存文件并登记为处理中，探测与缩略图等由 UploadProcessingService 在后台完成，
+     * 不在请求线程和数据库事务中等待FFmpeg
+     */
+    public Video uploadVideo(UploadForm form, Long uploaderId) throws IOException {
         MultipartFile file = form.getVideoFile();
         
         // 验证文件
         validateUploadFile(file);
         
-        // 生成存储路径
+        // 生成存储路径并确保目录存在
         String videoStoragePath = storageService.generateVideoStoragePath();
-        String thumbnailStoragePath = storageService.generateThumbnailStoragePath();
-        
-        // 确保目录存在
         storageService.ensureDirectoryExists(videoStoragePath);
-        storageService.ensureDirectoryExists(thumbnailStoragePath);
-        
-        // 获取完整路径
-        Path videoPath = storageService.getFullPath(videoStoragePath);
-        Path thumbnailPath = storageService.getFullPath(thumbnailStoragePath);
+        Path videoPath = storageService.getFullPath(videoStoragePath).toAbsolutePath();
         
         try {
-            // 保存视频文件
-            Files.copy(file.getInputStream(), videoPath);
+            // 容器已把请求体写入临时文件，transferTo 在同一文件系统上直接移动该文件，不再复制一遍
+            file.transferTo(videoPath.toFile());
             log.info("视频文件保存成功: {}", videoPath);
             
-            // 验证视频格式并获取信息
-            TranscodeService.VideoInfo videoInfo = transcodeService.validateVideoFile(videoPath);
-            if (!videoInfo.isValidFormat()) {
-                throw new IllegalArgumentException("视频格式不符合要求，必须是H.264视频编码和AAC音频编码的MP4文件");
-            }
-            
-            // 生成缩略图
-            transcodeService.generateThumbnail(videoPath, thumbnailPath, videoInfo.getDurationSeconds());
-            
-            // 处理关键词
-            String processedKeywords = KeywordUtils.normalizeKeywords(form.getKeywords());
-            
-            // 创建视频记录
-            Video video = new Video();
-            video.setTitle(form.getTitle());
-            video.setDescription(form.getDescription());
-            video.setKeywords(processedKeywords);
-            video.setOriginalFilename(file.getOriginalFilename());
-            video.setStoragePath(videoStoragePath);
-            video.setThumbPath(thumbnailStoragePath);
-            video.setUploaderId(uploaderId);
-            video.setSizeBytes(file.getSize());
-            video.setDurationSeconds(videoInfo.getDurationSeconds());
-            
-            Video savedVideo = videoRepository.save(video);
-            log.info("视频上传成功: ID={}, 标题={}", savedVideo.getId(), savedVideo.getTitle());
+            // 请求体已由容器写完，读一遍计算内容哈希（分片上传在写入时计算）
+            String contentHash = storageService.contentHash(videoStoragePath);
             
-            return savedVideo;
+            return registerUpload(form.getTitle(), form.getDescription(), form.getKeywords(),
+                    file.getOriginalFilename(), videoStoragePath, file.getSize(), uploaderId, contentHash);
             
         } catch (Exception e) {
             // 清理已保存的文件
             storageService.deleteFile(videoStoragePath);
-            storageService.deleteFile(thumbnailStoragePath);
+            throw e;
+        }
+    }
+    
+    /**
+     * 登记已完整落盘的视频文件（普通上传与分片上传共用）：文件按内容哈希归入共用存储，
+     * 相同内容已处理过时直接复用其时长、缩略图和故事板公开，否则视频记录为处理中并交给后台处理
+     */
+    public Video registerUpload(String title, String description, String keywords, String originalFilename,
+                                String videoStoragePath, long sizeBytes, Long uploaderId, String contentHash)
+            throws IOException {
+        MediaBlob blob;
+        try {
+            blob = mediaBlobService.acquire(contentHash, videoStoragePath, sizeBytes);
+        } catch (PessimisticLockingFailureException e) {
+            // 与相同内容的并发上传或删除发生锁冲突（如死锁被回滚），重试一次
+            log.warn("登记文件时发生锁冲突，重试: hash={}", contentHash);
+            blob = mediaBlobService.acquire(contentHash, videoStoragePath, sizeBytes);
+        }
+        
+        // 处理关键词
+        String processedKeywords = KeywordUtils.normalizeKeywords(keywords);
+        
+        Video video = new Video();
+        video.setTitle(title);
+        video.setDescription(description);
+        video.setKeywords(processedKeywords);
+        video.setOriginalFilename(originalFilename);
+        video.setStoragePath(blob.getStoragePath());
+        video.setContentHash(contentHash);
+        video.setUploaderId(uploaderId);
+        video.setSizeBytes(sizeBytes);
+        
+        try {
+            if (blob.hasDerivedArtifacts()) {
+                video.setThumbPath(blob.getThumbPath());
+                video.setThumbVariants(blob.getThumbVariants());
+                video.setStoryboardPath(blob.getStoryboardPath());
+                video.setDurationSeconds(blob.getDurationSeconds());
+                video.setFastStart(blob.getFastStart());
+                video.setHlsPath(blob.getHlsPath());
+                return uploadProcessingService.publishReused(video);
+            }
+            
+            String thumbnailStoragePath = storageService.generateThumbnailStoragePath();
+            storageService.ensureDirectoryExists(thumbnailStoragePath);
+            
+            // 创建视频记录（时长在探测后回填）
+            video.setThumbPath(thumbnailStoragePath);
+            video.setDurationSeconds(0);
+            return uploadProcessingService.enqueue(video);
+        } catch (IOException | RuntimeException e) {
+            mediaBlobService.release(video);
             throw e;
         }
     }
@@ -146,56 +318,60 @@ public class VideoService {
             throw new SecurityException("没有权限删除此视频");
         }
         
-        // 删除物理文件
-        storageService.deleteFile(video.getStoragePath());
-        storageService.deleteFile(video.getThumbPath());
+        // 删除物理文件：共用的内容文件在最后一个引用删除时才删
+        if (video.getContentHash() != null) {
+            mediaBlobService.release(video);
+        } else {
+            storageService.deleteFile(video.getStoragePath());
+            storageService.deleteThumbnails(video.getThumbPath(), video.getThumbVariants());
+            storageService.deleteStoryboard(video.getStoryboardPath());
+            storageService.deleteHls(video.getHlsPath());
+        }
         
-        // 删除数据库记录（级联删除统计数据）
+        // 从累计汇总中扣除该视频，再删除数据库记录（级联删除统计数据）
+        statsTotalsRepository.subtractVideo(videoId);
         videoRepository.delete(video);
+        eventPublisher.publishEvent(new VideoDeletedEvent(video));
         
         log.info("视频删除成功: ID={}, 标题={}", videoId, video.getTitle());
     }
     
     /**
-     * 记录播放
+     * 记录播放（内存累加，由聚合器批量刷写），viewerKey 标识观众，用于统计独立观众
      */
-    @Transactional
-    public void recordView(Long videoId) {
-        // 增加总播放次数
-        int updated = videoRepository.incrementViewsTotal(videoId);
-        if (updated > 0) {
-            // 记录日统计
-            statsService.recordDailyView(videoId, LocalDate.now());
-            log.debug("记录播放: videoId={}", videoId);
-        }
+    public void recordView(Long videoId, String viewerKey) {
+        statsCounterAggregator.recordView(videoId);
+        uniqueViewerService.recordViewer(videoId, viewerKey);
+        log.debug("记录播放: videoId={}", videoId);
     }
     
     /**
-     * 记录下载
+     * 记录下载（内存累加，由聚合器批量刷写）
      */
-    @Transactional
     public void recordDownload(Long videoId) {
-        // 增加总下载次数
-        int updated = videoRepository.incrementDownloadsTotal(videoId);
-        if (updated > 0) {
-            // 记录日统计
-            statsService.recordDailyDownload(videoId, LocalDate.now());
-            log.debug("记录下载: videoId={}", videoId);
-        }
+        statsCounterAggregator.recordDownload(videoId);
+        log.debug("记录下载: videoId={}", videoId);
     }
     
     /**
      * 获取播放量Top10
      */
     public List<Video> getTopViewedVideos() {
-        return videoRepository.findTop10ByOrderByViewsTotalDesc();
+        return leaderboardService.getTopViewed(TOP_LIST_SIZE);
     }
     
     /**
      * 获取下载量Top10
      */
     public List<Video> getTopDownloadedVideos() {
-        return videoRepository.findTop10ByOrderByDownloadsTotalDesc();
+        return leaderboardService.getTopDownloaded(TOP_LIST_SIZE);
+    }
+    
+    /**
+     * 获取近期热度Top10
+     */
+    public List<Video> getTrendingVideos() {
+        return leaderboardService.getTrending(TOP_LIST_SIZE);
     }
     
     /**
@@ -220,18 +396,28 @@ public class VideoService {
             throw new IllegalArgumentException("请选择要上传的视频文件");
         }
         
-        if (file.getSize() > MAX_FILE_SIZE) {
+        validateUpload(file.getOriginalFilename(), file.getSize());
+        
+        String contentType = file.getContentType();
+        if (contentType == null || !contentType.startsWith("video/")) {
+            throw new IllegalArgumentException("文件类型不正确，请上传视频文件");
+        }
+    }
+    
+    /**
+     * 验证上传文件名与大小（分片上传在创建会话时即可校验）
+     */
+    public void validateUpload(String originalFilename, long size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("请选择要上传的视频文件");
+        }
+        
+        if (size > MAX_FILE_SIZE) {
             throw new IllegalArgumentException("文件大小超过限制，最大允许200MB");
         }
         
-        String originalFilename = file.getOriginalFilename();
         if (originalFilename == null || !originalFilename.toLowerCase().endsWith(".mp4")) {
             throw new IllegalArgumentException("只支持MP4格式的视频文件");
         }
-        
-        String contentType = file.getContentType();
-        if (contentType == null || !contentType.startsWith("video/")) {
-            throw new IllegalArgumentException("文件类型不正确，请上传视频文件");
-        }
     }
 }
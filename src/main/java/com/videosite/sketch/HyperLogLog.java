@@ -0,0 +1,224 @@
+package com.videosite.sketch;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog基数估计：2^p 个寄存器各记录落入该桶的哈希的最大前导零数+1，
+ * 标准误差约为 1.04/sqrt(2^p)，p=12 时约1.6%、稠密形式4KB。
+ * 元素较少时以有序int数组保存非零寄存器（稀疏形式），超过稠密形式的大小后再展开。
+ * 两个同精度的草图按寄存器取最大值即可合并，结果等于两组元素并集的草图。非线程安全
+ */
+public final class HyperLogLog {
+
+    public static final int DEFAULT_PRECISION = 12;
+
+    private static final byte FORMAT_SPARSE = 1;
+    private static final byte FORMAT_DENSE = 2;
+    private static final int[] NO_ENTRIES = new int[0];
+
+    private final int precision;
+    private final int registerCount;
+
+    /** 稀疏形式：按寄存器下标升序的 (index << 8 | rank)，展开为稠密形式后为null */
+    private int[] sparse = NO_ENTRIES;
+    private int sparseSize;
+    private byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("HyperLogLog精度必须在4到16之间");
+        }
+        this.precision = precision;
+        this.registerCount = 1 << precision;
+    }
+
+    /**
+     * 加入一个元素的64位哈希值
+     */
+    public void offerHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // 补一个哨兵位，保证全零时 rank 不超过 64 - precision + 1
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        update(index, rank);
+    }
+
+    /**
+     * 加入一个字符串元素
+     */
+    public void offer(String value) {
+        offerHash(hash(value));
+    }
+
+    /**
+     * 把other合并进来（寄存器取最大值），精度必须相同
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("HyperLogLog精度不同，无法合并");
+        }
+        if (other.registers != null) {
+            toDense();
+            for (int i = 0; i < registerCount; i++) {
+                if (other.registers[i] > registers[i]) {
+                    registers[i] = other.registers[i];
+                }
+            }
+        } else {
+            for (int i = 0; i < other.sparseSize; i++) {
+                update(other.sparse[i] >>> 8, other.sparse[i] & 0xFF);
+            }
+        }
+    }
+
+    /**
+     * 估计不重复元素数：原始估计值偏小时（空寄存器较多）改用线性计数
+     */
+    public long cardinality() {
+        double sum = 0;
+        int zeros = 0;
+        if (registers != null) {
+            for (byte register : registers) {
+                sum += 1.0 / (1L << register);
+                if (register == 0) {
+                    zeros++;
+                }
+            }
+        } else {
+            zeros = registerCount - sparseSize;
+            sum = zeros;
+            for (int i = 0; i < sparseSize; i++) {
+                sum += 1.0 / (1L << (sparse[i] & 0xFF));
+            }
+        }
+
+        double estimate = alpha() * registerCount * registerCount / sum;
+        if (estimate <= 2.5 * registerCount && zeros > 0) {
+            estimate = registerCount * Math.log((double) registerCount / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public boolean isEmpty() {
+        if (registers == null) {
+            return sparseSize == 0;
+        }
+        for (byte register : registers) {
+            if (register != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 序列化：[格式][精度] 之后，稀疏形式为若干 (uint16下标, uint8 rank)，稠密形式为每寄存器一字节
+     */
+    public byte[] toBytes() {
+        if (registers == null) {
+            ByteBuffer buffer = ByteBuffer.allocate(2 + sparseSize * 3);
+            buffer.put(FORMAT_SPARSE).put((byte) precision);
+            for (int i = 0; i < sparseSize; i++) {
+                buffer.putShort((short) (sparse[i] >>> 8)).put((byte) (sparse[i] & 0xFF));
+            }
+            return buffer.array();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(2 + registerCount);
+        buffer.put(FORMAT_DENSE).put((byte) precision).put(registers);
+        return buffer.array();
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte format = buffer.get();
+        HyperLogLog sketch = new HyperLogLog(buffer.get());
+        if (format == FORMAT_DENSE) {
+            if (buffer.remaining() != sketch.registerCount) {
+                throw new IllegalArgumentException("HyperLogLog数据长度不正确");
+            }
+            sketch.registers = new byte[sketch.registerCount];
+            buffer.get(sketch.registers);
+        } else if (format == FORMAT_SPARSE) {
+            while (buffer.remaining() >= 3) {
+                sketch.update(buffer.getShort() & 0xFFFF, buffer.get() & 0xFF);
+            }
+        } else {
+            throw new IllegalArgumentException("未知的HyperLogLog格式: " + format);
+        }
+        return sketch;
+    }
+
+    /**
+     * 字符串的64位哈希：FNV-1a 后再做一次 MurmurHash3 的 fmix64 混合，保证高位分布均匀
+     */
+    public static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private void update(int index, int rank) {
+        if (registers != null) {
+            if (rank > registers[index]) {
+                registers[index] = (byte) rank;
+            }
+            return;
+        }
+        int position = Arrays.binarySearch(sparse, 0, sparseSize, index << 8);
+        if (position < 0) {
+            position = -position - 1;
+        }
+        if (position < sparseSize && sparse[position] >>> 8 == index) {
+            if (rank > (sparse[position] & 0xFF)) {
+                sparse[position] = index << 8 | rank;
+            }
+            return;
+        }
+        // 稀疏形式每项4字节，超过稠密形式的大小时展开
+        if (sparseSize + 1 > registerCount / 4) {
+            toDense();
+            update(index, rank);
+            return;
+        }
+        if (sparseSize == sparse.length) {
+            sparse = Arrays.copyOf(sparse, Math.max(8, sparseSize * 2));
+        }
+        System.arraycopy(sparse, position, sparse, position + 1, sparseSize - position);
+        sparse[position] = index << 8 | rank;
+        sparseSize++;
+    }
+
+    private void toDense() {
+        if (registers != null) {
+            return;
+        }
+        registers = new byte[registerCount];
+        for (int i = 0; i < sparseSize; i++) {
+            registers[sparse[i] >>> 8] = (byte) (sparse[i] & 0xFF);
+        }
+        sparse = null;
+        sparseSize = 0;
+    }
+
+    private double alpha() {
+        return switch (registerCount) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / registerCount);
+        };
+    }
+}
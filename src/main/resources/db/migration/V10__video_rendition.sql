@@ -0,0 +1,20 @@
+-- 自适应码率档位：source 为HLS打包的原始码率，其余档位由后台按从低到高的顺序转码，
+-- 表同时作为转码队列；主播放列表 master.m3u8 由 READY 的档位生成
+CREATE TABLE `video_rendition` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT,
+    `video_id` BIGINT NOT NULL COMMENT '视频ID',
+    `name` VARCHAR(20) NOT NULL COMMENT '档位名：source 或 高度p（即分片子目录名）',
+    `width` INT NOT NULL DEFAULT 0 COMMENT '输出宽度',
+    `height` INT NOT NULL DEFAULT 0 COMMENT '输出高度',
+    `bandwidth` BIGINT NOT NULL DEFAULT 0 COMMENT '峰值码率（bps），写入主播放列表',
+    `status` VARCHAR(20) NOT NULL DEFAULT 'QUEUED' COMMENT '状态：QUEUED/RUNNING/READY/FAILED',
+    `progress` INT NOT NULL DEFAULT 0 COMMENT '转码进度百分比',
+    `attempts` INT NOT NULL DEFAULT 0 COMMENT '已执行次数',
+    `error_message` VARCHAR(1000) NULL COMMENT '最近一次失败原因',
+    `created_at` DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) COMMENT '创建时间',
+    `updated_at` DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) COMMENT '最后更新时间，运行中兼作心跳',
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_video_rendition_name` (`video_id`, `name`),
+    KEY `idx_video_rendition_queue` (`status`, `height`, `id`),
+    CONSTRAINT `fk_video_rendition_video` FOREIGN KEY (`video_id`) REFERENCES `video` (`id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='视频码率档位表';
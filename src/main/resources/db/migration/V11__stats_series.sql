@@ -0,0 +1,53 @@
+-- 全站播放/下载时间序列：计数刷写写入小时表，后台任务把完整的天汇总到日表、完整的月汇总到月表，
+-- 超过保留期的小时/日数据在汇总后删除。每个时间桶一行，图表查询的行数只与时间范围和粒度有关
+CREATE TABLE `stats_hourly` (
+    `bucket_start` DATETIME NOT NULL COMMENT '小时起点',
+    `views` BIGINT NOT NULL DEFAULT 0 COMMENT '播放次数',
+    `downloads` BIGINT NOT NULL DEFAULT 0 COMMENT '下载次数',
+    PRIMARY KEY (`bucket_start`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='全站小时统计表';
+
+CREATE TABLE `stats_daily` (
+    `bucket_start` DATETIME NOT NULL COMMENT '日期起点',
+    `views` BIGINT NOT NULL DEFAULT 0 COMMENT '播放次数',
+    `downloads` BIGINT NOT NULL DEFAULT 0 COMMENT '下载次数',
+    PRIMARY KEY (`bucket_start`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='全站日统计表';
+
+CREATE TABLE `stats_monthly` (
+    `bucket_start` DATETIME NOT NULL COMMENT '月份起点',
+    `views` BIGINT NOT NULL DEFAULT 0 COMMENT '播放次数',
+    `downloads` BIGINT NOT NULL DEFAULT 0 COMMENT '下载次数',
+    PRIMARY KEY (`bucket_start`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='全站月统计表';
+
+-- 汇总进度：rolled_until 之前的时间已完整汇总到该粒度的表，查询时之前用粗表、之后用细表
+CREATE TABLE `stats_rollup_state` (
+    `level` VARCHAR(10) NOT NULL COMMENT '汇总粒度：DAY/MONTH',
+    `rolled_until` DATETIME NOT NULL COMMENT '已汇总到的时间（不含）',
+    PRIMARY KEY (`level`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='统计汇总进度表';
+
+-- 用已有的视频日统计回填：今天之前的天写入日表，本月之前的月份写入月表，
+-- 今天已有的计数记在今天0点的小时桶
+INSERT INTO `stats_daily` (`bucket_start`, `views`, `downloads`)
+SELECT `stat_date`, SUM(`views`), SUM(`downloads`)
+FROM `video_daily_stats`
+WHERE `stat_date` < CURDATE()
+GROUP BY `stat_date`;
+
+INSERT INTO `stats_monthly` (`bucket_start`, `views`, `downloads`)
+SELECT DATE_FORMAT(`stat_date`, '%Y-%m-01'), SUM(`views`), SUM(`downloads`)
+FROM `video_daily_stats`
+WHERE `stat_date` < DATE_FORMAT(CURDATE(), '%Y-%m-01')
+GROUP BY DATE_FORMAT(`stat_date`, '%Y-%m-01');
+
+INSERT INTO `stats_hourly` (`bucket_start`, `views`, `downloads`)
+SELECT CURDATE(), SUM(`views`), SUM(`downloads`)
+FROM `video_daily_stats`
+WHERE `stat_date` = CURDATE()
+HAVING COUNT(*) > 0;
+
+INSERT INTO `stats_rollup_state` (`level`, `rolled_until`) VALUES
+('DAY', CURDATE()),
+('MONTH', DATE_FORMAT(CURDATE(), '%Y-%m-01'));
@@ -0,0 +1,12 @@
+-- 视频每日独立观众：与 video_daily_stats 同样按 (视频, 日期) 一行，保存当日观众的 HyperLogLog 草图
+-- （观众少时为稀疏形式仅几十字节，最多约4KB）。任意日期范围的独立观众数由各天草图合并后估计
+CREATE TABLE `video_daily_viewers` (
+    `video_id` BIGINT NOT NULL COMMENT '视频ID',
+    `stat_date` DATE NOT NULL COMMENT '统计日期',
+    `unique_viewers` BIGINT NOT NULL DEFAULT 0 COMMENT '当日独立观众估计值',
+    `sketch` VARBINARY(4200) NOT NULL COMMENT 'HyperLogLog草图',
+    `updated_at` DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3) COMMENT '最后更新时间',
+    PRIMARY KEY (`video_id`, `stat_date`),
+    KEY `idx_video_daily_viewers_date` (`stat_date`),
+    CONSTRAINT `fk_video_daily_viewers_video` FOREIGN KEY (`video_id`) REFERENCES `video` (`id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='视频每日独立观众表';
@@ -0,0 +1,19 @@
+-- 播放/下载累计汇总：GLOBAL 为全站（scope_id 固定为0），UPLOADER 为各上传者（scope_id 为用户ID）。
+-- 与视频累计值在同一次计数刷写事务内更新，删除视频/用户时扣减，定时任务按 video 表重新核对
+CREATE TABLE `stats_totals` (
+    `scope` VARCHAR(10) NOT NULL COMMENT '汇总范围：GLOBAL/UPLOADER',
+    `scope_id` BIGINT NOT NULL COMMENT '范围ID：全站为0，上传者为用户ID',
+    `views` BIGINT NOT NULL DEFAULT 0 COMMENT '累计播放次数',
+    `downloads` BIGINT NOT NULL DEFAULT 0 COMMENT '累计下载次数',
+    `updated_at` DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3) COMMENT '最后更新时间',
+    PRIMARY KEY (`scope`, `scope_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='播放下载累计汇总表';
+
+INSERT INTO `stats_totals` (`scope`, `scope_id`, `views`, `downloads`)
+SELECT 'GLOBAL', 0, COALESCE(SUM(`views_total`), 0), COALESCE(SUM(`downloads_total`), 0)
+FROM `video`;
+
+INSERT INTO `stats_totals` (`scope`, `scope_id`, `views`, `downloads`)
+SELECT 'UPLOADER', `uploader_id`, SUM(`views_total`), SUM(`downloads_total`)
+FROM `video`
+GROUP BY `uploader_id`;
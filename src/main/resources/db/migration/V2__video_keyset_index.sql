@@ -0,0 +1,4 @@
+-- 键集分页按 (created_at, id) 定位与排序，使用复合索引替代单列索引
+ALTER TABLE `video`
+    ADD KEY `idx_video_created_at_id` (`created_at`, `id`),
+    DROP KEY `idx_video_created_at`;
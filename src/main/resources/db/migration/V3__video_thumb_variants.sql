@@ -0,0 +1,3 @@
+-- 记录一次生成的多尺寸、多格式缩略图，旧视频为空时只使用 thumb_path
+ALTER TABLE `video`
+    ADD COLUMN `thumb_variants` VARCHAR(255) NULL COMMENT '缩略图变体列表，如 320:jpg,320:webp,640:webp' AFTER `thumb_path`;
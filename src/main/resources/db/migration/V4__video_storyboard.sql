@@ -0,0 +1,3 @@
+-- 故事板雪碧图路径，同名 .vtt 文件为其WebVTT索引；生成失败或旧视频为空
+ALTER TABLE `video`
+    ADD COLUMN `storyboard_path` VARCHAR(500) NULL COMMENT '故事板雪碧图存储路径' AFTER `thumb_variants`;
@@ -0,0 +1,18 @@
+-- 上传后的异步处理任务：探测、缩略图与故事板由后台工作线程完成，
+-- 视频在处理完成前 visibility 为 PROCESSING，不出现在列表与搜索中
+CREATE TABLE `upload_job` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT,
+    `video_id` BIGINT NOT NULL COMMENT '视频ID',
+    `status` VARCHAR(20) NOT NULL DEFAULT 'QUEUED' COMMENT '状态：QUEUED/RUNNING/SUCCEEDED/FAILED',
+    `stage` VARCHAR(20) NULL COMMENT '当前处理阶段',
+    `progress` INT NOT NULL DEFAULT 0 COMMENT '进度百分比',
+    `attempts` INT NOT NULL DEFAULT 0 COMMENT '已执行次数',
+    `error_message` VARCHAR(1000) NULL COMMENT '最近一次失败原因',
+    `next_attempt_at` DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) COMMENT '最早可执行时间（重试退避）',
+    `created_at` DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) COMMENT '创建时间',
+    `updated_at` DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) COMMENT '最后更新时间，运行中兼作心跳',
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_upload_job_video` (`video_id`),
+    KEY `idx_upload_job_status` (`status`, `next_attempt_at`),
+    CONSTRAINT `fk_upload_job_video` FOREIGN KEY (`video_id`) REFERENCES `video` (`id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='上传处理任务表';
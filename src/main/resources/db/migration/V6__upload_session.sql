@@ -0,0 +1,21 @@
+-- 分片续传会话：分片按偏移量直接追加写入最终存储位置，传完后登记为视频并交给后台处理
+CREATE TABLE `upload_session` (
+    `id` CHAR(32) NOT NULL COMMENT '会话ID（随机UUID）',
+    `uploader_id` BIGINT NOT NULL COMMENT '上传者ID',
+    `title` VARCHAR(255) NOT NULL COMMENT '视频标题',
+    `description` TEXT NULL COMMENT '视频描述',
+    `keywords` VARCHAR(1000) NULL COMMENT '关键词',
+    `original_filename` VARCHAR(255) NOT NULL COMMENT '原始文件名',
+    `storage_path` VARCHAR(500) NOT NULL COMMENT '视频文件存储路径',
+    `upload_length` BIGINT NOT NULL COMMENT '文件总字节数',
+    `upload_offset` BIGINT NOT NULL DEFAULT 0 COMMENT '已持久化的字节数',
+    `status` VARCHAR(20) NOT NULL DEFAULT 'ACTIVE' COMMENT '状态：ACTIVE/COMPLETED',
+    `video_id` BIGINT NULL COMMENT '传完后登记的视频ID',
+    `created_at` DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) COMMENT '创建时间',
+    `updated_at` DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) COMMENT '最后写入时间',
+    `expires_at` DATETIME(3) NOT NULL COMMENT '未完成会话的过期时间',
+    PRIMARY KEY (`id`),
+    KEY `idx_upload_session_uploader` (`uploader_id`),
+    KEY `idx_upload_session_expires` (`status`, `expires_at`),
+    CONSTRAINT `fk_upload_session_uploader` FOREIGN KEY (`uploader_id`) REFERENCES `user` (`id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='分片上传会话表';
@@ -0,0 +1,22 @@
+-- 内容寻址存储：视频文件按SHA-256存放，相同内容的上传共用一份文件及其缩略图、故事板，
+-- ref_count 为引用该文件的视频数，降为0时才删除文件
+CREATE TABLE `media_blob` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT,
+    `content_hash` CHAR(64) NOT NULL COMMENT '文件内容SHA-256（十六进制）',
+    `storage_path` VARCHAR(500) NOT NULL COMMENT '存储路径',
+    `size_bytes` BIGINT NOT NULL COMMENT '文件大小（字节）',
+    `ref_count` INT NOT NULL DEFAULT 0 COMMENT '引用该文件的视频数',
+    `duration_seconds` INT NULL COMMENT '视频时长（秒），处理完成前为空',
+    `thumb_path` VARCHAR(500) NULL COMMENT '共用的缩略图路径，处理完成前为空',
+    `thumb_variants` VARCHAR(255) NULL COMMENT '已生成的缩略图变体',
+    `storyboard_path` VARCHAR(500) NULL COMMENT '共用的故事板雪碧图路径',
+    `created_at` DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) COMMENT '创建时间',
+    `updated_at` DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) COMMENT '最后更新时间',
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_media_blob_hash` (`content_hash`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='视频文件内容表';
+
+-- 旧视频没有内容哈希，仍按各自的路径存放与删除
+ALTER TABLE `video`
+    ADD COLUMN `content_hash` CHAR(64) NULL COMMENT '文件内容SHA-256，对应 media_blob' AFTER `storage_path`,
+    ADD KEY `idx_video_content_hash` (`content_hash`);
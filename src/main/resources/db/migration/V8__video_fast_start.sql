@@ -0,0 +1,6 @@
+-- 快速启动（moov在前）处理结果：NATIVE 原本即是、RELOCATED 已在Java中搬移、REMUXED 已用FFmpeg重封装、FAILED 保持原样
+ALTER TABLE `video`
+    ADD COLUMN `fast_start` VARCHAR(20) NULL COMMENT '快速启动处理结果' AFTER `storyboard_path`;
+
+ALTER TABLE `media_blob`
+    ADD COLUMN `fast_start` VARCHAR(20) NULL COMMENT '快速启动处理结果' AFTER `storyboard_path`;
@@ -0,0 +1,6 @@
+-- HLS分片目录（含 index.m3u8、init.mp4 与 seg_*.m4s），短视频或打包失败时为空，播放退回整文件MP4
+ALTER TABLE `video`
+    ADD COLUMN `hls_path` VARCHAR(500) NULL COMMENT 'HLS分片目录' AFTER `fast_start`;
+
+ALTER TABLE `media_blob`
+    ADD COLUMN `hls_path` VARCHAR(500) NULL COMMENT 'HLS分片目录' AFTER `fast_start`;
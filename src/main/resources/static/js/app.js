@@ -7,6 +7,9 @@ document.addEventListener('DOMContentLoaded', function() {
     initVideoPlayer();
     initScrollEffects();
     initTooltips();
+    initSearchSuggest();
+    initStoryboardPreview();
+    initUploadStatus();
 });
 
 // 动画初始化
@@ -529,3 +532,208 @@ style.textContent = `
     }
 `;
 document.head.appendChild(style);
+
+// 搜索联想（输入防抖，结果填充到datalist）
+function initSearchSuggest() {
+    const inputs = document.querySelectorAll('.search-form input[name="q"]');
+    inputs.forEach((input, index) => {
+        const datalist = document.createElement('datalist');
+        datalist.id = 'search-suggest-' + index;
+        input.setAttribute('list', datalist.id);
+        input.setAttribute('autocomplete', 'off');
+        input.parentElement.appendChild(datalist);
+
+        let timer = null;
+        let controller = null;
+        input.addEventListener('input', function() {
+            clearTimeout(timer);
+            const prefix = this.value.trim();
+            if (!prefix) {
+                datalist.innerHTML = '';
+                return;
+            }
+            timer = setTimeout(() => {
+                if (controller) {
+                    controller.abort();
+                }
+                controller = new AbortController();
+                fetch('/api/search/suggest?q=' + encodeURIComponent(prefix), { signal: controller.signal })
+                    .then(response => response.ok ? response.json() : { suggestions: [] })
+                    .then(data => {
+                        datalist.innerHTML = '';
+                        data.suggestions.forEach(text => {
+                            const option = document.createElement('option');
+                            option.value = text;
+                            datalist.appendChild(option);
+                        });
+                    })
+                    .catch(() => {});
+            }, 150);
+        });
+    });
+}
+
+// 故事板预览：解析WebVTT索引，播放器进度条区域拖动/悬停和卡片悬停时显示雪碧图中对应的帧
+const storyboardCache = new Map();
+
+function loadStoryboard(url) {
+    if (!storyboardCache.has(url)) {
+        storyboardCache.set(url, fetch(url)
+            .then(response => response.ok ? response.text() : '')
+            .then(text => parseStoryboardVtt(text, url))
+            .catch(() => []));
+    }
+    return storyboardCache.get(url);
+}
+
+function parseStoryboardVtt(text, baseUrl) {
+    const cues = [];
+    const toSeconds = value => value.split(':').reduce((total, part) => total * 60 + parseFloat(part), 0);
+    text.split(/\r?\n\r?\n/).forEach(block => {
+        const lines = block.trim().split(/\r?\n/);
+        const timing = lines.findIndex(line => line.includes('-->'));
+        if (timing < 0 || !lines[timing + 1]) {
+            return;
+        }
+        const [start, end] = lines[timing].split('-->').map(part => toSeconds(part.trim()));
+        const [src, fragment] = lines[timing + 1].trim().split('#xywh=');
+        if (!fragment) {
+            return;
+        }
+        const [x, y, w, h] = fragment.split(',').map(Number);
+        cues.push({ start, end, src: new URL(src, new URL(baseUrl, location.href)).href, x, y, w, h });
+    });
+    // 雪碧图整体尺寸，缩放显示时用于计算background-size
+    const sheetWidth = Math.max(0, ...cues.map(cue => cue.x + cue.w));
+    const sheetHeight = Math.max(0, ...cues.map(cue => cue.y + cue.h));
+    cues.forEach(cue => {
+        cue.sheetWidth = sheetWidth;
+        cue.sheetHeight = sheetHeight;
+    });
+    return cues;
+}
+
+function findStoryboardCue(cues, time) {
+    let low = 0;
+    let high = cues.length - 1;
+    while (low <= high) {
+        const mid = (low + high) >> 1;
+        if (time < cues[mid].start) {
+            high = mid - 1;
+        } else if (time >= cues[mid].end) {
+            low = mid + 1;
+        } else {
+            return cues[mid];
+        }
+    }
+    return cues.length ? cues[Math.min(low, cues.length - 1)] : null;
+}
+
+function showStoryboardFrame(preview, cue, scale) {
+    preview.style.width = cue.w * scale + 'px';
+    preview.style.height = cue.h * scale + 'px';
+    preview.style.backgroundImage = 'url("' + cue.src + '")';
+    preview.style.backgroundPosition = (-cue.x * scale) + 'px ' + (-cue.y * scale) + 'px';
+    preview.style.backgroundSize = (cue.sheetWidth * scale) + 'px ' + (cue.sheetHeight * scale) + 'px';
+    preview.style.display = 'block';
+}
+
+function initStoryboardPreview() {
+    // 播放器：鼠标位于底部控制条区域时按横向位置预览对应时间点
+    document.querySelectorAll('video[data-storyboard]').forEach(video => {
+        const preview = document.createElement('div');
+        preview.className = 'storyboard-preview';
+        video.parentElement.appendChild(preview);
+        const controlBarHeight = 48;
+
+        video.addEventListener('mousemove', function(event) {
+            const rect = video.getBoundingClientRect();
+            if (!video.duration || event.clientY < rect.bottom - controlBarHeight) {
+                preview.style.display = 'none';
+                return;
+            }
+            const ratio = Math.min(Math.max((event.clientX - rect.left) / rect.width, 0), 1);
+            loadStoryboard(video.dataset.storyboard).then(cues => {
+                const cue = findStoryboardCue(cues, ratio * video.duration);
+                if (!cue) {
+                    return;
+                }
+                showStoryboardFrame(preview, cue, 1);
+                const left = Math.min(Math.max(event.clientX - rect.left - cue.w / 2, 0), rect.width - cue.w);
+                preview.style.left = left + 'px';
+                preview.style.bottom = controlBarHeight + 'px';
+            });
+        });
+        video.addEventListener('mouseleave', () => preview.style.display = 'none');
+    });
+
+    // 视频卡片：悬停时按横向位置浏览整段视频
+    document.querySelectorAll('img[data-storyboard]').forEach(img => {
+        const preview = document.createElement('div');
+        preview.className = 'storyboard-preview storyboard-card-preview';
+        img.parentElement.appendChild(preview);
+
+        img.parentElement.addEventListener('mousemove', function(event) {
+            const rect = img.getBoundingClientRect();
+            const ratio = Math.min(Math.max((event.clientX - rect.left) / rect.width, 0), 1);
+            loadStoryboard(img.dataset.storyboard).then(cues => {
+                if (!cues.length) {
+                    return;
+                }
+                const cue = findStoryboardCue(cues, ratio * cues[cues.length - 1].end);
+                const scale = rect.width / cue.w;
+                showStoryboardFrame(preview, cue, scale);
+            });
+        });
+        img.parentElement.addEventListener('mouseleave', () => preview.style.display = 'none');
+    });
+}
+
+// 上传处理状态：轮询状态接口更新进度，处理完成后刷新页面
+function initUploadStatus() {
+    const panel = document.querySelector('[data-upload-status]');
+    if (!panel || panel.classList.contains('alert-danger')) {
+        return;
+    }
+    const text = panel.querySelector('.upload-status-text');
+    const bar = panel.querySelector('.progress-bar');
+    const stageNames = {
+        PROBING: '正在检查视频格式',
+        FASTSTART: '正在优化播放启动',
+        THUMBNAILS: '正在生成缩略图',
+        STORYBOARD: '正在生成预览图',
+        PACKAGING: '正在生成分片',
+        FINALIZING: '即将完成'
+    };
+
+    const poll = () => {
+        fetch(panel.dataset.uploadStatus, { cache: 'no-store' })
+            .then(response => response.ok ? response.json() : null)
+            .then(status => {
+                if (!status) {
+                    return;
+                }
+                if (status.status === 'SUCCEEDED') {
+                    location.reload();
+                    return;
+                }
+                if (status.status === 'FAILED') {
+                    panel.classList.replace('alert-info', 'alert-danger');
+                    text.textContent = '视频处理失败：' + (status.error || '未知错误');
+                    if (bar) {
+                        bar.parentElement.remove();
+                    }
+                    return;
+                }
+                if (bar) {
+                    bar.style.width = status.progress + '%';
+                }
+                text.textContent = status.status === 'QUEUED' && status.attempts > 0
+                    ? '处理失败，等待第' + (status.attempts + 1) + '次重试'
+                    : (stageNames[status.stage] || '视频已上传，等待处理');
+                setTimeout(poll, 2000);
+            })
+            .catch(() => setTimeout(poll, 5000));
+    };
+    poll();
+}
@@ -0,0 +1,128 @@
+package com.videosite.media;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static com.videosite.media.Mp4Fixtures.audioTrak;
+import static com.videosite.media.Mp4Fixtures.box;
+import static com.videosite.media.Mp4Fixtures.concat;
+import static com.videosite.media.Mp4Fixtures.esds;
+import static com.videosite.media.Mp4Fixtures.ftyp;
+import static com.videosite.media.Mp4Fixtures.largeBox;
+import static com.videosite.media.Mp4Fixtures.mp4a;
+import static com.videosite.media.Mp4Fixtures.mvhd;
+import static com.videosite.media.Mp4Fixtures.mvhdVersion1;
+import static com.videosite.media.Mp4Fixtures.stco;
+import static com.videosite.media.Mp4Fixtures.videoTrak;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class Mp4BoxParserTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void parsesH264AacFile() throws IOException {
+        byte[] moov = box("moov", mvhd(12_500), videoTrak(1280, 720, stco()), audioTrak(mp4a(esds(0x40)), stco()));
+
+        Mp4Info info = parse(concat(ftyp(), moov, box("mdat", new byte[1000])));
+
+        assertThat(info).isNotNull();
+        assertThat(info.getMajorBrand()).isEqualTo("isom");
+        assertThat(info.getDurationMicros()).isEqualTo(12_500_000L);
+        assertThat(info.getDurationSeconds()).isEqualTo(13);
+        assertThat(info.getVideoCodec()).isEqualTo("avc1");
+        assertThat(info.getAudioCodec()).isEqualTo("mp4a");
+        assertThat(info.isH264()).isTrue();
+        assertThat(info.isAac()).isTrue();
+        assertThat(info.getWidth()).isEqualTo(1280);
+        assertThat(info.getHeight()).isEqualTo(720);
+    }
+
+    @Test
+    void parsesMoovAfterMdat() throws IOException {
+        byte[] moov = box("moov", mvhd(2000), videoTrak(640, 360, stco()));
+
+        Mp4Info info = parse(concat(ftyp(), box("mdat", new byte[100]), moov));
+
+        assertThat(info).isNotNull();
+        assertThat(info.getAudioCodec()).isNull();
+        assertThat(info.getWidth()).isEqualTo(640);
+    }
+
+    @Test
+    void reportsNonAacAudioObjectType() throws IOException {
+        // 0x6B 为MP3，交给调用方决定是否转码
+        byte[] moov = box("moov", mvhd(1000), videoTrak(640, 360, stco()), audioTrak(mp4a(esds(0x6B)), stco()));
+
+        Mp4Info info = parse(concat(ftyp(), moov));
+
+        assertThat(info).isNotNull();
+        assertThat(info.getAudioObjectType()).isEqualTo(0x6B);
+        assertThat(info.isAac()).isFalse();
+    }
+
+    @Test
+    void fallsBackWhenMp4aHasNoEsds() throws IOException {
+        byte[] moov = box("moov", mvhd(1000), videoTrak(640, 360, stco()), audioTrak(mp4a(), stco()));
+
+        assertThat(parse(concat(ftyp(), moov))).isNull();
+    }
+
+    @Test
+    void fallsBackWhenFileIsTruncated() throws IOException {
+        byte[] moov = box("moov", mvhd(1000), videoTrak(640, 360, stco()), audioTrak(mp4a(esds(0x40)), stco()));
+        byte[] file = concat(ftyp(), box("mdat", new byte[100]), moov);
+
+        assertThat(parse(Arrays.copyOf(file, file.length - 10))).isNull();
+        // 截断在box头中间
+        assertThat(parse(Arrays.copyOf(file, ftyp().length + 4))).isNull();
+    }
+
+    @Test
+    void fallsBackWhenChildBoxOverrunsParent() throws IOException {
+        byte[] moov = box("moov", mvhd(1000), videoTrak(640, 360, stco()));
+        // 把mvhd的size改大，使其越过moov的末尾
+        moov[8] = 0x7F;
+
+        assertThat(parse(concat(ftyp(), moov))).isNull();
+    }
+
+    @Test
+    void fallsBackForFragmentedMp4() throws IOException {
+        byte[] moov = box("moov", mvhd(1000), videoTrak(640, 360, stco()),
+                box("mvex", box("trex", new byte[24])));
+
+        assertThat(parse(concat(ftyp(), moov, box("moof", new byte[16]), box("mdat", new byte[100])))).isNull();
+    }
+
+    @Test
+    void fallsBackWithoutVideoTrack() throws IOException {
+        byte[] moov = box("moov", mvhd(1000), audioTrak(mp4a(esds(0x40)), stco()));
+
+        assertThat(parse(concat(ftyp(), moov))).isNull();
+    }
+
+    @Test
+    void parsesLargeSizeBoxesAndVersion1Header() throws IOException {
+        byte[] moov = largeBox("moov", mvhdVersion1(90_000), videoTrak(1920, 1080, stco()),
+                audioTrak(mp4a(esds(0x40)), stco()));
+
+        Mp4Info info = parse(concat(ftyp(), largeBox("mdat", new byte[200]), moov));
+
+        assertThat(info).isNotNull();
+        assertThat(info.getDurationMicros()).isEqualTo(90_000_000L);
+        assertThat(info.getWidth()).isEqualTo(1920);
+        assertThat(info.isAac()).isTrue();
+    }
+
+    private Mp4Info parse(byte[] content) throws IOException {
+        Path file = Files.write(tempDir.resolve("video.mp4"), content);
+        return Mp4BoxParser.parse(file);
+    }
+}
@@ -0,0 +1,144 @@
+package com.videosite.media;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static com.videosite.media.Mp4Fixtures.ascii;
+import static com.videosite.media.Mp4Fixtures.audioTrak;
+import static com.videosite.media.Mp4Fixtures.box;
+import static com.videosite.media.Mp4Fixtures.co64;
+import static com.videosite.media.Mp4Fixtures.concat;
+import static com.videosite.media.Mp4Fixtures.esds;
+import static com.videosite.media.Mp4Fixtures.ftyp;
+import static com.videosite.media.Mp4Fixtures.mp4a;
+import static com.videosite.media.Mp4Fixtures.mvhd;
+import static com.videosite.media.Mp4Fixtures.stco;
+import static com.videosite.media.Mp4Fixtures.stcoWithCount;
+import static com.videosite.media.Mp4Fixtures.videoTrak;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class Mp4FastStartTest {
+
+    private static final int CHUNK_SIZE = 100;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void detectsLayout() throws IOException {
+        byte[] moov = box("moov", mvhd(1000), videoTrak(640, 360, stco()));
+        byte[] mdat = box("mdat", new byte[CHUNK_SIZE]);
+
+        assertThat(Mp4FastStart.detect(write("fast.mp4", concat(ftyp(), moov, mdat))))
+                .isEqualTo(Mp4FastStart.Layout.FAST_START);
+        assertThat(Mp4FastStart.detect(write("slow.mp4", concat(ftyp(), mdat, moov))))
+                .isEqualTo(Mp4FastStart.Layout.MOOV_AT_END);
+        assertThat(Mp4FastStart.detect(write("bad.mp4", Arrays.copyOf(concat(ftyp(), mdat), 50))))
+                .isEqualTo(Mp4FastStart.Layout.UNKNOWN);
+    }
+
+    @Test
+    void relocatesMoovAndShiftsChunkOffsets() throws IOException {
+        int mdatPayload = ftyp().length + 8;
+        long[] videoChunks = {mdatPayload, mdatPayload + 2L * CHUNK_SIZE};
+        long[] audioChunks = {mdatPayload + CHUNK_SIZE, mdatPayload + 3L * CHUNK_SIZE};
+        byte[] mdat = box("mdat", chunks(4));
+        byte[] moov = box("moov", mvhd(1000),
+                videoTrak(640, 360, stco(videoChunks)),
+                audioTrak(mp4a(esds(0x40)), co64(audioChunks)));
+        Path source = write("source.mp4", concat(ftyp(), mdat, moov));
+        Path target = tempDir.resolve("target.mp4");
+
+        assertThat(Mp4FastStart.relocate(source, target)).isTrue();
+
+        byte[] original = Files.readAllBytes(source);
+        byte[] relocated = Files.readAllBytes(target);
+        assertThat(relocated.length).isEqualTo(original.length);
+        assertThat(Mp4FastStart.detect(target)).isEqualTo(Mp4FastStart.Layout.FAST_START);
+        // 新布局：ftyp、moov、mdat 依次相接
+        assertThat(fourCC(relocated, ftyp().length + 4)).isEqualTo("moov");
+        assertThat(fourCC(relocated, ftyp().length + moov.length + 4)).isEqualTo("mdat");
+
+        long[] patchedVideo = entries(relocated, "stco", 4);
+        long[] patchedAudio = entries(relocated, "co64", 8);
+        for (int i = 0; i < videoChunks.length; i++) {
+            assertThat(patchedVideo[i]).isEqualTo(videoChunks[i] + moov.length);
+            assertThat(chunkAt(relocated, patchedVideo[i])).isEqualTo(chunkAt(original, videoChunks[i]));
+        }
+        for (int i = 0; i < audioChunks.length; i++) {
+            assertThat(patchedAudio[i]).isEqualTo(audioChunks[i] + moov.length);
+            assertThat(chunkAt(relocated, patchedAudio[i])).isEqualTo(chunkAt(original, audioChunks[i]));
+        }
+        assertThat(Mp4BoxParser.parse(target)).isNotNull();
+    }
+
+    @Test
+    void refusesStcoWhoseCountOverrunsTheBox() throws IOException {
+        int mdatPayload = ftyp().length + 8;
+        byte[] mdat = box("mdat", chunks(1));
+        byte[] moov = box("moov", mvhd(1000), videoTrak(640, 360, stcoWithCount(1000, mdatPayload)));
+        Path source = write("source.mp4", concat(ftyp(), mdat, moov));
+        Path target = tempDir.resolve("target.mp4");
+
+        assertThat(Mp4FastStart.relocate(source, target)).isFalse();
+        assertThat(Files.exists(target)).isFalse();
+    }
+
+    @Test
+    void refusesNegativeEntryCount() throws IOException {
+        int mdatPayload = ftyp().length + 8;
+        byte[] mdat = box("mdat", chunks(1));
+        byte[] moov = box("moov", mvhd(1000), videoTrak(640, 360, stcoWithCount(-1, mdatPayload)));
+        Path source = write("source.mp4", concat(ftyp(), mdat, moov));
+        Path target = tempDir.resolve("target.mp4");
+
+        assertThat(Mp4FastStart.relocate(source, target)).isFalse();
+        assertThat(Files.exists(target)).isFalse();
+    }
+
+    private Path write(String name, byte[] content) throws IOException {
+        return Files.write(tempDir.resolve(name), content);
+    }
+
+    /**
+     * count个块，每块填充各自的序号，便于校验偏移是否仍指向同一块数据
+     */
+    private static byte[] chunks(int count) {
+        byte[] data = new byte[count * CHUNK_SIZE];
+        for (int i = 0; i < count; i++) {
+            Arrays.fill(data, i * CHUNK_SIZE, (i + 1) * CHUNK_SIZE, (byte) (i + 1));
+        }
+        return data;
+    }
+
+    private static byte[] chunkAt(byte[] file, long offset) {
+        return Arrays.copyOfRange(file, (int) offset, (int) offset + CHUNK_SIZE);
+    }
+
+    private static long[] entries(byte[] file, String type, int entrySize) {
+        byte[] needle = ascii(type);
+        for (int i = 0; i + 4 <= file.length; i++) {
+            if (Arrays.equals(file, i, i + 4, needle, 0, 4)) {
+                ByteBuffer buffer = ByteBuffer.wrap(file);
+                long[] offsets = new long[buffer.getInt(i + 8)];
+                for (int j = 0; j < offsets.length; j++) {
+                    int index = i + 12 + j * entrySize;
+                    offsets[j] = entrySize == 4 ? buffer.getInt(index) & 0xFFFFFFFFL : buffer.getLong(index);
+                }
+                return offsets;
+            }
+        }
+        throw new AssertionError("未找到" + type);
+    }
+
+    private static String fourCC(byte[] file, int index) {
+        return new String(file, index, 4, StandardCharsets.ISO_8859_1);
+    }
+}
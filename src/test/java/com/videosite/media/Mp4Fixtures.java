@@ -0,0 +1,147 @@
+package com.videosite.media;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 测试用的合成MP4 box：只填充解析器与快速启动处理会读取的字段，其余保留字段为0
+ */
+final class Mp4Fixtures {
+
+    static final int TIMESCALE = 1000;
+
+    private Mp4Fixtures() {
+    }
+
+    static byte[] box(String type, byte[]... children) {
+        byte[] payload = concat(children);
+        return ByteBuffer.allocate(8 + payload.length)
+                .putInt(8 + payload.length)
+                .put(type.getBytes(StandardCharsets.ISO_8859_1))
+                .put(payload)
+                .array();
+    }
+
+    /**
+     * size字段为1、后跟64位largesize的box头
+     */
+    static byte[] largeBox(String type, byte[]... children) {
+        byte[] payload = concat(children);
+        return ByteBuffer.allocate(16 + payload.length)
+                .putInt(1)
+                .put(type.getBytes(StandardCharsets.ISO_8859_1))
+                .putLong(16L + payload.length)
+                .put(payload)
+                .array();
+    }
+
+    static byte[] ftyp() {
+        return box("ftyp", ascii("isom"), new byte[4], ascii("isom"), ascii("avc1"));
+    }
+
+    static byte[] mvhd(long durationMillis) {
+        ByteBuffer payload = ByteBuffer.allocate(100);
+        payload.putInt(12, TIMESCALE);
+        payload.putInt(16, (int) durationMillis);
+        return box("mvhd", payload.array());
+    }
+
+    static byte[] mvhdVersion1(long durationMillis) {
+        ByteBuffer payload = ByteBuffer.allocate(112);
+        payload.put(0, (byte) 1);
+        payload.putInt(20, TIMESCALE);
+        payload.putLong(24, durationMillis);
+        return box("mvhd", payload.array());
+    }
+
+    static byte[] videoTrak(int width, int height, byte[] stco) {
+        return trak("vide", width, height, avc1(width, height), stco);
+    }
+
+    static byte[] audioTrak(byte[] sampleEntry, byte[] stco) {
+        return trak("soun", 0, 0, sampleEntry, stco);
+    }
+
+    static byte[] avc1(int width, int height) {
+        ByteBuffer entry = ByteBuffer.allocate(78);
+        entry.putShort(6, (short) 1);
+        entry.putShort(24, (short) width);
+        entry.putShort(26, (short) height);
+        return box("avc1", entry.array());
+    }
+
+    static byte[] mp4a(byte[]... children) {
+        ByteBuffer entry = ByteBuffer.allocate(28);
+        entry.putShort(6, (short) 1);
+        entry.putShort(16, (short) 2);
+        entry.putShort(18, (short) 16);
+        entry.putInt(24, 44100 << 16);
+        return box("mp4a", entry.array(), concat(children));
+    }
+
+    /**
+     * ES_Descriptor -> DecoderConfigDescriptor，objectTypeIndication 为给定值
+     */
+    static byte[] esds(int objectType) {
+        byte[] decoderConfig = {0x04, 13, (byte) objectType, 0x15, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+        byte[] esDescriptor = concat(new byte[]{0x03, (byte) (3 + decoderConfig.length), 0, 1, 0}, decoderConfig);
+        return box("esds", new byte[4], esDescriptor);
+    }
+
+    static byte[] stco(long... offsets) {
+        ByteBuffer payload = ByteBuffer.allocate(8 + offsets.length * 4);
+        payload.putInt(4, offsets.length);
+        for (int i = 0; i < offsets.length; i++) {
+            payload.putInt(8 + i * 4, (int) offsets[i]);
+        }
+        return box("stco", payload.array());
+    }
+
+    /**
+     * 条目数字段与实际条目不符的stco
+     */
+    static byte[] stcoWithCount(int count, long... offsets) {
+        byte[] box = stco(offsets);
+        ByteBuffer.wrap(box).putInt(12, count);
+        return box;
+    }
+
+    static byte[] co64(long... offsets) {
+        ByteBuffer payload = ByteBuffer.allocate(8 + offsets.length * 8);
+        payload.putInt(4, offsets.length);
+        for (int i = 0; i < offsets.length; i++) {
+            payload.putLong(8 + i * 8, offsets[i]);
+        }
+        return box("co64", payload.array());
+    }
+
+    static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] trak(String handler, int width, int height, byte[] sampleEntry, byte[] stco) {
+        ByteBuffer tkhd = ByteBuffer.allocate(84);
+        tkhd.putInt(76, width << 16);
+        tkhd.putInt(80, height << 16);
+
+        ByteBuffer hdlr = ByteBuffer.allocate(25);
+        hdlr.put(8, ascii(handler));
+
+        ByteBuffer stsdHeader = ByteBuffer.allocate(8);
+        stsdHeader.putInt(4, 1);
+
+        byte[] stbl = box("stbl", box("stsd", stsdHeader.array(), sampleEntry), stco);
+        return box("trak",
+                box("tkhd", tkhd.array()),
+                box("mdia", box("hdlr", hdlr.array()), box("minf", stbl)));
+    }
+}
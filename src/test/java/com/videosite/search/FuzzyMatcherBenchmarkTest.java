@@ -0,0 +1,133 @@
+package com.videosite.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 拼写纠错延迟：100万词的有序词典上，对拼错1~2处的查询词测量FuzzyMatcher（距离2）的p50/p99，
+ * 并与逐词计算编辑距离的扫描对比。
+ * 耗时较长，默认不运行：mvn test -Dtest=FuzzyMatcherBenchmarkTest -Dsearch.benchmark=true
+ */
+@EnabledIfSystemProperty(named = "search.benchmark", matches = "true")
+class FuzzyMatcherBenchmarkTest {
+
+    private static final int TERMS = 1_000_000;
+    private static final int QUERIES = 1000;
+    private static final int MAX_DISTANCE = 2;
+
+    @Test
+    void measureMisspelledQueryLatency() {
+        Random random = new Random(42);
+        NavigableMap<String, Boolean> dictionary = new TreeMap<>();
+        while (dictionary.size() < TERMS) {
+            dictionary.put(randomWord(random), Boolean.TRUE);
+        }
+        List<String> terms = new ArrayList<>(dictionary.keySet());
+        List<String> queries = new ArrayList<>(QUERIES);
+        for (int i = 0; i < QUERIES; i++) {
+            queries.add(misspell(terms.get(random.nextInt(terms.size())), random));
+        }
+
+        // 预热，并确认结果与逐词扫描一致
+        for (String query : queries.subList(0, 50)) {
+            assertThat(FuzzyMatcher.search(dictionary, query, MAX_DISTANCE).size()).isEqualTo(scan(dictionary, query));
+        }
+
+        long[] matcher = new long[QUERIES];
+        long[] scan = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            String query = queries.get(i);
+            long started = System.nanoTime();
+            FuzzyMatcher.search(dictionary, query, MAX_DISTANCE);
+            matcher[i] = System.nanoTime() - started;
+            started = System.nanoTime();
+            scan(dictionary, query);
+            scan[i] = System.nanoTime() - started;
+        }
+        Arrays.sort(matcher);
+        Arrays.sort(scan);
+        System.out.printf("FuzzyMatcher  p50 %7.3f ms  p99 %7.3f ms%n", percentile(matcher, 50), percentile(matcher, 99));
+        System.out.printf("逐词扫描      p50 %7.3f ms  p99 %7.3f ms%n", percentile(scan, 50), percentile(scan, 99));
+    }
+
+    /**
+     * 对照实现：遍历首字符相同的全部词，逐词计算完整的编辑距离
+     */
+    private static int scan(NavigableMap<String, Boolean> dictionary, String query) {
+        String first = query.substring(0, 1);
+        int matches = 0;
+        for (String term : dictionary.subMap(first, true, first + Character.MAX_VALUE, false).keySet()) {
+            if (levenshtein(term, query) <= MAX_DISTANCE) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private static double percentile(long[] sorted, int percent) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)] / 1e6;
+    }
+
+    private static String randomWord(Random random) {
+        int length = 4 + random.nextInt(9);
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+
+    /**
+     * 在首字符之后随机做1~2次替换、插入或删除
+     */
+    private static String misspell(String word, Random random) {
+        StringBuilder result = new StringBuilder(word);
+        int edits = 1 + random.nextInt(2);
+        for (int e = 0; e < edits; e++) {
+            int position = 1 + random.nextInt(result.length());
+            char c = (char) ('a' + random.nextInt(26));
+            switch (random.nextInt(3)) {
+                case 0 -> result.insert(position, c);
+                case 1 -> {
+                    if (position < result.length() && result.length() > 2) {
+                        result.deleteCharAt(position);
+                    }
+                }
+                default -> {
+                    if (position < result.length()) {
+                        result.setCharAt(position, c);
+                    }
+                }
+            }
+        }
+        return result.toString();
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
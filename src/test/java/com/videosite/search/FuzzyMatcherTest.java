@@ -0,0 +1,109 @@
+package com.videosite.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FuzzyMatcherTest {
+
+    @Test
+    void findsTermsWithinDistanceInDictionaryOrder() {
+        NavigableMap<String, Boolean> dictionary = dictionary("bat", "car", "card", "care", "cart", "cat", "category", "cut", "dog");
+
+        assertThat(format(FuzzyMatcher.search(dictionary, "cat", 0))).containsExactly("cat:0");
+        assertThat(format(FuzzyMatcher.search(dictionary, "cat", 1))).containsExactly("car:1", "cart:1", "cat:0", "cut:1");
+        assertThat(format(FuzzyMatcher.search(dictionary, "cat", 2)))
+                .containsExactly("car:1", "card:2", "care:2", "cart:1", "cat:0", "cut:1");
+    }
+
+    @Test
+    void requiresSameFirstCharacter() {
+        NavigableMap<String, Boolean> dictionary = dictionary("bat", "hat", "mat");
+
+        assertThat(FuzzyMatcher.search(dictionary, "cat", 1)).isEmpty();
+    }
+
+    @Test
+    void returnsNothingWhenNoTermIsCloseEnough() {
+        NavigableMap<String, Boolean> dictionary = dictionary("minecraft", "minimal", "mining");
+
+        assertThat(FuzzyMatcher.search(dictionary, "monster", 2)).isEmpty();
+        assertThat(FuzzyMatcher.search(dictionary, "", 2)).isEmpty();
+    }
+
+    @Test
+    void correctsInsertionsDeletionsAndSubstitutions() {
+        NavigableMap<String, Boolean> dictionary = dictionary("minecraft", "minecart", "tutorial");
+
+        assertThat(format(FuzzyMatcher.search(dictionary, "minecrft", 1))).containsExactly("minecraft:1");
+        assertThat(format(FuzzyMatcher.search(dictionary, "minecrafft", 1))).containsExactly("minecraft:1");
+        assertThat(format(FuzzyMatcher.search(dictionary, "tutorail", 2))).containsExactly("tutorial:2");
+    }
+
+    @Test
+    void matchesBruteForceOnRandomDictionary() {
+        Random random = new Random(7);
+        NavigableMap<String, Boolean> dictionary = new TreeMap<>();
+        for (int i = 0; i < 2000; i++) {
+            dictionary.put(randomWord(random), Boolean.TRUE);
+        }
+        for (int i = 0; i < 200; i++) {
+            String query = randomWord(random);
+            int maxDistance = 1 + random.nextInt(2);
+            List<String> expected = new ArrayList<>();
+            for (String term : dictionary.keySet()) {
+                int distance = levenshtein(term, query);
+                if (term.charAt(0) == query.charAt(0) && distance <= maxDistance) {
+                    expected.add(term + ":" + distance);
+                }
+            }
+            assertThat(format(FuzzyMatcher.search(dictionary, query, maxDistance))).isEqualTo(expected);
+        }
+    }
+
+    private static NavigableMap<String, Boolean> dictionary(String... terms) {
+        NavigableMap<String, Boolean> dictionary = new TreeMap<>();
+        for (String term : terms) {
+            dictionary.put(term, Boolean.TRUE);
+        }
+        return dictionary;
+    }
+
+    private static List<String> format(List<FuzzyMatcher.Match> matches) {
+        return matches.stream().map(m -> m.word() + ":" + m.distance()).toList();
+    }
+
+    private static String randomWord(Random random) {
+        int length = 1 + random.nextInt(6);
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(4)));
+        }
+        return word.toString();
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
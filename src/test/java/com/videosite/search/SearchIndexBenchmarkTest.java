@@ -0,0 +1,102 @@
+package com.videosite.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 中文查询延迟对比：100万条合成标题上，倒排索引（二元组倒排表求交）与原searchVideos的子串扫描（LIKE '%词%'）。
+ * 子串扫描在内存中进行，不含数据库开销，是原路径耗时的下界。
+ * 耗时较长，默认不运行：mvn test -Dtest=SearchIndexBenchmarkTest -Dsearch.benchmark=true
+ */
+@EnabledIfSystemProperty(named = "search.benchmark", matches = "true")
+class SearchIndexBenchmarkTest {
+
+    private static final int TITLES = 1_000_000;
+    private static final int PAGE_SIZE = 20;
+    private static final int ROUNDS = 50;
+
+    private static final String[] WORDS = {
+            "周末", "厨房", "教程", "美食", "家常菜", "红烧肉", "旅行", "日记", "游戏", "实况",
+            "我的世界", "生存", "建筑", "猫咪", "狗狗", "日常", "编程", "入门", "吉他", "弹唱",
+            "健身", "减脂", "开箱", "测评", "手机", "摄影", "技巧", "vlog", "minecraft", "2024"
+    };
+
+    private static final String[] QUERIES = {"周末厨房", "红烧肉", "我的世界生存", "猫咪日常", "吉他弹唱教程"};
+
+    @Test
+    void compareIndexWithSubstringScan() {
+        Random random = new Random(42);
+        SearchIndex index = new SearchIndex();
+        List<String> titles = new ArrayList<>(TITLES);
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int id = 1; id <= TITLES; id++) {
+            String title = randomTitle(random);
+            titles.add(title.toLowerCase());
+            index.add(new IndexedVideo(id, title, null, 1L, "uploader", createdAt));
+        }
+
+        for (String query : QUERIES) {
+            BooleanQuery parsed = QueryParser.parse(query);
+            long scanTotal = scan(titles, query).getTotal();
+            SearchHits hits = index.search(parsed, 0, PAGE_SIZE);
+            // 二元组求交只会多召回（各二元组不相邻出现），不会漏掉子串命中
+            assertThat(hits.getTotal()).isGreaterThanOrEqualTo(scanTotal);
+
+            long indexNanos = median(() -> index.search(parsed, 0, PAGE_SIZE));
+            long scanNanos = median(() -> scan(titles, query));
+            System.out.printf("%-8s 命中 %7d  索引 %8.3f ms  子串扫描 %8.3f ms%n",
+                    query, hits.getTotal(), indexNanos / 1e6, scanNanos / 1e6);
+        }
+    }
+
+    private static String randomTitle(Random random) {
+        StringBuilder title = new StringBuilder();
+        int words = 2 + random.nextInt(4);
+        for (int i = 0; i < words; i++) {
+            if (i > 0 && random.nextInt(4) == 0) {
+                title.append(' ');
+            }
+            title.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return title.toString();
+    }
+
+    /**
+     * 原路径的等价实现：逐条做子串匹配并统计总数，按ID倒序取第一页
+     */
+    private static SearchHits scan(List<String> titles, String query) {
+        List<Long> page = new ArrayList<>(PAGE_SIZE);
+        long total = 0;
+        for (int i = titles.size() - 1; i >= 0; i--) {
+            if (titles.get(i).contains(query)) {
+                if (page.size() < PAGE_SIZE) {
+                    page.add((long) i + 1);
+                }
+                total++;
+            }
+        }
+        return new SearchHits(total, page);
+    }
+
+    private static long median(Runnable action) {
+        for (int i = 0; i < 5; i++) {
+            action.run();
+        }
+        long[] samples = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long started = System.nanoTime();
+            action.run();
+            samples[i] = System.nanoTime() - started;
+        }
+        Arrays.sort(samples);
+        return samples[ROUNDS / 2];
+    }
+}
@@ -0,0 +1,52 @@
+package com.videosite.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchIndexTest {
+
+    @Test
+    void replaceTokenOnlyRewritesWholeWords() {
+        assertThat(SearchIndex.replaceToken("cat-category", "cat", "car")).isEqualTo("car-category");
+        assertThat(SearchIndex.replaceToken("category cat", "cat", "car")).isEqualTo("category car");
+        assertThat(SearchIndex.replaceToken("cat2", "cat", "car")).isEqualTo("cat2");
+    }
+
+    @Test
+    void replaceTokenIgnoresCaseAndTreatsCjkAsBoundary() {
+        assertThat(SearchIndex.replaceToken("Cat猫", "cat", "car")).isEqualTo("car猫");
+    }
+
+    @Test
+    void phraseMustBeConsecutiveWholeTokens() {
+        assertThat(containsPhrase("cat video", "funny cat video")).isTrue();
+        assertThat(containsPhrase("cat video", "cat-video")).isTrue();
+        assertThat(containsPhrase("cat video", "concat videos")).isFalse();
+        assertThat(containsPhrase("cat video", "video cat")).isFalse();
+        assertThat(containsPhrase("cat video", "cat funny video")).isFalse();
+    }
+
+    @Test
+    void phraseMustNotSpanFields() {
+        IndexedVideo video = new IndexedVideo(1L, "funny cat", "video", null, null, LocalDateTime.now());
+        assertThat(SearchIndex.containsPhrase(video, TextTokenizer.tokenStream("cat video"))).isFalse();
+
+        IndexedVideo inKeywords = new IndexedVideo(2L, "funny", "cat video", null, null, LocalDateTime.now());
+        assertThat(SearchIndex.containsPhrase(inKeywords, TextTokenizer.tokenStream("cat video"))).isTrue();
+    }
+
+    @Test
+    void cjkPhraseMatchesInsideLongerRun() {
+        assertThat(containsPhrase("周末厨房", "周末厨房教程")).isTrue();
+        assertThat(containsPhrase("周末厨房", "我的周末厨房")).isTrue();
+        assertThat(containsPhrase("周末厨房", "周末的厨房")).isFalse();
+    }
+
+    private static boolean containsPhrase(String phrase, String title) {
+        IndexedVideo video = new IndexedVideo(1L, title, null, null, null, LocalDateTime.now());
+        return SearchIndex.containsPhrase(video, TextTokenizer.tokenStream(phrase));
+    }
+}
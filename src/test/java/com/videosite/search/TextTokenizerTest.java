@@ -0,0 +1,95 @@
+package com.videosite.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextTokenizerTest {
+
+    @Test
+    void tokenStreamKeepsRepeatedWords() {
+        assertThat(TextTokenizer.tokenStream("Minecraft minecraft,tips"))
+                .containsExactly("minecraft", "minecraft", "tips");
+    }
+
+    @Test
+    void tokenizeRemovesRepeatedWords() {
+        assertThat(TextTokenizer.tokenize("Minecraft minecraft,tips"))
+                .containsExactly("minecraft", "tips");
+    }
+
+    @Test
+    void tokenStreamKeepsRepeatedCjkBigrams() {
+        assertThat(TextTokenizer.tokenStream("厨房 厨房"))
+                .containsExactly("厨房", "房", "厨房", "房");
+    }
+
+    @Test
+    void analyzeCountsRepeatedWordsInTermFrequencyAndFieldLength() {
+        IndexedVideo video = new IndexedVideo(1L, "minecraft minecraft tips", "minecraft #tips #tips",
+                null, null, LocalDateTime.now());
+
+        SearchIndex.DocumentStats stats = SearchIndex.analyze(video);
+
+        int title = SearchField.TITLE.ordinal();
+        int keywords = SearchField.KEYWORDS.ordinal();
+        assertThat(stats.termFrequencies.get("minecraft")[title]).isEqualTo(2);
+        assertThat(stats.termFrequencies.get("tips")[keywords]).isEqualTo(2);
+        assertThat(stats.fieldLengths[title]).isEqualTo(3);
+        assertThat(stats.fieldLengths[keywords]).isEqualTo(3);
+    }
+
+    @Test
+    void cjkRunEmitsOverlappingBigramsAndLastCharacter() {
+        assertThat(TextTokenizer.tokenStream("周末厨房教程"))
+                .containsExactly("周末", "末厨", "厨房", "房教", "教程", "程");
+    }
+
+    @Test
+    void singleCjkCharacterIsItsOwnToken() {
+        assertThat(TextTokenizer.tokenStream("猫")).containsExactly("猫");
+    }
+
+    @Test
+    void mixedScriptsSplitIntoWordsAndBigrams() {
+        assertThat(TextTokenizer.tokenStream("Minecraft生存教程2024"))
+                .containsExactly("minecraft", "生存", "存教", "教程", "程", "2024");
+        assertThat(TextTokenizer.tokenStream("猫咪vlog，第3集"))
+                .containsExactly("猫咪", "咪", "vlog", "第", "3", "集");
+    }
+
+    @Test
+    void kanaAndHangulAreTreatedAsCjk() {
+        assertThat(TextTokenizer.tokenStream("すし")).containsExactly("すし", "し");
+        assertThat(TextTokenizer.tokenStream("한국어")).containsExactly("한국", "국어", "어");
+    }
+
+    @Test
+    void supplementaryCharactersAreNotSplitIntoSurrogates() {
+        assertThat(TextTokenizer.tokenStream("𠀀𠀁")).containsExactly("𠀀𠀁", "𠀁");
+    }
+
+    @Test
+    void punctuationBreaksCjkRuns() {
+        assertThat(TextTokenizer.tokenStream("周末·厨房")).containsExactly("周末", "末", "厨房", "房");
+    }
+
+    @Test
+    void everyQueryTokenIsPrefixOfSomeTitleToken() {
+        List<String> titleTokens = TextTokenizer.tokenize("周末厨房教程");
+        for (String query : List.of("周末厨房", "厨房", "房", "末厨房教")) {
+            for (String token : TextTokenizer.tokenize(query)) {
+                assertThat(titleTokens.stream().anyMatch(t -> t.startsWith(token))).isTrue();
+            }
+        }
+    }
+
+    @Test
+    void blankTextHasNoTokens() {
+        assertThat(TextTokenizer.tokenStream(null)).isEqualTo(List.of());
+        assertThat(TextTokenizer.tokenStream(" ,# ")).isEmpty();
+    }
+}
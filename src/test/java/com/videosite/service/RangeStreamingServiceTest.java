@@ -0,0 +1,238 @@
+package com.videosite.service;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RangeStreamingServiceTest {
+
+    private static final int FILE_SIZE = 1 << 20;
+
+    @TempDir
+    Path tempDir;
+
+    private ExecutorService executor;
+    private RangeStreamingService service;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        executor = Executors.newSingleThreadExecutor();
+        service = new RangeStreamingService(executor);
+        ReflectionTestUtils.setField(service, "maxRanges", 16);
+        ReflectionTestUtils.setField(service, "sendfileEnabled", false);
+        ReflectionTestUtils.setField(service, "asyncEnabled", true);
+        ReflectionTestUtils.setField(service, "baseTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(service, "minBytesPerSecond", 65536L);
+
+        file = tempDir.resolve("video.mp4");
+        Files.write(file, new byte[FILE_SIZE]);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void asyncTransferCompletesOnceAfterWritingBody() throws Exception {
+        CountDownLatch executorBusy = holdExecutor();
+        MockHttpServletRequest request = asyncRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        service.serve(request, response, file, "video/mp4");
+        CompletionCounter counter = listen(request);
+        executorBusy.countDown();
+
+        assertThat(counter.awaitCompletion()).isTrue();
+        assertThat(response.getContentAsByteArray()).hasSize(FILE_SIZE);
+        assertThat(counter.completions.get()).isEqualTo(1);
+    }
+
+    @Test
+    void timeoutAbortsBlockedWriteWithoutCompleting() throws Exception {
+        MockHttpServletRequest request = asyncRequest();
+        BlockingResponse response = new BlockingResponse();
+
+        service.serve(request, response, file, "video/mp4");
+        MockAsyncContext asyncContext = (MockAsyncContext) request.getAsyncContext();
+        assertThat(asyncContext.getTimeout()).isEqualTo(1000L + FILE_SIZE * 1000L / 65536);
+        CompletionCounter counter = listen(request);
+        assertThat(response.stream.writeStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        fireTimeout(asyncContext);
+
+        // 超时回调关闭了输出流，但在写出线程退出前不能结束异步请求
+        assertThat(response.stream.closed.getCount()).isZero();
+        assertThat(counter.completions.get()).isZero();
+        assertThat(request.isAsyncStarted()).isTrue();
+
+        response.stream.releaseWriter.countDown();
+        assertThat(counter.awaitCompletion()).isTrue();
+        assertThat(counter.completions.get()).isEqualTo(1);
+    }
+
+    @Test
+    void timeoutBeforeWorkerStartsSkipsTransfer() throws Exception {
+        CountDownLatch executorBusy = holdExecutor();
+        MockHttpServletRequest request = asyncRequest();
+        BlockingResponse response = new BlockingResponse();
+
+        service.serve(request, response, file, "video/mp4");
+        CompletionCounter counter = listen(request);
+        fireTimeout((MockAsyncContext) request.getAsyncContext());
+        assertThat(counter.completions.get()).isZero();
+
+        executorBusy.countDown();
+        assertThat(counter.awaitCompletion()).isTrue();
+        assertThat(response.stream.writeStarted.getCount()).isEqualTo(1L);
+        assertThat(counter.completions.get()).isEqualTo(1);
+    }
+
+    /**
+     * 占住单线程执行器，使写出任务在测试放行前不会开始
+     */
+    private CountDownLatch holdExecutor() {
+        CountDownLatch busy = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                busy.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return busy;
+    }
+
+    private static MockHttpServletRequest asyncRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/videos/1/stream");
+        request.setAsyncSupported(true);
+        return request;
+    }
+
+    private static CompletionCounter listen(MockHttpServletRequest request) {
+        CompletionCounter counter = new CompletionCounter();
+        request.getAsyncContext().addListener(counter);
+        return counter;
+    }
+
+    private static void fireTimeout(MockAsyncContext asyncContext) throws IOException {
+        for (AsyncListener listener : List.copyOf(asyncContext.getListeners())) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+    }
+
+    private static class CompletionCounter implements AsyncListener {
+
+        private final AtomicInteger completions = new AtomicInteger();
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        boolean awaitCompletion() throws InterruptedException {
+            return completed.await(5, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            completions.incrementAndGet();
+            completed.countDown();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    /**
+     * 模拟慢速客户端：写出一直阻塞且不响应中断（与阻塞的套接字写一致），只有关闭输出流才能使其返回
+     */
+    private static class BlockingResponse extends MockHttpServletResponse {
+
+        private final BlockingOutputStream stream = new BlockingOutputStream();
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return stream;
+        }
+    }
+
+    private static class BlockingOutputStream extends ServletOutputStream {
+
+        private final CountDownLatch writeStarted = new CountDownLatch(1);
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private final CountDownLatch releaseWriter = new CountDownLatch(1);
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            writeStarted.countDown();
+            awaitUninterruptibly(closed);
+            awaitUninterruptibly(releaseWriter);
+            throw new IOException("stream closed");
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+
+        private static void awaitUninterruptibly(CountDownLatch latch) {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        latch.await(10, TimeUnit.SECONDS);
+                        return;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.videosite.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HyperLogLogTest {
+
+    private static final int REGISTERS = 1 << HyperLogLog.DEFAULT_PRECISION;
+
+    @Test
+    void emptySketchEstimatesZero() {
+        HyperLogLog sketch = new HyperLogLog();
+
+        assertThat(sketch.isEmpty()).isTrue();
+        assertThat(sketch.cardinality()).isEqualTo(0L);
+        assertThat(HyperLogLog.fromBytes(sketch.toBytes()).isEmpty()).isTrue();
+    }
+
+    @Test
+    void staysSparseForFewElementsAndPromotesToDense() {
+        HyperLogLog sketch = new HyperLogLog();
+        int added = 0;
+        while (sketch.toBytes()[0] == 1) {
+            sketch.offer("viewer-" + added++);
+        }
+
+        // 稀疏项数超过 寄存器数/4 时展开，此时已写入的元素不少于该项数
+        assertThat(added).isGreaterThan(REGISTERS / 4);
+        assertThat(sketch.toBytes()[0]).isEqualTo((byte) 2);
+        assertThat(sketch.toBytes()).hasSize(2 + REGISTERS);
+        assertThat(relativeError(sketch.cardinality(), added)).isLessThan(0.05);
+    }
+
+    @Test
+    void sparseAndDenseFormsOfSameRegistersEstimateTheSame() {
+        HyperLogLog sparse = sketchOf("a-", 500);
+        assertThat(sparse.toBytes()[0]).isEqualTo((byte) 1);
+
+        HyperLogLog dense = HyperLogLog.fromBytes(denseBytes(registers(sparse)));
+
+        assertThat(dense.cardinality()).isEqualTo(sparse.cardinality());
+    }
+
+    @Test
+    void roundTripsSparseForm() {
+        HyperLogLog sketch = sketchOf("a-", 300);
+        byte[] bytes = sketch.toBytes();
+
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+
+        assertThat(bytes[0]).isEqualTo((byte) 1);
+        assertThat(restored.toBytes()).isEqualTo(bytes);
+        assertThat(restored.cardinality()).isEqualTo(sketch.cardinality());
+    }
+
+    @Test
+    void roundTripsDenseForm() {
+        HyperLogLog sketch = sketchOf("a-", 20_000);
+        byte[] bytes = sketch.toBytes();
+
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+
+        assertThat(bytes[0]).isEqualTo((byte) 2);
+        assertThat(restored.toBytes()).isEqualTo(bytes);
+        assertThat(restored.cardinality()).isEqualTo(sketch.cardinality());
+    }
+
+    @Test
+    void mergeAcrossFormatsEqualsSketchOfUnion() {
+        HyperLogLog union = sketchOf("a-", 200);
+        union.merge(sketchOf("b-", 20_000));
+        union.merge(sketchOf("c-", 300));
+        HyperLogLog expected = sketchOf("a-", 200);
+        offerAll(expected, "b-", 20_000);
+        offerAll(expected, "c-", 300);
+
+        // 稀疏并入稀疏、稠密并入稀疏、稀疏并入稠密
+        assertThat(registers(union)).isEqualTo(registers(expected));
+        assertThat(union.cardinality()).isEqualTo(expected.cardinality());
+
+        HyperLogLog denseFirst = sketchOf("b-", 20_000);
+        denseFirst.merge(sketchOf("a-", 200));
+        denseFirst.merge(sketchOf("c-", 300));
+        assertThat(registers(denseFirst)).isEqualTo(registers(expected));
+    }
+
+    @Test
+    void mergeOfSparseSketchesPromotesWhenNeeded() {
+        HyperLogLog merged = sketchOf("a-", 800);
+        merged.merge(sketchOf("b-", 800));
+
+        assertThat(merged.toBytes()[0]).isEqualTo((byte) 2);
+        assertThat(relativeError(merged.cardinality(), 1600)).isLessThan(0.05);
+    }
+
+    @Test
+    void mergeIsIdempotent() {
+        HyperLogLog sketch = sketchOf("a-", 5000);
+        long before = sketch.cardinality();
+
+        sketch.merge(sketchOf("a-", 5000));
+
+        assertThat(sketch.cardinality()).isEqualTo(before);
+    }
+
+    @Test
+    void estimateErrorAtDefaultPrecision() {
+        HyperLogLog sketch = new HyperLogLog();
+        int added = 0;
+        for (int target : new int[]{100, 1000, 10_000, 100_000, 1_000_000}) {
+            while (added < target) {
+                sketch.offer("user-" + added++);
+            }
+            // 标准误差约1.6%，取3倍作为上限
+            assertThat(relativeError(sketch.cardinality(), target)).isLessThan(0.05);
+        }
+    }
+
+    @Test
+    void duplicatesDoNotChangeTheEstimate() {
+        HyperLogLog sketch = sketchOf("a-", 1000);
+        long before = sketch.cardinality();
+
+        offerAll(sketch, "a-", 1000);
+
+        assertThat(sketch.cardinality()).isEqualTo(before);
+    }
+
+    @Test
+    void rejectsInvalidInput() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(3));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(12).merge(new HyperLogLog(10)));
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[]{3, 12}));
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[]{2, 12, 0, 0}));
+    }
+
+    private static HyperLogLog sketchOf(String prefix, int count) {
+        HyperLogLog sketch = new HyperLogLog();
+        offerAll(sketch, prefix, count);
+        return sketch;
+    }
+
+    private static void offerAll(HyperLogLog sketch, String prefix, int count) {
+        for (int i = 0; i < count; i++) {
+            sketch.offer(prefix + i);
+        }
+    }
+
+    /**
+     * 从序列化结果还原完整的寄存器数组，便于比较不同格式的草图
+     */
+    private static byte[] registers(HyperLogLog sketch) {
+        ByteBuffer buffer = ByteBuffer.wrap(sketch.toBytes());
+        byte format = buffer.get();
+        buffer.get();
+        byte[] registers = new byte[REGISTERS];
+        if (format == 2) {
+            buffer.get(registers);
+        } else {
+            while (buffer.remaining() >= 3) {
+                registers[buffer.getShort() & 0xFFFF] = buffer.get();
+            }
+        }
+        return registers;
+    }
+
+    private static byte[] denseBytes(byte[] registers) {
+        return ByteBuffer.allocate(2 + registers.length)
+                .put((byte) 2)
+                .put((byte) HyperLogLog.DEFAULT_PRECISION)
+                .put(registers)
+                .array();
+    }
+
+    private static double relativeError(long estimate, long actual) {
+        return Math.abs(estimate - actual) / (double) actual;
+    }
+}
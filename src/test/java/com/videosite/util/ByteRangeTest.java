@@ -0,0 +1,79 @@
+package com.videosite.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ByteRangeTest {
+
+    private static final long LENGTH = 1000;
+
+    @Test
+    void parsesSingleClosedRange() {
+        assertThat(parse("bytes=0-499")).containsExactly("0-499");
+        assertThat(ByteRange.parse("bytes=100-199", LENGTH).get(0).getLength()).isEqualTo(100L);
+    }
+
+    @Test
+    void clampsEndToLastByte() {
+        assertThat(parse("bytes=900-5000")).containsExactly("900-999");
+    }
+
+    @Test
+    void parsesOpenEndedRange() {
+        assertThat(parse("bytes=500-")).containsExactly("500-999");
+    }
+
+    @Test
+    void parsesSuffixRange() {
+        assertThat(parse("bytes=-100")).containsExactly("900-999");
+        assertThat(parse("bytes=-5000")).containsExactly("0-999");
+    }
+
+    @Test
+    void rangesStartingPastEofAreUnsatisfiable() {
+        assertThat(parse("bytes=1000-")).isEmpty();
+        assertThat(parse("bytes=1000-1999")).isEmpty();
+        assertThat(parse("bytes=-0")).isEmpty();
+    }
+
+    @Test
+    void anySatisfiableRangeKeepsRequestSatisfiable() {
+        assertThat(parse("bytes=2000-2999, 0-9")).containsExactly("0-9");
+    }
+
+    @Test
+    void emptyFileOnlyHasUnsatisfiableRanges() {
+        assertThat(ByteRange.parse("bytes=0-", 0)).isEmpty();
+        assertThat(ByteRange.parse("bytes=-10", 0)).isEmpty();
+    }
+
+    @Test
+    void sortsAndCoalescesMultipleRanges() {
+        assertThat(parse("bytes=500-599, 0-99, 50-149")).containsExactly("0-149", "500-599");
+        assertThat(parse("bytes=0-99, 100-199")).containsExactly("0-199");
+        assertThat(parse("bytes=0-9, 20-29")).containsExactly("0-9", "20-29");
+    }
+
+    @Test
+    void malformedHeadersAreIgnored() {
+        assertThat(ByteRange.parse(null, LENGTH)).isNull();
+        assertThat(ByteRange.parse("items=0-1", LENGTH)).isNull();
+        assertThat(ByteRange.parse("bytes=abc", LENGTH)).isNull();
+        assertThat(ByteRange.parse("bytes=-", LENGTH)).isNull();
+        assertThat(ByteRange.parse("bytes=5-1", LENGTH)).isNull();
+        assertThat(ByteRange.parse("bytes=x-10", LENGTH)).isNull();
+        assertThat(ByteRange.parse("bytes=0-10, oops", LENGTH)).isNull();
+    }
+
+    @Test
+    void formatsContentRange() {
+        assertThat(new ByteRange(0, 99).toContentRange(LENGTH)).isEqualTo("bytes 0-99/1000");
+    }
+
+    private static List<String> parse(String header) {
+        return ByteRange.parse(header, LENGTH).stream().map(ByteRange::toString).toList();
+    }
+}